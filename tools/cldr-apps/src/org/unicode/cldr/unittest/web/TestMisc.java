@@ -4,11 +4,23 @@ package org.unicode.cldr.unittest.web;
  * Copyright (C) 2012
  */
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.unicode.cldr.util.CLDRConfig;
 import org.unicode.cldr.util.CLDRConfigImpl;
 import org.unicode.cldr.util.CLDRLocale;
 import org.unicode.cldr.util.Factory;
 import org.unicode.cldr.web.STFactory;
+import org.unicode.cldr.web.SearchIndex;
+import org.unicode.cldr.web.VoteJournal;
 import org.unicode.cldr.web.WebContext;
 
 import com.ibm.icu.dev.test.TestFmwk;
@@ -89,4 +101,202 @@ public class TestMisc extends TestFmwk {
         assertNotNull(toolsVersion, "getting CLDR-Tools version");
 //        System.out.println("Tools: " + toolsVersion);
     }
+
+    /**
+     * Test that votes appended to a VoteJournal read back from its segment,
+     * and that a record cut off by a crash is dropped.
+     */
+    public void TestVoteJournal() throws IOException {
+        File dir = Files.createTempDirectory("votejournal").toFile();
+        VoteJournal journal = new VoteJournal(dir, false);
+        VoteJournal.Vote votes[] = {
+            new VoteJournal.Vote("fr", 1234, 5, "janvier", null, 1000L),
+            new VoteJournal.Vote("fr", 1234, 6, null, 4, 2000L), // abstain, at a reduced level
+            new VoteJournal.Vote("zh_Hant", 99, 5, "\u4E00\u6708", null, 3000L),
+        };
+        for (VoteJournal.Vote vote : votes) {
+            journal.append(vote);
+        }
+        File[] segments = dir.listFiles();
+        assertEquals("segments", 1, segments.length);
+        try (FileOutputStream out = new FileOutputStream(segments[0], true)) {
+            out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3 }); // a record cut off
+        }
+        List<VoteJournal.Vote> read = VoteJournal.read(segments[0]);
+        assertEquals("votes read", votes.length, read.size());
+        for (int i = 0; i < votes.length && i < read.size(); ++i) {
+            assertEquals("vote " + i, votes[i].toString(), read.get(i).toString());
+            assertEquals("override " + i, votes[i].override, read.get(i).override);
+            assertEquals("when " + i, votes[i].when, read.get(i).when);
+        }
+        deleteJournal(dir);
+    }
+
+    /**
+     * A VoteJournal that writes votes to a list instead of the database. A transaction with a vote whose value
+     * is "reject" fails, as does every transaction while unreachable is set.
+     */
+    private static class ListVoteJournal extends VoteJournal {
+        final List<VoteJournal.Vote> written = new ArrayList<VoteJournal.Vote>();
+        boolean unreachable = false;
+
+        ListVoteJournal(File directory) {
+            super(directory, false);
+        }
+
+        @Override
+        protected Connection getConnection() throws SQLException {
+            if (unreachable) {
+                throw new SQLException("unreachable");
+            }
+            return null;
+        }
+
+        @Override
+        protected void writeTransaction(Connection conn, List<VoteJournal.Vote> votes) throws SQLException {
+            for (VoteJournal.Vote vote : votes) {
+                if ("reject".equals(vote.value)) {
+                    throw new SQLException("rejected " + vote);
+                }
+            }
+            written.addAll(votes);
+        }
+    }
+
+    /**
+     * Test that flush writes the appended votes and deletes their segment, and keeps them while the database
+     * can't be reached.
+     */
+    public void TestVoteJournalFlush() throws IOException, SQLException {
+        File dir = Files.createTempDirectory("votejournal").toFile();
+        ListVoteJournal journal = new ListVoteJournal(dir);
+        journal.append(new VoteJournal.Vote("fr", 1, 5, "janvier", null, 1000L));
+        journal.append(new VoteJournal.Vote("fr", 2, 5, "février", null, 2000L));
+        assertEquals("pending", 2, journal.getPendingCount());
+        journal.unreachable = true;
+        try {
+            journal.flush();
+            errln("Should fail: database unreachable");
+        } catch (SQLException e) {
+            logln(e.getMessage());
+        }
+        assertEquals("pending while unreachable", 2, journal.getPendingCount());
+        journal.unreachable = false;
+        journal.append(new VoteJournal.Vote("fr", 3, 5, "mars", null, 3000L));
+        assertEquals("flushed", 3, journal.flush());
+        assertEquals("written", "[{fr #1 by #5: janvier}, {fr #2 by #5: février}, {fr #3 by #5: mars}]",
+            journal.written.toString());
+        assertEquals("pending after flush", 0, journal.getPendingCount());
+        assertEquals("segments after flush", 0, dir.listFiles().length);
+        deleteJournal(dir);
+    }
+
+    /**
+     * Test that votes appended but not flushed before a restart are written by replay.
+     */
+    public void TestVoteJournalReplay() throws IOException, SQLException {
+        File dir = Files.createTempDirectory("votejournal").toFile();
+        ListVoteJournal before = new ListVoteJournal(dir);
+        before.append(new VoteJournal.Vote("de", 7, 3, "Januar", null, 1000L));
+        before.append(new VoteJournal.Vote("de", 7, 4, null, 4, 2000L));
+        // no flush: the process stops here
+
+        ListVoteJournal after = new ListVoteJournal(dir);
+        assertEquals("replayed", 2, after.replay());
+        assertEquals("written", "[{de #7 by #3: Januar}, {de #7 by #4: null}]", after.written.toString());
+        assertEquals("segments after replay", 0, dir.listFiles().length);
+        deleteJournal(dir);
+    }
+
+    /**
+     * Test that a segment that keeps failing is written one vote at a time, and only the rejected vote is quarantined.
+     */
+    public void TestVoteJournalQuarantine() throws IOException, SQLException {
+        File dir = Files.createTempDirectory("votejournal").toFile();
+        ListVoteJournal journal = new ListVoteJournal(dir);
+        journal.append(new VoteJournal.Vote("ja", 1, 5, "一月", null, 1000L));
+        journal.append(new VoteJournal.Vote("ja", 2, 5, "reject", null, 2000L));
+        journal.append(new VoteJournal.Vote("ja", 3, 5, "三月", null, 3000L));
+        for (int i = 0; i < 100 && journal.getQuarantined().isEmpty(); ++i) {
+            try {
+                journal.flush();
+            } catch (SQLException e) {
+                logln(e.getMessage());
+            }
+        }
+        assertEquals("written", "[{ja #1 by #5: 一月}, {ja #3 by #5: 三月}]", journal.written.toString());
+        assertEquals("pending", 0, journal.getPendingCount());
+        List<File> quarantined = journal.getQuarantined();
+        assertEquals("quarantined", 1, quarantined.size());
+        assertEquals("files", Arrays.asList(quarantined.get(0)), Arrays.asList(dir.listFiles()));
+        assertEquals("quarantined votes", "[{ja #2 by #5: reject}]", VoteJournal.read(quarantined.get(0)).toString());
+
+        // a later run reports the quarantined votes, but doesn't replay them
+        ListVoteJournal after = new ListVoteJournal(dir);
+        assertEquals("replayed", 0, after.replay());
+        assertEquals("quarantined after restart", quarantined, after.getQuarantined());
+        deleteJournal(dir);
+    }
+
+    /**
+     * Test that the search index folds case and compatibility forms, and drops accents only from
+     * Latin, Greek and Cyrillic letters.
+     */
+    public void TestSearchFold() {
+        assertEquals("case", "strasse", SearchIndex.fold("STRAßE"));
+        assertEquals("compatibility", "km", SearchIndex.fold("㎞"));
+        assertEquals("latin", "creme brulee", SearchIndex.looseFold(SearchIndex.fold("Crème Brûlée")));
+        assertEquals("vietnamese", "tieng viet", SearchIndex.looseFold(SearchIndex.fold("Tiếng Việt")));
+        assertEquals("greek", "αθηνα", SearchIndex.looseFold(SearchIndex.fold("Αθήνα")));
+        assertEquals("cyrillic", "иошкар-ола", SearchIndex.looseFold(SearchIndex.fold("Йошкар-Ола")));
+        assertEquals("devanagari", "हिन्दी", SearchIndex.looseFold(SearchIndex.fold("हिन्दी")));
+        assertEquals("hebrew", "שָׁלוֹם", SearchIndex.looseFold(SearchIndex.fold("שָׁלוֹם")));
+        assertEquals("hangul", "한국어", SearchIndex.looseFold(SearchIndex.fold("한국어")));
+    }
+
+    /**
+     * Test how a query matches a field of the search index.
+     */
+    public void TestSearchMatchQuality() {
+        assertEquals("exact", SearchIndex.EXACT, SearchIndex.matchQuality("january", "january"));
+        assertEquals("prefix", SearchIndex.PREFIX, SearchIndex.matchQuality("january", "jan"));
+        assertEquals("word start", SearchIndex.WORD_START, SearchIndex.matchQuality("month of january", "jan"));
+        assertEquals("later word start", SearchIndex.WORD_START, SearchIndex.matchQuality("ajan jan", "jan"));
+        assertEquals("substring", SearchIndex.SUBSTRING, SearchIndex.matchQuality("ajanuary", "jan"));
+        assertEquals("none", SearchIndex.NONE, SearchIndex.matchQuality("february", "jan"));
+    }
+
+    /**
+     * Test the ranking of search results: a better match wins, then the locale's value over English,
+     * over the code and the header; a match only without accents ranks last.
+     */
+    public void TestSearchRanking() {
+        int exactValue = SearchIndex.score("Janvier", "janvier", "January", "wide-1", "Months");
+        int exactEnglish = SearchIndex.score("January", "janvier", "January", "wide-1", "Months");
+        int prefixValue = SearchIndex.score("Janv", "janvier", "January", "wide-1", "Months");
+        int prefixEnglish = SearchIndex.score("Janu", "janvier", "January", "wide-1", "Months");
+        int prefixHeader = SearchIndex.score("Mon", "janvier", "January", "wide-1", "Months");
+        int wordStart = SearchIndex.score("vier", "jan vier", "January", "wide-1", "Months");
+        int substring = SearchIndex.score("nvie", "janvier", "January", "wide-1", "Months");
+        int loose = SearchIndex.score("fevrier", "février", "February", "wide-2", "Months");
+        int none = SearchIndex.score("mars", "janvier", "January", "wide-1", "Months");
+        assertTrue("exact value > exact English", exactValue > exactEnglish);
+        assertTrue("exact English > prefix value", exactEnglish > prefixValue);
+        assertTrue("prefix value > prefix English", prefixValue > prefixEnglish);
+        assertTrue("prefix English > prefix header", prefixEnglish > prefixHeader);
+        assertTrue("prefix header > word start", prefixHeader > wordStart);
+        assertTrue("word start > substring", wordStart > substring);
+        assertTrue("substring > loose", substring > loose);
+        assertTrue("loose matches", loose >= 0);
+        assertEquals("no match", -1, none);
+        assertEquals("accented query", SearchIndex.score("février", "février", "February", "wide-2", "Months"),
+            SearchIndex.score("FÉVRIER", "février", "February", "wide-2", "Months"));
+    }
+
+    private static void deleteJournal(File dir) {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
 }
@@ -13,7 +13,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,7 +29,12 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import org.unicode.cldr.icu.LDMLConstants;
 import org.unicode.cldr.test.CheckCLDR;
@@ -37,6 +45,7 @@ import org.unicode.cldr.util.CLDRConfig.Environment;
 import org.unicode.cldr.util.CLDRFile;
 import org.unicode.cldr.util.CLDRFile.DraftStatus;
 import org.unicode.cldr.util.CLDRLocale;
+import org.unicode.cldr.util.CldrUtility;
 import org.unicode.cldr.util.Emoji;
 import org.unicode.cldr.util.Factory;
 import org.unicode.cldr.util.LDMLUtilities;
@@ -131,7 +140,25 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
 
     }
 
-    private static final String VOTE_OVERRIDE = "vote_override";
+    static final String VOTE_OVERRIDE = "vote_override";
+
+    /**
+     * Rows fetched at a time when loading the votes of a locale, from the CLDR_VOTE_FETCH_SIZE property.
+     */
+    private static final int VOTE_FETCH_SIZE = CLDRConfig.getInstance().getProperty("CLDR_VOTE_FETCH_SIZE", 1000);
+
+    /**
+     * Threads for resolving the votes of a locale when it is loaded, from the CLDR_VOTE_RESOLVE_THREADS property.
+     * The default of 0 resolves them on the loading thread.
+     */
+    private static final int VOTE_RESOLVE_THREADS = CLDRConfig.getInstance().getProperty("CLDR_VOTE_RESOLVE_THREADS", 0);
+
+    private static final Executor VOTE_RESOLVE_EXECUTOR = VOTE_RESOLVE_THREADS > 0 ? new ForkJoinPool(VOTE_RESOLVE_THREADS) : null;
+
+    /**
+     * Paths resolved together on one thread, each chunk with its own VoteResolver.
+     */
+    private static final int RESOLVE_CHUNK_SIZE = 256;
 
     public class DataBackedSource extends DelegateXMLSource {
         PerLocaleData ballotBox;
@@ -197,24 +224,111 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
          * @return the VoteResolver
          */
         public VoteResolver<String> setValueFromResolver(String path, VoteResolver<String> resolver, boolean resolveMorePaths) {
+            Resolution resolution = new Resolution();
+            resolver = resolve(path, resolver, resolveMorePaths, null, resolution);
+            if (!resolution.missing) {
+                applyResolution(path, resolution);
+            }
+            return resolver;
+        }
+
+        /**
+         * Set the values for the given paths, as setValueFromResolver does for each of them.
+         *
+         * With an executor, the votes are resolved in chunks of paths on the executor, each chunk with
+         * its own VoteResolver, and then the winning values are put into this source on the calling thread.
+         * The votes must not change meanwhile; loadVoteValues calls this with the lock on the PerLocaleData.
+         *
+         * @param paths the xpaths
+         * @param resolveMorePaths true for making vxml, else false
+         * @param executor the executor for resolving, or null to resolve the paths one by one on this thread
+         * @return the number of paths resolved
+         */
+        public int setValuesFromResolver(Collection<String> paths, boolean resolveMorePaths, Executor executor) {
+            if (executor == null || paths.size() <= RESOLVE_CHUNK_SIZE
+                || !PerLocaleData.ERRORS_ALLOWED_IN_VETTING) { // the ValueChecker's TestResultBundle isn't thread-safe
+                VoteResolver<String> resolver = null; // save recalculating this.
+                for (String path : paths) {
+                    resolver = setValueFromResolver(path, resolver, resolveMorePaths);
+                }
+                return paths.size();
+            }
+            /*
+             * Make the resolved file here, since making it on a worker thread would need the lock
+             * on the PerLocaleData, which the calling thread may hold.
+             */
+            final CLDRFile resolvedFile = STFactory.this.make(ballotBox.locale, true);
+            final List<String> pathList = new ArrayList<String>(paths);
+            final Resolution[] resolutions = new Resolution[pathList.size()];
+            List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+            for (int chunkStart = 0; chunkStart < pathList.size(); chunkStart += RESOLVE_CHUNK_SIZE) {
+                final int start = chunkStart;
+                final int limit = Math.min(start + RESOLVE_CHUNK_SIZE, pathList.size());
+                futures.add(CompletableFuture.runAsync(new Runnable() {
+                    @Override
+                    public void run() {
+                        VoteResolver<String> resolver = null;
+                        for (int i = start; i < limit; ++i) {
+                            Resolution resolution = new Resolution();
+                            resolver = resolve(pathList.get(i), resolver, resolveMorePaths, resolvedFile, resolution);
+                            resolutions[i] = resolution;
+                        }
+                    }
+                }, executor));
+            }
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+            } catch (CompletionException e) {
+                throw new InternalError("Could not resolve votes for " + ballotBox.locale + ": " + e.getCause(), e.getCause());
+            }
+            for (int i = 0; i < resolutions.length; ++i) {
+                if (!resolutions[i].missing) {
+                    applyResolution(pathList.get(i), resolutions[i]);
+                }
+            }
+            return resolutions.length;
+        }
+
+        /**
+         * The winning value and full path of a path, between resolving the votes and putting the value into the source.
+         */
+        private final class Resolution {
+            String value;
+            String fullPath;
+            /**
+             * True if the winning status was missing, so the source is left as it was.
+             */
+            boolean missing;
+        }
+
+        /**
+         * Resolve the votes for the given path, without changing this source.
+         *
+         * @param path the xpath
+         * @param resolver the VoteResolver to reuse, or null
+         * @param resolveMorePaths true for making vxml, else false
+         * @param resolvedFile the resolved file of the locale, or null to make it when needed
+         * @param resolution filled in with the winning value and full path
+         * @return the VoteResolver
+         */
+        private VoteResolver<String> resolve(String path, VoteResolver<String> resolver, boolean resolveMorePaths,
+            CLDRFile resolvedFile, Resolution resolution) {
             org.unicode.cldr.web.STFactory.PerLocaleData.PerXPathData xpd = ballotBox.peekXpathData(path);
-            String res;
-            String fullPath = null;
             if (resolveMorePaths == false && (xpd == null || xpd.isEmpty())) {
                 /*
                  * If resolveMorePaths is false and there are no votes, it may be more efficient
                  * (or anyway expected) to skip vote resolution and use diskData instead.
                  * This has far-reaching effects and should be better documented.
                  */
-                res = ballotBox.diskData.getValueAtDPath(path);
-                fullPath = ballotBox.diskData.getFullPathAtDPath(path);
+                resolution.value = ballotBox.diskData.getValueAtDPath(path);
+                resolution.fullPath = ballotBox.diskData.getFullPathAtDPath(path);
             } else {
                 /*
                  * If resolveMorePaths is true, especially for generating vxml, we need to call
                  * getWinningValue for vote resolution for a larger set of paths to get baseline etc. even
                  * if there are no votes.
                  */
-                res = (resolver = ballotBox.getResolver(xpd, path, resolver)).getWinningValue();
+                resolution.value = (resolver = ballotBox.getResolver(xpd, path, resolver, resolvedFile)).getWinningValue();
                 String diskFullPath = ballotBox.diskData.getFullPathAtDPath(path);
                 if (diskFullPath == null) {
                     /*
@@ -233,26 +347,32 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
                  * This may happen especially when resolveMorePaths is true for making vxml.
                  */
                 if (win == Status.missing) {
-                   return resolver;
+                    resolution.missing = true;
                 } else if (win == Status.approved) {
-                    fullPath = baseXPath;
+                    resolution.fullPath = baseXPath;
                 } else {
                     DraftStatus draftStatus = draftStatusFromWinningStatus(win);
-                    fullPath = baseXPath + "[@draft=\"" + draftStatus.toString() + "\"]";
+                    resolution.fullPath = baseXPath + "[@draft=\"" + draftStatus.toString() + "\"]";
                 }
             }
-            if (res != null) {
+            return resolver;
+        }
+
+        /**
+         * Put the winning value of the path into this source, and notify the listeners.
+         */
+        private void applyResolution(String path, Resolution resolution) {
+            if (resolution.value != null) {
                 /*
                  * TODO: needed to clear fullpath? Otherwise, fullpath may be ignored if
                  * value is extant.
                  */
                 delegate.removeValueAtDPath(path);
-                delegate.putValueAtPath(fullPath, res);
+                delegate.putValueAtPath(resolution.fullPath, resolution.value);
             } else {
                 delegate.removeValueAtDPath(path);
             }
             notifyListeners(path);
-            return resolver;
         }
 
         /**
@@ -711,53 +831,90 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
              * TODO: move the readonly check to the caller
              */
             if (!readonly) {
-                VoteResolver<String> resolver = null; // save recalculating this.
                 ElapsedTimer et = (SurveyLog.DEBUG) ? new ElapsedTimer("Loading PLD for " + locale) : null;
                 Connection conn = null;
                 PreparedStatement ps = null;
                 ResultSet rs = null;
                 int n = 0;
                 int del = 0;
-                
+                /*
+                 * A busy locale has many votes by the same users on the same paths, so look up each submitter,
+                 * each path and each check once, keyed by the ids in the table.
+                 * Submitters who can't vote in this locale map to null.
+                 */
+                Map<Integer, User> submitters = new HashMap<Integer, User>();
+                Map<Integer, PerXPathData> idToData = new HashMap<Integer, PerXPathData>();
+                Set<Integer> invalidIds = new HashSet<Integer>();
+                // isValidSurveyToolVote depends on the user only through UserRegistry.userIsTC
+                Map<Integer, Boolean> validForTC = new HashMap<Integer, Boolean>();
+                Map<Integer, Boolean> validForOthers = new HashMap<Integer, Boolean>();
+
                 try {
                     /*
                      * Select several columns (xp, submitter, value, override, last_mod),
                      * from all rows with the given locale in the votes table.
                      */
+                    flushVoteJournal(); // votes of this locale since it was last loaded
                     conn = DBUtils.getInstance().getDBConnection();
                     ps = openQueryByLocaleRW(conn);
+                    ps.setFetchSize(VOTE_FETCH_SIZE);
                     ps.setString(1, locale.getBaseName());
                     rs = ps.executeQuery();
 
                     while (rs.next()) {
                         int xp = rs.getInt(1);
-                        String xpath = sm.xpt.getById(xp);
                         int submitter = rs.getInt(2);
-                        String value = DBUtils.getStringUTF8(rs, 3);
-                        // 4 = locale -- unused; TODO: remove from openQueryByLocaleRW
-                        Integer voteOverride = rs.getInt(5); // 5 override
-                        if (voteOverride == 0 && rs.wasNull()) { // if override was a null..
-                            voteOverride = null;
+                        User theSubmitter;
+                        if (submitters.containsKey(submitter)) {
+                            theSubmitter = submitters.get(submitter);
+                        } else {
+                            theSubmitter = sm.reg.getInfo(submitter);
+                            if (theSubmitter == null) {
+                                SurveyLog.warnOnce("Ignoring votes for deleted user #" + submitter);
+                            }
+                            if (!UserRegistry.countUserVoteForLocale(theSubmitter, locale)) { // check user permission to submit
+                                theSubmitter = null;
+                            }
+                            submitters.put(submitter, theSubmitter);
                         }
-                        Timestamp last_mod = rs.getTimestamp(6); // last mod
-                        User theSubmitter = sm.reg.getInfo(submitter);
                         if (theSubmitter == null) {
-                            SurveyLog.warnOnce("Ignoring votes for deleted user #" + submitter);
-                        }
-                        if (!UserRegistry.countUserVoteForLocale(theSubmitter, locale)) { // check user permission to submit
                             continue;
                         }
-                        if (!isValidSurveyToolVote(theSubmitter, xpath)) { // Make sure it is a visible path
+                        String xpath = sm.xpt.getById(xp);
+                        Map<Integer, Boolean> validIds = UserRegistry.userIsTC(theSubmitter) ? validForTC : validForOthers;
+                        Boolean valid = validIds.get(xp);
+                        if (valid == null) {
+                            valid = isValidSurveyToolVote(theSubmitter, xpath);
+                            validIds.put(xp, valid);
+                        }
+                        if (!valid) { // Make sure it is a visible path
                             continue;
                         }
-                        try {
-                            internalSetVoteForValue(theSubmitter, xpath, value, voteOverride, last_mod);
-                            n++;
-                        } catch (BallotBox.InvalidXPathException e) {
-                            System.err.println("InvalidXPathException: Deleting vote for " + theSubmitter + ":" + locale + ":" + xpath);
-                            rs.deleteRow();
-                            del++;
+                        PerXPathData xpd = idToData.get(xp);
+                        if (xpd == null) {
+                            // Don't allow illegal xpaths to be set.
+                            if (invalidIds.contains(xp) || !getPathsForFile().contains(xpath)) {
+                                invalidIds.add(xp);
+                                System.err.println("InvalidXPathException: Deleting vote for " + theSubmitter + ":" + locale + ":" + xpath);
+                                rs.deleteRow();
+                                del++;
+                                continue;
+                            }
+                            xpd = getXPathData(xpath);
+                            idToData.put(xp, xpd);
+                        }
+                        String value = DBUtils.getStringUTF8(rs, 3);
+                        // 4 = locale -- unused; TODO: remove from openQueryByLocaleRW
+                        Integer voteOverride = rs.getInt(5); // 5 override
+                        if (voteOverride == 0 && rs.wasNull()) { // if override was a null..
+                            voteOverride = null;
                         }
+                        Timestamp last_mod = rs.getTimestamp(6); // last mod
+                        xpd.setVoteForValue(theSubmitter, xpath, value, voteOverride, last_mod);
+                        n++;
+                    }
+                    if (n > 0) {
+                        stamp.next(); // once for all the votes, instead of per vote as in internalSetVoteForValue
                     }
                     if (del > 0) {
                         System.out.println("Committing delete of " + del + " invalid votes from " + locale);
@@ -795,11 +952,7 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
                 } else {
                     xpathSet = allPXDPaths();
                 }
-                int j = 0;
-                for (String xp : xpathSet) {
-                    resolver = targetXmlSource.setValueFromResolver(xp, resolver, resolveMorePaths);
-                    j++;
-                }
+                int j = targetXmlSource.setValuesFromResolver(xpathSet, resolveMorePaths, VOTE_RESOLVE_EXECUTOR);
                 SurveyLog.debug(et + " - resolved " + j + " items, " + n + " total.");
             }
             if (doStampAndListen) {
@@ -910,11 +1063,14 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
          *            xpath voted on
          * @param r
          *            if non-null, resolver to re-use.
+         * @param resolvedFile
+         *            the resolved file of this locale, for the bailey value; if null, it is made here.
          * @return the new or updated resolver
          * 
          * This function is called by getResolver, and may also call itself recursively.
          */
-        private VoteResolver<String> getResolverInternal(PerXPathData perXPathData, String path, VoteResolver<String> r) {
+        private VoteResolver<String> getResolverInternal(PerXPathData perXPathData, String path, VoteResolver<String> r,
+            CLDRFile resolvedFile) {
             if (path == null) {
                 throw new IllegalArgumentException("path must not be null");
             }
@@ -948,7 +1104,7 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
                 r.add(currentValue);
             }
 
-            CLDRFile cf = make(locale, true);
+            CLDRFile cf = resolvedFile != null ? resolvedFile : make(locale, true);
             r.setBaileyValue(cf.getConstructedBaileyValue(path, null, null));
 
             // add each vote
@@ -966,12 +1122,20 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
         }
 
         public VoteResolver<String> getResolver(PerXPathData perXPathData, String path, VoteResolver<String> r) {
+            return getResolver(perXPathData, path, r, null);
+        }
+
+        /**
+         * Get the resolver, with the resolved file of this locale already made, so that
+         * threads resolving paths during loadVoteValues don't need the lock on this PerLocaleData.
+         */
+        VoteResolver<String> getResolver(PerXPathData perXPathData, String path, VoteResolver<String> r, CLDRFile resolvedFile) {
             try {
-                r = getResolverInternal(perXPathData, path, r);
+                r = getResolverInternal(perXPathData, path, r, resolvedFile);
             } catch (VoteResolver.UnknownVoterException uve) {
                 handleUserChanged(null);
                 try {
-                    r = getResolverInternal(perXPathData, path, r);
+                    r = getResolverInternal(perXPathData, path, r, resolvedFile);
                 } catch (VoteResolver.UnknownVoterException uve2) {
                     SurveyLog.logException(uve2);
                     SurveyMain.busted(uve2.toString(), uve2);
@@ -1033,7 +1197,7 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
          * @param xpath the path string, like "//ldml/localeDisplayNames/languages/language[@type="ko"]"
          * @return the PerXPathData
          *
-         * Called by internalSetVoteForValue only.
+         * Called by internalSetVoteForValue and loadVoteValues.
          */
         private final PerXPathData getXPathData(String xpath) {
             PerXPathData xpd = peekXpathData(xpath);
@@ -1083,6 +1247,13 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
             }
         }
 
+        /**
+         * @return the unresolved source, or null if it wasn't made yet
+         */
+        synchronized XMLSource peekSource() {
+            return readonly ? diskData : xmlsource;
+        }
+
         /**
          * Make a vetted source for this PerLocaleData, suitable for producing vxml
          * with vote-resolution done on more paths.
@@ -1147,93 +1318,43 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
                 }
             }
 
+            final Date when = new Date();
             if (!readonly) {
                 boolean didClearFlag = false;
                 makeSource(false);
                 ElapsedTimer et = !SurveyLog.DEBUG ? null : new ElapsedTimer("{0} Recording PLD for " + locale + " "
                     + distinguishingXpath + " : " + user + " voting for '" + value);
                 Connection conn = null;
-                PreparedStatement saveOld = null; // save off old value
-                PreparedStatement ps = null; // all for mysql, or 1st step for
-                // derby
-                PreparedStatement ps2 = null; // 2nd step for derby
-                ResultSet rs = null;
                 int xpathId = sm.xpt.getByXpath(distinguishingXpath);
                 final boolean wasFlagged = getFlag(locale, xpathId); // do this outside of the txn..
-                int submitter = user.id;
+                final boolean clearFlag = wasFlagged && UserRegistry.userIsTC(user);
+                VoteJournal.Vote vote = new VoteJournal.Vote(locale.getBaseName(), xpathId, user.id, value, withVote, when.getTime());
                 try {
-                    conn = DBUtils.getInstance().getDBConnection();
-
-                    String add0 = "", add1 = "", add2 = "";
-
-                    // #1 - save the "VOTE_VALUE_ALT"  ( possible proposal) value.
-                    if (DBUtils.db_Mysql) {
-                        add0 = "IGNORE";
-                        // add1="ON DUPLICATE KEY IGNORE";
-                    } else {
-                        add2 = "and not exists (select * from " + DBUtils.Table.VOTE_VALUE_ALT + " where " + DBUtils.Table.VOTE_VALUE_ALT + ".locale="
-                            + DBUtils.Table.VOTE_VALUE
-                            + ".locale and " + DBUtils.Table.VOTE_VALUE_ALT + ".xpath=" + DBUtils.Table.VOTE_VALUE + ".xpath " + " and "
-                            + DBUtils.Table.VOTE_VALUE_ALT
-                            + ".value=" + DBUtils.Table.VOTE_VALUE + ".value )";
-                    }
-                    String sql = "insert " + add0 + " into " + DBUtils.Table.VOTE_VALUE_ALT + "   " + add1 + " select " + DBUtils.Table.VOTE_VALUE + ".locale,"
-                        + DBUtils.Table.VOTE_VALUE + ".xpath," + DBUtils.Table.VOTE_VALUE + ".value "
-                        + " from " + DBUtils.Table.VOTE_VALUE + " where locale=? and xpath=? and submitter=? and value is not null " + add2;
-                    // if(DEBUG) System.out.println(sql);
-                    saveOld = DBUtils.prepareStatementWithArgs(conn, sql, locale.getBaseName(), xpathId, user.id);
-
-                    int oldSaved = saveOld.executeUpdate();
-                    // System.err.println("SaveOld: saved " + oldSaved +
-                    // " values");
-
-                    // #2 - save the actual vote.
-                    if (DBUtils.db_Mysql) { // use 'on duplicate key' syntax
-                        ps = DBUtils.prepareForwardReadOnly(conn, "INSERT INTO " + DBUtils.Table.VOTE_VALUE
-                            + " (locale,xpath,submitter,value,last_mod," + VOTE_OVERRIDE + ") values (?,?,?,?,CURRENT_TIMESTAMP,?) "
-                            + "ON DUPLICATE KEY UPDATE locale=?,xpath=?,submitter=?,value=?,last_mod=CURRENT_TIMESTAMP," + VOTE_OVERRIDE + "=?");
-                        int colNum = 6;
-                        ps.setString(colNum++, locale.getBaseName());
-                        ps.setInt(colNum++, xpathId);
-                        ps.setInt(colNum++, submitter);
-                        DBUtils.setStringUTF8(ps, colNum++, value);
-                        DBUtils.setInteger(ps, colNum++, withVote);
-                    } else { // derby
-                        ps2 = DBUtils.prepareForwardReadOnly(conn, "DELETE FROM " + DBUtils.Table.VOTE_VALUE
-                            + " where locale=? and xpath=? and submitter=? ");
-                        ps = DBUtils.prepareForwardReadOnly(conn, "INSERT INTO " + DBUtils.Table.VOTE_VALUE
-                            + " (locale,xpath,submitter,value,last_mod," + VOTE_OVERRIDE + ") VALUES (?,?,?,?,CURRENT_TIMESTAMP,?) ");
-                        int colNum = 1;
-                        ps2.setString(colNum++, locale.getBaseName());
-                        ps2.setInt(colNum++, xpathId);
-                        ps2.setInt(colNum++, submitter);
-                        // NB:  no "VOTE_OVERRIDE" column on delete.
-                    }
-
-                    {
-                        int colNum = 1;
-                        ps.setString(colNum++, locale.getBaseName());
-                        ps.setInt(colNum++, xpathId);
-                        ps.setInt(colNum++, submitter);
-                        DBUtils.setStringUTF8(ps, colNum++, value);
-                        DBUtils.setInteger(ps, colNum++, withVote);
+                    if (voteJournal != null) {
+                        // written to the database by the next flush
+                        voteJournal.append(vote);
                     }
-                    if (ps2 != null) {
-                        ps2.executeUpdate();
-                    }
-                    ps.executeUpdate();
-
-                    if (wasFlagged && UserRegistry.userIsTC(user)) {
-                        clearFlag(conn, locale, xpathId, user);
-                        didClearFlag = true;
+                    if (voteJournal == null || clearFlag) {
+                        conn = DBUtils.getInstance().getDBConnection();
+                        if (voteJournal == null) {
+                            VoteJournal.writeVotes(conn, Collections.singletonList(vote));
+                        }
+                        if (clearFlag) {
+                            clearFlag(conn, locale, xpathId, user);
+                            didClearFlag = true;
+                        }
+                        conn.commit();
                     }
-                    conn.commit();
                 } catch (SQLException e) {
                     SurveyLog.logException(e);
                     SurveyMain.busted("Could not vote for value in locale locale " + locale, e);
                     throw new InternalError("Could not load locale " + locale + " : " + DBUtils.unchainSqlException(e));
+                } catch (IOException e) {
+                    SurveyLog.logException(e);
+                    SurveyMain.busted("Could not journal vote for value in locale " + locale, e);
+                    throw new InternalError("Could not journal vote in locale " + locale + " : " + e);
                 } finally {
-                    DBUtils.close(saveOld, rs, ps, ps2, conn);
+                    DBUtils.close(conn);
                 }
                 SurveyLog.debug(et);
 
@@ -1257,7 +1378,7 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
                 readonly();
             }
 
-            internalSetVoteForValue(user, distinguishingXpath, value, withVote, new Date());
+            internalSetVoteForValue(user, distinguishingXpath, value, withVote, when);
             xmlsource.setValueFromResolver(distinguishingXpath, null, false /* resolveMorePaths */);
         }
 
@@ -1267,7 +1388,7 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
          * @param value
          * @param when
          *
-         * Called by loadVoteValues and voteForValue.
+         * Called by voteForValue. loadVoteValues sets the votes directly, checking each path once.
          */
         private void internalSetVoteForValue(User user, String distinguishingXpath, String value,
             Integer voteOverride, Date when) throws InvalidXPathException {
@@ -1577,6 +1698,67 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
 
     boolean dbIsSetup = false;
 
+    /**
+     * The write-behind journal for votes, if the CLDR_VOTE_JOURNAL property is true; otherwise null, and votes are written
+     * to the database on the request thread. Set up by setupDB.
+     */
+    private VoteJournal voteJournal = null;
+
+    /**
+     * Milliseconds between flushes of the vote journal to the database, from the CLDR_VOTE_JOURNAL_FLUSH_MS property.
+     */
+    private static final int VOTE_JOURNAL_FLUSH_MS = CLDRConfig.getInstance().getProperty("CLDR_VOTE_JOURNAL_FLUSH_MS", 2000);
+
+    /**
+     * Write the votes in the vote journal, if any, to the database. Call before reading or rewriting
+     * the votes in the database.
+     */
+    public void flushVoteJournal() {
+        if (voteJournal != null) {
+            try {
+                voteJournal.flush();
+            } catch (IOException | SQLException e) {
+                SurveyLog.logException(e, "Flushing the vote journal in " + voteJournal.getDirectory());
+            }
+        }
+    }
+
+    /**
+     * @return the names of the vote journal segments whose votes could not be written to the database, if any
+     */
+    public List<String> getQuarantinedVoteSegments() {
+        List<String> result = new ArrayList<String>();
+        if (voteJournal != null) {
+            for (File file : voteJournal.getQuarantined()) {
+                result.add(file.getName());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replay the votes left in the journal by the last run, and flush the journal periodically from now on.
+     * Called by setupDB.
+     */
+    private void setupVoteJournal() throws IOException, SQLException {
+        if (!CldrUtility.getProperty("CLDR_VOTE_JOURNAL", false)) {
+            return;
+        }
+        VoteJournal journal = new VoteJournal(new File(SurveyMain.getSurveyHome(), "votejournal"),
+            CldrUtility.getProperty("CLDR_VOTE_JOURNAL_SYNC", true));
+        int replayed = journal.replay();
+        if (replayed > 0) {
+            System.err.println("Replayed " + replayed + " votes from " + journal.getDirectory());
+        }
+        voteJournal = journal;
+        SurveyMain.getTimer().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushVoteJournal();
+            }
+        }, VOTE_JOURNAL_FLUSH_MS, VOTE_JOURNAL_FLUSH_MS, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Test cache against (this)
      */
@@ -1804,6 +1986,20 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
         return get(localeID).makeSource(resolved);
     }
 
+    /**
+     * Get the unresolved source of a locale, without loading the locale.
+     *
+     * @return the same source as makeSource(localeID, false), or null if the locale isn't loaded
+     */
+    public XMLSource peekSource(CLDRLocale locale) {
+        PerLocaleData pld;
+        synchronized (this) {
+            Reference<PerLocaleData> ref = locales.get(locale);
+            pld = ref == null ? null : ref.get();
+        }
+        return pld == null ? null : pld.peekSource(); // outside the lock, as PerLocaleData may call get()
+    }
+
     /**
      * Make a "vetted" CLDRFile with more paths resolved, for generating VXML (vetted XML).
      *
@@ -1824,6 +2020,49 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
         return cldrFile;
     }
 
+    /**
+     * Load the locales with the most votes, so that the first requests for them after a restart
+     * don't wait for their votes to be read and resolved. Called at startup on the SurveyMain timer.
+     *
+     * @param count the number of locales to load
+     * @return the locales loaded, most votes first
+     */
+    public List<CLDRLocale> loadActiveLocales(int count) {
+        List<CLDRLocale> loaded = new ArrayList<CLDRLocale>();
+        if (count <= 0) {
+            return loaded;
+        }
+        setupDB();
+        List<CLDRLocale> active = new ArrayList<CLDRLocale>();
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            conn = DBUtils.getInstance().getDBConnection();
+            ps = DBUtils.prepareForwardReadOnly(conn, "SELECT locale, COUNT(*) AS votes FROM " + DBUtils.Table.VOTE_VALUE
+                + " GROUP BY locale ORDER BY votes DESC");
+            rs = ps.executeQuery();
+            while (rs.next() && active.size() < count) {
+                CLDRLocale loc = CLDRLocale.getInstance(rs.getString(1));
+                if (!isReadOnlyLocale(loc) && getAvailableCLDRLocales().contains(loc)) {
+                    active.add(loc);
+                }
+            }
+        } catch (SQLException e) {
+            SurveyLog.logException(e, "Finding the most active locales");
+            return loaded;
+        } finally {
+            DBUtils.close(rs, ps, conn);
+        }
+        for (CLDRLocale loc : active) {
+            ElapsedTimer et = new ElapsedTimer("Loading active locale " + loc);
+            get(loc).makeSource(false);
+            loaded.add(loc);
+            SurveyLog.logger.info(et.toString());
+        }
+        return loaded;
+    }
+
     /**
      * Prepare statement. Args: locale Result: xpath,submitter,value
      *
@@ -1964,6 +2203,13 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
         } finally {
             DBUtils.close(s, conn);
         }
+        try {
+            setupVoteJournal();
+        } catch (IOException | SQLException e) {
+            SurveyLog.logException(e, "Replaying the vote journal");
+            SurveyMain.busted("Replaying the vote journal for STFactory", e);
+            throw new InternalError("Replaying the vote journal for STFactory: " + e);
+        }
     }
 
     /**
@@ -2098,6 +2344,15 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
         }
     }
 
+    private final SearchIndex searchIndex = new SearchIndex(this);
+
+    /**
+     * @return the index for searching the paths of a locale
+     */
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
     private SurveyMenus surveyMenus = null;
 
     public final synchronized SurveyMenus getSurveyMenus() {
@@ -2233,6 +2488,7 @@ public class STFactory extends Factory implements BallotBoxFactory<UserRegistry.
         Connection conn = null;
         PreparedStatement ps = null;
         PreparedStatement ps2 = null;
+        flushVoteJournal(); // or its votes would come back after the delete
         try { // do this in 1 transaction. just in case.
             conn = DBUtils.getInstance().getDBConnection();
 
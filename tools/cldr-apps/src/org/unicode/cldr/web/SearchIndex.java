@@ -0,0 +1,410 @@
+package org.unicode.cldr.web;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.unicode.cldr.util.CLDRConfig;
+import org.unicode.cldr.util.CLDRFile;
+import org.unicode.cldr.util.CLDRLocale;
+import org.unicode.cldr.util.CoverageInfo;
+import org.unicode.cldr.util.PathHeader;
+import org.unicode.cldr.util.XMLSource;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.ibm.icu.text.Normalizer2;
+import com.ibm.icu.text.UnicodeSet;
+
+/**
+ * In-memory search index for the Survey Tool search box, per locale, over the paths that can be voted on:
+ * the resolved value in the locale, the English (translation hints) value, and the PathHeader code and header.
+ * <p>
+ * Matching ignores case and compatibility differences (NFKC_Casefold), and a query without accents also
+ * matches Latin, Greek and Cyrillic text with them. Results are ranked by how well the best field matches: the whole field,
+ * a prefix, the start of a word, anywhere; the locale's value ranks above English, which ranks above
+ * the code and the header.
+ * <p>
+ * The index of a locale is built on first use, once even if several requests ask for it at the same time,
+ * from a trigram index of the folded text. When a value of the locale changes, its path is re-indexed at the
+ * next search.
+ */
+public class SearchIndex {
+    /**
+     * The number of locales with an index, from the CLDR_SEARCH_INDEX_LOCALES property.
+     */
+    private static final int INDEX_LOCALES = CLDRConfig.getInstance().getProperty("CLDR_SEARCH_INDEX_LOCALES", 20);
+
+    private static final Normalizer2 NFKC_CASEFOLD = Normalizer2.getNFKCCasefoldInstance();
+    private static final Normalizer2 NFD = Normalizer2.getNFDInstance();
+    private static final Normalizer2 NFC = Normalizer2.getNFCInstance();
+    private static final UnicodeSet MARKS = new UnicodeSet("[:Mn:]").freeze();
+
+    /**
+     * The letters whose accents a query may leave out. In other scripts, marks are part of the spelling.
+     */
+    private static final UnicodeSet LOOSE_BASES = new UnicodeSet("[[:Latin:][:Greek:][:Cyrillic:]]").freeze();
+
+    /**
+     * The fields of a path, in order of rank.
+     */
+    private static final int VALUE = 0, ENGLISH = 1, CODE = 2, HEADER = 3, FIELD_COUNT = 4;
+
+    /**
+     * How a field matches, from worst to best. LOOSE only matches with accents removed.
+     */
+    public static final int NONE = -1, LOOSE = 0, SUBSTRING = 1, WORD_START = 2, PREFIX = 3, EXACT = 4;
+
+    private final STFactory stFactory;
+    private final LoadingCache<CLDRLocale, LocaleIndex> indexes;
+
+    public SearchIndex(STFactory stFactory) {
+        this.stFactory = stFactory;
+        this.indexes = CacheBuilder.newBuilder()
+            .maximumSize(INDEX_LOCALES)
+            .build(new CacheLoader<CLDRLocale, LocaleIndex>() {
+                @Override
+                public LocaleIndex load(CLDRLocale locale) {
+                    return new LocaleIndex(locale, SearchIndex.this.stFactory.makeSource(locale.getBaseName(), false));
+                }
+            });
+    }
+
+    /**
+     * Search the paths of a locale.
+     *
+     * @param locale the locale
+     * @param query the text to look for
+     * @param limit the maximum number of results
+     * @return the matching paths, best first
+     */
+    public List<PathHeader> search(CLDRLocale locale, String query, int limit) {
+        return getIndex(locale).search(query, limit);
+    }
+
+    /**
+     * Get the index of a locale, building it if it isn't there or its locale was reloaded since it was built.
+     */
+    private LocaleIndex getIndex(CLDRLocale locale) {
+        XMLSource source = stFactory.makeSource(locale.getBaseName(), false);
+        LocaleIndex index = indexes.getUnchecked(locale);
+        if (index.source != source) {
+            // the locale was reloaded since the index was built
+            indexes.asMap().remove(locale, index);
+            index = indexes.getUnchecked(locale);
+        }
+        return index;
+    }
+
+    /**
+     * @return the text folded for matching
+     */
+    public static String fold(String text) {
+        return NFKC_CASEFOLD.normalize(text);
+    }
+
+    /**
+     * @return the folded text without the accents on Latin, Greek and Cyrillic letters
+     */
+    public static String looseFold(String folded) {
+        String decomposed = NFD.normalize(folded);
+        if (!MARKS.containsSome(decomposed)) {
+            return folded;
+        }
+        StringBuilder result = new StringBuilder(decomposed.length());
+        boolean looseBase = false;
+        for (int i = 0; i < decomposed.length();) {
+            int cp = decomposed.codePointAt(i);
+            if (!MARKS.contains(cp)) {
+                looseBase = LOOSE_BASES.contains(cp);
+                result.appendCodePoint(cp);
+            } else if (!looseBase) {
+                result.appendCodePoint(cp);
+            }
+            i += Character.charCount(cp);
+        }
+        return NFC.normalize(result);
+    }
+
+    /**
+     * @return how the query matches the text, both folded the same way
+     */
+    public static int matchQuality(String text, String query) {
+        int pos = text.indexOf(query);
+        if (pos < 0) {
+            return NONE;
+        } else if (pos == 0) {
+            return text.length() == query.length() ? EXACT : PREFIX;
+        }
+        do {
+            if (!Character.isLetterOrDigit(text.charAt(pos - 1))) {
+                return WORD_START;
+            }
+            pos = text.indexOf(query, pos + 1);
+        } while (pos > 0);
+        return SUBSTRING;
+    }
+
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    /**
+     * A path in the index, with its fields folded.
+     */
+    private static final class Entry {
+        final PathHeader pathHeader;
+        final String[] folded = new String[FIELD_COUNT];
+        final String[] loose = new String[FIELD_COUNT];
+
+        Entry(PathHeader pathHeader, String value, String english) {
+            this.pathHeader = pathHeader;
+            setFields(folded, loose, value, english, pathHeader.getCode(), pathHeader.getHeader());
+        }
+
+        int score(String foldedQuery, String looseQuery) {
+            return SearchIndex.score(folded, loose, foldedQuery, looseQuery);
+        }
+    }
+
+    private static void setFields(String[] folded, String[] loose, String value, String english, String code,
+        String header) {
+        String[] texts = { value, english, code, header };
+        for (int field = 0; field < FIELD_COUNT; ++field) {
+            folded[field] = texts[field] == null ? "" : fold(texts[field]);
+            loose[field] = looseFold(folded[field]);
+        }
+    }
+
+    /**
+     * @return the rank of the match, or -1 if it doesn't match; higher is better
+     */
+    private static int score(String[] folded, String[] loose, String foldedQuery, String looseQuery) {
+        int best = -1;
+        for (int field = 0; field < FIELD_COUNT; ++field) {
+            int quality = matchQuality(folded[field], foldedQuery);
+            if (quality == NONE && matchQuality(loose[field], looseQuery) != NONE) {
+                quality = LOOSE;
+            }
+            if (quality != NONE) {
+                best = Math.max(best, quality * FIELD_COUNT + (FIELD_COUNT - 1 - field));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Rank a path for a query the way search() does, without an index.
+     *
+     * @return the rank of the match, or -1 if it doesn't match; higher is better
+     */
+    public static int score(String query, String value, String english, String code, String header) {
+        String[] folded = new String[FIELD_COUNT];
+        String[] loose = new String[FIELD_COUNT];
+        setFields(folded, loose, value, english, code, header);
+        String foldedQuery = fold(query);
+        return score(folded, loose, foldedQuery, looseFold(foldedQuery));
+    }
+
+    /**
+     * A sorted list of entry ids.
+     */
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size = 0;
+
+        void add(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            ++size;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                --size;
+            }
+        }
+    }
+
+    /**
+     * The index of one locale. Listens to the locale's source to find out which paths to re-index.
+     */
+    private final class LocaleIndex implements XMLSource.Listener {
+        final CLDRLocale locale;
+        final XMLSource source; // kept, so the listener isn't dropped
+
+        // guarded by lock
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final List<Entry> entries = new ArrayList<Entry>(); // null for a path no longer indexed
+        private final Map<String, Integer> pathToId = new HashMap<String, Integer>();
+        private final Map<Long, Postings> trigrams = new HashMap<Long, Postings>();
+
+        private final Set<String> changedPaths = ConcurrentHashMap.newKeySet();
+
+        LocaleIndex(CLDRLocale locale, XMLSource source) {
+            this.locale = locale;
+            this.source = source;
+            source.addListener(this); // first, so that a value changed during the scan is re-indexed
+            CLDRFile resolved = stFactory.make(locale, true);
+            CLDRFile english = CookieSession.sm.getTranslationHintsFile();
+            for (String path : stFactory.getPathsForFile(locale)) {
+                setPath(path, resolved, english);
+            }
+        }
+
+        /**
+         * Called by the DataBackedSource, perhaps with the lock on its PerLocaleData: just note the path.
+         */
+        @Override
+        public void valueChanged(String xpath, XMLSource source) {
+            changedPaths.add(xpath);
+        }
+
+        List<PathHeader> search(String query, int limit) {
+            if (!changedPaths.isEmpty()) {
+                updateChangedPaths();
+            }
+            final String foldedQuery = fold(query);
+            final String looseQuery = looseFold(foldedQuery);
+            if (looseQuery.isEmpty()) {
+                return Collections.emptyList();
+            }
+            final List<Entry> found = new ArrayList<Entry>();
+            final Map<Entry, Integer> scores = new HashMap<Entry, Integer>();
+            lock.readLock().lock();
+            try {
+                Postings candidates = null;
+                if (looseQuery.length() >= 3) {
+                    // every trigram of the query is in a match; check the entries with the rarest one
+                    for (int i = 0; i + 3 <= looseQuery.length(); ++i) {
+                        Postings postings = trigrams.get(trigram(looseQuery, i));
+                        if (postings == null) {
+                            return Collections.emptyList();
+                        }
+                        if (candidates == null || postings.size < candidates.size) {
+                            candidates = postings;
+                        }
+                    }
+                }
+                int count = candidates == null ? entries.size() : candidates.size;
+                for (int i = 0; i < count; ++i) {
+                    Entry entry = entries.get(candidates == null ? i : candidates.ids[i]);
+                    if (entry == null) {
+                        continue;
+                    }
+                    int score = entry.score(foldedQuery, looseQuery);
+                    if (score >= 0) {
+                        found.add(entry);
+                        scores.put(entry, score);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            Collections.sort(found, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry o1, Entry o2) {
+                    int diff = scores.get(o2) - scores.get(o1);
+                    return diff != 0 ? diff : o1.pathHeader.compareTo(o2.pathHeader);
+                }
+            });
+            List<PathHeader> result = new ArrayList<PathHeader>(Math.min(limit, found.size()));
+            for (Entry entry : found) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(entry.pathHeader);
+            }
+            return result;
+        }
+
+        /**
+         * Re-index the paths whose values changed, with their new resolved values.
+         */
+        private void updateChangedPaths() {
+            CLDRFile resolved = stFactory.make(locale, true);
+            CLDRFile english = CookieSession.sm.getTranslationHintsFile();
+            for (String path : changedPaths.toArray(new String[0])) {
+                changedPaths.remove(path);
+                setPath(path, resolved, english);
+            }
+        }
+
+        /**
+         * Add, replace or remove the entry for a path.
+         */
+        private void setPath(String path, CLDRFile resolved, CLDRFile english) {
+            Entry entry = makeEntry(path, resolved, english);
+            lock.writeLock().lock();
+            try {
+                Integer id = pathToId.get(path);
+                if (id != null) {
+                    Entry old = entries.get(id);
+                    if (old != null) {
+                        forEachTrigram(old, id, false);
+                    }
+                    entries.set(id, entry);
+                } else if (entry != null) {
+                    id = entries.size();
+                    pathToId.put(path, id);
+                    entries.add(entry);
+                }
+                if (entry != null) {
+                    forEachTrigram(entry, id, true);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return the entry, or null if the path is not shown in the Survey Tool for this locale
+         */
+        private Entry makeEntry(String path, CLDRFile resolved, CLDRFile english) {
+            PathHeader ph = stFactory.getPathHeader(path);
+            if (ph == null || ph.getSectionId() == PathHeader.SectionId.Special) {
+                return null;
+            }
+            CoverageInfo covInfo = CLDRConfig.getInstance().getCoverageInfo();
+            if (covInfo.getCoverageLevel(path, locale.getBaseName()).getLevel() > 100) {
+                return null;
+            }
+            return new Entry(ph, resolved.getStringValue(path), english.getStringValue(path));
+        }
+
+        private void forEachTrigram(Entry entry, int id, boolean add) {
+            for (String text : entry.loose) {
+                for (int i = 0; i + 3 <= text.length(); ++i) {
+                    Long key = trigram(text, i);
+                    Postings postings = trigrams.get(key);
+                    if (add) {
+                        if (postings == null) {
+                            trigrams.put(key, postings = new Postings());
+                        }
+                        postings.add(id);
+                    } else if (postings != null) {
+                        postings.remove(id);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1156,39 +1156,20 @@ public class SurveyAjax extends HttpServlet {
             //
         }
 
-        // substring search
-        Set<PathHeader> resultPh = new TreeSet<PathHeader>();
-
-        if (new UnicodeSet("[:Letter:]").containsSome(q)) {
-            // check English
-            Set<String> retrievedPaths = new HashSet<String>();
-            SurveyMain sm = CookieSession.sm;
-            sm.getTranslationHintsFile().getPathsWithValue(q, "", null, retrievedPaths);
-            final STFactory stFactory = sm.getSTFactory();
-            if (l != null) {
-                stFactory.make(l, true).getPathsWithValue(q, "", null, retrievedPaths);
-            }
-            for (String xp : retrievedPaths) {
-                PathHeader ph = stFactory.getPathHeader(xp);
-                if (ph != null) {
-                    resultPh.add(ph);
-                }
-            }
-        }
-        // add any others
-        CoverageInfo covInfo = CLDRConfig.getInstance().getCoverageInfo();
-        for (PathHeader ph : resultPh) {
-            try {
-                final String originalPath = ph.getOriginalPath();
-                if (ph.getSectionId() != PathHeader.SectionId.Special &&
-                    covInfo.getCoverageLevel(originalPath, l.getBaseName()).getLevel() <= 100) {
+        // substring search, in the values of the locale and English, and the codes and headers
+        if (l != null && new UnicodeSet("[:Letter:]").containsSome(q)) {
+            // only paths shown in the Survey Tool up to comprehensive coverage, best matches first
+            List<PathHeader> resultPh = CookieSession.sm.getSTFactory().getSearchIndex().search(l, q, Integer.MAX_VALUE);
+            for (PathHeader ph : resultPh) {
+                try {
+                    final String originalPath = ph.getOriginalPath();
                     results.put(new JSONObject()
                         .put("xpath", originalPath)
                         .put("strid", XPathTable.getStringIDString(originalPath))
                         .put("ph", JSONWriter.wrap(ph)));
+                } catch (JSONException e) {
+                    //
                 }
-            } catch (JSONException e) {
-                //
             }
         }
     }
@@ -532,6 +532,11 @@ public class SurveyMain extends HttpServlet implements CLDRProgressIndicator, Ex
                 public void run() throws Throwable {
                     doStartup();
                 }
+
+                @Override
+                public SurveyThread.Priority getPriority() {
+                    return SurveyThread.Priority.STARTUP;
+                }
             });
         } catch (Throwable t) {
             SurveyLog.logException(t, "Initializing SurveyTool");
@@ -1520,12 +1525,14 @@ public class SurveyMain extends HttpServlet implements CLDRProgressIndicator, Ex
             .put("isUnofficial", isUnofficial()).put("environment", config.getEnvironment().name())
             .put("specialHeader", config.getProperty("CLDR_HEADER"))
             .put("specialTimerRemaining", specialTimer != 0 ? timeDiff(System.currentTimeMillis(), specialTimer) : null)
-            .put("processing", startupThread.htmlStatus()).put("guests", CookieSession.getGuestCount())
+            .put("processing", startupThread.htmlStatus()).put("tasks", startupThread.statusJSON())
+            .put("guests", CookieSession.getGuestCount())
             .put("users", CookieSession.getUserCount()).put("uptime", uptime).put("surveyRunningStamp", surveyRunningStamp.current())
             .put("memfree", free).put("memtotal", total).put("pages", pages).put("uptime", uptime).put("phase", phase())
             .put("currev", SurveyMain.getCurrevCldrApps()) // Code only!
             .put("newVersion", newVersion).put("sysload", load).put("sysprocs", nProcs).put("dbopen", DBUtils.db_number_open)
-            .put("dbused", DBUtils.db_number_used);
+            .put("dbused", DBUtils.db_number_used)
+            .put("quarantinedVotes", gSTFactory == null ? new JSONArray() : new JSONArray(gSTFactory.getQuarantinedVoteSegments()));
     }
 
     /**
@@ -4872,6 +4879,9 @@ public class SurveyMain extends HttpServlet implements CLDRProgressIndicator, Ex
 
             isConfigSetup = true;
 
+            // PatternCache statistics and call sites, for the server's JMX console
+            PatternCache.registerMBean();
+
             cldrHome = survprops.getProperty("CLDRHOME");
 
             System.err.println("CLDRHOME=" + cldrHome + ", maint mode=" + isMaintenance());
@@ -5012,6 +5022,20 @@ public class SurveyMain extends HttpServlet implements CLDRProgressIndicator, Ex
                 if (!CldrUtility.getProperty("CLDR_NOUPDATE", false)) {
                     getOutputFileManager().addUpdateTasks();
                 }
+                final int activeLocales = CLDRConfig.getInstance().getProperty("CLDR_PRELOAD_LOCALES", 5);
+                if (activeLocales > 0) {
+                    // load the busiest locales in the background, before their first requests
+                    getTimer().submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                SurveyLog.logger.info("Loaded active locales: " + getSTFactory().loadActiveLocales(activeLocales));
+                            } catch (Throwable t) {
+                                SurveyLog.logException(t, "Loading active locales");
+                            }
+                        }
+                    });
+                }
             } else {
                 progress.update("Not loading mail or output file manager- - SurveyTool already busted.");
             }
@@ -5837,6 +5861,10 @@ public class SurveyMain extends HttpServlet implements CLDRProgressIndicator, Ex
 
             closeOpenUserLocaleStuff(true);
 
+            if (gSTFactory != null) {
+                gSTFactory.flushVoteJournal(); // the timer is down, so write the last votes here
+            }
+
             // shut down other connections
             try {
                 CookieSession.shutdownDB();
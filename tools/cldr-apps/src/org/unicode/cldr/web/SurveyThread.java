@@ -3,15 +3,51 @@
  */
 package org.unicode.cldr.web;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.unicode.cldr.util.CLDRConfig;
 
 /**
  * @author srl
  *
- *         A worker thread that performs various SurveyTool tasks, starting with
+ *         A pool of worker threads that perform various SurveyTool tasks, starting with
  *         booting.
+ *
+ *         Waiting tasks run in order of priority, then in the order they were added.
+ *         A STARTUP task runs alone: it waits for the running tasks to finish, and no other task starts
+ *         while it runs.
  */
-public class SurveyThread extends Thread {
+public class SurveyThread {
+    /**
+     * Number of worker threads, from the CLDR_SURVEY_THREADS property.
+     */
+    private static final int WORKERS = Math.max(1, CLDRConfig.getInstance().getProperty("CLDR_SURVEY_THREADS", 2));
+
+    /**
+     * Task priorities, highest first.
+     */
+    public enum Priority {
+        /**
+         * Setting up the SurveyTool; nothing else runs until it is done.
+         */
+        STARTUP,
+        /**
+         * Someone is waiting for the result, such as a dashboard.
+         */
+        INTERACTIVE,
+        /**
+         * Regenerating data in the background.
+         */
+        BACKGROUND
+    }
 
     public static boolean shouldStop() {
         SurveyTask ct = currentTask();
@@ -24,7 +60,7 @@ public class SurveyThread extends Thread {
 
     public static boolean inTask() {
         Thread th = Thread.currentThread();
-        if (th instanceof SurveyThread) {
+        if (th instanceof Worker) {
             return true;
         } else {
             return false;
@@ -33,10 +69,10 @@ public class SurveyThread extends Thread {
 
     public static SurveyTask currentTask() {
         Thread th = Thread.currentThread();
-        if (th instanceof SurveyThread) {
-            SurveyThread st = (SurveyThread) th;
+        if (th instanceof Worker) {
+            Worker w = (Worker) th;
 
-            return st.current;
+            return w.current;
         } else {
             return null;
         }
@@ -45,7 +81,7 @@ public class SurveyThread extends Thread {
     /**
      * Are we still running?
      */
-    boolean surveyThreadIsRunning = true;
+    volatile boolean surveyThreadIsRunning = true;
 
     boolean mainThreadRunning() {
         return surveyThreadIsRunning;
@@ -61,12 +97,23 @@ public class SurveyThread extends Thread {
      *
      */
     public static abstract class SurveyTask implements CLDRProgressIndicator {
+        /**
+         * Thrown by the progress of a task that was asked to stop, to end it early.
+         */
+        public static class CancelledException extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+
+            public CancelledException(SurveyTask task) {
+                super(task.name + " - stopped on request");
+            }
+        }
+
         /**
          * Name of the task.
          */
         public String name;
 
-        private boolean taskRunning = true;
+        private volatile boolean taskRunning = true;
 
         /**
          * Request this task to stop.
@@ -81,11 +128,23 @@ public class SurveyThread extends Thread {
          */
         public void kill() {
             stop();
-            theThread.interrupt();
+            Thread w = worker;
+            if (w != null) {
+                w.interrupt();
+            }
         }
 
         protected SurveyThread theThread = null;
 
+        /**
+         * The worker running this task, or null if it is not running.
+         */
+        private volatile Thread worker = null;
+
+        // set by addTask, for ordering and statistics
+        private long sequence;
+        private long queuedAt;
+
         /**
          * Is this task still running? Check this periodically.
          *
@@ -97,6 +156,31 @@ public class SurveyThread extends Thread {
             return taskRunning;
         }
 
+        /**
+         * Throw a CancelledException if this task was asked to stop. The progress from openProgress
+         * calls this on each update, so a task that updates its progress stops soon after a request.
+         */
+        public void checkRunning() {
+            if (!running()) {
+                throw new CancelledException(this);
+            }
+        }
+
+        /**
+         * The priority of this task. Override for anything but BACKGROUND.
+         */
+        public Priority getPriority() {
+            return Priority.BACKGROUND;
+        }
+
+        /**
+         * Tasks with the same non-null key do the same work, such as generating the same data for a locale:
+         * adding one while another is waiting returns the one waiting instead. Null by default.
+         */
+        public Object getDeduplicationKey() {
+            return null;
+        }
+
         /**
          * C'tor. The name is the initial name of the task.
          *
@@ -111,9 +195,9 @@ public class SurveyThread extends Thread {
 
             // if possible, update current thread name.
             Thread th = Thread.currentThread();
-            if (th instanceof SurveyThread) {
-                SurveyThread st = (SurveyThread) th;
-                st.setName();
+            if (th instanceof Worker) {
+                Worker w = (Worker) th;
+                w.setName();
             }
         }
 
@@ -141,16 +225,53 @@ public class SurveyThread extends Thread {
         // theThread.sm
         @Override
         public CLDRProgressTask openProgress(String what) {
-            if (running())
-                return theThread.sm.openProgress(what);
-            return null;
+            checkRunning();
+            return new CancellingProgress(theThread.sm.openProgress(what));
         }
 
         @Override
         public CLDRProgressTask openProgress(String what, int max) {
-            if (running())
-                return theThread.sm.openProgress(what, max);
-            return null;
+            checkRunning();
+            return new CancellingProgress(theThread.sm.openProgress(what, max));
+        }
+
+        /**
+         * Progress that checks whether the task was asked to stop on each update.
+         */
+        private class CancellingProgress implements CLDRProgressTask {
+            private final CLDRProgressTask progress;
+
+            CancellingProgress(CLDRProgressTask progress) {
+                this.progress = progress;
+            }
+
+            @Override
+            public void close() {
+                progress.close();
+            }
+
+            @Override
+            public void update(int count) {
+                checkRunning();
+                progress.update(count);
+            }
+
+            @Override
+            public void update(int count, String what) {
+                checkRunning();
+                progress.update(count, what);
+            }
+
+            @Override
+            public void update(String what) {
+                checkRunning();
+                progress.update(what);
+            }
+
+            @Override
+            public long startTime() {
+                return progress.startTime();
+            }
         }
     }
 
@@ -164,14 +285,14 @@ public class SurveyThread extends Thread {
      *
      * @return Number of tasks remaining (0 if none)
      */
-    public int tasksRemaining() {
+    public synchronized int tasksRemaining() {
         return tasks.size();
     }
 
     /**
      * How many tasks of a certain kind are remaining?
      */
-    public int tasksRemaining(@SuppressWarnings("rawtypes") Class ofClass) {
+    public synchronized int tasksRemaining(@SuppressWarnings("rawtypes") Class ofClass) {
         int ret = 0;
         for (SurveyTask t : tasks) {
             if (ofClass.isInstance(t)) {
@@ -182,10 +303,24 @@ public class SurveyThread extends Thread {
     }
 
     /**
-     * The current state of the thread.
+     * @return the tasks being run now
+     */
+    public List<SurveyTask> currentTasks() {
+        List<SurveyTask> ret = new ArrayList<SurveyTask>();
+        for (Worker w : workers) {
+            SurveyTask t = w.current;
+            if (t != null) {
+                ret.add(t);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * The current state of the threads.
      */
     public String toString() {
-        return "{ST Threads: Tasks waiting:" + tasksRemaining() + ", Current:" + current + ", Running:" + surveyThreadIsRunning
+        return "{ST Threads: Tasks waiting:" + tasksRemaining() + ", Current:" + currentTasks() + ", Running:" + surveyThreadIsRunning
             + "}";
     }
 
@@ -193,65 +328,164 @@ public class SurveyThread extends Thread {
      * The status, as HTML
      */
     public String htmlStatus() {
-        if (tasksRemaining() == 0 && current == null)
+        List<SurveyTask> current = currentTasks();
+        int remaining = tasksRemaining();
+        if (remaining == 0 && current.isEmpty())
             return null;
         StringBuffer sb = new StringBuffer();
-        if (current != null) {
-            sb.append(current);
+        for (SurveyTask t : current) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(t);
         }
-        if (tasksRemaining() > 0) {
+        if (remaining > 0) {
             if (sb.length() > 0) {
                 sb.append(" * ");
             }
-            sb.append("(waiting tasks: " + tasksRemaining() + ")");
+            sb.append("(waiting tasks: " + remaining + ")");
         }
         return sb.toString();
     }
 
     /**
-     * The current task, or null if none.
+     * Queue depth and task latency, for the status JSON. Times are in milliseconds.
      */
-    SurveyTask current = null;
+    public synchronized JSONObject statusJSON() throws JSONException {
+        Map<Priority, Integer> waiting = new EnumMap<Priority, Integer>(Priority.class);
+        for (Priority p : Priority.values()) {
+            waiting.put(p, 0);
+        }
+        for (SurveyTask t : tasks) {
+            waiting.put(t.getPriority(), waiting.get(t.getPriority()) + 1);
+        }
+        return new JSONObject().put("workers", workers.size()).put("waiting", tasks.size()).put("waitingByPriority", waiting)
+            .put("running", currentTasks().size()).put("completed", completed).put("cancelled", cancelled).put("failed", failed)
+            .put("deduplicated", deduplicated)
+            .put("avgWait", started == 0 ? 0 : totalWaitMillis / started).put("maxWait", maxWaitMillis)
+            .put("avgRun", completed == 0 ? 0 : totalRunMillis / completed).put("maxRun", maxRunMillis);
+    }
 
     /**
-     * The main run loop. Perform tasks or wait.
+     * A worker thread: performs tasks or waits.
      */
-    public void run() {
-        if (DEBUG)
-            System.err.println("SurveyThread: Bootation.");
-        setName();
-        while (this.surveyThreadIsRunning) {
-            try {
-                if (DEBUG)
-                    System.err.println("SurveyThread: About to take from queue (count:" + tasksRemaining() + "):");
-                current = tasks.take();
+    private class Worker extends Thread {
+        /**
+         * The current task, or null if none.
+         */
+        volatile SurveyTask current = null;
+
+        private final int number;
+
+        Worker(int number) {
+            this.number = number;
+            setDaemon(true);
+            setName();
+        }
+
+        private void setName() {
+            SurveyTask t = current;
+            this.setName("SurveyThread-" + number + (t == null ? "" : ": " + t.name));
+        }
+
+        /**
+         * The main run loop. Perform tasks or wait.
+         */
+        @Override
+        public void run() {
+            if (DEBUG)
+                System.err.println(getName() + ": Bootation.");
+            while (surveyThreadIsRunning) {
+                SurveyTask task = null;
+                try {
+                    task = take();
+                } catch (InterruptedException e) {
+                    if (DEBUG)
+                        System.err.println(getName() + ": Interrupted- running=" + surveyThreadIsRunning);
+                }
+                if (task == null) {
+                    continue;
+                }
+                long startTime = System.currentTimeMillis();
+                boolean wasCancelled = false;
+                boolean hasFailed = false;
+                task.worker = this;
+                current = task;
                 setName();
-                if (DEBUG)
-                    System.err.println("SurveyThread: Got: " + current);
-                current.theThread = this; // set the back pointer
-            } catch (InterruptedException e) {
-                if (DEBUG)
-                    System.err.println("SurveyThread: Interrupted- running=" + surveyThreadIsRunning);
-            }
-            if (current != null)
                 try {
-                if (DEBUG)
-                    System.err.println("SurveyThread(count:" + tasksRemaining() + "): About to run: " + current);
-                current.run();
-                if (DEBUG)
-                    System.err.println("SurveyThread(count:" + tasksRemaining() + "): Done running : " + current);
+                    if (DEBUG)
+                        System.err.println(getName() + "(count:" + tasksRemaining() + "): About to run: " + task);
+                    task.run();
+                    if (DEBUG)
+                        System.err.println(getName() + "(count:" + tasksRemaining() + "): Done running : " + task);
+                } catch (SurveyTask.CancelledException ce) {
+                    System.err.println(ce.getMessage());
+                    wasCancelled = true;
                 } catch (Throwable t) {
-                if (DEBUG)
-                    System.err.println("SurveyThread(count:" + tasksRemaining() + "): Got exception on: " + current + " - "
-                        + t.toString());
-                t.printStackTrace();
-                SurveyMain.busted("While working on task " + current + " - " + t.toString(), t);
+                    if (DEBUG)
+                        System.err.println(getName() + "(count:" + tasksRemaining() + "): Got exception on: " + task + " - "
+                            + t.toString());
+                    t.printStackTrace();
+                    SurveyMain.busted("While working on task " + task + " - " + t.toString(), t);
+                    hasFailed = true;
+                } finally {
+                    current = null; /* done. */
+                    task.worker = null;
+                    setName();
+                    finished(task, System.currentTimeMillis() - startTime, wasCancelled, hasFailed);
                 }
-            current = null; /* done. */
-            setName();
+            }
+            if (DEBUG)
+                System.err.println(getName() + "(count:" + tasksRemaining() + "): exitting!");
         }
-        if (DEBUG)
-            System.err.println("SurveyThread(count:" + tasksRemaining() + "): exitting!");
+    }
+
+    /**
+     * Take the next task to run, waiting for one if need be.
+     *
+     * @return the task, or null if we are stopping
+     */
+    private synchronized SurveyTask take() throws InterruptedException {
+        while (surveyThreadIsRunning) {
+            SurveyTask t = startupRunning == 0 ? tasks.peek() : null;
+            if (t != null && (t.getPriority() != Priority.STARTUP || running == 0)) {
+                tasks.poll();
+                Object key = t.getDeduplicationKey();
+                if (key != null) {
+                    waitingByKey.remove(key);
+                }
+                if (t.getPriority() == Priority.STARTUP) {
+                    startupRunning++;
+                }
+                running++;
+                long wait = System.currentTimeMillis() - t.queuedAt;
+                started++;
+                totalWaitMillis += wait;
+                maxWaitMillis = Math.max(maxWaitMillis, wait);
+                return t;
+            }
+            wait();
+        }
+        return null;
+    }
+
+    private synchronized void finished(SurveyTask t, long runMillis, boolean wasCancelled, boolean hasFailed) {
+        running--;
+        if (t.getPriority() == Priority.STARTUP) {
+            startupRunning--;
+            notifyAll(); // the other tasks can start now
+        } else if (running == 0) {
+            notifyAll(); // a waiting STARTUP task can start now
+        }
+        completed++;
+        if (wasCancelled) {
+            cancelled++;
+        }
+        if (hasFailed) {
+            failed++;
+        }
+        totalRunMillis += runMillis;
+        maxRunMillis = Math.max(maxRunMillis, runMillis);
     }
 
     /**
@@ -261,41 +495,78 @@ public class SurveyThread extends Thread {
      *            a name to override the standard name
      * @param t
      *            task to add
+     * @return the task that will do the work: t, or a waiting task with the same deduplication key
      */
-    public void addTask(String name, SurveyTask t) {
+    public SurveyTask addTask(String name, SurveyTask t) {
         t.name = name;
-        this.addTask(t);
+        return this.addTask(t);
     }
 
     /**
-     * Add a task, use the default name. Throws an internal error if for some
-     * reason it couldn't be added.
+     * Add a task, use the default name. If a task with the same deduplication key
+     * is waiting, t isn't added. Callers that act on the returned task, such as telling
+     * it about another waiting session, can synchronize on this SurveyThread, so that the
+     * task isn't started or removed in between.
      *
      * @param t
+     * @return the task that will do the work: t, or a waiting task with the same deduplication key
      */
-    public void addTask(SurveyTask t) {
-        if (!tasks.offer(t)) {
-            String complaint = "SurveyThread: can't add task " + t.name;
-            System.err.println(complaint);
-            throw new InternalError(complaint);
+    public synchronized SurveyTask addTask(SurveyTask t) {
+        Object key = t.getDeduplicationKey();
+        if (key != null) {
+            SurveyTask waiting = waitingByKey.get(key);
+            if (waiting != null) {
+                deduplicated++;
+                return waiting;
+            }
+            waitingByKey.put(key, t);
         }
+        t.theThread = this;
+        t.sequence = nextSequence++;
+        t.queuedAt = System.currentTimeMillis();
+        tasks.add(t);
+        notify();
+        return t;
     }
 
-    public boolean removeTask(SurveyTask t) {
+    public synchronized boolean removeTask(SurveyTask t) {
+        Object key = t.getDeduplicationKey();
+        if (key != null && waitingByKey.get(key) == t) {
+            waitingByKey.remove(key);
+        }
         return tasks.remove(t);
     }
 
+    /**
+     * Start the worker threads.
+     */
+    public synchronized void start() {
+        for (int i = 0; i < WORKERS; i++) {
+            Worker w = new Worker(i);
+            workers.add(w);
+            w.start();
+        }
+    }
+
+    /**
+     * @return true if any of the worker threads is still alive
+     */
+    public boolean isAlive() {
+        for (Worker w : workers) {
+            if (w.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Request the ST to stop at its next available opportunity.
      */
-    public void requestStop() {
+    public synchronized void requestStop() {
+        System.err.println("SurveyThread: stop requested!");
         surveyThreadIsRunning = false; // shutdown the next time through
-        addTask(new SurveyTask("shutdown") {
-            public void run() throws Throwable {
-                System.err.println("Shutdown task: stop requested!");
-                // add other items here.
-            }
-        });
+        notifyAll();
     }
 
     /**
@@ -303,28 +574,51 @@ public class SurveyThread extends Thread {
      */
     public void interruptStop() {
         surveyThreadIsRunning = false;
-        this.interrupt();
+        for (Worker w : workers) {
+            w.interrupt();
+        }
     }
 
     /**
-     * Construct the thread. Needs a pointer to the SurveyTool..
+     * Construct the threads. Needs a pointer to the SurveyTool..
      *
      * @param sm
      */
     SurveyThread(SurveyMain sm) {
         this.sm = sm;
-        current = null;
-        setName();
-    }
-
-    private void setName() {
-        this.setName(toString());
     }
 
     /**
      * Main list of tasks.
      */
-    LinkedBlockingQueue<SurveyTask> tasks = new LinkedBlockingQueue<SurveyTask>();
+    private final PriorityQueue<SurveyTask> tasks = new PriorityQueue<SurveyTask>(11, new Comparator<SurveyTask>() {
+        @Override
+        public int compare(SurveyTask o1, SurveyTask o2) {
+            int diff = o1.getPriority().compareTo(o2.getPriority());
+            return diff != 0 ? diff : Long.compare(o1.sequence, o2.sequence);
+        }
+    });
+
+    /**
+     * Waiting tasks with a deduplication key.
+     */
+    private final Map<Object, SurveyTask> waitingByKey = new HashMap<Object, SurveyTask>();
+
+    private final List<Worker> workers = new ArrayList<Worker>();
+
+    // guarded by this
+    private int running = 0;
+    private int startupRunning = 0;
+    private long nextSequence = 0;
+    private long started = 0;
+    private long completed = 0;
+    private long cancelled = 0;
+    private long failed = 0;
+    private long deduplicated = 0;
+    private long totalWaitMillis = 0;
+    private long maxWaitMillis = 0;
+    private long totalRunMillis = 0;
+    private long maxRunMillis = 0;
 
     /**
      * Back-pointer.
@@ -347,22 +641,20 @@ public class SurveyThread extends Thread {
             if (!this.isAlive())
                 return;
 
-            SurveyTask aCurrent = current;
-            if (aCurrent != null) {
+            for (SurveyTask aCurrent : currentTasks()) {
                 System.err.println("Attempting task stop on " + aCurrent + "..");
                 aCurrent.stop();
-                Thread.sleep(1000);
-                if (!this.isAlive())
-                    return;
             }
-            aCurrent = current; // in case it changed
-            if (aCurrent != null) {
+            Thread.sleep(1000);
+            if (!this.isAlive())
+                return;
+            for (SurveyTask aCurrent : currentTasks()) { // in case they changed
                 System.err.println("Attempting task kill on " + aCurrent + "..");
                 aCurrent.kill();
-                Thread.sleep(1000);
-                if (!this.isAlive())
-                    return;
             }
+            Thread.sleep(1000);
+            if (!this.isAlive())
+                return;
 
             System.err.println("Attempting interrupt stop");
             this.interruptStop();
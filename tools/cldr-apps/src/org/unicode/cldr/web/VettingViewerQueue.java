@@ -14,6 +14,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -38,6 +39,7 @@ import org.unicode.cldr.util.VettingViewer.Choice;
 import org.unicode.cldr.util.VettingViewer.LocalesWithExplicitLevel;
 import org.unicode.cldr.util.VettingViewer.UsersChoice;
 import org.unicode.cldr.util.VettingViewer.VoteStatus;
+import org.unicode.cldr.util.XMLSource;
 import org.unicode.cldr.web.UserRegistry.User;
 
 import com.ibm.icu.dev.util.ElapsedTimer;
@@ -163,13 +165,14 @@ public class VettingViewerQueue {
 
 //    public static QueueEntry summaryEntry = null;
 
-    private static final Object OnlyOneVetter = new Object() {
-    }; // TODO: remove.
-
     public class Task extends SurveyThread.SurveyTask {
 
         public CLDRLocale locale;
-        private QueueEntry entry;
+        /**
+         * The entries waiting for this task's output: more than one if sessions asked for the same output.
+         */
+        private final List<QueueEntry> entries = new CopyOnWriteArrayList<QueueEntry>();
+        private VVOutput result = null;
         SurveyMain sm;
         VettingViewer<Organization> vv;
         public int maxn;
@@ -227,12 +230,52 @@ public class VettingViewerQueue {
             }
             this.locale = locale;
             this.st_org = st_org;
-            this.entry = entry;
+            this.entries.add(entry);
             this.sm = sm;
             this.usersLevel = usersLevel; // Level.get(ctx.getEffectiveCoverageLevel());
             this.usersOrg = usersOrg; // VoteResolver.Organization.fromString(ctx.session.user.voterOrg());
         }
 
+        /**
+         * Tasks for the same locale, organization, level and st_org do the same work.
+         */
+        @Override
+        public Object getDeduplicationKey() {
+            return Arrays.asList(locale, usersOrg, usersLevel, st_org);
+        }
+
+        @Override
+        public SurveyThread.Priority getPriority() {
+            return SurveyThread.Priority.INTERACTIVE;
+        }
+
+        /**
+         * Another session is waiting for this task's output.
+         */
+        synchronized void addEntry(QueueEntry entry) {
+            entries.add(entry);
+            if (result != null) {
+                entry.output.put(new Pair<CLDRLocale, Organization>(locale, usersOrg), result);
+            }
+        }
+
+        /**
+         * A session is no longer waiting for this task's output.
+         *
+         * @return true if no session is waiting for it any more
+         */
+        synchronized boolean removeEntry(QueueEntry entry) {
+            entries.remove(entry);
+            return entries.isEmpty();
+        }
+
+        private synchronized void setResult(VVOutput output) {
+            result = output;
+            for (QueueEntry entry : entries) {
+                entry.output.put(new Pair<CLDRLocale, Organization>(locale, usersOrg), output);
+            }
+        }
+
         /**
          * @param locale
          * @return
@@ -254,100 +297,100 @@ public class VettingViewerQueue {
             try {
                 status = "Waiting...";
                 progress.update("Waiting...");
-                synchronized (OnlyOneVetter) {
-                    if (!running()) {
-                        status = "Stopped on request.";
-                        statusCode = Status.STOPPED;
-                        return;
-                    }
-                    status = "Beginning Process, Calculating";
-
-                    vv = new VettingViewer<Organization>(sm.getSupplementalDataInfo(), sm.getSTFactory(),
-                        getUsersChoice(sm), "Winning " + SurveyMain.getNewVersion());
-                    progress.update("Got VettingViewer");
-                    statusCode = Status.PROCESSING;
-                    start = System.currentTimeMillis();
-                    last = start;
-                    n = 0;
-                    vv.setProgressCallback(new VettingViewer.ProgressCallback() {
-                        public String setRemStr(long now) {
-                            double per = (double) (now - start) / (double) n;
-                            rem = (long) ((maxn - n) * per);
-                            String remStr = ElapsedTimer.elapsedTime(now, now + rem) + " " + "remaining";
-                            if (rem <= 1500) {
-                                remStr = "Finishing...";
-                            }
-                            setStatus(remStr);
-                            return remStr;
+                if (!running()) {
+                    status = "Stopped on request.";
+                    statusCode = Status.STOPPED;
+                    return;
+                }
+                status = "Beginning Process, Calculating";
+
+                vv = new VettingViewer<Organization>(sm.getSupplementalDataInfo(), sm.getSTFactory(),
+                    getUsersChoice(sm), "Winning " + SurveyMain.getNewVersion());
+                vv.setRowCacheProvider(rowCacheProvider);
+                progress.update("Got VettingViewer");
+                statusCode = Status.PROCESSING;
+                start = System.currentTimeMillis();
+                last = start;
+                n = 0;
+                vv.setProgressCallback(new VettingViewer.ProgressCallback() {
+                    public String setRemStr(long now) {
+                        double per = (double) (now - start) / (double) n;
+                        rem = (long) ((maxn - n) * per);
+                        String remStr = ElapsedTimer.elapsedTime(now, now + rem) + " " + "remaining";
+                        if (rem <= 1500) {
+                            remStr = "Finishing...";
                         }
+                        setStatus(remStr);
+                        return remStr;
+                    }
 
-                        public void nudge() {
-                            if (!running()) {
-                                throw new RuntimeException("Not Running- stop now.");
-                            }
-                            long now = System.currentTimeMillis();
-                            n++;
-                            // System.err.println("Nudged: " + n);
-                            if (n > (maxn - 5)) {
-                                maxn = n + 10;
-                                if (!isSummary && n > gMax) {
-                                    gMax = n;
-                                }
-                            }
-
-                            if ((now - last) > 1200) {
-                                last = now;
-                                // StringBuffer bar =
-                                // SurveyProgressManager.appendProgressBar(new
-                                // StringBuffer(),n,ourmax);
-                                // String remStr="";
-                                if (n > 500) {
-                                    progress.update(n, setRemStr(now));
-                                } else {
-                                    progress.update(n);
-                                }
-                                // try {
-                                // mout.println("<script type=\"text/javascript\">document.getElementById('LoadingBar').innerHTML=\""+bar+
-                                // " ("+n+" items loaded" + remStr + ")" +
-                                // "\";</script>");
-                                // mout.flush();
-                                // } catch (java.io.IOException e) {
-                                // System.err.println("Nudge: got IOException  "
-                                // + e.toString() + " after " + n);
-                                // throw new RuntimeException(e); // stop
-                                // processing
-                                // }
+                    public void nudge() {
+                        checkRunning();
+                        long now = System.currentTimeMillis();
+                        n++;
+                        // System.err.println("Nudged: " + n);
+                        if (n > (maxn - 5)) {
+                            maxn = n + 10;
+                            if (!isSummary && n > gMax) {
+                                gMax = n;
                             }
                         }
 
-                        public void done() {
-                            progress.update("Done!");
+                        if ((now - last) > 1200) {
+                            last = now;
+                            // StringBuffer bar =
+                            // SurveyProgressManager.appendProgressBar(new
+                            // StringBuffer(),n,ourmax);
+                            // String remStr="";
+                            if (n > 500) {
+                                progress.update(n, setRemStr(now));
+                            } else {
+                                progress.update(n);
+                            }
+                            // try {
+                            // mout.println("<script type=\"text/javascript\">document.getElementById('LoadingBar').innerHTML=\""+bar+
+                            // " ("+n+" items loaded" + remStr + ")" +
+                            // "\";</script>");
+                            // mout.flush();
+                            // } catch (java.io.IOException e) {
+                            // System.err.println("Nudge: got IOException  "
+                            // + e.toString() + " after " + n);
+                            // throw new RuntimeException(e); // stop
+                            // processing
+                            // }
                         }
-                    });
-
-                    EnumSet<VettingViewer.Choice> choiceSet = EnumSet.allOf(VettingViewer.Choice.class);
-                    if (usersOrg.equals(Organization.surveytool)) {
-                        choiceSet = EnumSet.of(
-                            VettingViewer.Choice.error,
-                            VettingViewer.Choice.warning,
-                            VettingViewer.Choice.hasDispute,
-                            VettingViewer.Choice.notApproved);
                     }
 
-                    if (!isSummary(locale)) {
-                        vv.generateHtmlErrorTables(aBuffer, choiceSet, locale.getBaseName(), usersOrg, usersLevel, true, false);
-                    } else {
-                        if (DEBUG)
-                            System.err.println("Starting summary gen..");
-                        vv.generateSummaryHtmlErrorTables(aBuffer, choiceSet, getLocalesWithVotes(st_org), usersOrg);
-                    }
-                    if (running()) {
-                        aBuffer.append("<hr/>" + PRE + "Processing time: " + ElapsedTimer.elapsedTime(start) + POST);
-                        entry.output.put(new Pair<CLDRLocale, Organization>(locale, usersOrg), new VVOutput(aBuffer));
+                    public void done() {
+                        progress.update("Done!");
                     }
+                });
+
+                EnumSet<VettingViewer.Choice> choiceSet = EnumSet.allOf(VettingViewer.Choice.class);
+                if (usersOrg.equals(Organization.surveytool)) {
+                    choiceSet = EnumSet.of(
+                        VettingViewer.Choice.error,
+                        VettingViewer.Choice.warning,
+                        VettingViewer.Choice.hasDispute,
+                        VettingViewer.Choice.notApproved);
+                }
+
+                if (!isSummary(locale)) {
+                    vv.generateHtmlErrorTables(aBuffer, choiceSet, locale.getBaseName(), usersOrg, usersLevel, true, false);
+                } else {
+                    if (DEBUG)
+                        System.err.println("Starting summary gen..");
+                    vv.generateSummaryHtmlErrorTables(aBuffer, choiceSet, getLocalesWithVotes(st_org), usersOrg);
+                }
+                if (running()) {
+                    aBuffer.append("<hr/>" + PRE + "Processing time: " + ElapsedTimer.elapsedTime(start) + POST);
+                    setResult(new VVOutput(aBuffer));
                 }
                 status = "Finished.";
                 statusCode = Status.READY;
+            } catch (CancelledException ce) {
+                status = "Stopped on request.";
+                statusCode = Status.STOPPED;
             } catch (RuntimeException re) {
                 SurveyLog.logException(re, "While VettingViewer processing " + locale);
                 status = "Exception! " + re.toString();
@@ -671,6 +714,7 @@ public class VettingViewerQueue {
         STFactory sourceFactory = sm.getSTFactory();
         VettingViewer<Organization> vv = new VettingViewer<Organization>(sm.getSupplementalDataInfo(), sourceFactory,
             getUsersChoice(sm), "Winning " + SurveyMain.getNewVersion());
+        vv.setRowCacheProvider(rowCacheProvider);
 
         EnumSet<VettingViewer.Choice> choiceSet = EnumSet.allOf(VettingViewer.Choice.class);
         if (usersOrg.equals(Organization.surveytool)) {
@@ -756,6 +800,9 @@ public class VettingViewerQueue {
         } else { /* force restart */
             stop(ctx, locale, entry);
             entry.output.remove(key);
+            if (forceRestart == LoadingPolicy.FORCERESTART) {
+                invalidateRowCaches(locale);
+            }
         }
 
         if (forceRestart == LoadingPolicy.FORCESTOP) {
@@ -815,8 +862,15 @@ public class VettingViewerQueue {
         }
         usersOrg = sess.user.vrOrg();
 
-        t = entry.currentTask = new Task(entry, locale, sm, baseUrl, usersLevel, usersOrg, sess.user.org);
-        sm.startupThread.addTask(entry.currentTask);
+        t = new Task(entry, locale, sm, baseUrl, usersLevel, usersOrg, sess.user.org);
+        synchronized (sm.startupThread) { // so that the waiting task can't be stopped before the entry is added
+            Task waiting = (Task) sm.startupThread.addTask(t);
+            if (waiting != t) {
+                waiting.addEntry(entry); // someone else asked for the same output
+                t = waiting;
+            }
+        }
+        entry.currentTask = t;
 
         status[0] = Status.PROCESSING;
         String killMsg = "";
@@ -851,11 +905,15 @@ public class VettingViewerQueue {
     private void stop(WebContext ctx, CLDRLocale locale, QueueEntry entry) {
         Task t = entry.currentTask;
         if (t != null) {
-            if (t.running()) {
-                t.stop();
-            }
             entry.currentTask = null;
-            t.sm.startupThread.removeTask(t); // remove from the queue
+            synchronized (t.sm.startupThread) { // see getVettingViewerOutput: a session may be adding its entry
+                if (t.removeEntry(entry)) { // only stop it if no other session is waiting for it
+                    if (t.running()) {
+                        t.stop();
+                    }
+                    t.sm.startupThread.removeTask(t); // remove from the queue
+                }
+            }
         }
     }
 
@@ -876,9 +934,96 @@ public class VettingViewerQueue {
 //        return entry;
 //    }
 
+    /**
+     * The number of dashboards whose rows are kept between runs, from the CLDR_VV_ROW_CACHES property.
+     */
+    private static final int ROW_CACHES = CLDRConfig.getInstance().getProperty("CLDR_VV_ROW_CACHES", 40);
+
+    /**
+     * Minutes after which all the rows of a dashboard are checked again, from the CLDR_VV_ROW_MAX_AGE_MINUTES
+     * property: some tests depend on paths other than the ones that changed.
+     */
+    private static final int ROW_MAX_AGE_MINUTES = CLDRConfig.getInstance().getProperty("CLDR_VV_ROW_MAX_AGE_MINUTES", 10);
+
+    /**
+     * The rows of a dashboard, listening to the sources of its locale and the locale's parents.
+     */
+    private static final class CachedRows {
+        final VettingViewer.RowCache cache = new VettingViewer.RowCache(ROW_MAX_AGE_MINUTES * 60 * 1000L);
+        final List<CLDRLocale> locales;
+        final List<XMLSource> sources;
+
+        CachedRows(List<CLDRLocale> locales, List<XMLSource> sources) {
+            this.locales = locales;
+            this.sources = sources;
+            for (XMLSource source : sources) {
+                source.addListener(cache);
+            }
+        }
+
+        /**
+         * @return true if the sources listened to are still those of the locales, without loading any of them
+         */
+        boolean isCurrent(STFactory stFactory) {
+            for (int i = 0; i < locales.size(); i++) {
+                if (stFactory.peekSource(locales.get(i)) != sources.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Keyed by locale ID, organization, level and choices.
+     */
+    private final LruMap<List<Object>, CachedRows> rowCaches = new LruMap<List<Object>, CachedRows>(ROW_CACHES);
+
+    private final VettingViewer.RowCacheProvider<Organization> rowCacheProvider = new VettingViewer.RowCacheProvider<Organization>() {
+        @Override
+        public VettingViewer.RowCache getRowCache(String localeID, Organization user, Level usersLevel, EnumSet<Choice> choices) {
+            STFactory stFactory = CookieSession.sm.getSTFactory();
+            List<Object> key = Arrays.<Object> asList(localeID, user, usersLevel, choices.clone());
+            synchronized (rowCaches) {
+                CachedRows rows = rowCaches.get(key);
+                if (rows != null && rows.isCurrent(stFactory)) {
+                    return rows.cache;
+                }
+            }
+            // new, or a locale was reloaded since
+            List<CLDRLocale> locales = new ArrayList<CLDRLocale>();
+            List<XMLSource> sources = new ArrayList<XMLSource>();
+            for (CLDRLocale loc = CLDRLocale.getInstance(localeID); loc != null && !loc.getBaseName().equals("root"); loc = loc.getParent()) {
+                locales.add(loc);
+                sources.add(stFactory.makeSource(loc.getBaseName(), false));
+            }
+            synchronized (rowCaches) {
+                CachedRows rows = rowCaches.get(key);
+                if (rows == null || !rows.isCurrent(stFactory)) {
+                    rows = new CachedRows(locales, sources);
+                    rowCaches.put(key, rows);
+                }
+                return rows.cache;
+            }
+        }
+    };
+
+    /**
+     * Check all the rows of the dashboards of a locale again on their next run, or of all locales for the summary.
+     */
+    private void invalidateRowCaches(CLDRLocale locale) {
+        synchronized (rowCaches) {
+            for (Map.Entry<List<Object>, CachedRows> e : rowCaches.entrySet()) {
+                if (locale == SUMMARY_LOCALE || e.getKey().get(0).equals(locale.getBaseName())) {
+                    e.getValue().cache.invalidateAll();
+                }
+            }
+        }
+    }
+
     LruMap<CLDRLocale, BallotBox<UserRegistry.User>> ballotBoxes = new LruMap<CLDRLocale, BallotBox<User>>(8);
 
-    BallotBox<UserRegistry.User> getBox(SurveyMain sm, CLDRLocale loc) {
+    synchronized BallotBox<UserRegistry.User> getBox(SurveyMain sm, CLDRLocale loc) {
         BallotBox<User> box = ballotBoxes.get(loc);
         if (box == null) {
             box = sm.getSTFactory().ballotBoxForLocale(loc);
@@ -0,0 +1,603 @@
+package org.unicode.cldr.web;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.unicode.cldr.util.CLDRConfig;
+
+/**
+ * Write-behind journal for votes. STFactory.PerLocaleData.voteForValue appends each vote here and updates
+ * its in-memory data right away, instead of writing the vote to the database on the request thread.
+ * <p>
+ * Each vote is written to the current segment file in the journal directory and synced to disk before append returns,
+ * so a vote accepted by the Survey Tool survives a crash. flush(), run periodically on the SurveyMain timer,
+ * starts a new segment and writes the votes of the old ones to VOTE_VALUE and VOTE_VALUE_ALT in JDBC batches,
+ * deleting each segment once its transaction commits. replay() writes any segments left over from the last run,
+ * and must be called before the votes are read from the database.
+ * <p>
+ * Until they are flushed, votes are only in memory and in the journal, so queries that read VOTE_VALUE directly
+ * lag behind by up to the flush interval. Call flush() before reading or rewriting the votes in the database.
+ * <p>
+ * A segment that the database rejects on CLDR_VOTE_JOURNAL_MAX_ATTEMPTS flushes in a row is then written
+ * one vote at a time, so that the later segments can still be written. Only the votes that the database still
+ * rejects go to a .quarantined file, which replay() skips; they need to be looked at by hand, see getQuarantined().
+ * <p>
+ * If appending a vote fails, its partial record is cut off and the later votes go to a new segment,
+ * since read() stops at the first garbled record.
+ */
+public class VoteJournal {
+    private static final int MAGIC = 0x434c4456; // "CLDV"
+    private static final int VERSION = 1;
+    private static final String SEGMENT_PREFIX = "votes-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String QUARANTINE_SUFFIX = ".quarantined";
+
+    /**
+     * The number of times the votes of a segment may fail to be written before its votes are written one at a time.
+     */
+    private static final int MAX_ATTEMPTS = CLDRConfig.getInstance().getProperty("CLDR_VOTE_JOURNAL_MAX_ATTEMPTS", 5);
+
+    /**
+     * A vote, as written to VOTE_VALUE.
+     */
+    public static final class Vote {
+        public final String locale;
+        public final int xpathId;
+        public final int submitter;
+        public final String value;
+        public final Integer override;
+        public final long when;
+
+        public Vote(String locale, int xpathId, int submitter, String value, Integer override, long when) {
+            this.locale = locale;
+            this.xpathId = xpathId;
+            this.submitter = submitter;
+            this.value = value;
+            this.override = override;
+            this.when = when;
+        }
+
+        /**
+         * Votes with the same key replace each other in VOTE_VALUE.
+         */
+        String getKey() {
+            return locale + "/" + xpathId + "/" + submitter;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + locale + " #" + xpathId + " by #" + submitter + ": " + value + "}";
+        }
+    }
+
+    /**
+     * A segment file and the votes written to it.
+     */
+    private static final class Segment {
+        final File file;
+        final List<Vote> votes;
+        // guarded by flushLock
+        int failures = 0;
+        int next = 0; // once failures reaches MAX_ATTEMPTS, the next vote to write on its own
+        final List<Vote> rejected = new ArrayList<Vote>();
+        Exception error = null;
+
+        Segment(File file, List<Vote> votes) {
+            this.file = file;
+            this.votes = votes;
+        }
+
+        int getPendingCount() {
+            return votes.size() - next;
+        }
+    }
+
+    private final File directory;
+    private final boolean sync;
+    private final long startTime = System.currentTimeMillis();
+    private int segmentCount = 0;
+
+    // guarded by this
+    private File currentFile = null;
+    private FileOutputStream currentStream = null;
+    private List<Vote> currentVotes = new ArrayList<Vote>();
+    private final List<Segment> closed = new ArrayList<Segment>(); // closed after a failed append, oldest first
+
+    // guarded by flushLock: segments closed but not yet in the database, oldest first
+    private final Object flushLock = new Object();
+    private final List<Segment> pending = new ArrayList<Segment>();
+    private final List<File> quarantined = new ArrayList<File>();
+
+    /**
+     * @param directory the journal directory, created if needed
+     * @param sync true to sync each vote to disk before append returns
+     */
+    public VoteJournal(File directory, boolean sync) {
+        this.directory = directory;
+        this.sync = sync;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new InternalError("Could not create vote journal directory " + directory.getAbsolutePath());
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(QUARANTINE_SUFFIX)) {
+                    quarantined.add(file); // from an earlier run
+                }
+            }
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Write the votes of the segments in the journal directory to the database, and delete the segments
+     * (or quarantine those that keep failing). Called once, before any votes are appended.
+     *
+     * @return the number of votes read from the segments
+     */
+    public int replay() throws IOException, SQLException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Could not list " + directory.getAbsolutePath());
+        }
+        Arrays.sort(files); // segment names sort in the order they were written
+        int count = 0;
+        synchronized (flushLock) {
+            for (File file : files) {
+                if (file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(SEGMENT_SUFFIX)) {
+                    List<Vote> votes = read(file);
+                    System.err.println("VoteJournal: replaying " + votes.size() + " votes from " + file.getName());
+                    pending.add(new Segment(file, votes));
+                    count += votes.size();
+                }
+            }
+            while (!pending.isEmpty()) {
+                Segment segment = pending.get(0);
+                int failures = segment.failures;
+                try {
+                    writePending();
+                } catch (SQLException | RuntimeException e) {
+                    // retry a segment that the database rejected until its votes are written one at a time, rather than failing
+                    // the startup; but not a database that can't be reached
+                    if (!pending.isEmpty() && pending.get(0) == segment && segment.failures == failures) {
+                        throw e;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Append a vote to the journal. The vote is on disk when this returns, but not yet in the database.
+     */
+    public synchronized void append(Vote vote) throws IOException {
+        if (currentStream == null) {
+            File file = new File(directory, String.format("%s%013d-%06d%s", SEGMENT_PREFIX, startTime, ++segmentCount, SEGMENT_SUFFIX));
+            FileOutputStream stream = new FileOutputStream(file);
+            try {
+                writeHeader(stream);
+            } catch (IOException e) {
+                stream.close();
+                file.delete();
+                throw e;
+            }
+            currentFile = file;
+            currentStream = stream;
+        }
+        long position = currentStream.getChannel().position();
+        try {
+            currentStream.write(toRecord(vote));
+            currentStream.flush();
+            if (sync) {
+                currentStream.getFD().sync();
+            }
+        } catch (IOException e) {
+            // read() stops at a garbled record, so cut off the partial record and put later votes in a new segment
+            try {
+                currentStream.getChannel().truncate(position);
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+            try {
+                closeCurrent();
+            } catch (IOException e2) {
+                e.addSuppressed(e2);
+            }
+            throw e;
+        }
+        currentVotes.add(vote);
+    }
+
+    // called with this: move the current segment to the closed ones, so the next append starts a new one
+    private void closeCurrent() throws IOException {
+        try {
+            currentStream.close();
+        } finally {
+            closed.add(new Segment(currentFile, currentVotes));
+            currentStream = null;
+            currentFile = null;
+            currentVotes = new ArrayList<Vote>();
+        }
+    }
+
+    /**
+     * @return the number of votes not yet written to the database
+     */
+    public int getPendingCount() {
+        int count;
+        synchronized (this) {
+            count = currentVotes.size();
+            for (Segment segment : closed) {
+                count += segment.votes.size();
+            }
+        }
+        synchronized (flushLock) {
+            for (Segment segment : pending) {
+                count += segment.getPendingCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the quarantine files, holding the votes that the database rejected in this run or earlier ones;
+     * empty if all is well
+     */
+    public List<File> getQuarantined() {
+        synchronized (flushLock) {
+            return new ArrayList<File>(quarantined);
+        }
+    }
+
+    /**
+     * Write all the votes appended so far to the database. If the database fails, the votes stay
+     * in the journal and are written by the next flush.
+     *
+     * @return the number of votes written
+     */
+    public int flush() throws IOException, SQLException {
+        synchronized (flushLock) {
+            synchronized (this) {
+                try {
+                    if (currentStream != null) {
+                        closeCurrent();
+                    }
+                } finally {
+                    pending.addAll(closed);
+                    closed.clear();
+                }
+            }
+            return writePending();
+        }
+    }
+
+    // called with flushLock
+    private int writePending() throws IOException, SQLException {
+        int count = 0;
+        while (!pending.isEmpty()) {
+            Segment segment = pending.get(0);
+            if (segment.failures < MAX_ATTEMPTS) {
+                // a database that can't be reached fails here, and doesn't count against the segment
+                Connection conn = getConnection();
+                try {
+                    writeTransaction(conn, segment.votes);
+                } catch (SQLException | RuntimeException e) {
+                    if (++segment.failures < MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    segment.error = e;
+                    continue; // write the votes one at a time
+                } finally {
+                    DBUtils.close(conn);
+                }
+                count += segment.votes.size();
+            } else {
+                count += writeEach(segment);
+                if (!segment.rejected.isEmpty()) {
+                    quarantine(segment);
+                }
+            }
+            if (!segment.file.delete()) {
+                throw new IOException("Could not delete vote journal segment " + segment.file.getAbsolutePath());
+            }
+            pending.remove(0);
+        }
+        return count;
+    }
+
+    /**
+     * Write the votes of a segment that keeps failing one at a time, each in its own transaction,
+     * collecting the votes that the database rejects. Called with flushLock.
+     *
+     * @return the number of votes written
+     */
+    private int writeEach(Segment segment) throws SQLException {
+        int count = 0;
+        for (; segment.next < segment.votes.size(); ++segment.next) {
+            Vote vote = segment.votes.get(segment.next);
+            Connection conn = getConnection();
+            try {
+                writeTransaction(conn, Collections.singletonList(vote));
+                ++count;
+            } catch (SQLException | RuntimeException e) {
+                segment.rejected.add(vote);
+                segment.error = e;
+            } finally {
+                DBUtils.close(conn);
+            }
+        }
+        return count;
+    }
+
+    // called with flushLock: save the rejected votes of the segment in a quarantine file, and report them
+    private void quarantine(Segment segment) throws IOException {
+        String name = segment.file.getName();
+        File file = new File(directory, name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + QUARANTINE_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            writeHeader(out);
+            for (Vote vote : segment.rejected) {
+                out.write(toRecord(vote));
+            }
+            out.flush();
+            out.getFD().sync();
+        }
+        quarantined.add(file);
+        SurveyLog.logException(segment.error, "VoteJournal: quarantined " + segment.rejected.size() + " of " + segment.votes.size()
+            + " votes from " + name + " in " + file.getAbsolutePath() + ", rejected by the database after "
+            + segment.failures + " failed attempts: " + segment.rejected);
+    }
+
+    /**
+     * Get a connection for writing votes.
+     *
+     * @throws SQLException if the database can't be reached
+     */
+    protected Connection getConnection() throws SQLException {
+        Connection conn = DBUtils.getInstance().getDBConnection();
+        if (conn == null) {
+            throw new SQLException("VoteJournal: could not connect to the database");
+        }
+        return conn;
+    }
+
+    /**
+     * Write votes with writeVotes and commit them, or roll back if any of them fails,
+     * since closing a Derby connection would commit the votes written so far.
+     */
+    protected void writeTransaction(Connection conn, List<Vote> votes) throws SQLException {
+        try {
+            writeVotes(conn, votes);
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException e2) {
+                e.addSuppressed(e2);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Write votes to VOTE_VALUE, first saving the values they replace to VOTE_VALUE_ALT, in the given order.
+     * The votes are written in batches; the caller commits.
+     * <p>
+     * A batch can't hold two votes with the same key, since each kind of statement is batched separately,
+     * so the votes are written in rounds: the first vote for each key, then the second, and so on.
+     */
+    public static void writeVotes(Connection conn, List<Vote> votes) throws SQLException {
+        List<Vote> remaining = votes;
+        while (!remaining.isEmpty()) {
+            List<Vote> round = new ArrayList<Vote>();
+            List<Vote> later = new ArrayList<Vote>();
+            Set<String> keys = new HashSet<String>();
+            for (Vote vote : remaining) {
+                if (keys.add(vote.getKey())) {
+                    round.add(vote);
+                } else {
+                    later.add(vote);
+                }
+            }
+            writeRound(conn, round);
+            remaining = later;
+        }
+    }
+
+    private static void writeRound(Connection conn, List<Vote> votes) throws SQLException {
+        PreparedStatement saveOld = null; // save off old value
+        PreparedStatement ps = null; // all for mysql, or 2nd step for derby
+        PreparedStatement ps2 = null; // 1st step for derby
+        try {
+            // #1 - save the "VOTE_VALUE_ALT"  ( possible proposal) value.
+            String add0 = "", add2 = "";
+            if (DBUtils.db_Mysql) {
+                add0 = "IGNORE";
+            } else {
+                add2 = "and not exists (select * from " + DBUtils.Table.VOTE_VALUE_ALT + " where " + DBUtils.Table.VOTE_VALUE_ALT + ".locale="
+                    + DBUtils.Table.VOTE_VALUE
+                    + ".locale and " + DBUtils.Table.VOTE_VALUE_ALT + ".xpath=" + DBUtils.Table.VOTE_VALUE + ".xpath " + " and "
+                    + DBUtils.Table.VOTE_VALUE_ALT
+                    + ".value=" + DBUtils.Table.VOTE_VALUE + ".value )";
+            }
+            saveOld = DBUtils.prepareForwardReadOnly(conn, "insert " + add0 + " into " + DBUtils.Table.VOTE_VALUE_ALT + " select "
+                + DBUtils.Table.VOTE_VALUE + ".locale,"
+                + DBUtils.Table.VOTE_VALUE + ".xpath," + DBUtils.Table.VOTE_VALUE + ".value "
+                + " from " + DBUtils.Table.VOTE_VALUE + " where locale=? and xpath=? and submitter=? and value is not null " + add2);
+
+            // #2 - save the actual vote.
+            if (DBUtils.db_Mysql) { // use 'on duplicate key' syntax
+                ps = DBUtils.prepareForwardReadOnly(conn, "INSERT INTO " + DBUtils.Table.VOTE_VALUE
+                    + " (locale,xpath,submitter,value,last_mod," + STFactory.VOTE_OVERRIDE + ") values (?,?,?,?,?,?) "
+                    + "ON DUPLICATE KEY UPDATE locale=?,xpath=?,submitter=?,value=?,last_mod=?," + STFactory.VOTE_OVERRIDE + "=?");
+            } else { // derby
+                ps2 = DBUtils.prepareForwardReadOnly(conn, "DELETE FROM " + DBUtils.Table.VOTE_VALUE
+                    + " where locale=? and xpath=? and submitter=? ");
+                ps = DBUtils.prepareForwardReadOnly(conn, "INSERT INTO " + DBUtils.Table.VOTE_VALUE
+                    + " (locale,xpath,submitter,value,last_mod," + STFactory.VOTE_OVERRIDE + ") VALUES (?,?,?,?,?,?) ");
+            }
+            for (Vote vote : votes) {
+                setKey(saveOld, 1, vote);
+                saveOld.addBatch();
+                if (ps2 != null) {
+                    // NB:  no "VOTE_OVERRIDE" column on delete.
+                    setKey(ps2, 1, vote);
+                    ps2.addBatch();
+                }
+                setVote(ps, 1, vote);
+                if (DBUtils.db_Mysql) {
+                    setVote(ps, 7, vote);
+                }
+                ps.addBatch();
+            }
+            saveOld.executeBatch();
+            if (ps2 != null) {
+                ps2.executeBatch();
+            }
+            ps.executeBatch();
+        } finally {
+            DBUtils.close(saveOld, ps, ps2);
+        }
+    }
+
+    private static int setKey(PreparedStatement ps, int colNum, Vote vote) throws SQLException {
+        ps.setString(colNum++, vote.locale);
+        ps.setInt(colNum++, vote.xpathId);
+        ps.setInt(colNum++, vote.submitter);
+        return colNum;
+    }
+
+    private static void setVote(PreparedStatement ps, int colNum, Vote vote) throws SQLException {
+        colNum = setKey(ps, colNum, vote);
+        DBUtils.setStringUTF8(ps, colNum++, vote.value);
+        ps.setTimestamp(colNum++, new Timestamp(vote.when));
+        DBUtils.setInteger(ps, colNum++, vote.override);
+    }
+
+    private static void writeHeader(FileOutputStream stream) throws IOException {
+        DataOutputStream header = new DataOutputStream(stream);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.flush();
+    }
+
+    /**
+     * A record is its length, the vote, and a CRC of the vote, so that a record cut off by a crash can be recognized.
+     */
+    private static byte[] toRecord(Vote vote) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeUTF(vote.locale);
+        out.writeInt(vote.xpathId);
+        out.writeInt(vote.submitter);
+        writeString(out, vote.value);
+        out.writeBoolean(vote.override != null);
+        out.writeInt(vote.override == null ? 0 : vote.override);
+        out.writeLong(vote.when);
+        out.flush();
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(bytes.length + 12);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeInt(bytes.length);
+        recordOut.write(bytes);
+        recordOut.writeLong(crc.getValue());
+        recordOut.flush();
+        return record.toByteArray();
+    }
+
+    /**
+     * Read the votes of a segment. A record cut off or garbled at the end, from a crash while appending, is dropped;
+     * its vote was never acknowledged. Reading stops there, which is why append starts a new segment after a failure.
+     */
+    public static List<Vote> read(File file) throws IOException {
+        List<Vote> votes = new ArrayList<Vote>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a vote journal: " + file.getAbsolutePath());
+                }
+            } catch (EOFException e) {
+                return votes; // crashed while writing the header
+            }
+            while (true) {
+                byte[] bytes;
+                long crcValue;
+                try {
+                    int length = in.readInt();
+                    if (length < 0 || length > (1 << 24)) {
+                        System.err.println("VoteJournal: dropping garbled record at the end of " + file.getName());
+                        break;
+                    }
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                    crcValue = in.readLong();
+                } catch (EOFException e) {
+                    break; // end of segment, or a record cut off
+                }
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if (crc.getValue() != crcValue) {
+                    System.err.println("VoteJournal: dropping garbled record at the end of " + file.getName());
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+                String locale = record.readUTF();
+                int xpathId = record.readInt();
+                int submitter = record.readInt();
+                String value = readString(record);
+                boolean hasOverride = record.readBoolean();
+                int override = record.readInt();
+                long when = record.readLong();
+                votes.add(new Vote(locale, xpathId, submitter, value, hasOverride ? Integer.valueOf(override) : null, when));
+            }
+        }
+        return votes;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
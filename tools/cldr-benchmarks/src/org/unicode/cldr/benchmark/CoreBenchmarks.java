@@ -0,0 +1,371 @@
+package org.unicode.cldr.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+
+import org.unicode.cldr.test.CoverageLevel2;
+import org.unicode.cldr.test.ExampleGenerator;
+import org.unicode.cldr.tool.Option;
+import org.unicode.cldr.tool.Option.Options;
+import org.unicode.cldr.util.CLDRConfig;
+import org.unicode.cldr.util.CLDRFile;
+import org.unicode.cldr.util.CLDRPaths;
+import org.unicode.cldr.util.DtdData;
+import org.unicode.cldr.util.DtdType;
+import org.unicode.cldr.util.Factory;
+import org.unicode.cldr.util.Level;
+import org.unicode.cldr.util.Organization;
+import org.unicode.cldr.util.PathHeader;
+import org.unicode.cldr.util.PatternCache;
+import org.unicode.cldr.util.SimpleFactory;
+import org.unicode.cldr.util.SupplementalDataInfo;
+import org.unicode.cldr.util.VoteResolver;
+import org.unicode.cldr.util.VoteResolver.Status;
+import org.unicode.cldr.util.VoteResolver.VoterInfo;
+import org.unicode.cldr.util.XPathParts;
+
+/**
+ * Benchmarks for the hot spots of the CLDR core library, in the style of JMH's average-time mode:
+ * each benchmark is run for some warmup iterations, then timed for some measurement iterations,
+ * and the mean time per operation is reported with its standard deviation.
+ * <p>
+ * The results are written as tab-separated lines sorted by benchmark, so that the files from two
+ * releases can be diffed, or compared with -c old.tsv,new.tsv.
+ * <p>
+ * Run with "ant benchmark" in tools, or in tools/cldr-benchmarks.
+ */
+public class CoreBenchmarks {
+    private static final String HEADER = "benchmark\tmode\titerations\tops\tscore\terror\tunits";
+
+    final static Options myOptions = new Options();
+
+    enum MyOptions {
+        filter(".+", ".*", "Only run the benchmarks whose names match this regex."),
+        warmup("\\d+", "3", "Number of warmup iterations."),
+        iterations("\\d+", "5", "Number of measurement iterations."),
+        output(".+", null, "Write the results to this file, as well as to the console."),
+        compare(".+", null, "Compare two result files, given as old.tsv,new.tsv, instead of running benchmarks."),;
+
+        // boilerplate
+        final Option option;
+
+        MyOptions(String argumentPattern, String defaultArgument, String helpText) {
+            option = myOptions.add(this, argumentPattern, defaultArgument, helpText);
+        }
+    }
+
+    /**
+     * A benchmark operation. Each call does some number of operations, and returns that number.
+     */
+    interface Benchmark {
+        int run();
+    }
+
+    /**
+     * The results of timing one benchmark.
+     */
+    static class Result {
+        final String name;
+        final int iterations;
+        final long operations;
+        final double nsPerOp;
+        final double error;
+
+        Result(String name, double[] samples, long operations) {
+            this.name = name;
+            this.iterations = samples.length;
+            this.operations = operations;
+            double sum = 0;
+            for (double sample : samples) {
+                sum += sample;
+            }
+            nsPerOp = sum / samples.length;
+            double squares = 0;
+            for (double sample : samples) {
+                squares += (sample - nsPerOp) * (sample - nsPerOp);
+            }
+            error = samples.length < 2 ? 0 : Math.sqrt(squares / (samples.length - 1));
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s\tavgt\t%d\t%d\t%.1f\t%.1f\tns/op",
+                name, iterations, operations, nsPerOp, error);
+        }
+    }
+
+    private final Map<String, Benchmark> benchmarks = new TreeMap<String, Benchmark>();
+    private int sink; // consumed results, so that the JIT can't drop the work
+
+    public static void main(String[] args) throws IOException {
+        myOptions.parse(MyOptions.filter, args, true);
+        if (MyOptions.compare.option.doesOccur()) {
+            String[] files = MyOptions.compare.option.getValue().split(",");
+            if (files.length != 2) {
+                throw new IllegalArgumentException("Usage: -c old.tsv,new.tsv");
+            }
+            compare(new File(files[0]), new File(files[1]));
+            return;
+        }
+        Matcher filter = PatternCache.get(MyOptions.filter.option.getValue()).matcher("");
+        int warmup = Integer.parseInt(MyOptions.warmup.option.getValue());
+        int iterations = Integer.parseInt(MyOptions.iterations.option.getValue());
+
+        CoreBenchmarks coreBenchmarks = new CoreBenchmarks();
+        List<Result> results = new ArrayList<Result>();
+        for (Entry<String, Benchmark> entry : coreBenchmarks.benchmarks.entrySet()) {
+            if (!filter.reset(entry.getKey()).find()) {
+                continue;
+            }
+            Result result = coreBenchmarks.measure(entry.getKey(), entry.getValue(), warmup, iterations);
+            System.out.println(result);
+            results.add(result);
+        }
+
+        if (MyOptions.output.option.doesOccur()) {
+            File outputFile = new File(MyOptions.output.option.getValue());
+            try (PrintWriter out = new PrintWriter(outputFile, "UTF-8")) {
+                out.println("# CLDR " + CLDRFile.GEN_VERSION
+                    + "; java " + System.getProperty("java.version")
+                    + "; warmup " + warmup + "; iterations " + iterations);
+                out.println(HEADER);
+                for (Result result : results) {
+                    out.println(result);
+                }
+            }
+            System.out.println("Wrote " + outputFile.getAbsolutePath());
+        }
+    }
+
+    CoreBenchmarks() {
+        final CLDRConfig config = CLDRConfig.getInstance();
+        final CLDRFile english = config.getEnglish();
+        final String[] paths;
+        {
+            TreeSet<String> sorted = new TreeSet<String>(CLDRFile.getComparator(DtdType.ldml));
+            for (String path : english) {
+                sorted.add(path);
+            }
+            paths = sorted.toArray(new String[sorted.size()]);
+        }
+        final String[] shuffled;
+        {
+            List<String> list = new ArrayList<String>(Arrays.asList(paths));
+            Collections.shuffle(list, new Random(0)); // fixed seed, so that runs can be compared
+            shuffled = list.toArray(new String[list.size()]);
+        }
+
+        benchmarks.put("XPathParts.parse", new Benchmark() {
+            @Override
+            public int run() {
+                for (String path : paths) {
+                    sink += new XPathParts().addRelative(path).size();
+                }
+                return paths.length;
+            }
+        });
+        benchmarks.put("XPathParts.getFrozenInstance", new Benchmark() {
+            @Override
+            public int run() {
+                for (String path : paths) {
+                    sink += XPathParts.getFrozenInstance(path).size();
+                }
+                return paths.length;
+            }
+        });
+        benchmarks.put("CLDRFile.getDistinguishingXPath", new Benchmark() {
+            @Override
+            public int run() {
+                for (String path : paths) {
+                    sink += CLDRFile.getDistinguishingXPath(path, null).length();
+                }
+                return paths.length;
+            }
+        });
+        benchmarks.put("DtdData.getDtdComparator.sort", new Benchmark() {
+            final Comparator<String> comparator = DtdData.getInstance(DtdType.ldml).getDtdComparator(null);
+
+            @Override
+            public int run() {
+                String[] toSort = shuffled.clone();
+                Arrays.sort(toSort, comparator);
+                sink += toSort[0].length();
+                return toSort.length;
+            }
+        });
+        benchmarks.put("DtdData.getSortKeyComparator.sort", new Benchmark() {
+            final Comparator<String> comparator = DtdData.getInstance(DtdType.ldml).getSortKeyComparator();
+
+            @Override
+            public int run() {
+                String[] toSort = shuffled.clone();
+                Arrays.sort(toSort, comparator);
+                sink += toSort[0].length();
+                return toSort.length;
+            }
+        });
+        benchmarks.put("Factory.make.unresolved", new Benchmark() {
+            @Override
+            public int run() {
+                // a new factory each time, so that the file isn't cached
+                Factory factory = SimpleFactory.make(CLDRPaths.MAIN_DIRECTORY, ".*");
+                sink += factory.make("fr", false).getDtdType().ordinal();
+                return 1;
+            }
+        });
+        benchmarks.put("Factory.make.resolved", new Benchmark() {
+            @Override
+            public int run() {
+                Factory factory = SimpleFactory.make(CLDRPaths.MAIN_DIRECTORY, ".*");
+                sink += factory.make("fr_CA", true).getDtdType().ordinal();
+                return 1;
+            }
+        });
+        benchmarks.put("PathHeader.Factory.fromPath", new Benchmark() {
+            final PathHeader.Factory phf = PathHeader.getFactory(english);
+
+            @Override
+            public int run() {
+                phf.clearCache();
+                for (String path : paths) {
+                    PathHeader pathHeader = phf.fromPath(path);
+                    sink += pathHeader == null ? 0 : pathHeader.getCode().length();
+                }
+                return paths.length;
+            }
+        });
+        benchmarks.put("CoverageLevel2.getLevel", new Benchmark() {
+            final SupplementalDataInfo sdi = config.getSupplementalDataInfo();
+
+            @Override
+            public int run() {
+                CoverageLevel2 coverageLevel = CoverageLevel2.getInstance(sdi, "de");
+                for (String path : paths) {
+                    sink += coverageLevel.getLevel(path).ordinal();
+                }
+                return paths.length;
+            }
+        });
+        benchmarks.put("CoverageLevel2.getLevels.allLocales", new Benchmark() {
+            final SupplementalDataInfo sdi = config.getSupplementalDataInfo();
+            final List<String> pathList = Arrays.asList(paths);
+            final Set<String> locales = config.getCldrFactory().getAvailable();
+
+            @Override
+            public int run() {
+                Map<String, Level[]> levels = CoverageLevel2.getLevels(sdi, locales, pathList, ForkJoinPool.commonPool());
+                sink += levels.size();
+                return locales.size() * paths.length;
+            }
+        });
+        benchmarks.put("VoteResolver.getWinningValue", new Benchmark() {
+            final VoteResolver<String> resolver;
+            {
+                Map<Integer, VoterInfo> voters = new HashMap<Integer, VoterInfo>();
+                voters.put(666, new VoterInfo(Organization.google, VoteResolver.Level.vetter, "J. Smith"));
+                voters.put(555, new VoterInfo(Organization.google, VoteResolver.Level.street, "S. Jones"));
+                voters.put(444, new VoterInfo(Organization.google, VoteResolver.Level.vetter, "S. Samuels"));
+                voters.put(333, new VoterInfo(Organization.apple, VoteResolver.Level.vetter, "A. Mutton"));
+                voters.put(222, new VoterInfo(Organization.adobe, VoteResolver.Level.expert, "A. Aldus"));
+                voters.put(111, new VoterInfo(Organization.ibm, VoteResolver.Level.street, "J. Henry"));
+                VoteResolver.setVoterToInfo(voters);
+                resolver = new VoteResolver<String>();
+                resolver.setLocale("de");
+            }
+
+            @Override
+            public int run() {
+                int count = 10000;
+                for (int i = 0; i < count; ++i) {
+                    resolver.clear();
+                    resolver.setBaileyValue("bailey");
+                    resolver.setTrunk("old", Status.approved);
+                    resolver.add("new", 666);
+                    resolver.add("new", 333);
+                    resolver.add("other", 222);
+                    resolver.add("other", 111);
+                    sink += resolver.getWinningValue().length();
+                }
+                return count;
+            }
+        });
+        benchmarks.put("ExampleGenerator.getExampleHtml", new Benchmark() {
+            final ExampleGenerator exampleGenerator = new ExampleGenerator(english, english, CLDRPaths.SUPPLEMENTAL_DIRECTORY);
+
+            @Override
+            public int run() {
+                for (String path : paths) {
+                    String example = exampleGenerator.getExampleHtml(path, english.getStringValue(path));
+                    sink += example == null ? 0 : example.length();
+                }
+                return paths.length;
+            }
+        });
+    }
+
+    Result measure(String name, Benchmark benchmark, int warmup, int iterations) {
+        for (int i = 0; i < warmup; ++i) {
+            benchmark.run();
+        }
+        double[] samples = new double[iterations];
+        long operations = 0;
+        for (int i = 0; i < iterations; ++i) {
+            long start = System.nanoTime();
+            int count = benchmark.run();
+            samples[i] = (System.nanoTime() - start) / (double) count;
+            operations += count;
+        }
+        return new Result(name, samples, operations);
+    }
+
+    /**
+     * Print the ratio of the new to the old score for each benchmark in both files.
+     */
+    static void compare(File oldFile, File newFile) throws IOException {
+        Map<String, Double> oldScores = readScores(oldFile);
+        Map<String, Double> newScores = readScores(newFile);
+        System.out.println("benchmark\told\tnew\tnew/old");
+        for (Entry<String, Double> entry : newScores.entrySet()) {
+            Double oldScore = oldScores.get(entry.getKey());
+            if (oldScore == null) {
+                continue;
+            }
+            System.out.println(String.format(Locale.ROOT, "%s\t%.1f\t%.1f\t%.2f",
+                entry.getKey(), oldScore, entry.getValue(), entry.getValue() / oldScore));
+        }
+    }
+
+    private static Map<String, Double> readScores(File file) throws IOException {
+        Map<String, Double> result = new TreeMap<String, Double>();
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("#") || line.equals(HEADER)) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                result.put(fields[0], Double.parseDouble(fields[4]));
+            }
+        }
+        return result;
+    }
+}
@@ -1,6 +1,7 @@
 package org.unicode.cldr.unittest;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
@@ -11,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -34,9 +36,13 @@ import org.unicode.cldr.util.LocaleIDParser;
 import org.unicode.cldr.util.PathHeader;
 import org.unicode.cldr.util.PatternCache;
 import org.unicode.cldr.util.SimpleFactory;
+import org.unicode.cldr.util.StringPool;
 import org.unicode.cldr.util.SupplementalDataInfo;
 import org.unicode.cldr.util.SupplementalDataInfo.PluralInfo;
 import org.unicode.cldr.util.SupplementalDataInfo.PluralType;
+import org.unicode.cldr.util.XMLSource;
+import org.unicode.cldr.util.XPathIdTable;
+import org.unicode.cldr.util.XPathParts;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multimap;
@@ -731,4 +737,159 @@ public class TestCLDRFile extends TestFmwk {
         assertTrue("Should be empty", missing.isEmpty());
     }
 
+    public void TestPathIds() {
+        CLDRFile af = testInfo.getCldrFactory().make("af", true);
+        int count = 0;
+        for (PrimitiveIterator.OfInt it = af.idIterator(); it.hasNext();) {
+            int id = it.nextInt();
+            String xpath = XPathIdTable.getPath(id);
+            assertEquals("round trip", id, XPathIdTable.getId(xpath));
+            assertEquals(xpath, af.getStringValue(xpath), af.getStringValue(id));
+            ++count;
+        }
+        assertEquals("path count", af.getPaths("", null, new HashSet<String>()).size(), count);
+        assertEquals("unknown id", null, af.getStringValue(-1));
+    }
+
+    public void TestPathIdGrowth() {
+        // enough new paths to grow the table past its current capacity, at least once
+        int count = Math.max(1 << 15, XPathIdTable.size()) + 1;
+        String prefix = "//ldml/identity/TestPathIdGrowth[@type=\"" + System.nanoTime() + "-";
+        for (int i = 0; i < count; ++i) {
+            String path = prefix + i + "\"]";
+            String interned = XPathIdTable.intern(new String(path));
+            assertEquals("interned", path, interned);
+            if (i % 1000 == 0 || i == count - 1) {
+                assertTrue("canonical", interned == XPathIdTable.intern(path));
+                assertEquals("round trip", interned, XPathIdTable.getPath(XPathIdTable.getId(path)));
+            }
+        }
+    }
+
+    public void TestDistinguishingXPath() {
+        String plain = "//ldml/localeDisplayNames/languages/language[@type=\"fr\"]";
+        // a path not yet in the cache, since the cache returns the first instance it was given
+        String fresh = "//ldml/localeDisplayNames/languages/language[@type=\"x-" + System.nanoTime() + "\"]";
+        String[] normalized = new String[1];
+        assertTrue("already distinguishing", fresh == CLDRFile.getDistinguishingXPath(fresh, normalized));
+        assertTrue("already normalized", fresh == normalized[0]);
+        assertEquals("already distinguishing", plain, CLDRFile.getDistinguishingXPath(plain, normalized));
+        assertEquals("already normalized", plain, normalized[0]);
+
+        assertEquals("draft removed", plain,
+            CLDRFile.getDistinguishingXPath(plain + "[@draft=\"unconfirmed\"]", null));
+
+        String reordered = "//ldml/localeDisplayNames/languages/language[@alt=\"short\"][@type=\"en\"]";
+        assertEquals("attributes in canonical order", XPathParts.getFrozenInstance(reordered).toString(),
+            CLDRFile.getDistinguishingXPath(reordered, null));
+
+        String moved = "//ldml/dates/calendars/calendar[@type=\"gregorian\"][@draft=\"contributed\"]/eras/eraAbbr/era[@type=\"0\"]";
+        assertEquals("draft removed from parent",
+            "//ldml/dates/calendars/calendar[@type=\"gregorian\"]/eras/eraAbbr/era[@type=\"0\"]",
+            CLDRFile.getDistinguishingXPath(moved, normalized));
+        assertEquals("draft moved to leaf",
+            "//ldml/dates/calendars/calendar[@type=\"gregorian\"]/eras/eraAbbr/era[@type=\"0\"][@draft=\"contributed\"]",
+            normalized[0]);
+        logln(CLDRFile.distinguishedXPathStats());
+    }
+
+    public void TestPathCursor() {
+        CLDRFile af = testInfo.getCldrFactory().make("af", true);
+        String prefix = "//ldml/localeDisplayNames/";
+        Set<String> expected = af.getPaths(prefix, null, new HashSet<String>());
+        Set<String> found = new HashSet<String>();
+        for (XMLSource.PathCursor cursor = af.cursor(prefix, false); cursor.next();) {
+            String path = cursor.getPath();
+            assertTrue("unique " + path, found.add(path));
+            assertEquals("value " + path, af.getStringValue(path), cursor.getValue());
+            assertEquals("full path " + path, af.getFullXPath(path), cursor.getFullPath());
+        }
+        assertEquals("hash order paths", expected, found);
+
+        List<String> expectedOrder = new ArrayList<String>();
+        af.iterator(prefix, af.getComparator()).forEachRemaining(expectedOrder::add);
+        List<String> foundOrder = new ArrayList<String>();
+        for (XMLSource.PathCursor cursor = af.cursor(prefix, true); cursor.next();) {
+            foundOrder.add(cursor.getPath());
+        }
+        assertEquals("DTD order paths", expectedOrder, foundOrder);
+    }
+
+    public void TestStringPool() {
+        boolean wasEnabled = StringPool.isEnabled();
+        StringPool.setEnabled(true);
+        try {
+            long savedBefore = StringPool.getBytesSaved();
+            CLDRFile first = SimpleFactory.makeFile("fr", CLDRPaths.MAIN_DIRECTORY, DraftStatus.unconfirmed);
+            CLDRFile second = SimpleFactory.makeFile("fr", CLDRPaths.MAIN_DIRECTORY, DraftStatus.unconfirmed);
+            int count = 0;
+            for (String path : first) {
+                String value = first.getStringValue(path);
+                assertEquals(path, value, second.getStringValue(path));
+                assertTrue("shared value " + path, value == second.getStringValue(path));
+                assertTrue("shared full path " + path, first.getFullXPath(path) == second.getFullXPath(path));
+                ++count;
+            }
+            assertNotEquals("paths", 0, count);
+            assertTrue("bytes saved", StringPool.getBytesSaved() > savedBefore);
+            logln(CLDRFile.memoryStats());
+        } finally {
+            StringPool.setEnabled(wasEnabled);
+        }
+    }
+
+    public void TestIncrementalResolution() {
+        Factory cldrFactory = testInfo.getCldrFactory();
+        TestFactory factory = new TestFactory();
+        factory.addFile(cldrFactory.make("root", false));
+        CLDRFile fr = cldrFactory.make("fr", false).cloneAsThawed();
+        factory.addFile(fr);
+        factory.addFile(cldrFactory.make("fr_CA", false).cloneAsThawed());
+        CLDRFile frCA = factory.make("fr_CA", true);
+
+        String path = "//ldml/localeDisplayNames/languages/language[@type=\"qaa\"]";
+        String altPath = path + "[@alt=\"short\"]";
+        Set<String> keys = new HashSet<String>();
+        frCA.forEach(keys::add);
+        assertFalse("not in key set before", keys.contains(path));
+        assertNull("no alt value before", frCA.getStringValue(altPath));
+
+        // a change in the parent shows up in the child, including paths that fell back to it
+        fr.add(path, "first");
+        keys.clear();
+        frCA.forEach(keys::add);
+        assertTrue("in key set after add", keys.contains(path));
+        assertEquals("inherited value", "first", frCA.getStringValue(path));
+        assertEquals("source locale", "fr", frCA.getSourceLocaleID(path, null));
+        assertEquals("alt fallback", "first", frCA.getStringValue(altPath));
+
+        fr.add(path, "second");
+        assertEquals("changed value", "second", frCA.getStringValue(path));
+        assertEquals("changed alt fallback", "second", frCA.getStringValue(altPath));
+
+        fr.remove(path);
+        keys.clear();
+        frCA.forEach(keys::add);
+        assertFalse("not in key set after remove", keys.contains(path));
+        assertNull("removed value", frCA.getStringValue(path));
+        assertNull("removed alt fallback", frCA.getStringValue(altPath));
+    }
+
+    public void TestFlattenedResolution() {
+        String locale = "fr_CA";
+        CLDRFile expected = testInfo.getCldrFactory().make(locale, true);
+        Factory flatFactory = SimpleFactory.make(CLDRPaths.MAIN_DIRECTORY, ".*").setFlattenResolved(true);
+        CLDRFile flat = flatFactory.make(locale, true);
+        Status expectedStatus = new Status();
+        Status flatStatus = new Status();
+        for (String path : expected.fullIterable()) {
+            assertEquals("value " + path, expected.getStringValue(path), flat.getStringValue(path));
+            assertEquals("full path " + path, expected.getFullXPath(path), flat.getFullXPath(path));
+            assertEquals("locale " + path, expected.getSourceLocaleID(path, expectedStatus), flat.getSourceLocaleID(path, flatStatus));
+            assertEquals("path where found " + path, expectedStatus.pathWhereFound, flatStatus.pathWhereFound);
+        }
+        // paths outside the table still fall back to normal resolution
+        String countPath = "//ldml/numbers/currencies/currency[@type=\"BRZ\"]/displayName[@count=\"many\"]";
+        assertEquals(countPath, expected.getStringValue(countPath), flat.getStringValue(countPath));
+    }
 }
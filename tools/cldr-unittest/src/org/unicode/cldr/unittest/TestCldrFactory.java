@@ -2,20 +2,29 @@ package org.unicode.cldr.unittest;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 
 import org.unicode.cldr.util.CLDRConfig;
 import org.unicode.cldr.util.CLDRFile;
 import org.unicode.cldr.util.CLDRFile.DraftStatus;
+import org.unicode.cldr.util.CLDRFileSnapshot;
 import org.unicode.cldr.util.CLDRPaths;
 import org.unicode.cldr.util.Factory;
 import org.unicode.cldr.util.SimpleFactory;
@@ -23,6 +32,7 @@ import org.unicode.cldr.util.SimpleXMLSource;
 import org.unicode.cldr.util.SupplementalDataInfo;
 
 import com.google.common.base.Objects;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.ibm.icu.dev.util.CollectionUtilities;
 
@@ -56,6 +66,81 @@ public class TestCldrFactory extends TestFmwkPlus {
         assertEquals("", new File(CLDRPaths.MAIN_DIRECTORY), enDir);
     }
 
+    public void testSnapshot() throws IOException {
+        Factory factory = testInfo.getCldrFactory();
+        String locale = "fr";
+        List<File> dirs = factory.getSourceDirectoriesForLocale(locale);
+        CLDRFile original = factory.make(locale, false);
+        File snapshotDir = Files.createTempDirectory("cldr-snapshot").toFile();
+        File snapshotFile = CLDRFileSnapshot.getSnapshotFile(snapshotDir, locale, dirs, DraftStatus.unconfirmed);
+        List<File> sourceFiles = CLDRFileSnapshot.getSourceFiles(locale, dirs);
+        try {
+            CLDRFileSnapshot.write(original, sourceFiles, snapshotFile);
+            CLDRFile restored = CLDRFileSnapshot.read(snapshotFile, sourceFiles);
+            assertNotNull("fresh snapshot should be read", restored);
+            assertEquals("locale", original.getLocaleID(), restored.getLocaleID());
+            assertEquals("dtd type", original.getDtdType(), restored.getDtdType());
+            assertEquals("dtd version", original.getDtdVersionInfo(), restored.getDtdVersionInfo());
+            assertEquals("initial comment", original.getInitialComment(), restored.getInitialComment());
+            Set<String> originalPaths = new TreeSet<>();
+            original.forEach(originalPaths::add);
+            Set<String> restoredPaths = new TreeSet<>();
+            restored.forEach(restoredPaths::add);
+            assertEquals("paths", originalPaths, restoredPaths);
+            for (String path : originalPaths) {
+                assertEquals("value " + path, original.getStringValue(path), restored.getStringValue(path));
+                assertEquals("full path " + path, original.getFullXPath(path), restored.getFullXPath(path));
+            }
+            assertEquals("written XML", cldrFileToString(original, ImmutableMap.of()), cldrFileToString(restored, ImmutableMap.of()));
+
+            // a snapshot made from a file that has changed since must not be used
+            File copy = new File(snapshotDir, locale + ".xml");
+            Files.copy(sourceFiles.get(0).toPath(), copy.toPath());
+            List<File> copyList = Arrays.asList(copy);
+            CLDRFileSnapshot.write(original, copyList, snapshotFile);
+            assertNotNull("fresh copy", CLDRFileSnapshot.read(snapshotFile, copyList));
+            copy.setLastModified(copy.lastModified() - 10000);
+            assertNull("stale copy", CLDRFileSnapshot.read(snapshotFile, copyList));
+        } finally {
+            for (File file : snapshotDir.listFiles()) {
+                file.delete();
+            }
+            snapshotDir.delete();
+        }
+    }
+
+    public void testSingleFlightMake() throws Exception {
+        final SimpleFactory factory = (SimpleFactory) SimpleFactory.make(CLDRPaths.MAIN_DIRECTORY, ".*");
+        final String locale = "sw";
+        final int threads = 8;
+        CacheStats before = factory.getCacheStats();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<CLDRFile>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; ++i) {
+                futures.add(executor.submit(new Callable<CLDRFile>() {
+                    @Override
+                    public CLDRFile call() throws Exception {
+                        start.await();
+                        return factory.make(locale, false, DraftStatus.approved);
+                    }
+                }));
+            }
+            start.countDown();
+            CLDRFile first = futures.get(0).get();
+            for (Future<CLDRFile> future : futures) {
+                assertTrue("same instance for all callers", first == future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        CacheStats delta = factory.getCacheStats().minus(before);
+        logln(delta.toString());
+        assertTrue("at most one load: " + delta, delta.loadCount() <= 1);
+        assertEquals("every request is a hit or a load", threads, delta.requestCount());
+    }
+
     public void testMerge() {
         CLDRFile enMain = testInfo.getCldrFactory().make("en", false);
         assertEquals("no annotations", Status.noAnnotations, checkAnnotations(enMain));
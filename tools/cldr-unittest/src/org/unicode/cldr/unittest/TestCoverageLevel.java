@@ -1,5 +1,9 @@
 package org.unicode.cldr.unittest;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.EnumSet;
@@ -11,6 +15,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 
 import org.unicode.cldr.test.CoverageLevel2;
@@ -38,6 +43,7 @@ import org.unicode.cldr.util.SupplementalDataInfo;
 import org.unicode.cldr.util.SupplementalDataInfo.CurrencyDateInfo;
 import org.unicode.cldr.util.SupplementalDataInfo.OfficialStatus;
 import org.unicode.cldr.util.SupplementalDataInfo.PopulationData;
+import org.unicode.cldr.util.XPathIdTable;
 import org.unicode.cldr.util.XPathParts;
 
 import com.google.common.collect.ImmutableSet;
@@ -322,6 +328,98 @@ public class TestCoverageLevel extends TestFmwkPlus {
         assertEquals("Quick Check for any attribute", Level.MODERN, level);
     }
 
+    public void TestPrecomputedTable() throws IOException {
+        Set<String> paths = new TreeSet<String>();
+        for (String path : ENGLISH) {
+            paths.add(path);
+        }
+        CoverageLevel2 computed = CoverageLevel2.getInstance(SDI, "de");
+        CoverageLevel2 precomputed = CoverageLevel2.getInstance(SDI, "de").precompute(paths);
+        assertRelation("precomputed", true, precomputed.getPrecomputedCount(), GEQ, paths.size());
+        for (String path : paths) {
+            assertEquals(path, computed.getLevel(path), precomputed.getPrecomputedLevel(path));
+        }
+
+        File tableFile = File.createTempFile("coverage-de", ".coverage");
+        try {
+            precomputed.writeTable(tableFile);
+            CoverageLevel2 reloaded = CoverageLevel2.getInstance(SDI, "de");
+            assertTrue("reloaded", reloaded.readTable(tableFile));
+            for (String path : paths) {
+                assertEquals(path, computed.getLevel(path), reloaded.getPrecomputedLevel(path));
+            }
+            assertFalse("other locale", CoverageLevel2.getInstance(SDI, "fr").readTable(tableFile));
+        } finally {
+            tableFile.delete();
+        }
+    }
+
+    public void TestCoverageCache() {
+        Set<String> paths = new TreeSet<String>();
+        for (String path : ENGLISH) {
+            paths.add(path);
+        }
+        List<String> locales = Arrays.asList("sw", "zu");
+        SDI.preloadCoverageCache(locales, paths);
+        long hits = SDI.getCoverageCacheStats().hitCount();
+        for (String locale : locales) {
+            CoverageLevel2 coverageLevel = CoverageLevel2.getInstance(SDI, locale);
+            for (String path : paths) {
+                assertEquals(locale + ", " + path, coverageLevel.getLevel(path), SDI.getCoverageLevel(path, locale));
+            }
+        }
+        assertRelation("cache hits", true, SDI.getCoverageCacheStats().hitCount() - hits, GEQ, (long) locales.size() * paths.size());
+        assertTrue("recent locales", SDI.getRecentCoverageLocales().containsAll(locales));
+
+        // a path that was never seen gets its level without being given an ID
+        String unknown = "//ldml/localeDisplayNames/languages/language[@type=\"xx_TestCoverageCache\"]";
+        int size = XPathIdTable.size();
+        assertEquals("unknown path", CoverageLevel2.getInstance(SDI, "sw").getLevel(unknown), SDI.getCoverageLevel(unknown, "sw"));
+        assertEquals("no new IDs", -1, XPathIdTable.getExistingId(unknown));
+        assertEquals("ID count", size, XPathIdTable.size());
+    }
+
+    public void TestBulkLevels() {
+        List<String> paths = new ArrayList<String>();
+        for (String path : ENGLISH.fullIterable()) {
+            paths.add(path);
+        }
+        List<String> locales = Arrays.asList("de", "fr_CA", "ja", "sw", "zu", "sr_Latn");
+        Map<String, Level[]> bulk = CoverageLevel2.getLevels(SDI, locales, paths, ForkJoinPool.commonPool());
+        assertEquals("locales", locales, new ArrayList<String>(bulk.keySet()));
+        for (String locale : locales) {
+            CoverageLevel2 coverageLevel = CoverageLevel2.getInstance(SDI, locale);
+            Level[] levels = bulk.get(locale);
+            for (int i = 0; i < paths.size(); ++i) {
+                assertEquals(locale + ", " + paths.get(i), coverageLevel.getLevel(paths.get(i)), levels[i]);
+            }
+            int total = 0;
+            for (int count : CoverageLevel2.getHistogram(levels)) {
+                total += count;
+            }
+            assertEquals("histogram", paths.size(), total);
+        }
+        Level[] single = CoverageLevel2.getInstance(SDI, "ja").getLevels(paths, ForkJoinPool.commonPool());
+        assertEquals("single locale", Arrays.asList(bulk.get("ja")), Arrays.asList(single));
+
+        int[] ids = new int[paths.size()];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = XPathIdTable.getId(paths.get(i));
+        }
+        Level[] byId = CoverageLevel2.getInstance(SDI, "ja").getLevels(ids, ForkJoinPool.commonPool());
+        assertEquals("by ID", Arrays.asList(single), Arrays.asList(byId));
+
+        CLDRFile file = testInfo.getCLDRFile("ja", false);
+        Map<String, Level> byFile = CoverageLevel2.getInstance(SDI, "ja").getLevels(file, ForkJoinPool.commonPool());
+        CoverageLevel2 ja = CoverageLevel2.getInstance(SDI, "ja");
+        int count = 0;
+        for (String path : file) {
+            assertEquals("by file, " + path, ja.getLevel(path), byFile.get(path));
+            ++count;
+        }
+        assertEquals("by file, size", count, byFile.size());
+    }
+
     public void TestCoverageCompleteness() {
         /**
          * Check that English paths are, except for known cases, at least modern coverage.
@@ -6,10 +6,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
@@ -24,7 +26,9 @@ import org.unicode.cldr.util.DtdType;
 import org.unicode.cldr.util.Pair;
 import org.unicode.cldr.util.SupplementalDataInfo;
 import org.unicode.cldr.util.XMLFileReader;
+import org.unicode.cldr.util.XPathIdTable;
 import org.unicode.cldr.util.XPathParts;
+import org.unicode.cldr.util.XPathView;
 
 import com.google.common.collect.Multimap;
 import com.google.common.collect.TreeMultimap;
@@ -315,6 +319,94 @@ public class TestDtdData extends TestFmwk {
         }
     }
 
+    public void TestXPathView() {
+        XPathView view = new XPathView();
+        List<String> paths = new ArrayList<String>();
+        for (String path : testInfo.getEnglish()) {
+            paths.add(path);
+            XPathParts parts = XPathParts.getFrozenInstance(path);
+            view.set(path);
+            if (!assertEquals(path, parts.size(), view.size())) {
+                continue;
+            }
+            for (int i = 0; i < parts.size(); ++i) {
+                assertEquals(path, parts.getElement(i), view.getElement(i));
+                assertTrue(path, view.elementEquals(i, parts.getElement(i)));
+                assertEquals(path, parts.getAttributeCount(i), view.getAttributeCount(i));
+                for (Entry<String, String> attribute : parts.getAttributes(i).entrySet()) {
+                    assertEquals(path, attribute.getValue(), view.getAttributeValue(i, attribute.getKey()));
+                    assertTrue(path, view.attributeValueEquals(i, attribute.getKey(), attribute.getValue()));
+                }
+            }
+            assertEquals(path, parts.getElement(-1), view.getElement(-1));
+            for (String element : Arrays.asList("numbers", "territory", "zone")) {
+                assertEquals(path + ", " + element, parts.findElement(element), view.findElement(element));
+            }
+        }
+        view.set("//ldml/localeDisplayNames/territories/territory[@type=\"HK\"][@alt=\"short\"]");
+        assertEquals("without alt", "//ldml/localeDisplayNames/territories/territory[@type=\"HK\"]",
+            view.getPathWithoutAttribute(-1, view.findAttribute(-1, "alt")));
+        assertEquals("without type", "//ldml/localeDisplayNames/territories/territory[@alt=\"short\"]",
+            view.getPathWithoutAttribute(-1, 0));
+        for (String bad : Arrays.asList("/ldml", "//ldml[", "//ldml/numbers[@type=\"x\"", "//ldml//numbers")) {
+            try {
+                view.set(bad);
+                errln("Should fail: " + bad);
+            } catch (IllegalArgumentException e) {
+                logln(e.getMessage());
+            }
+        }
+
+        // the comparator reads paths with views; check that it is still a consistent order
+        Comparator<String> comparator = DtdData.getInstance(DtdType.ldml).getDtdComparator(null);
+        Collections.sort(paths, comparator);
+        for (int i = 1; i < paths.size(); ++i) {
+            String path1 = paths.get(i - 1);
+            String path2 = paths.get(i);
+            assertTrue(path1 + " < " + path2, comparator.compare(path1, path2) < 0);
+            assertTrue(path2 + " > " + path1, comparator.compare(path2, path1) > 0);
+        }
+    }
+
+    public void TestSortKeys() {
+        DtdData dtdData = DtdData.getInstance(DtdType.ldml);
+        Comparator<String> dtdComparator = dtdData.getDtdComparator(null);
+        Comparator<String> sortKeyComparator = dtdData.getSortKeyComparator();
+        List<String> paths = new ArrayList<String>();
+        for (String path : testInfo.getEnglish()) {
+            paths.add(path);
+            paths.add(testInfo.getEnglish().getFullXPath(path));
+        }
+        // fake elements, used in diffing, fall back to the DTD comparator
+        paths.add("//ldml/_fake");
+        paths.add("//ldml/_other");
+
+        Collections.shuffle(paths, new Random(0));
+        List<String> expected = new ArrayList<String>(paths);
+        Collections.sort(expected, dtdComparator);
+        List<String> actual = new ArrayList<String>(paths);
+        Collections.sort(actual, sortKeyComparator);
+        assertEquals("sort key order", expected, actual);
+
+        for (int i = 1; i < paths.size(); ++i) {
+            String path1 = paths.get(i - 1);
+            String path2 = paths.get(i);
+            assertEquals(path1 + " vs " + path2, Integer.signum(dtdComparator.compare(path1, path2)),
+                Integer.signum(dtdData.getSortKey(path1).compareTo(dtdData.getSortKey(path2))));
+        }
+        assertEquals("cached", dtdData.getSortKey(paths.get(0)), dtdData.getSortKey(paths.get(0)));
+        String unknown = "//ldml/localeDisplayNames/languages/language[@type=\"xx_TestSortKeys\"]";
+        int size = XPathIdTable.size();
+        dtdData.getSortKey(unknown);
+        assertEquals("no new IDs", size, XPathIdTable.size());
+        try {
+            dtdData.getSortKey("//supplementalData/version");
+            errln("Should fail: different DTD");
+        } catch (IllegalArgumentException e) {
+            logln(e.getMessage());
+        }
+    }
+
 //    public void TestNonLeafValues() {
 //        for (DtdType type : DtdType.values()) {
 //            if (type == DtdType.ldmlICU) {
@@ -1,9 +1,11 @@
 package org.unicode.cldr.unittest;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -16,6 +18,9 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 
 import org.unicode.cldr.test.CoverageLevel2;
@@ -143,85 +148,91 @@ public class TestPathHeader extends TestFmwkPlus {
     public void TestCompleteness() {
         PathHeader.Factory pathHeaderFactory2 = PathHeader.getFactory(english);
         // List<String> failures = null;
-        pathHeaderFactory2.clearCache();
-        Multimap<PathHeader.PageId, PathHeader.SectionId> pageUniqueness = TreeMultimap.create();
-        Multimap<String, Pair<PathHeader.SectionId, PathHeader.PageId>> headerUniqueness = TreeMultimap.create();
-        Set<String> toTest;
-        switch (getInclusion()) {
-        default:
-            toTest = StandardCodes.make().getLocaleCoverageLocales(Organization.cldr);
-            break;
-        case 10:
-            toTest = factory.getAvailable();
-            break;
-        }
-        toTest = ImmutableSet.<String> builder().add("en").addAll(toTest).build();
-        Set<String> seenPaths = new HashSet<>();
-        Set<String> localSeenPaths = new TreeSet<>();
-        for (String locale : toTest) {
-            localSeenPaths.clear();
-            for (String p : factory.make(locale, true).fullIterable()) {
-                if (p.startsWith("//ldml/identity/")) {
-                    continue;
-                }
-                if (seenPaths.contains(p)) {
-                    continue;
-                }
-                seenPaths.add(p);
-                localSeenPaths.add(p);
-                // if (p.contains("symbol[@alt") && failures == null) {
-                // PathHeader result = pathHeaderFactory2.fromPath(p, failures = new
-                // ArrayList<String>());
-                // logln("Matching " + p + ": " + result + "\t" +
-                // result.getSurveyToolStatus());
-                // for (String failure : failures) {
-                // logln("\t" + failure);
-                // }
-                // }
-                PathHeader ph;
-                try {
-                    ph = pathHeaderFactory2.fromPath(p);
-                } catch (Exception e1) {
-                    throw new IllegalArgumentException(locale + ":\t" + p);
-                }
-                if (ph == null) {
-                    errln("Failed to create path from: " + p);
-                    continue;
+        boolean wasCollecting = PathHeader.Factory.isCollectingDiagnostics();
+        PathHeader.Factory.setCollectDiagnostics(true);
+        try {
+            pathHeaderFactory2.clearCache();
+            Multimap<PathHeader.PageId, PathHeader.SectionId> pageUniqueness = TreeMultimap.create();
+            Multimap<String, Pair<PathHeader.SectionId, PathHeader.PageId>> headerUniqueness = TreeMultimap.create();
+            Set<String> toTest;
+            switch (getInclusion()) {
+            default:
+                toTest = StandardCodes.make().getLocaleCoverageLocales(Organization.cldr);
+                break;
+            case 10:
+                toTest = factory.getAvailable();
+                break;
+            }
+            toTest = ImmutableSet.<String> builder().add("en").addAll(toTest).build();
+            Set<String> seenPaths = new HashSet<>();
+            Set<String> localSeenPaths = new TreeSet<>();
+            for (String locale : toTest) {
+                localSeenPaths.clear();
+                for (String p : factory.make(locale, true).fullIterable()) {
+                    if (p.startsWith("//ldml/identity/")) {
+                        continue;
+                    }
+                    if (seenPaths.contains(p)) {
+                        continue;
+                    }
+                    seenPaths.add(p);
+                    localSeenPaths.add(p);
+                    // if (p.contains("symbol[@alt") && failures == null) {
+                    // PathHeader result = pathHeaderFactory2.fromPath(p, failures = new
+                    // ArrayList<String>());
+                    // logln("Matching " + p + ": " + result + "\t" +
+                    // result.getSurveyToolStatus());
+                    // for (String failure : failures) {
+                    // logln("\t" + failure);
+                    // }
+                    // }
+                    PathHeader ph;
+                    try {
+                        ph = pathHeaderFactory2.fromPath(p);
+                    } catch (Exception e1) {
+                        throw new IllegalArgumentException(locale + ":\t" + p);
+                    }
+                    if (ph == null) {
+                        errln("Failed to create path from: " + p);
+                        continue;
+                    }
+                    final SectionId sectionId = ph.getSectionId();
+                    if (sectionId != SectionId.Special) {
+                        pageUniqueness.put(ph.getPageId(), sectionId);
+                        headerUniqueness.put(ph.getHeader(), new Pair<>(sectionId, ph.getPageId()));
+                    }
                 }
-                final SectionId sectionId = ph.getSectionId();
-                if (sectionId != SectionId.Special) {
-                    pageUniqueness.put(ph.getPageId(), sectionId);
-                    headerUniqueness.put(ph.getHeader(), new Pair<>(sectionId, ph.getPageId()));
+                if (!localSeenPaths.isEmpty()) {
+                    logln(locale + ": checked " + localSeenPaths.size() + " new paths");
                 }
             }
-            if (!localSeenPaths.isEmpty()) {
-                logln(locale + ": checked " + localSeenPaths.size() + " new paths");
-            }
-        }
-        Set<String> missing = pathHeaderFactory2.getUnmatchedRegexes();
-        if (missing.size() != 0) {
-            for (String e : missing) {
-                if (e.contains("//ldml/")) {
-                    if (e.contains("//ldml/rbnf/") || e.contains("//ldml/segmentations/") || e.contains("//ldml/collations/")) {
-                        continue;
+            Set<String> missing = pathHeaderFactory2.getUnmatchedRegexes();
+            if (missing.size() != 0) {
+                for (String e : missing) {
+                    if (e.contains("//ldml/")) {
+                        if (e.contains("//ldml/rbnf/") || e.contains("//ldml/segmentations/") || e.contains("//ldml/collations/")) {
+                            continue;
+                        }
+                        logln("Path Regex never matched:\t" + e);
                     }
-                    logln("Path Regex never matched:\t" + e);
                 }
             }
-        }
 
-        for (Entry<PageId, Collection<SectionId>> e : pageUniqueness.asMap().entrySet()) {
-            Collection<SectionId> values = e.getValue();
-            if (values.size() != 1) {
-                warnln("Duplicate page in section: " + CldrUtility.toString(e));
+            for (Entry<PageId, Collection<SectionId>> e : pageUniqueness.asMap().entrySet()) {
+                Collection<SectionId> values = e.getValue();
+                if (values.size() != 1) {
+                    warnln("Duplicate page in section: " + CldrUtility.toString(e));
+                }
             }
-        }
 
-        for (Entry<String, Collection<Pair<SectionId, PageId>>> e : headerUniqueness.asMap().entrySet()) {
-            Collection<Pair<SectionId, PageId>> values = e.getValue();
-            if (values.size() != 1) {
-                warnln("Duplicate header in (section,page): " + CldrUtility.toString(e));
+            for (Entry<String, Collection<Pair<SectionId, PageId>>> e : headerUniqueness.asMap().entrySet()) {
+                Collection<Pair<SectionId, PageId>> values = e.getValue();
+                if (values.size() != 1) {
+                    warnln("Duplicate header in (section,page): " + CldrUtility.toString(e));
+                }
             }
+        } finally {
+            PathHeader.Factory.setCollectDiagnostics(wasCollecting);
         }
     }
 
@@ -1106,6 +1117,71 @@ public class TestPathHeader extends TestFmwkPlus {
         assertTrue("Check pd for stand-alone", !p1.contains("in the morning"));
     }
 
+    public void TestPathHeaderTable() throws IOException {
+        Map<String, PathHeader> expected = new LinkedHashMap<String, PathHeader>();
+        for (String path : english.fullIterable()) {
+            PathHeader pathHeader = pathHeaderFactory.fromPath(path);
+            if (pathHeader != null) {
+                expected.put(path, pathHeader);
+            }
+        }
+        File tableFile = File.createTempFile("PathHeader", ".table");
+        try {
+            assertEquals("written", expected.size(), pathHeaderFactory.writeTable(expected.keySet(), tableFile));
+            pathHeaderFactory.clearCache();
+            assertEquals("loaded", expected.size(), PathHeader.Factory.loadTable(tableFile));
+        } finally {
+            tableFile.delete();
+        }
+        for (Entry<String, PathHeader> entry : expected.entrySet()) {
+            PathHeader loaded = pathHeaderFactory.fromPath(entry.getKey());
+            PathHeader original = entry.getValue();
+            if (!assertEquals(entry.getKey(), original, loaded)) {
+                continue;
+            }
+            assertEquals(entry.getKey(), 0, original.compareTo(loaded));
+            assertEquals(entry.getKey(), original.getSurveyToolStatus(), loaded.getSurveyToolStatus());
+        }
+    }
+
+    public void TestConcurrentFromPath() throws InterruptedException {
+        final List<String> paths = new ArrayList<String>();
+        final Map<String, PathHeader> expected = new HashMap<String, PathHeader>();
+        pathHeaderFactory.clearCache();
+        for (String path : english.fullIterable()) {
+            paths.add(path);
+            expected.put(path, pathHeaderFactory.fromPath(path));
+        }
+        final int threads = 8;
+        final List<String> mismatches = Collections.synchronizedList(new ArrayList<String>());
+        // each round starts cold, so the threads race on the regex lookup and not just the cache
+        for (int round = 0; round < 3 && mismatches.isEmpty(); ++round) {
+            pathHeaderFactory.clearCache();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            for (int t = 0; t < threads; ++t) {
+                final int offset = t * paths.size() / threads;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < paths.size(); ++i) {
+                            String path = paths.get((i + offset) % paths.size());
+                            PathHeader pathHeader = pathHeaderFactory.fromPath(path);
+                            PathHeader original = expected.get(path);
+                            if (original == null ? pathHeader != null
+                                : !original.equals(pathHeader) || original.compareTo(pathHeader) != 0) {
+                                mismatches.add(path + "\t" + original + "\t" + pathHeader);
+                            }
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue("finished", executor.awaitTermination(10, TimeUnit.MINUTES));
+        }
+        assertEquals("mismatches", Collections.<String> emptyList(),
+            mismatches.subList(0, Math.min(10, mismatches.size())));
+    }
+
     public void TestCompletenessNonLdmlDtd() {
         PathChecker pathChecker = new PathChecker();
         Set<String> directories = new LinkedHashSet<>();
@@ -1,20 +1,41 @@
 package org.unicode.cldr.unittest;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.unicode.cldr.util.CLDRConfig;
 import org.unicode.cldr.util.CLDRFile;
+import org.unicode.cldr.util.CLDRFile.DraftStatus;
+import org.unicode.cldr.util.CLDRPaths;
 import org.unicode.cldr.util.DtdData;
 import org.unicode.cldr.util.DtdData.AttributeValueComparator;
 import org.unicode.cldr.util.DtdType;
+import org.unicode.cldr.util.Factory;
+import org.unicode.cldr.util.PathHeader;
+import org.unicode.cldr.util.RegexLookup;
+import org.unicode.cldr.util.RegexLookup.Finder;
+import org.unicode.cldr.util.RegexLookup.LookupType;
+import org.unicode.cldr.util.SimpleFactory;
 import org.unicode.cldr.util.Timer;
 import org.unicode.cldr.util.XPathParts;
 
+import com.google.common.cache.CacheStats;
 import com.ibm.icu.dev.util.CollectionUtilities;
 import com.ibm.icu.util.Output;
 
@@ -133,6 +154,227 @@ public class TestPerf extends TestFmwkPlus {
         assertEquals("", elementSize, size / ITERATIONS);
     }
 
+    /**
+     * Time the cache misses (and then hits) of CLDRFile.getDistinguishingXPath on new variants of the English paths,
+     * and check that the scan for paths that are already distinguishing agrees with the full computation.
+     */
+    public void TestDistinguishingXPathMisses() {
+        String token = "perf" + System.nanoTime();
+        List<String> variants = new ArrayList<String>();
+        for (String p : testPaths) {
+            XPathParts parts = XPathParts.getFrozenInstance(p);
+            try {
+                if (p.contains("[@alt=") || !parts.getDtdData().isDistinguishing(parts.getElement(-1), "alt")) {
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                continue; // no alt attribute on this element
+            }
+            variants.add(p + "[@alt=\"" + token + "\"]");
+        }
+        Timer t = new Timer();
+        t.start();
+        for (String p : variants) {
+            CLDRFile.getDistinguishingXPath(p, null);
+        }
+        long missDuration = t.stop();
+        t.start();
+        for (String p : variants) {
+            CLDRFile.getDistinguishingXPath(p, null);
+        }
+        long hitDuration = t.stop();
+        logln("paths: " + variants.size()
+            + "\tmiss: " + missDuration / variants.size() + " ns/path"
+            + "\thit: " + hitDuration / variants.size() + " ns/path"
+            + "\t" + CLDRFile.distinguishedXPathStats());
+        // a draft attribute on the last element takes the full computation, which must agree with the scan
+        String[] normalized = new String[1];
+        for (String p : testPaths) {
+            String distinguishing = CLDRFile.getDistinguishingXPath(p, normalized);
+            assertEquals(p, XPathParts.getFrozenInstance(p).toString(), distinguishing);
+            assertEquals(p, p, normalized[0]);
+            assertEquals(p, distinguishing, CLDRFile.getDistinguishingXPath(p + "[@draft=\"contributed\"]", null));
+        }
+        for (String p : variants) {
+            assertEquals(p, XPathParts.getFrozenInstance(p).toString(), CLDRFile.getDistinguishingXPath(p, null));
+        }
+    }
+
+    /**
+     * Time lookups of the English paths against the PathHeader rules for each LookupType,
+     * and check that the compiled lookup gets the same results as the standard one.
+     */
+    public void TestRegexLookupTypes() {
+        Map<LookupType, RegexLookup<String>> lookups = new LinkedHashMap<LookupType, RegexLookup<String>>();
+        for (LookupType type : LookupType.values()) {
+            lookups.put(type, RegexLookup.<String> of(type, RegexLookup.RegexFinderTransformPath)
+                .loadFromFile(PathHeader.class, "data/PathHeader.txt"));
+        }
+        Map<LookupType, Long> durations = new LinkedHashMap<LookupType, Long>();
+        Output<String[]> arguments = new Output<String[]>();
+        Timer t = new Timer();
+        for (Entry<LookupType, RegexLookup<String>> entry : lookups.entrySet()) {
+            RegexLookup<String> lookup = entry.getValue();
+            lookup.get(sortedArray[0], null, arguments); // compile, if needed
+            t.start();
+            for (int i = 0; i < ITERATIONS; ++i) {
+                for (String p : sortedArray) {
+                    lookup.get(p, null, arguments);
+                }
+            }
+            durations.put(entry.getKey(), t.stop());
+        }
+        for (Entry<LookupType, Long> entry : durations.entrySet()) {
+            logln(entry.getKey() + ":\t" + entry.getValue() / (ITERATIONS * (long) sortedArray.length) + " ns/path");
+        }
+
+        RegexLookup<String> standard = lookups.get(LookupType.STANDARD);
+        RegexLookup<String> compiled = lookups.get(LookupType.COMPILED_PATTERN_LOOKUP);
+        assertEquals("size", standard.size(), compiled.size());
+        Output<String[]> compiledArguments = new Output<String[]>();
+        for (String p : sortedArray) {
+            arguments.value = null;
+            compiledArguments.value = null;
+            String expected = standard.get(p, null, arguments);
+            if (!assertEquals(p, expected, compiled.get(p, null, compiledArguments))) {
+                continue;
+            }
+            if (expected != null) {
+                assertEquals(p, Arrays.asList(arguments.value), Arrays.asList(compiledArguments.value));
+            }
+        }
+    }
+
+    /**
+     * For each LookupType, check that the first of the candidates whose finder finds a path has the value that get returns.
+     */
+    public void TestRegexLookupCandidates() {
+        for (LookupType type : LookupType.values()) {
+            RegexLookup<String> lookup = RegexLookup.<String> of(type, RegexLookup.RegexFinderTransformPath)
+                .loadFromFile(PathHeader.class, "data/PathHeader.txt");
+            for (String p : sortedArray) {
+                String found = null;
+                for (Entry<Finder, String> candidate : lookup.getCandidates(p)) {
+                    if (candidate.getKey().find(p, null, null)) {
+                        found = candidate.getValue();
+                        break;
+                    }
+                }
+                if (!assertEquals(type + ", " + p, lookup.get(p), found)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compare multi-threaded parse throughput of the lock-free getFrozenInstance
+     * against the same calls serialized on one monitor (as getFrozenInstance used to be).
+     * The timings depend on the machine, so they are only logged.
+     */
+    public void TestFrozenInstanceThreads() throws InterruptedException {
+        final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        final Object monitor = new Object();
+        long serialized = timeThreads(threads, monitor);
+        long lockFree = timeThreads(threads, null);
+        CacheStats stats = XPathParts.getFrozenInstanceStats();
+        logln("threads: " + threads
+            + "\tserialized: " + serialized / 1000000.0 + " ms"
+            + "\tlock-free: " + lockFree / 1000000.0 + " ms"
+            + "\tratio: " + (double) lockFree / serialized
+            + "\t" + stats);
+        assertRelation("cache size", true, XPathParts.getFrozenInstanceCacheSize(), GEQ, (long) testPaths.size());
+    }
+
+    private long timeThreads(int threads, final Object monitor) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger size = new AtomicInteger();
+        for (int t = 0; t < threads; ++t) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    int localSize = 0;
+                    for (int i = 0; i < ITERATIONS; ++i) {
+                        for (String p : testPaths) {
+                            if (monitor == null) {
+                                localSize += XPathParts.getFrozenInstance(p).size();
+                            } else {
+                                synchronized (monitor) {
+                                    localSize += XPathParts.getFrozenInstance(p).size();
+                                }
+                            }
+                        }
+                    }
+                    size.addAndGet(localSize);
+                }
+            });
+        }
+        Timer t = new Timer();
+        t.start();
+        start.countDown();
+        executor.shutdown();
+        assertTrue("finished", executor.awaitTermination(10, TimeUnit.MINUTES));
+        long duration = t.stop();
+        assertEquals("", elementSize * threads, size.get() / ITERATIONS);
+        return duration;
+    }
+
+    /**
+     * Time loading common/main one locale at a time against Factory.makeAll.
+     * Only a sample of locales is loaded unless the inclusion level is above 5.
+     */
+    public void TestMakeAll() {
+        Set<String> locales = SimpleFactory.make(CLDRPaths.MAIN_DIRECTORY, ".*").getAvailable();
+        if (getInclusion() <= 5) {
+            Set<String> sample = new TreeSet<String>();
+            for (String locale : locales) {
+                if (sample.size() >= 50) {
+                    break;
+                }
+                sample.add(locale);
+            }
+            locales = sample;
+        }
+
+        // fresh factories, so that nothing is cached
+        Factory serialFactory = SimpleFactory.make(CLDRPaths.MAIN_DIRECTORY, ".*");
+        Timer t = new Timer();
+        t.start();
+        Map<String, CLDRFile> serial = new TreeMap<String, CLDRFile>();
+        for (String locale : locales) {
+            serial.put(locale, serialFactory.make(locale, true));
+        }
+        long serialDuration = t.stop();
+
+        Factory bulkFactory = SimpleFactory.make(CLDRPaths.MAIN_DIRECTORY, ".*");
+        t.start();
+        Map<String, CLDRFile> bulk = bulkFactory.makeAll(locales, true, DraftStatus.unconfirmed, ForkJoinPool.commonPool());
+        long bulkDuration = t.stop();
+
+        logln("locales: " + locales.size()
+            + "\tserial: " + serialDuration / 1000000.0 + " ms"
+            + "\tmakeAll: " + bulkDuration / 1000000.0 + " ms");
+        assertEquals("locales", serial.keySet(), bulk.keySet());
+        String path = "//ldml/localeDisplayNames/languages/language[@type=\"fr\"]";
+        for (String locale : locales) {
+            assertEquals(locale, serial.get(locale).getStringValue(path), bulk.get(locale).getStringValue(path));
+            // the same files as make() (which may be another instance, if the factory cache has evicted it)
+            CLDRFile made = bulkFactory.make(locale, true, DraftStatus.unconfirmed);
+            assertEquals(locale + " frozen", made.isFrozen(), bulk.get(locale).isFrozen());
+            for (String p : made.fullIterable()) {
+                if (!assertEquals(locale + " " + p, made.getStringValue(p), bulk.get(locale).getStringValue(p))) {
+                    break;
+                }
+            }
+        }
+    }
+
     public void TestXPathPartsWithComparators() {
         for (String path : sortedArray) {
             XPathParts newParts = XPathParts.getFrozenInstance(path);
@@ -8,11 +8,14 @@ package org.unicode.cldr.unittest;
  * cldr/tools/cldr-unittest/src/org/unicode/cldr/unittest/TestUtilities.java 
  */
 
+import java.io.File;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -22,6 +25,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.unicode.cldr.tool.ConvertLanguageData.InverseComparator;
 import org.unicode.cldr.util.CLDRConfig;
@@ -38,10 +42,13 @@ import org.unicode.cldr.util.PathHeader;
 import org.unicode.cldr.util.PathHeader.PageId;
 import org.unicode.cldr.util.PatternCache;
 import org.unicode.cldr.util.PluralSamples;
+import org.unicode.cldr.util.RegexLookup;
+import org.unicode.cldr.util.SimpleXMLSource;
 import org.unicode.cldr.util.SpecialLocales;
 import org.unicode.cldr.util.StringId;
 import org.unicode.cldr.util.SupplementalDataInfo;
 import org.unicode.cldr.util.SupplementalDataInfo.PluralInfo.Count;
+import org.unicode.cldr.util.VettingViewer;
 import org.unicode.cldr.util.VettingViewer.Choice;
 import org.unicode.cldr.util.VettingViewer.VoteStatus;
 import org.unicode.cldr.util.VoteResolver;
@@ -49,6 +56,7 @@ import org.unicode.cldr.util.VoteResolver.CandidateInfo;
 import org.unicode.cldr.util.VoteResolver.Level;
 import org.unicode.cldr.util.VoteResolver.Status;
 import org.unicode.cldr.util.VoteResolver.VoterInfo;
+import org.unicode.cldr.util.XMLSource;
 import org.unicode.cldr.util.XMLUploader;
 import org.unicode.cldr.util.props.ICUPropertyFactory;
 
@@ -59,6 +67,7 @@ import com.ibm.icu.lang.UCharacter;
 import com.ibm.icu.lang.UProperty;
 import com.ibm.icu.text.Collator;
 import com.ibm.icu.text.UnicodeSet;
+import com.ibm.icu.util.Output;
 import com.ibm.icu.util.ULocale;
 
 public class TestUtilities extends TestFmwkPlus {
@@ -143,6 +152,64 @@ public class TestUtilities extends TestFmwkPlus {
         }
     }
 
+    public void TestStringIds() {
+        List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < 1000; ++i) {
+            strings.add("//ldml/test[@id=\"" + i + "\"]");
+        }
+        long[] ids = StringId.getIds(strings);
+        assertEquals("count", strings.size(), ids.length);
+        for (int i = 0; i < ids.length; ++i) {
+            String string = strings.get(i);
+            assertEquals(string, StringId.getId(string), ids[i]);
+            assertEquals(string, string, StringId.getStringFromId(ids[i]));
+            assertEquals(string, string, StringId.getStringFromHexId(StringId.getHexId(string)));
+        }
+        assertTrue("cache hits", StringId.getCacheStats().hitCount() >= ids.length);
+    }
+
+    public void TestPatternCache() throws IOException {
+        boolean wasRecording = PatternCache.isRecordStatistics();
+        PatternCache.setRecordStatistics(true);
+        try {
+            String regex = "a b # TestPatternCache " + System.nanoTime();
+            Pattern plain = PatternCache.get(regex);
+            Pattern comments = PatternCache.get(regex, Pattern.COMMENTS);
+            assertNotSame("flags are part of the key", plain, comments);
+            assertSame("cached", comments, PatternCache.get(regex, Pattern.COMMENTS));
+            assertTrue("comments", comments.matcher("ab").matches());
+
+            boolean found = false;
+            for (String callSite : PatternCache.getTopCallSites(Integer.MAX_VALUE).keySet()) {
+                found |= callSite.contains("TestPatternCache");
+            }
+            assertTrue("call site recorded", found);
+
+            File bundle = File.createTempFile("patterns", ".bin");
+            try {
+                int written = PatternCache.writeBundle(bundle);
+                assertTrue("written", written > 0);
+                assertEquals("prewarmed", written, PatternCache.prewarm(bundle));
+            } finally {
+                bundle.delete();
+            }
+        } finally {
+            PatternCache.setRecordStatistics(wasRecording);
+        }
+    }
+
+    public void TestRegexLookupDefault() {
+        // the default lookup is a RegexTree, whose root has an empty pattern
+        RegexLookup<String> lookup = RegexLookup.<String> of()
+            .add("//ldml/localeDisplayNames/territories/territory\\[@type=\"([^\"]*)\"]", "territory")
+            .add("//ldml/localeDisplayNames/languages/language\\[@type=\"([^\"]*)\"]", "language");
+        Output<String[]> arguments = new Output<String[]>();
+        assertEquals("territory", "territory",
+            lookup.get("//ldml/localeDisplayNames/territories/territory[@type=\"SX\"]", null, arguments));
+        assertEquals("argument", "SX", arguments.value[1]);
+        assertNull("no match", lookup.get("//ldml/numbers/defaultNumberingSystem"));
+    }
+
     public void TestUrlEscape() {
         Matcher byte1 = PatternCache.get("%[A-Za-z0-9]{2}").matcher("");
         Matcher byte2 = PatternCache.get("%[A-Za-z0-9]{2}%[A-Za-z0-9]{2}")
@@ -225,6 +292,80 @@ public class TestUtilities extends TestFmwkPlus {
         assertEquals("otherCounter weLost", 0, otherCounter.get(Choice.weLost));
     }
 
+    public void TestVettingViewerRowCache() {
+        final String locale = "fr_CA";
+        VettingViewer<Organization> vv = makeVettingViewer(testInfo.getCldrFactory());
+        String expected = getDashboard(vv, locale);
+
+        final VettingViewer.RowCache cache = new VettingViewer.RowCache();
+        setRowCache(vv, cache);
+        // filled, then reused, then with a path to check again
+        for (int i = 0; i < 3; i++) {
+            if (i == 2) {
+                cache.valueChanged("//ldml/localeDisplayNames/territories/territory[@type=\"SX\"]", null);
+            }
+            assertEquals("run " + i + " with the row cache", expected, getDashboard(vv, locale));
+        }
+
+        // change a value in a copy of the locale: the cache hears of it, and its row and the counts change
+        Factory factory = testInfo.getCldrFactory();
+        TestFactory testFactory = new TestFactory();
+        XMLSource localeSource = null;
+        CLDRFile localeFile = null;
+        for (String id : Arrays.asList("root", "en", "fr", locale)) {
+            localeSource = new SimpleXMLSource(id);
+            localeFile = new CLDRFile(localeSource);
+            localeFile.putAll(factory.make(id, false), CLDRFile.MERGE_KEEP_MINE);
+            testFactory.addFile(localeFile);
+        }
+        VettingViewer<Organization> uncached = makeVettingViewer(testFactory);
+        VettingViewer<Organization> cached = makeVettingViewer(testFactory);
+        VettingViewer.RowCache changingCache = new VettingViewer.RowCache();
+        localeSource.addListener(changingCache);
+        setRowCache(cached, changingCache);
+        String before = getDashboard(cached, locale);
+        assertEquals("before the change", getDashboard(uncached, locale), before);
+
+        localeFile.add("//ldml/localeDisplayNames/territories/territory[@type=\"FR\"]", "Hexagone");
+        String after = getDashboard(cached, locale);
+        assertNotEquals("the changed value is on the dashboard", before, after);
+        assertEquals("after the change", getDashboard(uncached, locale), after);
+    }
+
+    private VettingViewer<Organization> makeVettingViewer(Factory factory) {
+        VettingViewer<Organization> vv = new VettingViewer<Organization>(SUPPLEMENTAL_DATA_INFO, factory,
+            new VettingViewer.UsersChoice<Organization>() {
+                @Override
+                public String getWinningValueForUsersOrganization(CLDRFile cldrFile, String path, Organization user) {
+                    return null;
+                }
+
+                @Override
+                public VoteStatus getStatusForUsersOrganization(CLDRFile cldrFile, String path, Organization user) {
+                    return VoteStatus.ok;
+                }
+            }, "Winning");
+        vv.setErrorChecker(new VettingViewer.NoErrorStatus());
+        return vv;
+    }
+
+    private static void setRowCache(VettingViewer<Organization> vv, final VettingViewer.RowCache cache) {
+        vv.setRowCacheProvider(new VettingViewer.RowCacheProvider<Organization>() {
+            @Override
+            public VettingViewer.RowCache getRowCache(String localeID, Organization user, org.unicode.cldr.util.Level level,
+                EnumSet<Choice> choices) {
+                return cache;
+            }
+        });
+    }
+
+    private static String getDashboard(VettingViewer<Organization> vv, String locale) {
+        StringBuilder output = new StringBuilder();
+        vv.generateHtmlErrorTables(output, EnumSet.allOf(Choice.class), locale, Organization.google,
+            org.unicode.cldr.util.Level.MODERN, true, false);
+        return output.toString();
+    }
+
     public void TestCounter() {
         Counter<String> counter = new Counter<String>(true);
         Comparator<String> uca = new Comparator<String>() {
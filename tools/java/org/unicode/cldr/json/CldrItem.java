@@ -7,6 +7,7 @@ import org.unicode.cldr.json.LdmlConvertRules.SplittableAttributeSpec;
 import org.unicode.cldr.util.DtdData;
 import org.unicode.cldr.util.DtdType;
 import org.unicode.cldr.util.XPathParts;
+import org.unicode.cldr.util.XPathView;
 import org.unicode.cldr.util.ZoneParser;
 
 /**
@@ -16,6 +17,14 @@ public class CldrItem implements Comparable<CldrItem> {
 
     private static boolean DEBUG = false;
 
+    // reads the elements of a path in needsSort, which is called for every item
+    private static final ThreadLocal<XPathView> PATH_VIEW = new ThreadLocal<XPathView>() {
+        @Override
+        protected XPathView initialValue() {
+            return new XPathView();
+        }
+    };
+
     /**
      * Split the path to an array of string, each string represent a segment.
      *
@@ -266,9 +275,9 @@ public class CldrItem implements Comparable<CldrItem> {
      * @return True if the element need to be sorted before further process.
      */
     public boolean needsSort() {
+        XPathView view = PATH_VIEW.get().set(path);
         for (String item : LdmlConvertRules.ELEMENT_NEED_SORT) {
-            XPathParts xpp = XPathParts.getFrozenInstance(path);
-            if (xpp.containsElement(item)) {
+            if (view.findElement(item) >= 0) {
                 return true;
             }
         }
@@ -335,7 +344,7 @@ public class CldrItem implements Comparable<CldrItem> {
                 return result;
             }
         }
-        result = DtdData.getInstance(fileDtdType).getDtdComparator(null).compare(untransformedPath, otherItem.untransformedPath);
+        result = DtdData.getInstance(fileDtdType).getSortKeyComparator().compare(untransformedPath, otherItem.untransformedPath);
         return result;
         //return CLDRFile.getLdmlComparator().compare(path, otherItem.path);
         //return path.compareTo(otherItem.path);
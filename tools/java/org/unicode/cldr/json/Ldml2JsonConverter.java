@@ -36,7 +36,7 @@ import org.unicode.cldr.util.LocaleIDParser;
 import org.unicode.cldr.util.PatternCache;
 import org.unicode.cldr.util.StandardCodes;
 import org.unicode.cldr.util.SupplementalDataInfo;
-import org.unicode.cldr.util.XPathParts;
+import org.unicode.cldr.util.XPathView;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -296,6 +296,7 @@ public class Ldml2JsonConverter {
         Matcher noNumberingSystemMatcher = LdmlConvertRules.NO_NUMBERING_SYSTEM_PATTERN.matcher("");
         Matcher numberingSystemMatcher = LdmlConvertRules.NUMBERING_SYSTEM_PATTERN.matcher("");
         Matcher rootIdentityMatcher = LdmlConvertRules.ROOT_IDENTITY_PATTERN.matcher("");
+        XPathView pathView = new XPathView();
         Set<String> activeNumberingSystems = new TreeSet<String>();
         activeNumberingSystems.add("latn"); // Always include latin script numbers
         for (String np : LdmlConvertRules.ACTIVE_NUMBERING_SYSTEM_XPATHS) {
@@ -311,7 +312,7 @@ public class Ldml2JsonConverter {
             fileDtdType = DtdType.ldml;
         }
         CoverageInfo covInfo = CLDRConfig.getInstance().getCoverageInfo();
-        for (Iterator<String> it = file.iterator("", DtdData.getInstance(fileDtdType).getDtdComparator(null)); it.hasNext();) {
+        for (Iterator<String> it = file.iterator("", DtdData.getInstance(fileDtdType).getSortKeyComparator()); it.hasNext();) {
             int cv = Level.UNDETERMINED.getLevel();
             String path = it.next();
             String fullPath = file.getFullXPath(path);
@@ -346,8 +347,7 @@ public class Ldml2JsonConverter {
             // Filter out non-active numbering systems data unless fullNumbers is specified.
             numberingSystemMatcher.reset(fullPath);
             if (numberingSystemMatcher.matches() && !fullNumbers) {
-                XPathParts xpp = XPathParts.getFrozenInstance(fullPath);
-                String currentNS = xpp.getAttributeValue(2, "numberSystem");
+                String currentNS = pathView.set(fullPath).getAttributeValue(2, "numberSystem");
                 if (currentNS != null && !activeNumberingSystems.contains(currentNS)) {
                     continue;
                 }
@@ -423,6 +423,7 @@ public class Ldml2JsonConverter {
         throws IOException, ParseException {
         // zone and timezone items are queued for sorting first before they are
         // processed.
+        XPathView pathView = new XPathView();
 
         for (JSONSection js : sections) {
             String outFilename;
@@ -574,8 +575,9 @@ public class Ldml2JsonConverter {
                             if (parts[0].equals(previousIdentityPath)) {
                                 continue;
                             } else {
-                                XPathParts xpp = XPathParts.getFrozenInstance(item.getPath());
-                                String territory = xpp.findAttributeValue("territory", "type");
+                                int territoryElement = pathView.set(item.getPath()).findElement("territory");
+                                String territory = territoryElement < 0 ? null
+                                    : pathView.getAttributeValue(territoryElement, "type");
                                 LocaleIDParser lp = new LocaleIDParser().set(filename);
                                 if (territory != null && territory.length() > 0 && !territory.equals(lp.getRegion())) {
                                     continue;
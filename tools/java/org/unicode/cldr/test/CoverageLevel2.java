@@ -1,26 +1,50 @@
 package org.unicode.cldr.test;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import org.unicode.cldr.tool.ToolConfig;
 import org.unicode.cldr.util.Builder;
 import org.unicode.cldr.util.CLDRConfig;
 import org.unicode.cldr.util.CLDRFile;
 import org.unicode.cldr.util.CLDRPaths;
+import org.unicode.cldr.util.CldrUtility;
 import org.unicode.cldr.util.LanguageTagParser;
 import org.unicode.cldr.util.Level;
 import org.unicode.cldr.util.RegexLookup;
 import org.unicode.cldr.util.RegexLookup.Finder;
+import org.unicode.cldr.util.RegexLookup.Finder.Info;
 import org.unicode.cldr.util.RegexLookup.RegexFinder;
 import org.unicode.cldr.util.SupplementalDataInfo;
 import org.unicode.cldr.util.SupplementalDataInfo.CoverageLevelInfo;
 import org.unicode.cldr.util.SupplementalDataInfo.CoverageVariableInfo;
 import org.unicode.cldr.util.Timer;
+import org.unicode.cldr.util.XPathIdTable;
 
 import com.ibm.icu.dev.util.CollectionUtilities;
+import com.ibm.icu.util.ICUException;
 import com.ibm.icu.util.Output;
 import com.ibm.icu.util.ULocale;
 
@@ -35,6 +59,27 @@ public class CoverageLevel2 {
 
     private RegexLookup<Level> lookup = null;
 
+    private static final int TABLE_MAGIC = 0x434C5654; // "CLVT"
+    private static final int TABLE_VERSION = 1;
+    private static final Level[] LEVELS = Level.values();
+    private static final int CHUNK_SIZE = 1024; // paths per task in getLevels
+
+    private static final class DirectoryHolder {
+        static final File TABLE_DIR;
+        static {
+            String dir = CldrUtility.getProperty("CLDR_COVERAGE_TABLE_DIR", null);
+            TABLE_DIR = dir == null ? null : new File(dir);
+        }
+    }
+
+    /**
+     * Precomputed levels, indexed by XPathIdTable ID: 0 if not precomputed, otherwise the Level ordinal + 1.
+     * An array is never modified once published; precompute() publishes a new one.
+     */
+    private volatile byte[] levelTable = new byte[0];
+    private final String locale;
+    private final File coverageLevelsFile;
+
     enum SetMatchType {
         Target_Language, Target_Scripts, Target_Territories, Target_TimeZones, Target_Currencies, Target_Plurals, Calendar_List
     }
@@ -69,55 +114,73 @@ public class CoverageLevel2 {
         @Override
         public boolean find(String item, Object context, Info info) {
             LocaleSpecificInfo localeSpecificInfo = (LocaleSpecificInfo) context;
+            if (!matchesLocale(localeSpecificInfo)) {
+                return false;
+            }
+            boolean result = super.find(item, context, info); // also sets matcher in RegexFinder
+            if (!result) {
+                return false;
+            }
+            return matchesVariable(localeSpecificInfo, info);
+        }
+
+        /**
+         * Only the regex part of find, which is the same for all locales.
+         */
+        boolean findPattern(String item, Info info) {
+            return super.find(item, null, info);
+        }
+
+        /**
+         * The part of find that comes before the regex: whether the line applies to the locale's language, script or territory.
+         */
+        boolean matchesLocale(LocaleSpecificInfo localeSpecificInfo) {
             // Modified the logic to handle the case where we want specific languages and specific territories.
             // Any match in language script or territory will succeed when multiple items are present.
-            boolean lstOK = false;
             if (ci.inLanguage == null && ci.inScriptSet == null && ci.inTerritorySet == null) {
-                lstOK = true;
+                return true;
             } else if (ci.inLanguage != null
                 && ci.inLanguage.matcher(localeSpecificInfo.targetLanguage).matches()) {
-                lstOK = true;
+                return true;
             } else if (ci.inScriptSet != null
                 && CollectionUtilities.containsSome(ci.inScriptSet, localeSpecificInfo.cvi.targetScripts)) {
-                lstOK = true;
+                return true;
             } else if (ci.inTerritorySet != null
                 && CollectionUtilities.containsSome(ci.inTerritorySet, localeSpecificInfo.cvi.targetTerritories)) {
-                lstOK = true;
+                return true;
             }
+            return false;
+        }
 
-            if (!lstOK) {
-                return false;
-            }
-            boolean result = super.find(item, context, info); // also sets matcher in RegexFinder
-            if (!result) {
-                return false;
+        /**
+         * The part of find that comes after the regex: whether the value matched by the variable is one of the locale's.
+         */
+        boolean matchesVariable(LocaleSpecificInfo localeSpecificInfo, Info info) {
+            if (additionalMatch == null) {
+                return true;
             }
-            if (additionalMatch != null) {
-                String groupMatch = info.value[1];
-//                    String groupMatch = matcher.group(1);
-                // we match on a group, so get the right one
-                switch (additionalMatch) {
-                case Target_Language:
-                    return localeSpecificInfo.targetLanguage.equals(groupMatch);
-                case Target_Scripts:
-                    return localeSpecificInfo.cvi.targetScripts.contains(groupMatch);
-                case Target_Territories:
-                    return localeSpecificInfo.cvi.targetTerritories.contains(groupMatch);
-                case Target_TimeZones:
-                    return localeSpecificInfo.cvi.targetTimeZones.contains(groupMatch);
-                case Target_Currencies:
-                    return localeSpecificInfo.cvi.targetCurrencies.contains(groupMatch);
-                // For Target_Plurals, we have to account for the fact that the @count= part might not be in the
-                // xpath, so we shouldn't reject the match because of that. ( i.e. The regex is usually
-                // ([@count='${Target-Plurals}'])?
-                case Target_Plurals:
-                    return (groupMatch == null ||
-                        groupMatch.length() == 0 || localeSpecificInfo.cvi.targetPlurals.contains(groupMatch));
-                case Calendar_List:
-                    return localeSpecificInfo.cvi.calendars.contains(groupMatch);
-                }
+            String groupMatch = info.value[1];
+            // we match on a group, so get the right one
+            switch (additionalMatch) {
+            case Target_Language:
+                return localeSpecificInfo.targetLanguage.equals(groupMatch);
+            case Target_Scripts:
+                return localeSpecificInfo.cvi.targetScripts.contains(groupMatch);
+            case Target_Territories:
+                return localeSpecificInfo.cvi.targetTerritories.contains(groupMatch);
+            case Target_TimeZones:
+                return localeSpecificInfo.cvi.targetTimeZones.contains(groupMatch);
+            case Target_Currencies:
+                return localeSpecificInfo.cvi.targetCurrencies.contains(groupMatch);
+            // For Target_Plurals, we have to account for the fact that the @count= part might not be in the
+            // xpath, so we shouldn't reject the match because of that. ( i.e. The regex is usually
+            // ([@count='${Target-Plurals}'])?
+            case Target_Plurals:
+                return (groupMatch == null ||
+                    groupMatch.length() == 0 || localeSpecificInfo.cvi.targetPlurals.contains(groupMatch));
+            case Calendar_List:
+                return localeSpecificInfo.cvi.calendars.contains(groupMatch);
             }
-
             return true;
         }
 
@@ -128,6 +191,8 @@ public class CoverageLevel2 {
     }
 
     private CoverageLevel2(SupplementalDataInfo sdi, String locale) {
+        this.locale = locale;
+        coverageLevelsFile = new File(sdi.getDirectory(), "coverageLevels.xml");
         myInfo.targetLanguage = new LanguageTagParser().set(locale).getLanguage();
         myInfo.cvi = sdi.getCoverageVariableInfo(myInfo.targetLanguage);
         lookup = sdi.getCoverageLookup();
@@ -150,24 +215,323 @@ public class CoverageLevel2 {
         return new CoverageLevel2(sdi, locale);
     }
 
+    /**
+     * Get the coverage level of the path. Thread-safe, and lock-free.
+     */
     public Level getLevel(String path) {
         if (path == null) {
             return Level.UNDETERMINED;
         }
-        synchronized (lookup) { // synchronize on the class, since the Matchers are changed during the matching process
-            Level result;
-            if (DEBUG_LOOKUP) { // for testing
-                Output<String[]> checkItems = new Output<String[]>();
-                Output<Finder> matcherFound = new Output<Finder>();
-                List<String> failures = new ArrayList<String>();
-                result = lookup.get(path, myInfo, checkItems, matcherFound, failures);
-                for (String s : failures) {
-                    System.out.println(s);
+        Level result = getPrecomputedLevel(path);
+        return result != null ? result : computeLevel(path);
+    }
+
+    /**
+     * Get the level of the path from the precomputed table.
+     *
+     * @return the level, or null if the path wasn't precomputed
+     */
+    public Level getPrecomputedLevel(String path) {
+        if (path == null) {
+            return null;
+        }
+        return getPrecomputedLevel(XPathIdTable.getExistingId(path));
+    }
+
+    private Level getPrecomputedLevel(int id) {
+        byte[] table = levelTable;
+        if (id < 0 || id >= table.length || table[id] == 0) {
+            return null;
+        }
+        return LEVELS[table[id] - 1];
+    }
+
+    private Level computeLevel(String path) {
+        Level result;
+        if (DEBUG_LOOKUP) { // for testing
+            Output<String[]> checkItems = new Output<String[]>();
+            Output<Finder> matcherFound = new Output<Finder>();
+            List<String> failures = new ArrayList<String>();
+            result = lookup.get(path, myInfo, checkItems, matcherFound, failures);
+            for (String s : failures) {
+                System.out.println(s);
+            }
+        } else {
+            result = lookup.get(path, myInfo, null);
+        }
+        return result == null ? Level.COMPREHENSIVE : result;
+    }
+
+    /**
+     * Compute the levels of the paths and add them to the precomputed table, so that later calls to getLevel
+     * for them are a table read.
+     *
+     * @return this, for chaining
+     */
+    public CoverageLevel2 precompute(Iterable<String> paths) {
+        Map<Integer, Level> levels = new HashMap<Integer, Level>();
+        for (String path : paths) {
+            levels.put(XPathIdTable.getId(path), computeLevel(path));
+        }
+        addToTable(levels);
+        return this;
+    }
+
+    private synchronized void addToTable(Map<Integer, Level> levels) {
+        byte[] table = Arrays.copyOf(levelTable, Math.max(levelTable.length, XPathIdTable.size()));
+        for (Entry<Integer, Level> entry : levels.entrySet()) {
+            table[entry.getKey()] = (byte) (entry.getValue().ordinal() + 1);
+        }
+        levelTable = table;
+    }
+
+    /**
+     * Get the levels of all the paths in one pass, split into chunks that run on the executor.
+     * The result is the same as calling getLevel for each path.
+     *
+     * @param paths
+     * @param executor runs the chunks, such as ForkJoinPool.commonPool()
+     * @return the levels, where result[i] is the level of paths.get(i)
+     */
+    public Level[] getLevels(List<String> paths, Executor executor) {
+        return computeLevels(Collections.singletonList(this), paths, executor)[0];
+    }
+
+    /**
+     * Get the levels of paths given by their XPathIdTable IDs, as for getLevels(List, Executor).
+     *
+     * @param pathIds
+     * @param executor runs the chunks, such as ForkJoinPool.commonPool()
+     * @return the levels, where result[i] is the level of the path with ID pathIds[i]
+     */
+    public Level[] getLevels(int[] pathIds, Executor executor) {
+        List<String> paths = new ArrayList<String>(pathIds.length);
+        for (int id : pathIds) {
+            paths.add(XPathIdTable.getPath(id));
+        }
+        return getLevels(paths, executor);
+    }
+
+    /**
+     * Get the levels of all the paths in a file, as for getLevels(List, Executor).
+     * The file would normally be for the same locale as this CoverageLevel2.
+     *
+     * @param file
+     * @param executor runs the chunks, such as ForkJoinPool.commonPool()
+     * @return a map from each path of the file, in the file's order, to its level
+     */
+    public Map<String, Level> getLevels(CLDRFile file, Executor executor) {
+        List<String> paths = new ArrayList<String>();
+        for (String path : file) {
+            paths.add(path);
+        }
+        Level[] levels = getLevels(paths, executor);
+        Map<String, Level> result = new LinkedHashMap<String, Level>();
+        for (int i = 0; i < levels.length; ++i) {
+            result.put(paths.get(i), levels[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Get the levels of the paths for many locales at once, such as for a coverage report of all locales.
+     * The regexes for each path are only matched once: for each locale, only the per-locale conditions of the
+     * matching coverageLevels.xml lines are tested. The paths are split into chunks that run on the executor.
+     *
+     * @param sdi
+     * @param locales
+     * @param paths
+     * @param executor runs the chunks, such as ForkJoinPool.commonPool()
+     * @return a map from each locale, in the order given, to its levels, where levels[i] is the level of paths.get(i)
+     */
+    public static Map<String, Level[]> getLevels(SupplementalDataInfo sdi, Collection<String> locales, List<String> paths,
+        Executor executor) {
+        List<CoverageLevel2> coverageLevels = new ArrayList<CoverageLevel2>();
+        for (String locale : locales) {
+            coverageLevels.add(getInstance(sdi, locale));
+        }
+        Level[][] levels = computeLevels(coverageLevels, paths, executor);
+        Map<String, Level[]> result = new LinkedHashMap<String, Level[]>();
+        int i = 0;
+        for (String locale : locales) {
+            result.put(locale, levels[i++]);
+        }
+        return result;
+    }
+
+    /**
+     * Count the paths at each level.
+     *
+     * @return the counts, indexed by Level ordinal
+     */
+    public static int[] getHistogram(Level[] levels) {
+        int[] result = new int[LEVELS.length];
+        for (Level level : levels) {
+            ++result[level.ordinal()];
+        }
+        return result;
+    }
+
+    private static Level[][] computeLevels(final List<CoverageLevel2> coverageLevels, final List<String> paths, Executor executor) {
+        final Level[][] result = new Level[coverageLevels.size()][paths.size()];
+        List<CompletableFuture<Void>> chunks = new ArrayList<CompletableFuture<Void>>();
+        for (int start = 0; start < paths.size(); start += CHUNK_SIZE) {
+            final int chunkStart = start;
+            final int chunkLimit = Math.min(start + CHUNK_SIZE, paths.size());
+            chunks.add(CompletableFuture.runAsync(new Runnable() {
+                @Override
+                public void run() {
+                    computeLevels(coverageLevels, paths, chunkStart, chunkLimit, result);
+                }
+            }, executor));
+        }
+        for (CompletableFuture<Void> chunk : chunks) {
+            try {
+                chunk.join();
+            } catch (CompletionException e) {
+                throw new ICUException("Couldn't compute coverage levels", e.getCause());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fill in result[locale][start..limit). This is lookup.get for each locale, with the regex of each candidate
+     * line matched at most once for all the locales.
+     */
+    private static void computeLevels(List<CoverageLevel2> coverageLevels, List<String> paths, int start, int limit,
+        Level[][] result) {
+        RegexLookup<Level> lookup = coverageLevels.get(0).lookup;
+        int localeCount = coverageLevels.size();
+        Info info = new Info();
+        for (int i = start; i < limit; ++i) {
+            String path = paths.get(i);
+            int unresolved = 0;
+            int id = path == null ? -1 : XPathIdTable.getExistingId(path);
+            for (int j = 0; j < localeCount; ++j) {
+                Level level = path == null ? Level.UNDETERMINED : coverageLevels.get(j).getPrecomputedLevel(id);
+                result[j][i] = level;
+                if (level == null) {
+                    ++unresolved;
+                }
+            }
+            if (unresolved == 0) {
+                continue;
+            }
+            for (Entry<Finder, Level> candidate : lookup.getCandidates(path)) {
+                MyRegexFinder finder = (MyRegexFinder) candidate.getKey();
+                int found = 0; // 0 if the regex hasn't been tried yet, 1 if it found the path, -1 if it didn't
+                for (int j = 0; j < localeCount && found >= 0; ++j) {
+                    if (result[j][i] != null) {
+                        continue;
+                    }
+                    LocaleSpecificInfo localeSpecificInfo = coverageLevels.get(j).myInfo;
+                    if (!finder.matchesLocale(localeSpecificInfo)) {
+                        continue;
+                    }
+                    if (found == 0) {
+                        found = finder.findPattern(path, info) ? 1 : -1;
+                        if (found < 0) {
+                            break;
+                        }
+                    }
+                    if (finder.matchesVariable(localeSpecificInfo, info)) {
+                        result[j][i] = candidate.getValue();
+                        --unresolved;
+                    }
+                }
+                if (unresolved == 0) {
+                    break;
+                }
+            }
+            if (unresolved != 0) {
+                for (int j = 0; j < localeCount; ++j) {
+                    if (result[j][i] == null) {
+                        result[j][i] = Level.COMPREHENSIVE;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of paths in the precomputed table
+     */
+    public int getPrecomputedCount() {
+        int count = 0;
+        for (byte level : levelTable) {
+            if (level != 0) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the file where the table for a locale is saved, from -DCLDR_COVERAGE_TABLE_DIR=dir.
+     *
+     * @return the file, or null if tables aren't saved
+     */
+    public static File getDefaultTableFile(String locale) {
+        return DirectoryHolder.TABLE_DIR == null ? null : new File(DirectoryHolder.TABLE_DIR, locale + ".coverage");
+    }
+
+    /**
+     * Save the precomputed table. It is only read back while coverageLevels.xml is unchanged.
+     */
+    public void writeTable(File file) throws IOException {
+        byte[] table = levelTable;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create coverage table directory " + parent);
+        }
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(TABLE_MAGIC);
+                out.writeInt(TABLE_VERSION);
+                out.writeUTF(locale);
+                out.writeLong(coverageLevelsFile.lastModified());
+                out.writeLong(coverageLevelsFile.length());
+                out.writeInt(getPrecomputedCount());
+                for (int id = 0; id < table.length; ++id) {
+                    if (table[id] != 0) {
+                        out.writeUTF(XPathIdTable.getPath(id));
+                        out.writeByte(table[id]);
+                    }
                 }
-            } else {
-                result = lookup.get(path, myInfo, null);
             }
-            return result == null ? Level.COMPREHENSIVE : result;
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Add a table saved with writeTable to the precomputed table.
+     *
+     * @return false if there is no table, or it is for a different locale or coverageLevels.xml
+     */
+    public boolean readTable(File file) throws IOException {
+        if (!file.canRead()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != TABLE_MAGIC
+                || in.readInt() != TABLE_VERSION
+                || !in.readUTF().equals(locale)
+                || in.readLong() != coverageLevelsFile.lastModified()
+                || in.readLong() != coverageLevelsFile.length()) {
+                return false;
+            }
+            int count = in.readInt();
+            Map<Integer, Level> levels = new HashMap<Integer, Level>(count * 2);
+            for (int i = 0; i < count; ++i) {
+                int id = XPathIdTable.getId(in.readUTF());
+                levels.put(id, LEVELS[in.readByte() - 1]);
+            }
+            addToTable(levels);
+            return true;
         }
     }
 
@@ -0,0 +1,39 @@
+package org.unicode.cldr.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.unicode.cldr.util.CLDRConfig;
+import org.unicode.cldr.util.CLDRFile;
+import org.unicode.cldr.util.Factory;
+import org.unicode.cldr.util.PathHeader;
+
+/**
+ * Precompute the PathHeaders for all the paths in root and English, for loading at startup with
+ * -DCLDR_PATH_HEADER_TABLE=file. Rerun whenever PathHeader.txt or the English data changes.
+ * <p>
+ * Usage: GeneratePathHeaderTable outputFile
+ */
+public class GeneratePathHeaderTable {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: GeneratePathHeaderTable outputFile");
+        }
+        File outputFile = new File(args[0]);
+        CLDRConfig config = CLDRConfig.getInstance();
+        Factory factory = config.getCommonAndSeedAndMainAndAnnotationsFactory();
+        CLDRFile english = factory.make("en", true);
+        PathHeader.Factory phf = PathHeader.getFactory(english);
+
+        Set<String> paths = new LinkedHashSet<String>();
+        for (String locale : new String[] { "root", "en" }) {
+            for (String path : factory.make(locale, true).fullIterable()) {
+                paths.add(path);
+            }
+        }
+        int count = phf.writeTable(paths, outputFile);
+        System.out.println("Wrote " + count + " PathHeaders for " + paths.size() + " paths to " + outputFile.getAbsolutePath());
+    }
+}
@@ -0,0 +1,54 @@
+package org.unicode.cldr.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.unicode.cldr.test.CheckCLDR;
+import org.unicode.cldr.test.CheckCLDR.CheckStatus;
+import org.unicode.cldr.test.CheckCLDR.Options;
+import org.unicode.cldr.test.CoverageLevel2;
+import org.unicode.cldr.util.CLDRConfig;
+import org.unicode.cldr.util.CLDRFile;
+import org.unicode.cldr.util.Factory;
+import org.unicode.cldr.util.PathHeader;
+import org.unicode.cldr.util.PatternCache;
+
+/**
+ * Write a bundle of the regex patterns that PathHeader, CoverageLevel2 and CheckCLDR compile when they start up,
+ * for warming the PatternCache with -DCLDR_PATTERN_CACHE_BUNDLE=file. Rerun whenever their regex data changes;
+ * patterns that are no longer used just take up room in the cache.
+ * <p>
+ * Usage: GeneratePatternCacheBundle outputFile
+ */
+public class GeneratePatternCacheBundle {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: GeneratePatternCacheBundle outputFile");
+        }
+        File outputFile = new File(args[0]);
+        PatternCache.setRecordStatistics(true);
+        CLDRConfig config = CLDRConfig.getInstance();
+        Factory factory = config.getCldrFactory();
+        CLDRFile english = config.getEnglish();
+
+        PathHeader.Factory phf = PathHeader.getFactory(english);
+        CoverageLevel2 coverageLevel = CoverageLevel2.getInstance(config.getSupplementalDataInfo(), "en");
+        CheckCLDR checkCldr = CheckCLDR.getCheckAll(factory, ".*");
+        List<CheckStatus> result = new ArrayList<CheckStatus>();
+        Options options = new Options();
+        checkCldr.setCldrFileToCheck(english, options, result);
+        for (String path : english.fullIterable()) {
+            phf.fromPath(path);
+            coverageLevel.getLevel(path);
+            String value = english.getStringValue(path);
+            if (value != null) {
+                checkCldr.check(path, english.getFullXPath(path), value, options, result);
+            }
+        }
+        int count = PatternCache.writeBundle(outputFile);
+        System.out.println(PatternCache.getReport(20));
+        System.out.println("Wrote " + count + " patterns to " + outputFile.getAbsolutePath());
+    }
+}
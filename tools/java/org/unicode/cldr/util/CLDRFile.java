@@ -29,10 +29,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,6 +57,8 @@ import org.xml.sax.helpers.XMLReaderFactory;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
@@ -605,6 +607,21 @@ public class CLDRFile implements Freezable<CLDRFile>, Iterable<String> {
         }
     }
 
+    /**
+     * Get a string value from a distinguishing path ID (see {@link XPathIdTable}).
+     * Avoids computing the distinguishing path, so it is faster than getStringValue(String) for callers that already hold IDs.
+     */
+    public String getStringValue(int pathId) {
+        String result = dataSource.getValueAtDPath(pathId);
+        if (result == null && dataSource.isResolving()) {
+            String xpath = XPathIdTable.getPath(pathId);
+            if (xpath != null) {
+                result = getStringValue(xpath); // handles the fallback paths
+            }
+        }
+        return result;
+    }
+
     /**
      * Get GeorgeBailey value: that is, what the value would be if it were not directly contained in the file.
      * A non-resolving CLDRFile will always return null.
@@ -1241,6 +1258,25 @@ public class CLDRFile implements Freezable<CLDRFile>, Iterable<String> {
         return dataSource.iterator(pathFilter);
     }
 
+    /**
+     * @return an iterator over the IDs of the distinguishing paths in this file (see {@link XPathIdTable}).
+     */
+    public PrimitiveIterator.OfInt idIterator() {
+        return dataSource.idIterator();
+    }
+
+    /**
+     * Get a cursor over the distinguishing paths in this file that start with the prefix,
+     * giving the value and full path of each on demand. Unlike iterator(prefix, comparator), no sorted
+     * set is built: in hash order nothing is copied, and in DTD order the paths are sorted once in a list.
+     *
+     * @param prefix the prefix to match, or null for all paths
+     * @param dtdOrder true for the DTD order of {@link #getComparator()}, false for hash order
+     */
+    public XMLSource.PathCursor cursor(String prefix, boolean dtdOrder) {
+        return dataSource.cursor(prefix, dtdOrder ? getComparator() : null);
+    }
+
     public Iterator<String> iterator(String prefix, Comparator<String> comparator) {
         Iterator<String> it = (prefix == null || prefix.length() == 0)
             ? dataSource.iterator()
@@ -2628,7 +2664,7 @@ public class CLDRFile implements Freezable<CLDRFile>, Iterable<String> {
         return DtdData.getInstance(type).isOrdered(element);
     }
 
-    private static Comparator<String> ldmlComparator = DtdData.getInstance(DtdType.ldmlICU).getDtdComparator(null);
+    private static Comparator<String> ldmlComparator = DtdData.getInstance(DtdType.ldmlICU).getSortKeyComparator();
 
     private final static Map<String, Map<String, String>> defaultSuppressionMap;
     static {
@@ -2823,110 +2859,213 @@ public class CLDRFile implements Freezable<CLDRFile>, Iterable<String> {
         return DistinguishedXPath.stats();
     }
 
+    /**
+     * Report on the memory shared between CLDRFiles: the path table, and the bytes saved by the
+     * optional value and full path pool (see {@link StringPool}).
+     */
+    public static final String memoryStats() {
+        return XPathIdTable.stats() + "; " + StringPool.stats() + "; " + distinguishedXPathStats();
+    }
+
     private static class DistinguishedXPath {
 
         public static final String stats() {
-            return "distinguishingMap:" + distinguishingMap.size() + " " +
-                "normalizedPathMap:" + normalizedPathMap.size();
+            return "distinguishingCache:" + distinguishingCache.size() + " " + distinguishingCache.stats();
         }
 
-        private static Map<String, String> distinguishingMap = new ConcurrentHashMap<String, String>();
-        private static Map<String, String> normalizedPathMap = new ConcurrentHashMap<String, String>();
+        /**
+         * The distinguishing and normalized paths for a full path. The normalized path has draft, alt and references
+         * moved to the last non-ordered element; it is the full path itself if nothing moved.
+         */
+        private static final class Entry {
+            final String distinguishing;
+            final String normalized;
 
-        static {
-            distinguishingMap.put("", ""); // seed this to make the code simpler
+            Entry(String distinguishing, String normalized) {
+                this.distinguishing = distinguishing;
+                this.normalized = normalized;
+            }
         }
 
-        public static String getDistinguishingXPath(String xpath, String[] normalizedPath) {
-            //     synchronized (distinguishingMap) {
-            String result = (String) distinguishingMap.get(xpath);
-            if (result == null) {
-                XPathParts distinguishingParts = XPathParts.getInstance(xpath); // not frozen, for removeAttributes
-
-                DtdType type = distinguishingParts.getDtdData().dtdType;
-                Set<String> toRemove = new HashSet<String>();
+        private static final Cache<String, Entry> distinguishingCache = CacheBuilder.newBuilder()
+            .concurrencyLevel(16)
+            .maximumSize(Integer.getInteger("DISTINGUISHED_XPATH_CACHE_SIZE", 200000))
+            .recordStats()
+            .build();
 
-                // first clean up draft and alt
-                String draft = null;
-                String alt = null;
-                String references = "";
-                // note: we only need to clean up items that are NOT on the last element,
-                // so we go up to size() - 1.
+        public static String getDistinguishingXPath(String xpath, String[] normalizedPath) {
+            Entry entry = xpath.isEmpty() ? EMPTY : distinguishingCache.getIfPresent(xpath);
+            if (entry == null) {
+                entry = isDistinguishingAndNormalized(xpath) ? new Entry(xpath, xpath) : computeEntry(xpath);
+                distinguishingCache.put(xpath, entry);
+            }
+            if (normalizedPath != null) {
+                normalizedPath[0] = entry.normalized;
+            }
+            return entry.distinguishing;
+        }
 
-                // note: each successive item overrides the previous one. That's intended
+        private static final Entry EMPTY = new Entry("", "");
 
-                for (int i = 0; i < distinguishingParts.size() - 1; ++i) {
-                    if (distinguishingParts.getAttributeCount(i) == 0) {
-                        continue;
-                    }
-                    toRemove.clear();
-                    Map<String, String> attributes = distinguishingParts.getAttributes(i);
-                    for (String attribute : attributes.keySet()) {
-                        if (attribute.equals("draft")) {
-                            draft = (String) attributes.get(attribute);
-                            toRemove.add(attribute);
-                        } else if (attribute.equals("alt")) {
-                            alt = (String) attributes.get(attribute);
-                            toRemove.add(attribute);
-                        } else if (attribute.equals("references")) {
-                            if (references.length() != 0) references += " ";
-                            references += (String) attributes.get("references");
-                            toRemove.add(attribute);
+        /**
+         * Scan the path string to see whether it is already its own distinguishing path, without parsing it into
+         * an XPathParts. That is the case for nearly all paths: every attribute is distinguishing, no draft, alt
+         * or references is on a non-final element, and the attributes of each element are in canonical order.
+         * Anything unusual (such as single quotes) returns false, leaving it to the full computation.
+         */
+        private static boolean isDistinguishingAndNormalized(String xpath) {
+            int len = xpath.length();
+            if (!xpath.startsWith("//")) {
+                return false;
+            }
+            try {
+                DtdType type = null;
+                Comparator<String> attributeOrder = null;
+                int i = 2;
+                while (i < len) {
+                    // element name
+                    int elementStart = i;
+                    while (i < len) {
+                        char ch = xpath.charAt(i);
+                        if (ch == '/' || ch == '[') {
+                            break;
                         }
+                        ++i;
                     }
-                    distinguishingParts.removeAttributes(i, toRemove);
-                }
-                if (draft != null || alt != null || references.length() != 0) {
-                    // get the last element that is not ordered.
-                    int placementIndex = distinguishingParts.size() - 1;
-                    while (true) {
-                        String element = distinguishingParts.getElement(placementIndex);
-                        if (!DtdData.getInstance(type).isOrdered(element)) break;
-                        --placementIndex;
-                    }
-                    if (draft != null) {
-                        distinguishingParts.putAttributeValue(placementIndex, "draft", draft);
+                    if (i == elementStart) {
+                        return false;
                     }
-                    if (alt != null) {
-                        distinguishingParts.putAttributeValue(placementIndex, "alt", alt);
+                    String element = xpath.substring(elementStart, i);
+                    if (type == null) {
+                        type = DtdType.valueOf(element);
+                        attributeOrder = type == DtdType.ldml ? getAttributeOrdering()
+                            : DtdData.getInstance(type).getAttributeComparator();
                     }
-                    if (references.length() != 0) {
-                        distinguishingParts.putAttributeValue(placementIndex, "references", references);
+                    // attributes: [@name="value"]...
+                    String lastAttribute = null;
+                    while (i < len && xpath.charAt(i) == '[') {
+                        if (i + 1 >= len || xpath.charAt(i + 1) != '@') {
+                            return false;
+                        }
+                        int equals = xpath.indexOf('=', i + 2);
+                        if (equals < 0 || equals + 1 >= len || xpath.charAt(equals + 1) != '"') {
+                            return false;
+                        }
+                        int closeQuote = xpath.indexOf('"', equals + 2);
+                        if (closeQuote < 0 || closeQuote + 1 >= len || xpath.charAt(closeQuote + 1) != ']') {
+                            return false;
+                        }
+                        String attribute = xpath.substring(i + 2, equals);
+                        i = closeQuote + 2;
+                        boolean isLastElement = i >= len || xpath.indexOf('/', i) < 0;
+                        if (!isLastElement
+                            && (attribute.equals("draft") || attribute.equals("alt") || attribute.equals("references"))) {
+                            return false;
+                        }
+                        if (!isDistinguishing(type, element, attribute)) {
+                            return false;
+                        }
+                        if (lastAttribute != null && attributeOrder.compare(lastAttribute, attribute) >= 0) {
+                            return false;
+                        }
+                        lastAttribute = attribute;
                     }
-                    String newXPath = distinguishingParts.toString();
-                    if (!newXPath.equals(xpath)) {
-                        normalizedPathMap.put(xpath, newXPath); // store differences
+                    if (i < len) {
+                        if (xpath.charAt(i) != '/') {
+                            return false;
+                        }
+                        ++i;
+                        if (i == len) {
+                            return false; // trailing slash
+                        }
                     }
                 }
+                return type != null;
+            } catch (RuntimeException e) {
+                return false; // unknown type, element or attribute: let the full computation handle it
+            }
+        }
 
-                // now remove non-distinguishing attributes (if non-inheriting)
-                for (int i = 0; i < distinguishingParts.size(); ++i) {
-                    if (distinguishingParts.getAttributeCount(i) == 0) {
-                        continue;
-                    }
-                    String element = distinguishingParts.getElement(i);
-                    toRemove.clear();
-                    for (String attribute : distinguishingParts.getAttributeKeys(i)) {
-                        if (!isDistinguishing(type, element, attribute)) {
-                            toRemove.add(attribute);
-                        }
+        private static Entry computeEntry(String xpath) {
+            String normalized = xpath;
+            XPathParts distinguishingParts = XPathParts.getInstance(xpath); // not frozen, for removeAttributes
+
+            DtdType type = distinguishingParts.getDtdData().dtdType;
+            Set<String> toRemove = new HashSet<String>();
+
+            // first clean up draft and alt
+            String draft = null;
+            String alt = null;
+            String references = "";
+            // note: we only need to clean up items that are NOT on the last element,
+            // so we go up to size() - 1.
+
+            // note: each successive item overrides the previous one. That's intended
+
+            for (int i = 0; i < distinguishingParts.size() - 1; ++i) {
+                if (distinguishingParts.getAttributeCount(i) == 0) {
+                    continue;
+                }
+                toRemove.clear();
+                Map<String, String> attributes = distinguishingParts.getAttributes(i);
+                for (String attribute : attributes.keySet()) {
+                    if (attribute.equals("draft")) {
+                        draft = (String) attributes.get(attribute);
+                        toRemove.add(attribute);
+                    } else if (attribute.equals("alt")) {
+                        alt = (String) attributes.get(attribute);
+                        toRemove.add(attribute);
+                    } else if (attribute.equals("references")) {
+                        if (references.length() != 0) references += " ";
+                        references += (String) attributes.get("references");
+                        toRemove.add(attribute);
                     }
-                    distinguishingParts.removeAttributes(i, toRemove);
                 }
-
-                result = distinguishingParts.toString();
-                if (result.equals(xpath)) { // don't save the copy if we don't have to.
-                    result = xpath;
+                distinguishingParts.removeAttributes(i, toRemove);
+            }
+            if (draft != null || alt != null || references.length() != 0) {
+                // get the last element that is not ordered.
+                int placementIndex = distinguishingParts.size() - 1;
+                while (true) {
+                    String element = distinguishingParts.getElement(placementIndex);
+                    if (!DtdData.getInstance(type).isOrdered(element)) break;
+                    --placementIndex;
+                }
+                if (draft != null) {
+                    distinguishingParts.putAttributeValue(placementIndex, "draft", draft);
+                }
+                if (alt != null) {
+                    distinguishingParts.putAttributeValue(placementIndex, "alt", alt);
+                }
+                if (references.length() != 0) {
+                    distinguishingParts.putAttributeValue(placementIndex, "references", references);
+                }
+                String newXPath = distinguishingParts.toString();
+                if (!newXPath.equals(xpath)) {
+                    normalized = newXPath; // store differences
                 }
-                distinguishingMap.put(xpath, result);
             }
-            if (normalizedPath != null) {
-                normalizedPath[0] = (String) normalizedPathMap.get(xpath);
-                if (normalizedPath[0] == null) {
-                    normalizedPath[0] = xpath;
+
+            // now remove non-distinguishing attributes (if non-inheriting)
+            for (int i = 0; i < distinguishingParts.size(); ++i) {
+                if (distinguishingParts.getAttributeCount(i) == 0) {
+                    continue;
+                }
+                String element = distinguishingParts.getElement(i);
+                toRemove.clear();
+                for (String attribute : distinguishingParts.getAttributeKeys(i)) {
+                    if (!isDistinguishing(type, element, attribute)) {
+                        toRemove.add(attribute);
+                    }
                 }
+                distinguishingParts.removeAttributes(i, toRemove);
             }
-            return result;
+
+            String result = distinguishingParts.toString();
+            if (result.equals(xpath)) { // don't save the copy if we don't have to.
+                result = xpath;
+            }
+            return new Entry(result, normalized);
         }
 
         public Map<String, String> getNonDistinguishingAttributes(String fullPath, Map<String, String> result,
@@ -3578,6 +3717,10 @@ public class CLDRFile implements Freezable<CLDRFile>, Iterable<String> {
         return iterator("//ldml/alias").hasNext();
     }
 
+    /**
+     * Get the DTD order for paths. The comparator compares sort keys that are cached per path,
+     * so it is much faster than DtdData.getDtdComparator for paths that are compared repeatedly.
+     */
     public static Comparator<String> getComparator(DtdType dtdType) {
         if (dtdType == null) {
             return ldmlComparator;
@@ -3587,7 +3730,7 @@ public class CLDRFile implements Freezable<CLDRFile>, Iterable<String> {
         case ldmlICU:
             return ldmlComparator;
         default:
-            return DtdData.getInstance(dtdType).getDtdComparator(null);
+            return DtdData.getInstance(dtdType).getSortKeyComparator();
         }
     }
 
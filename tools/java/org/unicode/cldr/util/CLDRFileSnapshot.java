@@ -0,0 +1,310 @@
+package org.unicode.cldr.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.unicode.cldr.util.CLDRFile.DraftStatus;
+import org.unicode.cldr.util.XPathParts.Comments;
+import org.unicode.cldr.util.XPathParts.Comments.CommentType;
+
+import com.ibm.icu.util.VersionInfo;
+
+/**
+ * Compact binary snapshot of an unresolved CLDRFile backed by a SimpleXMLSource, so that
+ * it can be reloaded without running the validating XML parser.
+ * <p>
+ * The format is columnar: a header listing the source files (with their timestamps and sizes),
+ * then the dictionary of distinguishing paths, the value for each path in the same order,
+ * the full paths that differ from their distinguishing paths (by path index), and the comments.
+ * The snapshot is read through a memory-mapped buffer, and is only used if every source file
+ * is unchanged since the snapshot was written.
+ * <p>
+ * Snapshots are only used by SimpleFactory when a snapshot directory is configured with -DCLDR_SNAPSHOT_DIR=dir.
+ */
+public class CLDRFileSnapshot {
+    private static final int MAGIC = 0x434C4453; // "CLDS"
+    private static final int FORMAT_VERSION = 1;
+    private static final boolean DEBUG = false;
+
+    private static final class DirectoryHolder {
+        static final File SNAPSHOT_DIR;
+        static {
+            String dir = CldrUtility.getProperty("CLDR_SNAPSHOT_DIR", null);
+            SNAPSHOT_DIR = dir == null ? null : new File(dir);
+        }
+    }
+
+    /**
+     * @return the configured snapshot directory, or null if snapshots are disabled
+     */
+    public static File getDefaultDirectory() {
+        return DirectoryHolder.SNAPSHOT_DIR;
+    }
+
+    /**
+     * Get the snapshot file for a locale loaded from the given directories with the given draft status.
+     */
+    public static File getSnapshotFile(File snapshotDir, String localeName, List<File> dirs, DraftStatus minimalDraftStatus) {
+        StringBuilder dirString = new StringBuilder();
+        for (File dir : dirs) {
+            dirString.append(dir.getAbsolutePath()).append(File.pathSeparatorChar);
+        }
+        return new File(snapshotDir, localeName + "-" + minimalDraftStatus + "-"
+            + Integer.toHexString(dirString.toString().hashCode()) + ".snap");
+    }
+
+    /**
+     * Get the XML source files for a locale, in load order.
+     */
+    public static List<File> getSourceFiles(String localeName, List<File> dirs) {
+        List<File> result = new ArrayList<File>();
+        for (File dir : dirs) {
+            result.add(new File(dir, localeName + ".xml"));
+        }
+        return result;
+    }
+
+    /**
+     * Write a snapshot of the file. The snapshot is written to a temporary file and then moved into place,
+     * so that concurrent readers never see a partial snapshot.
+     *
+     * @param cldrFile an unresolved CLDRFile with a SimpleXMLSource
+     * @param sourceFiles the files that the CLDRFile was loaded from, used for validation when reading
+     * @param snapshotFile
+     */
+    public static void write(CLDRFile cldrFile, List<File> sourceFiles, File snapshotFile) throws IOException {
+        if (cldrFile.isResolved() || !(cldrFile.dataSource instanceof SimpleXMLSource)) {
+            throw new IllegalArgumentException("Only unresolved files with a SimpleXMLSource can be snapshotted");
+        }
+        SimpleXMLSource source = (SimpleXMLSource) cldrFile.dataSource;
+        List<File> validatedFiles = new ArrayList<File>(sourceFiles);
+        DtdType dtdType = cldrFile.getDtdType();
+        if (dtdType != null) {
+            validatedFiles.add(getDtdFile(dtdType));
+        }
+
+        File parent = snapshotFile.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create snapshot directory " + parent);
+        }
+        File temp = File.createTempFile(snapshotFile.getName(), ".tmp", parent);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(validatedFiles.size());
+                for (File file : validatedFiles) {
+                    writeString(out, file.getAbsolutePath());
+                    out.writeLong(file.lastModified());
+                    out.writeLong(file.length());
+                }
+
+                writeString(out, source.getLocaleID());
+                out.writeBoolean(source.isNonInheriting());
+                writeString(out, dtdType == null ? null : dtdType.toString());
+                VersionInfo dtdVersionInfo = source.getDtdVersionInfo();
+                writeString(out, dtdVersionInfo == null ? null : dtdVersionInfo.toString());
+
+                // path dictionary
+                List<String> paths = new ArrayList<String>();
+                for (String path : source) {
+                    paths.add(path);
+                }
+                out.writeInt(paths.size());
+                for (String path : paths) {
+                    writeString(out, path);
+                }
+                // values, in dictionary order
+                for (String path : paths) {
+                    writeString(out, source.getValueAtDPath(path));
+                }
+                // full paths that differ from the distinguishing paths
+                List<Integer> deltaIndexes = new ArrayList<Integer>();
+                for (int i = 0; i < paths.size(); ++i) {
+                    String path = paths.get(i);
+                    if (!path.equals(source.getFullPathAtDPath(path))) {
+                        deltaIndexes.add(i);
+                    }
+                }
+                out.writeInt(deltaIndexes.size());
+                for (int index : deltaIndexes) {
+                    out.writeInt(index);
+                    writeString(out, source.getFullPathAtDPath(paths.get(index)));
+                }
+
+                Comments comments = source.getXpathComments();
+                writeString(out, comments.getInitialComment());
+                writeString(out, comments.getFinalComment());
+                for (CommentType style : CommentType.values()) {
+                    Map<String, String> styleComments = comments.getComments(style);
+                    out.writeInt(styleComments.size());
+                    for (Entry<String, String> entry : styleComments.entrySet()) {
+                        writeString(out, entry.getKey());
+                        writeString(out, entry.getValue());
+                    }
+                }
+            }
+            Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Read a snapshot, if it is fresh.
+     *
+     * @param snapshotFile
+     * @param sourceFiles the files that the snapshot must have been made from
+     * @return an unfrozen CLDRFile, or null if the snapshot doesn't exist or is stale
+     */
+    public static CLDRFile read(File snapshotFile, List<File> sourceFiles) throws IOException {
+        if (!snapshotFile.canRead()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(snapshotFile, "r");
+            FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Reader reader = new Reader(buffer);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int fileCount = buffer.getInt();
+            if (fileCount < sourceFiles.size()) {
+                return null;
+            }
+            for (int i = 0; i < fileCount; ++i) {
+                String fileName = reader.readString();
+                long lastModified = buffer.getLong();
+                long length = buffer.getLong();
+                File file = new File(fileName);
+                if (i < sourceFiles.size() && !sourceFiles.get(i).getAbsolutePath().equals(fileName)
+                    || file.lastModified() != lastModified
+                    || file.length() != length) {
+                    if (DEBUG) {
+                        System.out.println("Stale snapshot " + snapshotFile + " for " + fileName);
+                    }
+                    return null;
+                }
+            }
+
+            String localeID = reader.readString();
+            boolean nonInheriting = buffer.get() != 0;
+            String dtdType = reader.readString();
+            String dtdVersionInfo = reader.readString();
+
+            SimpleXMLSource source = new SimpleXMLSource(localeID);
+            source.setNonInheriting(nonInheriting);
+            if (dtdVersionInfo != null) {
+                source.setDtdVersionInfo(VersionInfo.getInstance(dtdVersionInfo));
+            }
+
+            int pathCount = buffer.getInt();
+            String[] paths = new String[pathCount];
+            for (int i = 0; i < pathCount; ++i) {
+                paths[i] = reader.readString();
+            }
+            for (int i = 0; i < pathCount; ++i) {
+                source.putValueAtDPath(paths[i], reader.readString());
+            }
+            int deltaCount = buffer.getInt();
+            for (int i = 0; i < deltaCount; ++i) {
+                int index = buffer.getInt();
+                source.putFullPathAtDPath(paths[index], reader.readString());
+            }
+
+            Comments comments = source.getXpathComments();
+            comments.setInitialComment(reader.readString());
+            comments.setFinalComment(reader.readString());
+            for (CommentType style : CommentType.values()) {
+                int commentCount = buffer.getInt();
+                for (int i = 0; i < commentCount; ++i) {
+                    comments.addComment(style, reader.readString(), reader.readString());
+                }
+            }
+
+            CLDRFile result = new CLDRFile(source);
+            if (dtdType != null) {
+                result.setDtdType(DtdType.valueOf(dtdType));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Load a CLDRFile from a fresh snapshot if there is one; otherwise parse the XML files
+     * and (re)write the snapshot. Problems with the snapshot itself are never fatal: the XML is used instead.
+     *
+     * @return an unfrozen CLDRFile
+     */
+    public static CLDRFile load(File snapshotDir, String localeName, List<File> dirs, DraftStatus minimalDraftStatus) {
+        File snapshotFile = getSnapshotFile(snapshotDir, localeName, dirs, minimalDraftStatus);
+        List<File> sourceFiles = getSourceFiles(localeName, dirs);
+        try {
+            CLDRFile result = read(snapshotFile, sourceFiles);
+            if (result != null) {
+                return result;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable snapshot " + snapshotFile + ": " + e);
+        }
+        CLDRFile result = SimpleFactory.makeFile(localeName, dirs, minimalDraftStatus);
+        try {
+            write(result, sourceFiles, snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Couldn't write snapshot " + snapshotFile + ": " + e);
+        }
+        return result;
+    }
+
+    private static File getDtdFile(DtdType dtdType) {
+        return new File(CLDRConfig.getInstance().getCldrBaseDirectory(), dtdType.dtdPath);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads length-prefixed UTF-8 strings, reusing one byte buffer.
+     */
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private byte[] bytes = new byte[256];
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        String readString() {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(bytes, 0, length);
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
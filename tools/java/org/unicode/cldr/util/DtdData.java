@@ -24,6 +24,8 @@ import java.util.regex.Pattern;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSet.Builder;
 import com.google.common.collect.ImmutableSetMultimap;
@@ -787,31 +789,36 @@ public class DtdData extends XMLFileReader.SimpleHandler {
     }
 
     private class DtdComparator implements Comparator<String> {
+        // the paths are read in place, with a pair of views per thread, since sorting calls this very often
+        private final ThreadLocal<XPathView[]> views = new ThreadLocal<XPathView[]>() {
+            @Override
+            protected XPathView[] initialValue() {
+                return new XPathView[] { new XPathView(), new XPathView() };
+            }
+        };
+
         @Override
         public int compare(String path1, String path2) {
-            XPathParts a = XPathParts.getFrozenInstance(path1);
-            XPathParts b = XPathParts.getFrozenInstance(path2);
+            XPathView[] pair = views.get();
+            XPathView a = pair[0].set(path1);
+            XPathView b = pair[1].set(path2);
             // there must always be at least one element
-            String baseA = a.getElement(0);
-            String baseB = b.getElement(0);
-            if (!ROOT.name.equals(baseA) || !ROOT.name.equals(baseB)) {
-                throw new IllegalArgumentException("Comparing different DTDs: " + ROOT.name + ", " + baseA + ", " + baseB);
+            if (!a.elementEquals(0, ROOT.name) || !b.elementEquals(0, ROOT.name)) {
+                throw new IllegalArgumentException("Comparing different DTDs: " + ROOT.name + ", " + a.getElement(0) + ", " + b.getElement(0));
             }
             int min = Math.min(a.size(), b.size());
             Element parent = ROOT;
             Element elementA;
             for (int i = 1; i < min; ++i, parent = elementA) {
                 // add extra test for "fake" elements, used in diffing. they always start with _
-                String elementRawA = a.getElement(i);
-                String elementRawB = b.getElement(i);
-                if (elementRawA.startsWith("_")) {
-                    return elementRawB.startsWith("_") ? elementRawA.compareTo(elementRawB) : -1;
-                } else if (elementRawB.startsWith("_")) {
+                if (a.getElementFirstChar(i) == '_') {
+                    return b.getElementFirstChar(i) == '_' ? a.getElement(i).compareTo(b.getElement(i)) : -1;
+                } else if (b.getElementFirstChar(i) == '_') {
                     return 1;
                 }
                 //
-                elementA = nameToElement.get(elementRawA);
-                Element elementB = nameToElement.get(elementRawB);
+                elementA = getElement(a, i);
+                Element elementB = a.elementEquals(i, b, i) ? elementA : getElement(b, i);
                 if (elementA != elementB) {
                     int aa = parent.children.get(elementA);
                     int bb = parent.children.get(elementB);
@@ -829,12 +836,12 @@ public class DtdData extends XMLFileReader.SimpleHandler {
                 // in the dtd
 
                 // Handle the special added elements
-                String aqValue = a.getAttributeValue(i, "_q");
-                if (aqValue != null) {
-                    String bqValue = b.getAttributeValue(i, "_q");
-                    if (!aqValue.equals(bqValue)) {
-                        int aValue = Integer.parseInt(aqValue);
-                        int bValue = Integer.parseInt(bqValue);
+                int aq = a.findAttribute(i, "_q");
+                if (aq >= 0) {
+                    int bq = b.findAttribute(i, "_q");
+                    if (bq < 0 || !a.attributeValueEquals(i, aq, b, i, bq)) {
+                        int aValue = Integer.parseInt(a.getAttributeValue(i, aq));
+                        int bValue = Integer.parseInt(b.getAttributeValue(i, "_q"));
                         return aValue - bValue;
                     }
                     --countA;
@@ -843,29 +850,33 @@ public class DtdData extends XMLFileReader.SimpleHandler {
 
                 attributes: for (Entry<Attribute, Integer> attr : elementA.attributes.entrySet()) {
                     Attribute main = attr.getKey();
-                    String valueA = a.getAttributeValue(i, main.name);
-                    String valueB = b.getAttributeValue(i, main.name);
-                    if (valueA == null) {
-                        if (valueB != null) {
+                    int indexA = a.findAttribute(i, main.name);
+                    int indexB = b.findAttribute(i, main.name);
+                    if (indexA < 0) {
+                        if (indexB >= 0) {
                             return -1;
                         }
-                    } else if (valueB == null) {
+                    } else if (indexB < 0) {
                         return 1;
-                    } else if (valueA.equals(valueB)) {
+                    } else if (a.attributeValueEquals(i, indexA, b, i, indexB)) {
                         --countA;
                         --countB;
                         if (countA == 0 && countB == 0) {
                             break attributes;
                         }
                         continue; // TODO
-                    } else if (main.attributeValueComparator != null) {
-                        return main.attributeValueComparator.compare(valueA, valueB);
-                    } else if (main.values.size() != 0) {
-                        int aa = main.values.get(valueA);
-                        int bb = main.values.get(valueB);
-                        return aa - bb;
                     } else {
-                        return valueA.compareTo(valueB);
+                        String valueA = a.getAttributeValue(i, indexA);
+                        String valueB = b.getAttributeValue(i, indexB);
+                        if (main.attributeValueComparator != null) {
+                            return main.attributeValueComparator.compare(valueA, valueB);
+                        } else if (main.values.size() != 0) {
+                            int aa = main.values.get(valueA);
+                            int bb = main.values.get(valueB);
+                            return aa - bb;
+                        } else {
+                            return valueA.compareTo(valueB);
+                        }
                     }
                 }
                 if (countA != 0 || countB != 0) {
@@ -876,6 +887,188 @@ public class DtdData extends XMLFileReader.SimpleHandler {
         }
     }
 
+    /**
+     * Get the DTD element for an element of the path. Elements are unique by name;
+     * the callers check that it is a child of the parent.
+     */
+    private Element getElement(XPathView view, int i) {
+        return nameToElement.get(view.getElement(i));
+    }
+
+    /**
+     * A path compiled into a sort key that preserves the order of the DTD comparator, so that sorting
+     * compares int arrays instead of parsing paths.
+     * <p>
+     * For each element after the root, the key has the index of the element among its parent's children,
+     * then for each attribute of the element in DTD order: 0 if the attribute is missing; 1 + the index of the value
+     * for attributes with enumerated values; or 1 followed by a negative reference to a string value, for attributes
+     * whose values are compared as strings.
+     * Paths that the DTD comparator treats specially (fake elements in diffs, or elements and attributes that aren't
+     * in the DTD) get a key that falls back to the DTD comparator.
+     */
+    public final class SortKey implements Comparable<SortKey> {
+        private final String path;
+        private final int[] key;
+        private final String[] values;
+        private final Attribute[] valueAttributes;
+
+        private SortKey(String path) {
+            this.path = path;
+            XPathView view = new XPathView().set(path);
+            if (!view.elementEquals(0, ROOT.name)) {
+                throw new IllegalArgumentException("Comparing different DTDs: " + ROOT.name + ", " + view.getElement(0));
+            }
+            int[] key = new int[4 * view.size()];
+            int keyLength = 0;
+            List<String> values = new ArrayList<String>();
+            List<Attribute> valueAttributes = new ArrayList<Attribute>();
+            boolean valid = true;
+            Element parent = ROOT;
+            elements: for (int i = 1; i < view.size(); ++i) {
+                if (view.getElementFirstChar(i) == '_') {
+                    valid = false;
+                    break;
+                }
+                Element element = getElement(view, i);
+                Integer elementIndex = element == null ? null : parent.children.get(element);
+                if (elementIndex == null) {
+                    valid = false;
+                    break;
+                }
+                int attributeCount = view.getAttributeCount(i);
+                int needed = keyLength + 2 + 2 * element.attributes.size();
+                if (needed > key.length) {
+                    key = Arrays.copyOf(key, Math.max(needed, 2 * key.length));
+                }
+                key[keyLength++] = elementIndex;
+                if (attributeCount != 0) {
+                    int q = view.findAttribute(i, "_q");
+                    if (q >= 0) {
+                        int qValue = Integer.parseInt(view.getAttributeValue(i, q));
+                        if (qValue < 0) {
+                            valid = false;
+                            break;
+                        }
+                        key[keyLength++] = qValue;
+                        --attributeCount;
+                    }
+                }
+                for (Attribute attribute : element.attributes.keySet()) {
+                    int index = attributeCount == 0 ? -1 : view.findAttribute(i, attribute.name);
+                    if (index < 0) {
+                        key[keyLength++] = 0;
+                        continue;
+                    }
+                    --attributeCount;
+                    String value = view.getAttributeValue(i, index);
+                    if (attribute.attributeValueComparator == null && attribute.values.size() != 0) {
+                        Integer valueIndex = attribute.values.get(value);
+                        if (valueIndex == null) {
+                            valid = false;
+                            break elements;
+                        }
+                        key[keyLength++] = 1 + valueIndex;
+                    } else {
+                        key[keyLength++] = 1;
+                        key[keyLength++] = -1 - values.size();
+                        values.add(value);
+                        valueAttributes.add(attribute);
+                    }
+                }
+                if (attributeCount != 0) { // attributes not in the DTD
+                    valid = false;
+                    break;
+                }
+                parent = element;
+            }
+            if (valid) {
+                this.key = Arrays.copyOf(key, keyLength);
+                this.values = values.toArray(new String[values.size()]);
+                this.valueAttributes = valueAttributes.toArray(new Attribute[valueAttributes.size()]);
+            } else {
+                this.key = null;
+                this.values = null;
+                this.valueAttributes = null;
+            }
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            if (key == null || other.key == null) {
+                return dtdComparator.compare(path, other.path);
+            }
+            int[] otherKey = other.key;
+            int min = Math.min(key.length, otherKey.length);
+            for (int k = 0; k < min; ++k) {
+                int x = key[k];
+                int y = otherKey[k];
+                if (x != y) {
+                    return x < y ? -1 : 1;
+                }
+                if (x < 0) { // the same string value in both keys
+                    int slot = -1 - x;
+                    String value = values[slot];
+                    String otherValue = other.values[slot];
+                    if (!value.equals(otherValue)) {
+                        Comparator<String> comparator = valueAttributes[slot].attributeValueComparator;
+                        return comparator != null ? comparator.compare(value, otherValue) : value.compareTo(otherValue);
+                    }
+                }
+            }
+            return key.length - otherKey.length;
+        }
+
+        @Override
+        public String toString() {
+            return key == null ? path : path + " " + Arrays.toString(key);
+        }
+    }
+
+    /**
+     * Maximum number of sort keys cached for each DTD; can be changed with the property CLDR_SORT_KEY_CACHE_SIZE
+     */
+    private static final int SORT_KEY_CACHE_SIZE = CLDRConfig.getInstance().getProperty("CLDR_SORT_KEY_CACHE_SIZE", 100000);
+
+    private final Cache<String, SortKey> sortKeys = CacheBuilder.newBuilder()
+        .concurrencyLevel(16)
+        .maximumSize(SORT_KEY_CACHE_SIZE)
+        .build();
+
+    /**
+     * Get the sort key for a path, cached by path. Only the most recently used keys are kept,
+     * so arbitrary paths don't grow the cache without bound.
+     *
+     * @throws IllegalArgumentException if the path is not for this DTD
+     */
+    public SortKey getSortKey(String path) {
+        SortKey result = sortKeys.getIfPresent(path);
+        if (result == null) {
+            // two threads may build the same key; either one is fine
+            result = new SortKey(path);
+            sortKeys.put(path, result);
+        }
+        return result;
+    }
+
+    private final Comparator<String> sortKeyComparator = new Comparator<String>() {
+        @Override
+        public int compare(String path1, String path2) {
+            return path1.equals(path2) ? 0 : getSortKey(path1).compareTo(getSortKey(path2));
+        }
+    };
+
+    /**
+     * Get a comparator with the same order as getDtdComparator, that compares the cached sort keys of the paths.
+     * Use it for collections of paths that are sorted more than once, such as the paths of CLDRFiles.
+     */
+    public Comparator<String> getSortKeyComparator() {
+        return sortKeyComparator;
+    }
+
     public MapComparator<String> getAttributeComparator() {
         return attributeComparator;
     }
@@ -5,13 +5,22 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import org.unicode.cldr.util.CLDRFile.DraftStatus;
 import org.unicode.cldr.util.CLDRLocale.SublocaleProvider;
 import org.unicode.cldr.util.XMLSource.ResolvingSource;
 
+import com.ibm.icu.util.ICUException;
+
 /**
  * A factory is the normal method to produce a set of CLDRFiles from a directory of XML files.
  * See SimpleFactory for a concrete subclass.
@@ -25,6 +34,8 @@ public abstract class Factory implements SublocaleProvider {
 
     private File supplementalDirectory = null;
 
+    private boolean flattenResolved = false;
+
     /**
      * Note, the source director(ies) may be a list (seed/common). Therefore, this function is deprecated
      *
@@ -129,6 +140,48 @@ public abstract class Factory implements SublocaleProvider {
         return make(currentLocaleID, true, madeWithMinimalDraftStatus);
     }
 
+    /**
+     * Make the CLDRFiles for a set of locales in bulk, in parallel on the executor. Each file is made with
+     * handleMake, just as make() does, so the results are the same (cached) files that make() returns. With a
+     * caching factory such as SimpleFactory, the parents shared by several locales are loaded only once.
+     *
+     * @param localeIDs the locales to make
+     * @param resolved whether to return resolved files
+     * @param madeWithMinimalDraftStatus
+     * @param executor runs the loading tasks, such as ForkJoinPool.commonPool()
+     * @return a map from each requested locale to its CLDRFile, sorted by locale
+     */
+    public Map<String, CLDRFile> makeAll(Set<String> localeIDs, boolean resolved, DraftStatus madeWithMinimalDraftStatus,
+        Executor executor) {
+        Map<String, CompletableFuture<CLDRFile>> futures = new TreeMap<String, CompletableFuture<CLDRFile>>();
+        for (String localeID : localeIDs) {
+            futures.put(localeID, makeAsync(localeID, resolved, madeWithMinimalDraftStatus, executor));
+        }
+        Map<String, CLDRFile> result = new TreeMap<String, CLDRFile>();
+        for (Entry<String, CompletableFuture<CLDRFile>> entry : futures.entrySet()) {
+            try {
+                result.put(entry.getKey(), entry.getValue().join().setSupplementalDirectory(getSupplementalDirectory()));
+            } catch (CompletionException e) {
+                throw new ICUException("Couldn't make CLDR file for " + entry.getKey(), e.getCause());
+            }
+        }
+        return result;
+    }
+
+    private CompletableFuture<CLDRFile> makeAsync(final String localeID, final boolean resolved,
+        final DraftStatus madeWithMinimalDraftStatus, Executor executor) {
+        return CompletableFuture.supplyAsync(new Supplier<CLDRFile>() {
+            @Override
+            public CLDRFile get() {
+                CLDRFile file = handleMake(localeID, resolved, madeWithMinimalDraftStatus);
+                if (file == null) {
+                    throw new NullPointerException(Factory.this + ".handleMake returned a null CLDRFile for " + localeID);
+                }
+                return file;
+            }
+        }, executor);
+    }
+
     public static XMLSource makeResolvingSource(List<XMLSource> sources) {
         return new ResolvingSource(sources);
     }
@@ -167,7 +220,11 @@ public abstract class Factory implements SublocaleProvider {
             sourceList.add(source);
             curLocale = LocaleIDParser.getParent(curLocale);
         }
-        return new ResolvingSource(sourceList);
+        ResolvingSource result = new ResolvingSource(sourceList);
+        if (flattenResolved) {
+            result.flatten();
+        }
+        return result;
     }
 
     public abstract DraftStatus getMinimalDraftStatus();
@@ -253,6 +310,23 @@ public abstract class Factory implements SublocaleProvider {
         return this;
     }
 
+    public boolean isFlattenResolved() {
+        return flattenResolved;
+    }
+
+    /**
+     * Sets whether resolved CLDRFiles made by this Factory are flattened when they are made
+     * (see {@link ResolvingSource#flatten()}). This suits read-only batch use, where every value is read;
+     * it is off by default.
+     *
+     * @param flattenResolved
+     * @return this, for chaining
+     */
+    public Factory setFlattenResolved(boolean flattenResolved) {
+        this.flattenResolved = flattenResolved;
+        return this;
+    }
+
     // TODO(jchye): Clean this up.
     public CLDRFile getSupplementalData() {
         try {
@@ -1,5 +1,14 @@
 package org.unicode.cldr.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
@@ -15,13 +24,15 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.regex.Matcher;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 import org.unicode.cldr.draft.ScriptMetadata;
 import org.unicode.cldr.draft.ScriptMetadata.Info;
 import org.unicode.cldr.tool.LikelySubtags;
 import org.unicode.cldr.util.RegexLookup.Finder;
+import org.unicode.cldr.util.RegexLookup.LookupType;
 import org.unicode.cldr.util.With.SimpleIterator;
 
 import com.google.common.base.Splitter;
@@ -110,6 +121,11 @@ public class PathHeader implements Comparable<PathHeader> {
         final String mainOrder;
         final int order;
 
+        private SubstringOrder(String mainOrder, int order) {
+            this.mainOrder = mainOrder;
+            this.order = order;
+        }
+
         public SubstringOrder(String source) {
             int pos = source.lastIndexOf('-') + 1;
             int ordering = COUNTS.indexOf(source.substring(pos));
@@ -346,9 +362,6 @@ public class PathHeader implements Comparable<PathHeader> {
     private final SubstringOrder codeSuborder;
 
     static final Pattern SEMI = PatternCache.get("\\s*;\\s*");
-    static final Matcher ALT_MATCHER = PatternCache.get(
-        "\\[@alt=\"([^\"]*+)\"]")
-        .matcher("");
 
     static final Collator alphabetic = CLDRConfig.getInstance().getCollatorRoot();
 
@@ -600,32 +613,40 @@ public class PathHeader implements Comparable<PathHeader> {
 
     public static class Factory implements Transform<String, PathHeader> {
         static final RegexLookup<RawData> lookup = RegexLookup
-            .of(new PathHeaderTransform())
-            .setPatternTransform(
-                RegexLookup.RegexFinderTransformPath)
+            .<RawData> of(LookupType.COMPILED_PATTERN_LOOKUP, RegexLookup.RegexFinderTransformPath)
+            .setValueTransform(new PathHeaderTransform())
             .loadFromFile(
                 PathHeader.class,
                 "data/PathHeader.txt");
-        // synchronized with lookup
-        static final Output<String[]> args = new Output<String[]>();
-        // synchronized with lookup
+        // synchronized with lookup, only collected if collectDiagnostics
         static final Counter<RawData> counter = new Counter<RawData>();
-        // synchronized with lookup
+        // synchronized with lookup, only collected if collectDiagnostics
         static final Map<RawData, String> samples = new HashMap<RawData, String>();
-        // synchronized with lookup
-        static int order;
-        static SubstringOrder suborder;
 
-        static final Map<String, PathHeader> cache = new HashMap<String, PathHeader>();
-        // synchronized with cache
+        private static volatile boolean collectDiagnostics = Boolean.getBoolean("CLDR_PATH_HEADER_DIAGNOSTICS");
+
+        // reads the alt attribute in fromPath without parsing the path into XPathParts
+        private static final ThreadLocal<XPathView> ALT_VIEW = new ThreadLocal<XPathView>() {
+            @Override
+            protected XPathView initialValue() {
+                return new XPathView();
+            }
+        };
+
+        static final ConcurrentHashMap<String, PathHeader> cache = new ConcurrentHashMap<String, PathHeader>();
+        // synchronized with sectionPageToPaths
         static final Map<SectionId, Map<PageId, SectionPage>> sectionToPageToSectionPage = new EnumMap<SectionId, Map<PageId, SectionPage>>(
             SectionId.class);
         static final Relation<SectionPage, String> sectionPageToPaths = Relation
             .of(new TreeMap<SectionPage, Set<String>>(),
                 HashSet.class);
         private static CLDRFile englishFile;
+        // synchronized with lookup, only collected if collectDiagnostics
         private Set<String> matchersFound = new HashSet<String>();
 
+        private static final int TABLE_MAGIC = 0x50484454; // "PHDT"
+        private static final int TABLE_VERSION = 1;
+
         /**
          * Create a factory for creating PathHeaders.
          *
@@ -634,6 +655,29 @@ public class PathHeader implements Comparable<PathHeader> {
          */
         private Factory(CLDRFile englishFile) {
             setEnglishCLDRFileIfNotSet(englishFile); // temporary
+            String tableFile = CldrUtility.getProperty("CLDR_PATH_HEADER_TABLE", null);
+            if (tableFile != null) {
+                try {
+                    if (loadTable(new File(tableFile)) < 0) {
+                        System.err.println("Ignoring stale PathHeader table " + tableFile);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Ignoring unreadable PathHeader table " + tableFile + ": " + e);
+                }
+            }
+        }
+
+        /**
+         * Turn on or off the collection of the data returned by getInternalCounter() and getUnmatchedRegexes().
+         * It is off by default (or set with -DCLDR_PATH_HEADER_DIAGNOSTICS=true), since it serializes the lookups.
+         * Call clearCache() after turning it on, so that already cached paths are counted.
+         */
+        public static void setCollectDiagnostics(boolean collect) {
+            collectDiagnostics = collect;
+        }
+
+        public static boolean isCollectingDiagnostics() {
+            return collectDiagnostics;
         }
 
         /**
@@ -656,9 +700,7 @@ public class PathHeader implements Comparable<PathHeader> {
          * Use only when trying to find unmatched patterns
          */
         public void clearCache() {
-            synchronized (cache) {
-                cache.clear();
-            }
+            cache.clear();
         }
 
         /**
@@ -683,80 +725,181 @@ public class PathHeader implements Comparable<PathHeader> {
             if (path == null) {
                 throw new NullPointerException("Path cannot be null");
             }
-            synchronized (cache) {
-                PathHeader old = cache.get(path);
-                if (old != null) {
-                    return old;
+            PathHeader cached = cache.get(path);
+            if (cached != null) {
+                return cached;
+            }
+            String cleanPath = path;
+            // special handling for alt
+            String alt = null;
+            int altPos = cleanPath.indexOf("[@alt=");
+            if (altPos >= 0 && !cleanPath.endsWith("/symbol[@alt=\"narrow\"]")) {
+                XPathView view = ALT_VIEW.get().set(cleanPath);
+                int altElement = -1;
+                int altAttribute = -1;
+                for (int i = 0; i < view.size() && altAttribute < 0; ++i) {
+                    altElement = i;
+                    altAttribute = view.findAttribute(i, "alt");
+                }
+                if (altAttribute >= 0) {
+                    alt = view.getAttributeValue(altElement, altAttribute);
+                    cleanPath = view.getPathWithoutAttribute(altElement, altAttribute);
+                    int pos = alt.indexOf("proposed");
+                    if (pos >= 0 && !path.startsWith("//ldml/collations")) {
+                        alt = pos == 0 ? null : alt.substring(0, pos - 1);
+                        // drop "proposed",
+                        // change "xxx-proposed" to xxx.
+                    }
+                } else {
+                    throw new IllegalArgumentException();
                 }
             }
-            synchronized (lookup) {
-                String cleanPath = path;
-                // special handling for alt
-                String alt = null;
-                int altPos = cleanPath.indexOf("[@alt=");
-                if (altPos >= 0 && !cleanPath.endsWith("/symbol[@alt=\"narrow\"]")) {
-                    if (ALT_MATCHER.reset(cleanPath).find()) {
-                        alt = ALT_MATCHER.group(1);
-                        cleanPath = cleanPath.substring(0, ALT_MATCHER.start())
-                            + cleanPath.substring(ALT_MATCHER.end());
-                        int pos = alt.indexOf("proposed");
-                        if (pos >= 0 && !path.startsWith("//ldml/collations")) {
-                            alt = pos == 0 ? null : alt.substring(0, pos - 1);
-                            // drop "proposed",
-                            // change "xxx-proposed" to xxx.
+            Output<String[]> args = new Output<String[]>();
+            Output<Finder> matcherFound = new Output<Finder>();
+            RawData data = lookup.get(cleanPath, null, args, matcherFound, failures);
+            if (data == null) {
+                return null;
+            }
+            PathHeader result;
+            try {
+                if (collectDiagnostics) {
+                    synchronized (lookup) {
+                        matchersFound.add(matcherFound.value.toString());
+                        counter.add(data, 1);
+                        if (!samples.containsKey(data)) {
+                            samples.put(data, cleanPath);
                         }
-                    } else {
-                        throw new IllegalArgumentException();
                     }
                 }
-                Output<Finder> matcherFound = new Output<Finder>();
-                RawData data = lookup.get(cleanPath, null, args, matcherFound, failures);
-                if (data == null) {
-                    return null;
+                // the functions called by fix() set the order in this, so each call has its own
+                Order order = new Order();
+                SectionId sectionId = SectionId.forString(fix(data.section, 0, args.value, order));
+                PageId pageId = PageId.forString(fix(data.page, 0, args.value, order));
+                String header = fix(data.header, data.headerOrder, args.value, order);
+                int headerOrder = order.order;
+                String code = fix(data.code + (alt == null ? "" : ("-" + alt)), data.codeOrder, args.value, order);
+                result = new PathHeader(
+                    sectionId,
+                    pageId,
+                    header,
+                    headerOrder,
+                    code,
+                    order.order,
+                    order.suborder,
+                    data.status,
+                    path);
+            } catch (Exception e) {
+                throw new IllegalArgumentException(
+                    "Probably mismatch in Page/Section enum, or too few capturing groups in regex for " + path,
+                    e);
+            }
+            return addToCache(path, result);
+        }
+
+        /**
+         * Cache the PathHeader for the path, unless another thread got there first.
+         * @return the cached PathHeader
+         */
+        private static PathHeader addToCache(String path, PathHeader result) {
+            PathHeader old = cache.putIfAbsent(path, result);
+            if (old != null) {
+                return old;
+            }
+            synchronized (sectionPageToPaths) {
+                Map<PageId, SectionPage> pageToPathHeaders = sectionToPageToSectionPage
+                    .get(result.sectionId);
+                if (pageToPathHeaders == null) {
+                    sectionToPageToSectionPage.put(result.sectionId, pageToPathHeaders = new EnumMap<PageId, SectionPage>(PageId.class));
                 }
-                matchersFound.add(matcherFound.value.toString());
-                counter.add(data, 1);
-                if (!samples.containsKey(data)) {
-                    samples.put(data, cleanPath);
+                SectionPage sectionPage = pageToPathHeaders.get(result.pageId);
+                if (sectionPage == null) {
+                    sectionPage = new SectionPage(result.sectionId, result.pageId);
+                    pageToPathHeaders.put(result.pageId, sectionPage);
                 }
-                try {
-                    PathHeader result = new PathHeader(
-                        SectionId.forString(fix(data.section, 0)),
-                        PageId.forString(fix(data.page, 0)),
-                        fix(data.header, data.headerOrder),
-                        order, // only valid after call to fix. TODO, make
-                        // this cleaner
-                        fix(data.code + (alt == null ? "" : ("-" + alt)), data.codeOrder),
-                        order, // only valid after call to fix
-                        suborder,
-                        data.status,
-                        path);
-                    synchronized (cache) {
-                        PathHeader old = cache.get(path);
-                        if (old == null) {
-                            cache.put(path, result);
-                        } else {
-                            result = old;
-                        }
-                        Map<PageId, SectionPage> pageToPathHeaders = sectionToPageToSectionPage
-                            .get(result.sectionId);
-                        if (pageToPathHeaders == null) {
-                            sectionToPageToSectionPage.put(result.sectionId, pageToPathHeaders = new EnumMap<PageId, SectionPage>(PageId.class));
-                        }
-                        SectionPage sectionPage = pageToPathHeaders.get(result.pageId);
-                        if (sectionPage == null) {
-                            sectionPage = new SectionPage(result.sectionId, result.pageId);
-                            pageToPathHeaders.put(result.pageId, sectionPage);
-                        }
-                        sectionPageToPaths.put(sectionPage, path);
+                sectionPageToPaths.put(sectionPage, path);
+            }
+            return result;
+        }
+
+        /**
+         * Precompute the PathHeaders for the paths, and write them to a table that can be loaded with loadTable,
+         * or at startup with -DCLDR_PATH_HEADER_TABLE=file. Paths without a PathHeader are skipped.
+         * The table is only loaded if PathHeader.txt hasn't changed; it should also be rebuilt when English changes.
+         *
+         * @return the number of PathHeaders written
+         */
+        public int writeTable(Iterable<String> paths, File file) throws IOException {
+            Map<String, PathHeader> pathHeaders = new TreeMap<String, PathHeader>();
+            for (String path : paths) {
+                PathHeader pathHeader = fromPath(path);
+                if (pathHeader != null) {
+                    pathHeaders.put(path, pathHeader);
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+                out.writeInt(TABLE_MAGIC);
+                out.writeInt(TABLE_VERSION);
+                out.writeLong(getRulesChecksum());
+                out.writeInt(pathHeaders.size());
+                for (PathHeader pathHeader : pathHeaders.values()) {
+                    out.writeUTF(pathHeader.originalPath);
+                    out.writeUTF(pathHeader.sectionId.name());
+                    out.writeUTF(pathHeader.pageId.name());
+                    out.writeUTF(pathHeader.getHeader());
+                    out.writeInt(pathHeader.headerOrder);
+                    out.writeUTF(pathHeader.code);
+                    out.writeInt(pathHeader.codeOrder);
+                    SubstringOrder codeSuborder = pathHeader.codeSuborder;
+                    out.writeBoolean(codeSuborder != null);
+                    if (codeSuborder != null) {
+                        out.writeUTF(codeSuborder.mainOrder);
+                        out.writeInt(codeSuborder.order);
                     }
-                    return result;
-                } catch (Exception e) {
-                    throw new IllegalArgumentException(
-                        "Probably mismatch in Page/Section enum, or too few capturing groups in regex for " + path,
-                        e);
+                    out.writeUTF(pathHeader.status.name());
                 }
             }
+            return pathHeaders.size();
+        }
+
+        /**
+         * Add the PathHeaders in a table written by writeTable to the cache, so that they don't need to be computed.
+         *
+         * @return the number of PathHeaders loaded, or -1 if the table was made with different PathHeader.txt data
+         */
+        public static int loadTable(File file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+                if (in.readInt() != TABLE_MAGIC || in.readInt() != TABLE_VERSION || in.readLong() != getRulesChecksum()) {
+                    return -1;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; ++i) {
+                    String path = in.readUTF();
+                    SectionId sectionId = SectionId.valueOf(in.readUTF());
+                    PageId pageId = PageId.valueOf(in.readUTF());
+                    String header = in.readUTF();
+                    int headerOrder = in.readInt();
+                    String code = in.readUTF();
+                    int codeOrder = in.readInt();
+                    SubstringOrder codeSuborder = in.readBoolean()
+                        ? new SubstringOrder(in.readUTF(), in.readInt())
+                        : null;
+                    SurveyToolStatus status = SurveyToolStatus.valueOf(in.readUTF());
+                    addToCache(path, new PathHeader(sectionId, pageId, header, headerOrder,
+                        code, codeOrder, codeSuborder, status, path));
+                }
+                return count;
+            }
+        }
+
+        /**
+         * A checksum of the PathHeader.txt rules, used to detect stale tables.
+         */
+        private static long getRulesChecksum() {
+            CRC32 crc = new CRC32();
+            for (Map.Entry<Finder, RawData> entry : lookup) {
+                crc.update((entry.getKey() + "\t" + entry.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return crc.getValue();
         }
 
         private static class SectionPage implements Comparable<SectionPage> {
@@ -819,7 +962,7 @@ public class PathHeader implements Comparable<PathHeader> {
          */
         public static Set<String> getCachedPaths(SectionId sectionId, PageId page) {
             Set<String> target = new HashSet<String>();
-            synchronized (cache) {
+            synchronized (sectionPageToPaths) {
                 Map<PageId, SectionPage> pageToSectionPage = sectionToPageToSectionPage
                     .get(sectionId);
                 if (pageToSectionPage == null) {
@@ -1016,6 +1159,7 @@ public class PathHeader implements Comparable<PathHeader> {
 
         /**
          * Get the internal data, for testing and debugging.
+         * Only collected if setCollectDiagnostics(true) was called.
          *
          * @deprecated
          */
@@ -1032,7 +1176,22 @@ public class PathHeader implements Comparable<PathHeader> {
             }
         }
 
-        static Map<String, Transform<String, String>> functionMap = new HashMap<String, Transform<String, String>>();
+        /**
+         * The order and suborder set by the functions called from fix(), one per call of fromPath
+         */
+        private static class Order {
+            int order;
+            SubstringOrder suborder;
+        }
+
+        /**
+         * A function used in PathHeader.txt, like &month. It may set the order.
+         */
+        private interface OrderFunction {
+            String transform(String source, Order ordering);
+        }
+
+        static Map<String, OrderFunction> functionMap = new HashMap<String, OrderFunction>();
         static String[] months = { "Jan", "Feb", "Mar",
             "Apr", "May", "Jun",
             "Jul", "Aug", "Sep",
@@ -1049,48 +1208,48 @@ public class PathHeader implements Comparable<PathHeader> {
         // supplementalDataInfo.getLikelySubtags();
         static LikelySubtags likelySubtags = new LikelySubtags();
         static HyphenSplitter hyphenSplitter = new HyphenSplitter();
-        static Transform<String, String> catFromTerritory;
-        static Transform<String, String> catFromTimezone;
+        static OrderFunction catFromTerritory;
+        static OrderFunction catFromTimezone;
         static {
             // Put any new functions used in PathHeader.txt in here.
             // To change the order of items within a section or heading, set
-            // order/suborder to be the relative position of the current item.
-            functionMap.put("month", new Transform<String, String>() {
-                public String transform(String source) {
+            // ordering.order/suborder to be the relative position of the current item.
+            functionMap.put("month", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     int m = Integer.parseInt(source);
-                    order = m;
+                    ordering.order = m;
                     return months[m - 1];
                 }
             });
-            functionMap.put("count", new Transform<String, String>() {
-                public String transform(String source) {
-                    suborder = new SubstringOrder(source);
+            functionMap.put("count", new OrderFunction() {
+                public String transform(String source, Order ordering) {
+                    ordering.suborder = new SubstringOrder(source);
                     return source;
                 }
             });
-            functionMap.put("count2", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("count2", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     int pos = source.indexOf('-');
                     source = pos + source.substring(pos);
-                    suborder = new SubstringOrder(source); // make 10000-...
+                    ordering.suborder = new SubstringOrder(source); // make 10000-...
                     // into 5-
                     return source;
                 }
             });
-            functionMap.put("currencySymbol", new Transform<String, String>() {
-                public String transform(String source) {
-                    order = 901;
+            functionMap.put("currencySymbol", new OrderFunction() {
+                public String transform(String source, Order ordering) {
+                    ordering.order = 901;
                     if (source.endsWith("narrow")) {
-                        order = 902;
+                        ordering.order = 902;
                     }
                     if (source.endsWith("variant")) {
-                        order = 903;
+                        ordering.order = 903;
                     }
                     return source;
                 }
             });
-            functionMap.put("unitCount", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("unitCount", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     String[] unitLengths = { "long", "short", "narrow" };
                     int pos = 9;
                     for (int i = 0; i < unitLengths.length; i++) {
@@ -1099,31 +1258,31 @@ public class PathHeader implements Comparable<PathHeader> {
                             continue;
                         }
                     }
-                    order = pos;
-                    suborder = new SubstringOrder(pos + "-" + source); //
+                    ordering.order = pos;
+                    ordering.suborder = new SubstringOrder(pos + "-" + source); //
                     return source;
                 }
             });
-            functionMap.put("day", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("day", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     int m = days.indexOf(source);
-                    order = m;
+                    ordering.order = m;
                     return source;
                 }
             });
-            functionMap.put("dayPeriod", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("dayPeriod", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     try {
-                        order = dayPeriods.getNumericOrder(source);
+                        ordering.order = dayPeriods.getNumericOrder(source);
                     } catch (Exception e) {
                         // if an old item is tried, like "evening", this will fail.
                         // so that old data still works, hack this.
-                        order = Math.abs(source.hashCode() << 16);
+                        ordering.order = Math.abs(source.hashCode() << 16);
                     }
                     return source;
                 }
             });
-            functionMap.put("calendar", new Transform<String, String>() {
+            functionMap.put("calendar", new OrderFunction() {
                 Map<String, String> fixNames = Builder.with(new HashMap<String, String>())
                     .put("islamicc", "Islamic Civil")
                     .put("roc", "Minguo")
@@ -1132,16 +1291,16 @@ public class PathHeader implements Comparable<PathHeader> {
                     .put("iso8601", "ISO 8601")
                     .freeze();
 
-                public String transform(String source) {
+                public String transform(String source, Order ordering) {
                     String result = fixNames.get(source);
                     return result != null ? result : UCharacter.toTitleCase(source, null);
                 }
             });
 
-            functionMap.put("calField", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("calField", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     String[] fields = source.split(":", 3);
-                    order = 0;
+                    ordering.order = 0;
                     final List<String> widthValues = Arrays.asList(
                         "wide", "abbreviated", "short", "narrow");
                     final List<String> calendarFieldValues = Arrays.asList(
@@ -1180,32 +1339,32 @@ public class PathHeader implements Comparable<PathHeader> {
                         .freeze();
 
                     if (calendarFieldValues.contains(fields[0])) {
-                        order = calendarFieldValues.indexOf(fields[0]) * 100;
+                        ordering.order = calendarFieldValues.indexOf(fields[0]) * 100;
                     } else {
-                        order = calendarFieldValues.size() * 100;
+                        ordering.order = calendarFieldValues.size() * 100;
                     }
 
                     if (fields[0].equals("Formats")) {
                         if (calendarFormatTypes.contains(fields[1])) {
-                            order += calendarFormatTypes.indexOf(fields[1]) * 10;
+                            ordering.order += calendarFormatTypes.indexOf(fields[1]) * 10;
                         } else {
-                            order += calendarFormatTypes.size() * 10;
+                            ordering.order += calendarFormatTypes.size() * 10;
                         }
                         if (calendarFormatSubtypes.contains(fields[2])) {
-                            order += calendarFormatSubtypes.indexOf(fields[2]);
+                            ordering.order += calendarFormatSubtypes.indexOf(fields[2]);
                         } else {
-                            order += calendarFormatSubtypes.size();
+                            ordering.order += calendarFormatSubtypes.size();
                         }
                     } else {
                         if (widthValues.contains(fields[1])) {
-                            order += widthValues.indexOf(fields[1]) * 10;
+                            ordering.order += widthValues.indexOf(fields[1]) * 10;
                         } else {
-                            order += widthValues.size() * 10;
+                            ordering.order += widthValues.size() * 10;
                         }
                         if (calendarContextTypes.contains(fields[2])) {
-                            order += calendarContextTypes.indexOf(fields[2]);
+                            ordering.order += calendarContextTypes.indexOf(fields[2]);
                         } else {
-                            order += calendarContextTypes.size();
+                            ordering.order += calendarContextTypes.size();
                         }
                     }
 
@@ -1221,23 +1380,23 @@ public class PathHeader implements Comparable<PathHeader> {
                 }
             });
 
-            functionMap.put("titlecase", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("titlecase", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     return UCharacter.toTitleCase(source, null);
                 }
             });
-            functionMap.put("categoryFromScript", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("categoryFromScript", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     String script = hyphenSplitter.split(source);
                     Info info = ScriptMetadata.getInfo(script);
                     if (info == null) {
                         info = ScriptMetadata.getInfo("Zzzz");
                     }
-                    order = 100 - info.idUsage.ordinal();
+                    ordering.order = 100 - info.idUsage.ordinal();
                     return info.idUsage.name;
                 }
             });
-            functionMap.put("categoryFromKey", new Transform<String, String>() {
+            functionMap.put("categoryFromKey", new OrderFunction() {
                 Map<String, String> fixNames = Builder.with(new HashMap<String, String>())
                     .put("lb", "Line Break")
                     .put("hc", "Hour Cycle")
@@ -1245,16 +1404,16 @@ public class PathHeader implements Comparable<PathHeader> {
                     .put("cf", "Currency Format")
                     .freeze();
 
-                public String transform(String source) {
+                public String transform(String source, Order ordering) {
                     String fixedName = fixNames.get(source);
                     return fixedName != null ? fixedName : source;
                 }
             });
-            functionMap.put("languageSection", new Transform<String, String>() {
+            functionMap.put("languageSection", new OrderFunction() {
                 char[] languageRangeStartPoints = { 'A', 'E', 'K', 'O', 'T' };
                 char[] languageRangeEndPoints = { 'D', 'J', 'N', 'S', 'Z' };
 
-                public String transform(String source0) {
+                public String transform(String source0, Order ordering) {
                     char firstLetter = getEnglishFirstLetter(source0).charAt(0);
                     for (int i = 0; i < languageRangeStartPoints.length; i++) {
                         if (firstLetter >= languageRangeStartPoints[i] && firstLetter <= languageRangeEndPoints[i]) {
@@ -1265,13 +1424,13 @@ public class PathHeader implements Comparable<PathHeader> {
                     return "Languages";
                 }
             });
-            functionMap.put("firstLetter", new Transform<String, String>() {
-                public String transform(String source0) {
+            functionMap.put("firstLetter", new OrderFunction() {
+                public String transform(String source0, Order ordering) {
                     return getEnglishFirstLetter(source0);
                 }
             });
-            functionMap.put("languageSort", new Transform<String, String>() {
-                public String transform(String source0) {
+            functionMap.put("languageSort", new OrderFunction() {
+                public String transform(String source0, Order ordering) {
                     String languageOnlyPart;
                     int underscorePos = source0.indexOf("_");
                     if (underscorePos > 0) {
@@ -1283,8 +1442,8 @@ public class PathHeader implements Comparable<PathHeader> {
                     return englishFile.getName(CLDRFile.LANGUAGE_NAME, languageOnlyPart) + " \u25BA " + source0;
                 }
             });
-            functionMap.put("scriptFromLanguage", new Transform<String, String>() {
-                public String transform(String source0) {
+            functionMap.put("scriptFromLanguage", new OrderFunction() {
+                public String transform(String source0, Order ordering) {
                     String language = hyphenSplitter.split(source0);
                     String script = likelySubtags.getLikelyScript(language);
                     if (script == null) {
@@ -1297,18 +1456,18 @@ public class PathHeader implements Comparable<PathHeader> {
                 }
             });
             functionMap.put("categoryFromTerritory",
-                catFromTerritory = new Transform<String, String>() {
-                public String transform(String source) {
+                catFromTerritory = new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     String territory = getSubdivisionsTerritory(source, null);
                     String container = Containment.getContainer(territory);
-                    order = Containment.getOrder(territory);
+                    ordering.order = Containment.getOrder(territory);
                     return englishFile.getName(CLDRFile.TERRITORY_NAME, container);
                 }
             });
-            functionMap.put("territorySection", new Transform<String, String>() {
+            functionMap.put("territorySection", new OrderFunction() {
                 final Set<String> specialRegions = new HashSet<String>(Arrays.asList("EZ", "EU", "QO", "UN", "ZZ"));
 
-                public String transform(String source0) {
+                public String transform(String source0, Order ordering) {
                     // support subdivisions
                     String theTerritory = getSubdivisionsTerritory(source0, null);
                     try {
@@ -1334,19 +1493,19 @@ public class PathHeader implements Comparable<PathHeader> {
                 }
             });
             functionMap.put("categoryFromTimezone",
-                catFromTimezone = new Transform<String, String>() {
-                public String transform(String source0) {
+                catFromTimezone = new OrderFunction() {
+                public String transform(String source0, Order ordering) {
                     String territory = Containment.getRegionFromZone(source0);
                     if (territory == null) {
                         territory = "ZZ";
                     }
-                    return catFromTerritory.transform(territory);
+                    return catFromTerritory.transform(territory, ordering);
                 }
             });
-            functionMap.put("timeZonePage", new Transform<String, String>() {
+            functionMap.put("timeZonePage", new OrderFunction() {
                 Set<String> singlePageTerritories = new HashSet<String>(Arrays.asList("AQ", "RU", "ZZ"));
 
-                public String transform(String source0) {
+                public String transform(String source0, Order ordering) {
                     String theTerritory = Containment.getRegionFromZone(source0);
                     if (theTerritory == null || theTerritory == "001") {
                         theTerritory = "ZZ";
@@ -1376,8 +1535,8 @@ public class PathHeader implements Comparable<PathHeader> {
                 }
             });
 
-            functionMap.put("timezoneSorting", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("timezoneSorting", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     final List<String> codeValues = Arrays.asList(
                         "generic-long",
                         "generic-short",
@@ -1386,16 +1545,16 @@ public class PathHeader implements Comparable<PathHeader> {
                         "daylight-long",
                         "daylight-short");
                     if (codeValues.contains(source)) {
-                        order = codeValues.indexOf(source);
+                        ordering.order = codeValues.indexOf(source);
                     } else {
-                        order = codeValues.size();
+                        ordering.order = codeValues.size();
                     }
                     return source;
                 }
             });
 
-            functionMap.put("tzdpField", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("tzdpField", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     Map<String, String> fieldNames = Builder.with(new HashMap<String, String>())
                         .put("regionFormat", "Region Format - Generic")
                         .put("regionFormat-standard", "Region Format - Standard")
@@ -1415,38 +1574,38 @@ public class PathHeader implements Comparable<PathHeader> {
                         "fallbackFormat");
 
                     if (fieldOrder.contains(source)) {
-                        order = fieldOrder.indexOf(source);
+                        ordering.order = fieldOrder.indexOf(source);
                     } else {
-                        order = fieldOrder.size();
+                        ordering.order = fieldOrder.size();
                     }
 
                     String result = fieldNames.get(source);
                     return result == null ? source : result;
                 }
             });
-            functionMap.put("unit", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("unit", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     int m = unitOrder.indexOf(source);
-                    order = m;
+                    ordering.order = m;
                     return source.substring(source.indexOf('-') + 1);
                 }
             });
 
-            functionMap.put("numericSort", new Transform<String, String>() {
+            functionMap.put("numericSort", new OrderFunction() {
                 // Probably only works well for small values, like -5 through +4.
-                public String transform(String source) {
+                public String transform(String source, Order ordering) {
                     Integer pos = Integer.valueOf(source) + 5;
-                    suborder = new SubstringOrder(pos.toString());
+                    ordering.suborder = new SubstringOrder(pos.toString());
                     return source;
                 }
             });
 
-            functionMap.put("metazone", new Transform<String, String>() {
+            functionMap.put("metazone", new OrderFunction() {
 
-                public String transform(String source) {
+                public String transform(String source, Order ordering) {
                     if (PathHeader.UNIFORM_CONTINENTS) {
                         String container = getMetazonePageTerritory(source);
-                        order = Containment.getOrder(container);
+                        ordering.order = Containment.getOrder(container);
                         return englishFile.getName(CLDRFile.TERRITORY_NAME, container);
                     } else {
                         String continent = metazoneToContinent.get(source);
@@ -1526,8 +1685,8 @@ public class PathHeader implements Comparable<PathHeader> {
             final Set<String> offshoreCurrencies = new HashSet<String>(Arrays.asList("CNH"));
             // TODO: Put this into supplementalDataInfo ?
 
-            functionMap.put("categoryFromCurrency", new Transform<String, String>() {
-                public String transform(String source0) {
+            functionMap.put("categoryFromCurrency", new OrderFunction() {
+                public String transform(String source0, Order ordering) {
                     String tenderOrNot = "";
                     String territory = likelySubtags.getLikelyTerritoryFromCurrency(source0);
                     if (territory == null) {
@@ -1548,17 +1707,17 @@ public class PathHeader implements Comparable<PathHeader> {
                     }
 
                     if (territory.equals("ZZ")) {
-                        order = 999;
+                        ordering.order = 999;
                         return englishFile.getName(CLDRFile.TERRITORY_NAME, territory) + ": " + source0;
                     } else {
-                        return catFromTerritory.transform(territory) + ": "
+                        return catFromTerritory.transform(territory, ordering) + ": "
                             + englishFile.getName(CLDRFile.TERRITORY_NAME, territory)
                             + tenderOrNot;
                     }
                 }
             });
-            functionMap.put("continentFromCurrency", new Transform<String, String>() {
-                public String transform(String source0) {
+            functionMap.put("continentFromCurrency", new OrderFunction() {
+                public String transform(String source0, Order ordering) {
                     String subContinent;
                     String territory = likelySubtags.getLikelyTerritoryFromCurrency(source0);
                     if (currencyToTerritoryOverrides.keySet().contains(source0)) {
@@ -1568,18 +1727,18 @@ public class PathHeader implements Comparable<PathHeader> {
                     }
 
                     if (territory.equals("ZZ")) {
-                        order = 999;
+                        ordering.order = 999;
                         subContinent = englishFile.getName(CLDRFile.TERRITORY_NAME, territory);
                     } else {
-                        subContinent = catFromTerritory.transform(territory);
+                        subContinent = catFromTerritory.transform(territory, ordering);
                     }
 
                     String result = subContinentToContinent.get(subContinent); //the continent is the last word in the territory representation
                     return result;
                 }
             });
-            functionMap.put("numberingSystem", new Transform<String, String>() {
-                public String transform(String source0) {
+            functionMap.put("numberingSystem", new OrderFunction() {
+                public String transform(String source0, Order ordering) {
                     if ("latn".equals(source0)) {
                         return "";
                     }
@@ -1589,7 +1748,7 @@ public class PathHeader implements Comparable<PathHeader> {
                 }
             });
 
-            functionMap.put("datefield", new Transform<String, String>() {
+            functionMap.put("datefield", new OrderFunction() {
                 private final String[] datefield = {
                     "era", "era-short", "era-narrow",
                     "century", "century-short", "century-narrow",
@@ -1613,13 +1772,13 @@ public class PathHeader implements Comparable<PathHeader> {
 
                 };
 
-                public String transform(String source) {
-                    order = getIndex(source, datefield);
+                public String transform(String source, Order ordering) {
+                    ordering.order = getIndex(source, datefield);
                     return source;
                 }
             });
             // //ldml/dates/fields/field[@type="%A"]/relative[@type="%A"]
-            functionMap.put("relativeDate", new Transform<String, String>() {
+            functionMap.put("relativeDate", new OrderFunction() {
                 private final String[] relativeDateField = {
                     "year", "year-short", "year-narrow",
                     "quarter", "quarter-short", "quarter-narrow",
@@ -1655,31 +1814,31 @@ public class PathHeader implements Comparable<PathHeader> {
                     "Saturday", "Saturday Short", "Saturday Narrow",
                 };
 
-                public String transform(String source) {
-                    order = getIndex(source, relativeDateField) + 100;
+                public String transform(String source, Order ordering) {
+                    ordering.order = getIndex(source, relativeDateField) + 100;
                     return "Relative " + longNames[getIndex(source, relativeDateField)];
                 }
             });
             // Sorts numberSystem items (except for decimal formats).
-            functionMap.put("number", new Transform<String, String>() {
+            functionMap.put("number", new OrderFunction() {
                 private final String[] symbols = { "decimal", "group",
                     "plusSign", "minusSign", "percentSign", "perMille",
                     "exponential", "superscriptingExponent",
                     "infinity", "nan", "list", "currencies"
                 };
 
-                public String transform(String source) {
+                public String transform(String source, Order ordering) {
                     String[] parts = source.split("-");
-                    order = getIndex(parts[0], symbols);
+                    ordering.order = getIndex(parts[0], symbols);
                     // e.g. "currencies-one"
                     if (parts.length > 1) {
-                        suborder = new SubstringOrder(parts[1]);
+                        ordering.suborder = new SubstringOrder(parts[1]);
                     }
                     return source;
                 }
             });
-            functionMap.put("numberFormat", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("numberFormat", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     final List<String> fieldOrder = Arrays.asList(
                         "standard-decimal",
                         "standard-currency",
@@ -1688,46 +1847,46 @@ public class PathHeader implements Comparable<PathHeader> {
                         "standard-scientific");
 
                     if (fieldOrder.contains(source)) {
-                        order = fieldOrder.indexOf(source);
+                        ordering.order = fieldOrder.indexOf(source);
                     } else {
-                        order = fieldOrder.size();
+                        ordering.order = fieldOrder.size();
                     }
 
                     return source;
                 }
             });
 
-            functionMap.put("localePattern", new Transform<String, String>() {
-                public String transform(String source) {
+            functionMap.put("localePattern", new OrderFunction() {
+                public String transform(String source, Order ordering) {
                     // Put localeKeyTypePattern behind localePattern and
                     // localeSeparator.
                     if (source.equals("localeKeyTypePattern")) {
-                        order = 10;
+                        ordering.order = 10;
                     }
                     return source;
                 }
             });
-            functionMap.put("listOrder", new Transform<String, String>() {
+            functionMap.put("listOrder", new OrderFunction() {
                 private String[] listParts = { "2", "start", "middle", "end" };
 
                 @Override
-                public String transform(String source) {
-                    order = getIndex(source, listParts);
+                public String transform(String source, Order ordering) {
+                    ordering.order = getIndex(source, listParts);
                     return source;
                 }
             });
-            functionMap.put("alphaOrder", new Transform<String, String>() {
+            functionMap.put("alphaOrder", new OrderFunction() {
                 @Override
-                public String transform(String source) {
-                    order = 0;
+                public String transform(String source, Order ordering) {
+                    ordering.order = 0;
                     return source;
                 }
             });
-            functionMap.put("transform", new Transform<String, String>() {
+            functionMap.put("transform", new OrderFunction() {
                 Splitter commas = Splitter.on(',').trimResults();
 
                 @Override
-                public String transform(String source) {
+                public String transform(String source, Order ordering) {
                     List<String> parts = commas.splitToList(source);
                     return parts.get(1)
                         + (parts.get(0).equals("both") ? "↔︎" : "→")
@@ -1735,9 +1894,9 @@ public class PathHeader implements Comparable<PathHeader> {
                         + (parts.size() > 3 ? "/" + parts.get(3) : "");
                 }
             });
-            functionMap.put("major", new Transform<String, String>() {
+            functionMap.put("major", new OrderFunction() {
                 @Override
-                public String transform(String source) {
+                public String transform(String source, Order ordering) {
                     String major = Emoji.getMajorCategory(source);
                     // check that result is reasonable by running through PageId.
                     switch(major) {
@@ -1761,11 +1920,11 @@ public class PathHeader implements Comparable<PathHeader> {
                     }
                 }
             });
-            functionMap.put("minor", new Transform<String, String>() {
+            functionMap.put("minor", new OrderFunction() {
                 @Override
-                public String transform(String source) {
+                public String transform(String source, Order ordering) {
                     String minorCat = Emoji.getMinorCategory(source);
-                    order = Emoji.getEmojiMinorOrder(source);
+                    ordering.order = Emoji.getEmojiMinorOrder(source);
                     return minorCat;
                 }
             });
@@ -1773,12 +1932,12 @@ public class PathHeader implements Comparable<PathHeader> {
              * Use the ordering of the emoji in getEmojiToOrder rather than alphabetic,
              * since the collator data won't be ready until the candidates are final. 
              */
-            functionMap.put("emoji", new Transform<String, String>() {
+            functionMap.put("emoji", new OrderFunction() {
                 @Override
-                public String transform(String source) {
+                public String transform(String source, Order ordering) {
                     int dashPos = source.indexOf(' ');
                     String emoji = source.substring(0, dashPos);
-                    order = (Emoji.getEmojiToOrder(emoji) << 1) + (source.endsWith("name") ? 0 : 1);
+                    ordering.order = (Emoji.getEmojiToOrder(emoji) << 1) + (source.endsWith("name") ? 0 : 1);
                     return source;
                 }
             });
@@ -1827,16 +1986,18 @@ public class PathHeader implements Comparable<PathHeader> {
          *
          * @param input
          * @param order
+         * @param args the arguments from the regex match
+         * @param ordering gets the order and suborder
          * @return
          */
-        private static String fix(String input, int orderIn) {
+        private static String fix(String input, int orderIn, String[] args, Order ordering) {
             if (input.contains("👱")) {
                 int debug = 0;
             }
             String oldInput = input;
-            input = RegexLookup.replace(input, args.value);
-            order = orderIn;
-            suborder = null;
+            input = RegexLookup.replace(input, args);
+            ordering.order = orderIn;
+            ordering.suborder = null;
             int pos = 0;
             while (true) {
                 int functionStart = input.indexOf('&', pos);
@@ -1845,12 +2006,12 @@ public class PathHeader implements Comparable<PathHeader> {
                 }
                 int functionEnd = input.indexOf('(', functionStart);
                 int argEnd = input.indexOf(')', functionEnd);
-                Transform<String, String> func = functionMap.get(input.substring(functionStart + 1,
+                OrderFunction func = functionMap.get(input.substring(functionStart + 1,
                     functionEnd));
                 final String arg = input.substring(functionEnd + 1, argEnd);
-                String temp = func.transform(arg);
+                String temp = func.transform(arg, ordering);
                 if (temp == null) {
-                    func.transform(arg);
+                    func.transform(arg, ordering);
                     throw new IllegalArgumentException("Function returns invalid results for «" + arg + "».");
                 }
                 input = input.substring(0, functionStart) + temp + input.substring(argEnd + 1);
@@ -1880,11 +2041,14 @@ public class PathHeader implements Comparable<PathHeader> {
 
         /**
          * Returns those regexes that were never matched.
+         * Only collected if setCollectDiagnostics(true) was called.
          * @return
          */
         public Set<String> getUnmatchedRegexes() {
             Map<String, RawData> outputUnmatched = new LinkedHashMap<String, RawData>();
-            lookup.getUnmatchedPatterns(matchersFound, outputUnmatched);
+            synchronized (lookup) {
+                lookup.getUnmatchedPatterns(matchersFound, outputUnmatched);
+            }
             return outputUnmatched.keySet();
         }
 
@@ -1,24 +1,60 @@
 package org.unicode.cldr.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheStats;
+import com.ibm.icu.util.ICUException;
 
 /**
  * Simple class for caching Patterns, possibly avoiding the cost of
  * compilation if they are in the cache.
- *
+ * <p>
+ * The hit/miss counts are always kept. When statistics are recorded, each miss is also counted against the
+ * call site that asked for the pattern, so that the callers compiling the most patterns can be found;
+ * this is switched on with -DCLDR_PATTERN_CACHE_STATISTICS=true or at runtime with setRecordStatistics,
+ * or through JMX after registerMBean (or -DCLDR_PATTERN_CACHE_JMX=true).
+ * <p>
+ * The cache can be warmed at startup from a bundle of patterns written by writeBundle,
+ * with -DCLDR_PATTERN_CACHE_BUNDLE=file; see GeneratePatternCacheBundle.
  *
  * @author ribnitz
  *
  */
 public class PatternCache {
     private final static int INITIAL_CAPACITY = 30;
-    private final static int MAX_CAPACITY = 1000;
+
+    /**
+     * Maximum number of cached patterns; can be changed with the property CLDR_PATTERN_CACHE_SIZE
+     */
+    private final static int MAX_CAPACITY = CLDRConfig.getInstance().getProperty("CLDR_PATTERN_CACHE_SIZE", 1000);
 
     /**
      * Variable to control whether patterns are cached (true);
@@ -26,32 +62,74 @@ public class PatternCache {
     private final static boolean USE_CACHE = true;
 
     /**
-     * Variable that controls whether statistics are recorded for the caching.
+     * Variable that controls whether misses are recorded per call site.
+     */
+    private static volatile boolean recordStatistics = CldrUtility.getProperty("CLDR_PATTERN_CACHE_STATISTICS", false);
+
+    private static final int BUNDLE_MAGIC = 0x434C4450; // "CLDP"
+    private static final int BUNDLE_VERSION = 1;
+    private static final String MBEAN_NAME = "org.unicode.cldr.util:type=PatternCache";
+
+    /**
+     * The cache object. The keys are the pattern strings, or FlaggedPatterns for patterns with flags.
      */
-    private final static boolean RECORD_STATISTICS = false;
+    private final static Cache<Object, Pattern> cache;
 
     /**
-     * The cache object
+     * Compile misses per call site, while statistics are recorded
      */
-    private final static Cache<String, Pattern> cache;
+    private static final ConcurrentHashMap<String, AtomicLong> callSiteMisses = new ConcurrentHashMap<String, AtomicLong>();
 
     /*
-     * A static initialization block is used to be able to cleanly handle the three different cases:
+     * A static initialization block is used to be able to cleanly handle the two different cases:
      *
      * 1) no caching
-     * 2) caching without statistics collection
-     * 3) caching with statistics collection
+     * 2) caching, with the Guava statistics collection
      */
     static {
         if (USE_CACHE) {
-            if (RECORD_STATISTICS) {
-                cache = CacheBuilder.newBuilder().initialCapacity(INITIAL_CAPACITY).maximumSize(MAX_CAPACITY).recordStats().build();
-            } else {
-                cache = CacheBuilder.newBuilder().initialCapacity(INITIAL_CAPACITY).maximumSize(MAX_CAPACITY).build();
+            cache = CacheBuilder.newBuilder().initialCapacity(INITIAL_CAPACITY).maximumSize(MAX_CAPACITY).recordStats().build();
+            String bundle = CldrUtility.getProperty("CLDR_PATTERN_CACHE_BUNDLE", null);
+            if (bundle != null) {
+                try {
+                    prewarm(new File(bundle));
+                } catch (IOException e) {
+                    System.err.println("Can't read pattern bundle " + bundle + ": " + e);
+                }
             }
         } else {
             cache = null;
         }
+        if (CldrUtility.getProperty("CLDR_PATTERN_CACHE_JMX", false)) {
+            registerMBean();
+        }
+    }
+
+    /**
+     * Key for a pattern compiled with flags
+     */
+    private static final class FlaggedPattern {
+        private final String pattern;
+        private final int flags;
+
+        FlaggedPattern(String pattern, int flags) {
+            this.pattern = pattern;
+            this.flags = flags;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FlaggedPattern)) {
+                return false;
+            }
+            FlaggedPattern other = (FlaggedPattern) obj;
+            return flags == other.flags && pattern.equals(other.pattern);
+        }
+
+        @Override
+        public int hashCode() {
+            return pattern.hashCode() * 37 + flags;
+        }
     }
 
     /**
@@ -61,6 +139,17 @@ public class PatternCache {
      * @throws IllegalArgumentException The string provided was null or empty, or there was a problem compiling the Pattern from the String
      */
     public static Pattern get(final String patternStr) {
+        return get(patternStr, 0);
+    }
+
+    /**
+     * Obtain a compiled Pattern from the String given, with flags such as Pattern.COMMENTS; results of the lookup are cached,
+     * a cached result will be returned if possible.
+     * @param patternStr the string to use for compilation
+     * @param flags the flags for Pattern.compile
+     * @throws IllegalArgumentException The string provided was null or empty, or there was a problem compiling the Pattern from the String
+     */
+    public static Pattern get(final String patternStr, final int flags) {
         // Pre-conditions: non-null, non-empty string
         if (patternStr == null) {
             throw new IllegalArgumentException("Please call with non-null argument");
@@ -68,17 +157,21 @@ public class PatternCache {
         if (patternStr.isEmpty()) {
             throw new IllegalArgumentException("Please call with non-empty argument");
         }
-        // If patterns are not cached, simply return a new compiled Pattern
-        if (!USE_CACHE) {
-            return Pattern.compile(patternStr);
+        // If patterns are not cached, simply return a new compiled Pattern.
+        // The cache is also null while it is being set up, if reading the configuration needs a Pattern.
+        if (!USE_CACHE || cache == null) {
+            return Pattern.compile(patternStr, flags);
         }
         Pattern result = null;
         try {
-            result = cache.get(patternStr, new Callable<Pattern>() {
+            result = cache.get(flags == 0 ? patternStr : new FlaggedPattern(patternStr, flags), new Callable<Pattern>() {
 
                 @Override
                 public Pattern call() throws Exception {
-                    return Pattern.compile(patternStr);
+                    if (recordStatistics) {
+                        recordMiss();
+                    }
+                    return Pattern.compile(patternStr, flags);
                 }
             });
         } catch (ExecutionException e) {
@@ -88,12 +181,41 @@ public class PatternCache {
         return result;
     }
 
+    /**
+     * Count a miss against the first caller outside of this class and the cache.
+     */
+    private static void recordMiss() {
+        String callSite = "?";
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            String className = element.getClassName();
+            if (!className.startsWith(PatternCache.class.getName()) && !className.startsWith("com.google.common.cache.")) {
+                callSite = element.toString();
+                break;
+            }
+        }
+        AtomicLong count = callSiteMisses.get(callSite);
+        if (count == null) {
+            AtomicLong old = callSiteMisses.putIfAbsent(callSite, count = new AtomicLong());
+            if (old != null) {
+                count = old;
+            }
+        }
+        count.incrementAndGet();
+    }
+
     /**
      * Return true if the collection of statistics is enabled
      * @return
      */
     public static boolean isRecordStatistics() {
-        return RECORD_STATISTICS;
+        return recordStatistics;
+    }
+
+    /**
+     * Turn the recording of misses per call site on or off.
+     */
+    public static void setRecordStatistics(boolean record) {
+        recordStatistics = record;
     }
 
     /**
@@ -114,4 +236,205 @@ public class PatternCache {
         return cache.stats();
     }
 
-}
\ No newline at end of file
+    /**
+     * @return the number of patterns currently cached
+     */
+    public static long size() {
+        return cache.size();
+    }
+
+    /**
+     * Get the call sites with the most compile misses, recorded while statistics were on.
+     *
+     * @param count the maximum number of call sites to return
+     * @return call site to misses, in descending order of misses
+     */
+    public static Map<String, Long> getTopCallSites(int count) {
+        List<Entry<String, AtomicLong>> entries = new ArrayList<Entry<String, AtomicLong>>(callSiteMisses.entrySet());
+        Collections.sort(entries, new Comparator<Entry<String, AtomicLong>>() {
+            @Override
+            public int compare(Entry<String, AtomicLong> o1, Entry<String, AtomicLong> o2) {
+                return Long.compare(o2.getValue().get(), o1.getValue().get());
+            }
+        });
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Entry<String, AtomicLong> entry : entries) {
+            if (result.size() >= count) {
+                break;
+            }
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    /**
+     * Get a report of the cache statistics and the call sites with the most compile misses, one per line.
+     */
+    public static String getReport(int count) {
+        StringBuilder result = new StringBuilder().append(cache.stats()).append(", size=").append(cache.size());
+        for (Entry<String, Long> entry : getTopCallSites(count).entrySet()) {
+            result.append(System.lineSeparator()).append(entry.getValue()).append('\t').append(entry.getKey());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Forget the misses recorded per call site.
+     */
+    public static void resetCallSites() {
+        callSiteMisses.clear();
+    }
+
+    /**
+     * Write the currently cached patterns to a file, for prewarm.
+     *
+     * @return the number of patterns written
+     */
+    public static int writeBundle(File bundleFile) throws IOException {
+        List<Pattern> patterns = new ArrayList<Pattern>(cache.asMap().values());
+        File parent = bundleFile.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Can't create bundle directory " + parent);
+        }
+        File temp = File.createTempFile(bundleFile.getName(), ".tmp", parent);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(BUNDLE_MAGIC);
+                out.writeInt(BUNDLE_VERSION);
+                out.writeInt(patterns.size());
+                for (Pattern pattern : patterns) {
+                    out.writeInt(pattern.flags());
+                    out.writeUTF(pattern.pattern());
+                }
+            }
+            Files.move(temp.toPath(), bundleFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+        return patterns.size();
+    }
+
+    /**
+     * Compile the patterns in a bundle written by writeBundle and add them to the cache,
+     * without counting them as hits or misses. Patterns that no longer compile are skipped.
+     *
+     * @return the number of patterns added
+     */
+    public static int prewarm(File bundleFile) throws IOException {
+        int added = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(bundleFile)))) {
+            if (in.readInt() != BUNDLE_MAGIC || in.readInt() != BUNDLE_VERSION) {
+                throw new IOException("Not a pattern bundle: " + bundleFile);
+            }
+            for (int i = in.readInt(); i > 0; --i) {
+                int flags = in.readInt();
+                String pattern = in.readUTF();
+                try {
+                    cache.put(flags == 0 ? pattern : new FlaggedPattern(pattern, flags), Pattern.compile(pattern, flags));
+                    ++added;
+                } catch (IllegalArgumentException e) {
+                    // skip
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * The JMX view of the cache.
+     */
+    public interface PatternCacheMXBean {
+        long getHitCount();
+
+        long getMissCount();
+
+        double getHitRate();
+
+        long getEvictionCount();
+
+        double getAverageCompileNanos();
+
+        long getSize();
+
+        boolean isRecordStatistics();
+
+        void setRecordStatistics(boolean record);
+
+        String[] getTopCallSites();
+
+        void resetCallSites();
+    }
+
+    private static final class PatternCacheBean implements PatternCacheMXBean {
+        @Override
+        public long getHitCount() {
+            return cache.stats().hitCount();
+        }
+
+        @Override
+        public long getMissCount() {
+            return cache.stats().missCount();
+        }
+
+        @Override
+        public double getHitRate() {
+            return cache.stats().hitRate();
+        }
+
+        @Override
+        public long getEvictionCount() {
+            return cache.stats().evictionCount();
+        }
+
+        @Override
+        public double getAverageCompileNanos() {
+            return cache.stats().averageLoadPenalty();
+        }
+
+        @Override
+        public long getSize() {
+            return cache.size();
+        }
+
+        @Override
+        public boolean isRecordStatistics() {
+            return PatternCache.isRecordStatistics();
+        }
+
+        @Override
+        public void setRecordStatistics(boolean record) {
+            PatternCache.setRecordStatistics(record);
+        }
+
+        @Override
+        public String[] getTopCallSites() {
+            List<String> result = new ArrayList<String>();
+            for (Entry<String, Long> entry : PatternCache.getTopCallSites(20).entrySet()) {
+                result.add(entry.getValue() + "\t" + entry.getKey());
+            }
+            return result.toArray(new String[result.size()]);
+        }
+
+        @Override
+        public void resetCallSites() {
+            PatternCache.resetCallSites();
+        }
+    }
+
+    /**
+     * Register the cache statistics with the platform MBean server, as org.unicode.cldr.util:type=PatternCache.
+     * Does nothing if already registered.
+     */
+    public static void registerMBean() {
+        if (!USE_CACHE) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new PatternCacheBean(), new ObjectName(MBEAN_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // already registered
+        } catch (JMException e) {
+            throw new ICUException(e);
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package org.unicode.cldr.util;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -40,10 +44,16 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
     private Transform<String, ? extends T> valueTransform;
     private Merger<T> valueMerger;
     private final boolean allowNull = false;
-    private static PathStarrer pathStarrer = new PathStarrer().setSubstitutionPattern("*");
+    // PathStarrer isn't thread-safe, so each thread has its own
+    private static final ThreadLocal<PathStarrer> pathStarrer = new ThreadLocal<PathStarrer>() {
+        @Override
+        protected PathStarrer initialValue() {
+            return new PathStarrer().setSubstitutionPattern("*");
+        }
+    };
 
     public enum LookupType {
-        STAR_PATTERN_LOOKUP, OPTIMIZED_DIRECTORY_PATTERN_LOOKUP, STANDARD
+        STAR_PATTERN_LOOKUP, OPTIMIZED_DIRECTORY_PATTERN_LOOKUP, STANDARD, COMPILED_PATTERN_LOOKUP
     };
 
     private LookupType _lookupType;
@@ -68,6 +78,16 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
      * However regex's no longer need to follow any specific format (Slower but more versatile).
      */
 
+    /*
+     * COMPILED_PATTERN_LOOKUP
+     *
+     * Same results as STANDARD (the first pattern added that finds a match), with no restrictions on the patterns.
+     * On the first lookup after patterns are added, the literal prefixes of all the anchored patterns (such as
+     * "//ldml/dates/calendars/calendar[@type=" for ^//ldml/dates/calendars/calendar\[@type="([^"]*+)"]) are compiled
+     * into a single trie. A lookup walks the trie once along the source string, and only tries the patterns whose
+     * prefix it passed, in the order they were added. Lookups take no locks, so they can run on many threads at once.
+     */
+
     public RegexLookup(LookupType type) {
         _lookupType = type;
         switch (type) {
@@ -79,6 +99,9 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
             //   RTEntries = new RegexTree<T>();
             storage = new RegexTree<T>();
             break;
+        case COMPILED_PATTERN_LOOKUP:
+            storage = new CompiledPatternMap<T>();
+            break;
         default:
             MEntries = new LinkedHashMap<Finder, T>();
             break;
@@ -110,20 +133,20 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
         // must also define toString
     }
 
+    /**
+     * A Finder for a regex pattern. Thread-safe: each thread uses its own Matcher, so no locking is needed.
+     * Subclasses may add further conditions, but must only accept items that the pattern finds.
+     */
     public static class RegexFinder extends Finder {
-        /**
-         * The matcher used by this RegexFinder
-         */
-        private final Matcher matcher;
-
         /**
          * The Pattern used by this RegexFinder
          */
         protected final Pattern pattern;
 
         public RegexFinder(String pattern) {
-            this.pattern = Pattern.compile(pattern, Pattern.COMMENTS);
-            matcher = this.pattern.matcher("");
+            // shared by the lookups for different locales; the cache refuses "", as used by the root of a RegexTree
+            this.pattern = pattern.isEmpty() ? Pattern.compile(pattern, Pattern.COMMENTS)
+                : PatternCache.get(pattern, Pattern.COMMENTS);
         }
 
         /**
@@ -131,27 +154,28 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
          * if it is non null
          */
         public boolean matches(String item, Object context, Info info) {
-            synchronized (matcher) {
-                try {
-                    boolean result = matcher.reset(item).matches();
-                    extractInfo(info, result);
-                    return result;
-                } catch (StringIndexOutOfBoundsException e) {
-                    // We don't know what causes this error (cldrbug 5051) so
-                    // make the exception message more detailed.
-                    throw new IllegalArgumentException("Matching error caused by pattern: ["
-                        + matcher.toString() + "] on text: [" + item + "]", e);
-                }
+            // a new Matcher for each call, so that lookups on different threads don't share state
+            Matcher matcher = pattern.matcher(item);
+            try {
+                boolean result = matcher.matches();
+                extractInfo(matcher, info, result);
+                return result;
+            } catch (StringIndexOutOfBoundsException e) {
+                // We don't know what causes this error (cldrbug 5051) so
+                // make the exception message more detailed.
+                throw new IllegalArgumentException("Matching error caused by pattern: ["
+                    + matcher.toString() + "] on text: [" + item + "]", e);
             }
         }
 
         /**
          * Extract match related information into  the info field, if result is true, and info
          * is not null.
+         * @param matcher
          * @param info
          * @param result
          */
-        private void extractInfo(Info info, boolean result) {
+        private void extractInfo(Matcher matcher, Info info, boolean result) {
             if (result && info != null) {
                 int limit = matcher.groupCount() + 1;
                 String[] value = new String[limit];
@@ -167,22 +191,20 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
          * if it is non-null
          */
         public boolean find(String item, Object context, Info info) {
-            synchronized (matcher) {
-                try {
-                    boolean result = matcher.reset(item).find();
-                    extractInfo(info, result);
-                    return result;
-                } catch (StringIndexOutOfBoundsException e) {
-                    // We don't know what causes this error (cldrbug 5051) so
-                    // make the exception message more detailed.
-                    throw new IllegalArgumentException("Matching error caused by pattern: ["
-                        + matcher.toString() + "] on text: [" + item + "]", e);
-                }
+            Matcher matcher = pattern.matcher(item);
+            try {
+                boolean result = matcher.find();
+                extractInfo(matcher, info, result);
+                return result;
+            } catch (StringIndexOutOfBoundsException e) {
+                // We don't know what causes this error (cldrbug 5051) so
+                // make the exception message more detailed.
+                throw new IllegalArgumentException("Matching error caused by pattern: ["
+                    + matcher.toString() + "] on text: [" + item + "]", e);
             }
         }
 
         public String toString() {
-            // Use pattern here, to avoid having to synchronize on matcher
             return pattern.pattern();
         }
 
@@ -202,9 +224,7 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
 
         @Override
         public int getFailPoint(String source) {
-            synchronized (matcher) {
-                return RegexUtilities.findMismatch(matcher, source);
-            }
+            return RegexUtilities.findMismatch(pattern, source);
         }
     }
 
@@ -260,23 +280,14 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
         public List<T> getAll(String pattern, Object context, List<Finder> matcherList, Output<String[]> firstInfo) {
             List<RTNode> list = new ArrayList<RTNode>();
             List<T> retList = new ArrayList<T>();
+            // the arguments are per call, since the nodes are shared by concurrent lookups
+            Map<RTNode, String[]> arguments = new IdentityHashMap<RTNode, String[]>();
 
-            root.addToList(pattern, context, list);
+            root.addToList(pattern, context, list, arguments);
             Collections.sort(list, rankComparator);
 
-            boolean isFirst = true;
             if (firstInfo != null && !list.isEmpty()) {
-                RTNode firstNode = list.get(0);
-                if (firstNode._info != null) {
-                    firstInfo.value = firstNode._info.value;
-                }
-            }
-
-            for (RTNode n : list) {
-                if (isFirst) {
-                    firstInfo.value = n._info.value;
-                    isFirst = false;
-                }
+                firstInfo.value = arguments.get(list.get(0));
             }
 
             for (RTNode n : list) {
@@ -337,7 +348,6 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
 //                _finder = new RegexFinder(key);
 //                _val = val;
 //                _rank = -1;
-                _info = new Info();
             }
 
             public void put(RTNode node) {
@@ -463,7 +473,7 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
             }
 
             //traverse tree to get list of all values who's key matcher matches pattern
-            public void addToList(String pattern, Object context, List<RTNode> list) {
+            public void addToList(String pattern, Object context, List<RTNode> list, Map<RTNode, String[]> arguments) {
                 if (_children.size() == 0) {
                     return;
                 } else {
@@ -479,20 +489,10 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
                             if (child._rank != -1) {
                                 list.add(child);
                             }
-                            // if this node's info value is unset, set it to the result of the
-                            // lookup
-//                            if (child._info!=null && child._info.value==null) {
-                            if (child._info != null) {
-                                // set the value to the result of the last find
-                                child._info.value = firstInfo.value;
-                            } else {
-                                // for some reason, child._info is null, so simply initialize it.
-                                child._info = new Info();
-                                // set the value to the result of the last find
-                                child._info.value = firstInfo.value;
-                            }
+                            // record the result of the last find for this node
+                            arguments.put(child, firstInfo.value);
                             //check if child is the parent of node then enter that node
-                            child.addToList(pattern, context, list);
+                            child.addToList(pattern, context, list, arguments);
                         }
                     }
                 }
@@ -560,7 +560,7 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
 
         public void put(Finder pattern, T value) {
             //System.out.println("pattern.toString() is => "+pattern.toString());
-            String starPattern = pathStarrer.transform2(pattern.toString().replaceAll("\\(\\[\\^\"\\]\\*\\)", "*"));
+            String starPattern = pathStarrer.get().transform2(pattern.toString().replaceAll("\\(\\[\\^\"\\]\\*\\)", "*"));
             //System.out.println("Putting => "+starPattern);
             List<SPNode> candidates = _spmap.get(starPattern);
             if (candidates == null) {
@@ -573,7 +573,7 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
         }
 
         public T get(Finder finder) {
-            String starPattern = pathStarrer.transform2(finder.toString());
+            String starPattern = pathStarrer.get().transform2(finder.toString());
             List<SPNode> candidates = _spmap.get(starPattern);
             if (candidates == null) {
                 return null;
@@ -586,11 +586,19 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
             return null;
         }
 
+        /**
+         * The nodes with the same starred pattern as the path, in the order they were added
+         */
+        public List<SPNode> getCandidates(String pattern) {
+            List<SPNode> candidates = _spmap.get(pathStarrer.get().transform2(pattern));
+            return candidates == null ? Collections.<SPNode> emptyList() : candidates;
+        }
+
         public List<T> getAll(String pattern, Object context, List<Finder> matcherList, Output<String[]> firstInfo) {
             List<SPNode> list = new ArrayList<SPNode>();
             List<T> retList = new ArrayList<T>();
 
-            String starPattern = pathStarrer.transform2(pattern);
+            String starPattern = pathStarrer.get().transform2(pattern);
             List<SPNode> candidates = _spmap.get(starPattern);
             if (candidates == null) {
                 return retList;
@@ -662,6 +670,265 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
         }
     }
 
+    /**
+     * Storage for COMPILED_PATTERN_LOOKUP. The entries are kept in the order they were added; the literal prefixes
+     * of the patterns are compiled into a trie when first needed, and recompiled after any put.
+     */
+    private static class CompiledPatternMap<T> implements StorageInterfaceBase<T> {
+        private final List<NodeBase<T>> entries = new ArrayList<NodeBase<T>>();
+        private final Map<Finder, Integer> finderToIndex = new HashMap<Finder, Integer>();
+        private volatile PrefixTrie compiled = null;
+
+        public int size() {
+            return entries.size();
+        }
+
+        public void put(Finder pattern, T value) {
+            finderToIndex.put(pattern, entries.size());
+            entries.add(new NodeBase<T>(pattern, value));
+            compiled = null;
+        }
+
+        public T get(Finder finder) {
+            Integer index = finderToIndex.get(finder);
+            return index == null ? null : entries.get(index)._val;
+        }
+
+        private PrefixTrie getCompiled() {
+            PrefixTrie result = compiled;
+            if (result == null) {
+                synchronized (this) {
+                    result = compiled;
+                    if (result == null) {
+                        PrefixTrie.Builder builder = new PrefixTrie.Builder();
+                        for (int i = 0; i < entries.size(); ++i) {
+                            builder.add(getLiteralPrefix(entries.get(i)._finder), i);
+                        }
+                        compiled = result = builder.build();
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * The entries whose literal prefix starts the source, in the order they were added
+         */
+        public List<NodeBase<T>> getCandidates(String source) {
+            int[] indexes = getCompiled().getCandidates(source);
+            List<NodeBase<T>> result = new ArrayList<NodeBase<T>>(indexes.length);
+            for (int index : indexes) {
+                result.add(entries.get(index));
+            }
+            return result;
+        }
+
+        public List<T> getAll(String pattern, Object context, List<Finder> matcherList, Output<String[]> firstInfo) {
+            List<T> result = new ArrayList<T>();
+            for (int index : getCompiled().getCandidates(pattern)) {
+                NodeBase<T> entry = entries.get(index);
+                Info info = new Info();
+                if (entry._finder.find(pattern, context, info)) {
+                    if (result.isEmpty() && firstInfo != null) {
+                        firstInfo.value = info.value;
+                    }
+                    result.add(entry._val);
+                    if (matcherList != null) {
+                        matcherList.add(entry._finder);
+                    }
+                }
+            }
+            return result;
+        }
+
+        public T get(String pattern, Object context, Output<String[]> arguments, Output<Finder> matcherFound) {
+            for (int index : getCompiled().getCandidates(pattern)) {
+                NodeBase<T> entry = entries.get(index);
+                Info info = new Info();
+                if (entry._finder.find(pattern, context, info)) {
+                    if (arguments != null) {
+                        arguments.value = info.value;
+                    }
+                    if (matcherFound != null) {
+                        matcherFound.value = entry._finder;
+                    }
+                    return entry._val;
+                }
+            }
+            return null;
+        }
+
+        public Set<Entry<Finder, T>> entrySet() {
+            LinkedHashMap<Finder, T> ret = new LinkedHashMap<Finder, T>();
+            for (NodeBase<T> entry : entries) {
+                ret.put(entry._finder, entry._val);
+            }
+            return ret.entrySet();
+        }
+
+        @Override
+        public String toString() {
+            return entries.size() + " patterns, compiled: " + (compiled != null);
+        }
+
+        /**
+         * Get the literal text that any match of the finder must start with, or "" if there is none.
+         * Only anchored RegexFinders without top-level alternation have a non-empty prefix.
+         */
+        static String getLiteralPrefix(Finder finder) {
+            if (!(finder instanceof RegexFinder)) {
+                return "";
+            }
+            Pattern pattern = ((RegexFinder) finder).pattern;
+            if ((pattern.flags() & (Pattern.CASE_INSENSITIVE | Pattern.LITERAL | Pattern.CANON_EQ)) != 0) {
+                return "";
+            }
+            return getLiteralPrefix(pattern.pattern(), (pattern.flags() & Pattern.COMMENTS) != 0);
+        }
+
+        static String getLiteralPrefix(String regex, boolean comments) {
+            if (!regex.startsWith("^") || hasTopLevelAlternation(regex)) {
+                return "";
+            }
+            StringBuilder result = new StringBuilder();
+            int length = regex.length();
+            for (int i = 1; i < length; ++i) {
+                char ch = regex.charAt(i);
+                int next = i + 1;
+                if (comments && Character.isWhitespace(ch)) {
+                    continue;
+                }
+                if (ch == '\\') {
+                    if (next >= length || Character.isLetterOrDigit(regex.charAt(next))) {
+                        break; // a class like \d, a back reference, or a quote
+                    }
+                    ch = regex.charAt(next++);
+                    i = next - 1;
+                } else if ("[](){}.*+?^$|#".indexOf(ch) >= 0) {
+                    break;
+                }
+                // a quantifier after the character makes it optional or repeated
+                while (comments && next < length && Character.isWhitespace(regex.charAt(next))) {
+                    ++next;
+                }
+                char quantifier = next < length ? regex.charAt(next) : 0;
+                if (quantifier == '?' || quantifier == '*' || quantifier == '{') {
+                    break;
+                }
+                result.append(ch);
+                if (quantifier == '+') {
+                    break;
+                }
+            }
+            return result.toString();
+        }
+
+        private static boolean hasTopLevelAlternation(String regex) {
+            int depth = 0;
+            int classDepth = 0;
+            for (int i = 0; i < regex.length(); ++i) {
+                char ch = regex.charAt(i);
+                if (ch == '\\') {
+                    ++i; // skip the escaped character
+                } else if (ch == '[') {
+                    ++classDepth;
+                } else if (ch == ']' && classDepth > 0) {
+                    --classDepth;
+                } else if (classDepth > 0) {
+                    continue;
+                } else if (ch == '(') {
+                    ++depth;
+                } else if (ch == ')') {
+                    --depth;
+                } else if (ch == '|' && depth == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An immutable trie over the literal prefixes of patterns. Each node lists the patterns (by index)
+     * whose prefix ends there; the patterns with no prefix are listed at the root.
+     */
+    private static final class PrefixTrie {
+        private final char[] labels; // sorted
+        private final PrefixTrie[] children;
+        private final int[] patterns;
+
+        private PrefixTrie(char[] labels, PrefixTrie[] children, int[] patterns) {
+            this.labels = labels;
+            this.children = children;
+            this.patterns = patterns;
+        }
+
+        /**
+         * @return the indexes of the patterns whose prefix starts the source, in increasing order
+         */
+        int[] getCandidates(String source) {
+            int[] result = patterns;
+            int count = patterns.length;
+            boolean copied = false;
+            PrefixTrie node = this;
+            for (int i = 0; i < source.length(); ++i) {
+                int position = Arrays.binarySearch(node.labels, source.charAt(i));
+                if (position < 0) {
+                    break;
+                }
+                node = node.children[position];
+                if (node.patterns.length != 0) {
+                    if (!copied) {
+                        result = Arrays.copyOf(result, Math.max(16, count + node.patterns.length));
+                        copied = true;
+                    } else if (count + node.patterns.length > result.length) {
+                        result = Arrays.copyOf(result, Math.max(result.length * 2, count + node.patterns.length));
+                    }
+                    System.arraycopy(node.patterns, 0, result, count, node.patterns.length);
+                    count += node.patterns.length;
+                }
+            }
+            if (copied) {
+                result = Arrays.copyOf(result, count);
+                Arrays.sort(result);
+            }
+            return result;
+        }
+
+        static final class Builder {
+            private final TreeMap<Character, Builder> children = new TreeMap<Character, Builder>();
+            private final List<Integer> patterns = new ArrayList<Integer>();
+
+            void add(String prefix, int patternIndex) {
+                Builder node = this;
+                for (int i = 0; i < prefix.length(); ++i) {
+                    Character ch = prefix.charAt(i);
+                    Builder child = node.children.get(ch);
+                    if (child == null) {
+                        node.children.put(ch, child = new Builder());
+                    }
+                    node = child;
+                }
+                node.patterns.add(patternIndex);
+            }
+
+            PrefixTrie build() {
+                char[] labels = new char[children.size()];
+                PrefixTrie[] builtChildren = new PrefixTrie[children.size()];
+                int i = 0;
+                for (Entry<Character, Builder> entry : children.entrySet()) {
+                    labels[i] = entry.getKey();
+                    builtChildren[i++] = entry.getValue().build();
+                }
+                int[] patternArray = new int[patterns.size()];
+                for (int j = 0; j < patternArray.length; ++j) {
+                    patternArray[j] = patterns.get(j);
+                }
+                return new PrefixTrie(labels, builtChildren, patternArray);
+            }
+        }
+    }
+
     /**
      * The basic class of an information node, featuring a Finder, a value and an Info
      *
@@ -672,7 +939,6 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
     private static class NodeBase<T> {
         Finder _finder;
         T _val;
-        Info _info = new Info();
 
         public NodeBase(Finder finder, T value) {
             this._finder = finder;
@@ -773,7 +1039,8 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
                     }
                 }
             }
-        } else if (_lookupType == RegexLookup.LookupType.OPTIMIZED_DIRECTORY_PATTERN_LOOKUP) {
+        } else if (_lookupType == RegexLookup.LookupType.OPTIMIZED_DIRECTORY_PATTERN_LOOKUP
+            || _lookupType == RegexLookup.LookupType.COMPILED_PATTERN_LOOKUP) {
             //      T ret = RTEntries.get(source, context, arguments, matcherFound);
             T ret = storage.get(source, context, arguments, matcherFound);
             if (ret != null) {
@@ -827,6 +1094,39 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
         return null;
     }
 
+    /**
+     * Returns the entries that could match the source, in lookup order: get returns the value of the first of them
+     * whose finder finds the source. For STAR_PATTERN_LOOKUP these are just the entries with the same starred
+     * pattern as the source, and for COMPILED_PATTERN_LOOKUP the entries whose literal prefix starts the source,
+     * so a caller that matches the same source in several contexts can do the regex work once.
+     * For the other types, these are all the entries.
+     *
+     * @param source
+     * @return
+     */
+    public List<Map.Entry<Finder, T>> getCandidates(String source) {
+        List<Map.Entry<Finder, T>> result = new ArrayList<Map.Entry<Finder, T>>();
+        switch (_lookupType) {
+        case STAR_PATTERN_LOOKUP:
+            for (NodeBase<T> node : ((StarPatternMap<T>) storage).getCandidates(source)) {
+                result.add(new AbstractMap.SimpleImmutableEntry<Finder, T>(node._finder, node._val));
+            }
+            break;
+        case COMPILED_PATTERN_LOOKUP:
+            for (NodeBase<T> node : ((CompiledPatternMap<T>) storage).getCandidates(source)) {
+                result.add(new AbstractMap.SimpleImmutableEntry<Finder, T>(node._finder, node._val));
+            }
+            break;
+        case STANDARD:
+            result.addAll(MEntries.entrySet());
+            break;
+        default:
+            result.addAll(storage.entrySet());
+            break;
+        }
+        return result;
+    }
+
     /**
      * Returns all results of a regex lookup, with the group arguments that matched. Supplies failure cases for
      * debugging.
@@ -858,7 +1158,8 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
                 }
             }
             return null;
-        } else if (_lookupType == RegexLookup.LookupType.OPTIMIZED_DIRECTORY_PATTERN_LOOKUP) {
+        } else if (_lookupType == RegexLookup.LookupType.OPTIMIZED_DIRECTORY_PATTERN_LOOKUP
+            || _lookupType == RegexLookup.LookupType.COMPILED_PATTERN_LOOKUP) {
             Output<String[]> info = new Output<>();
 //            List<T> matches = RTEntries.getAll(source, context, matcherList,info);
             List<T> matches = storage.getAll(source, context, matcherList, info);
@@ -917,6 +1218,7 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
             entrySet = storage.entrySet();
             break;
         case OPTIMIZED_DIRECTORY_PATTERN_LOOKUP:
+        case COMPILED_PATTERN_LOOKUP:
 //            entrySet = RTEntries.entrySet();
             entrySet = storage.entrySet();
             break;
@@ -1078,6 +1380,7 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
         switch (_lookupType) {
         case STAR_PATTERN_LOOKUP: // fallthrough
         case OPTIMIZED_DIRECTORY_PATTERN_LOOKUP:
+        case COMPILED_PATTERN_LOOKUP:
             old = storage.get(pattern);
 //            old = SPEntries.get(pattern);
             break;
@@ -1094,6 +1397,7 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
             switch (_lookupType) {
             case STAR_PATTERN_LOOKUP: // fallthrough
             case OPTIMIZED_DIRECTORY_PATTERN_LOOKUP:
+            case COMPILED_PATTERN_LOOKUP:
                 storage.put(pattern, target);
 //                SPEntries.put(pattern, target);
                 break;
@@ -1119,6 +1423,7 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
         switch (_lookupType) {
         case STAR_PATTERN_LOOKUP: // fall through
         case OPTIMIZED_DIRECTORY_PATTERN_LOOKUP:
+        case COMPILED_PATTERN_LOOKUP:
 //            return Collections.unmodifiableCollection(SPEntries.entrySet()).iterator();
             return Collections.unmodifiableCollection(storage.entrySet()).iterator();
 //        case OPTIMIZED_DIRECTORY_PATTERN_LOOKUP:
@@ -1158,6 +1463,7 @@ public class RegexLookup<T> implements Iterable<Map.Entry<Finder, T>> {
         switch (_lookupType) {
         case STAR_PATTERN_LOOKUP: // fall through
         case OPTIMIZED_DIRECTORY_PATTERN_LOOKUP:
+        case COMPILED_PATTERN_LOOKUP:
 //            return SPEntries.size();
             return storage.size();
 //        case OPTIMIZED_DIRECTORY_PATTERN_LOOKUP:
@@ -11,6 +11,8 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 
 import org.unicode.cldr.util.CLDRFile.DraftStatus;
@@ -18,9 +20,12 @@ import org.unicode.cldr.util.XMLSource.ResolvingSource;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.ibm.icu.util.ICUException;
 import com.ibm.icu.util.ICUUncheckedIOException;
 
@@ -431,7 +436,7 @@ public class SimpleFactory extends Factory {
             }
         } else {
             // combinedCache=  Collections.synchronizedMap(new LruMap<CLDRCacheKey, CLDRFile>(CACHE_LIMIT));
-            combinedCache = CacheBuilder.newBuilder().maximumSize(CACHE_LIMIT).build();
+            combinedCache = CacheBuilder.newBuilder().maximumSize(CACHE_LIMIT).recordStats().build();
         }
         //
         this.sourceDirectories = sourceDirectories;
@@ -483,11 +488,11 @@ public class SimpleFactory extends Factory {
     /**
      * Make a CLDR file. The result is a locked file, so that it can be cached. If you want to modify it,
      * use clone().
+     * <p>
+     * Loading is single-flight per key: concurrent requests for the same file wait for one load,
+     * while requests for different files (or for files already cached) proceed without blocking each other.
      */
-    @SuppressWarnings("unchecked")
-    public CLDRFile handleMake(String localeName, boolean resolved, DraftStatus minimalDraftStatus) {
-        @SuppressWarnings("rawtypes")
-        final Map mapToSynchronizeOn;
+    public CLDRFile handleMake(final String localeName, final boolean resolved, final DraftStatus minimalDraftStatus) {
         final List<File> parentDirs = getSourceDirectoriesForLocale(localeName);
         /*
          *  Parameter check: parentDir being null means the source directory could not be found - throw exception here
@@ -497,74 +502,78 @@ public class SimpleFactory extends Factory {
             // changed from IllegalArgumentException, which does't let us filter exceptions.
             throw new NoSourceDirectoryException(localeName);
         }
-        final Object cacheKey;
-        CLDRFile result; // result of the lookup / generation
         if (USE_OLD_HANDLEMAKE_CODE) {
             final Map<String, CLDRFile> cache = resolved ? resolvedCache[minimalDraftStatus.ordinal()] : mainCache[minimalDraftStatus.ordinal()];
-            mapToSynchronizeOn = cache;
-            cacheKey = localeName;
-            result = cache.get(localeName);
-        } else {
-            // Use double-check idiom
-            cacheKey = new CLDRCacheKey(localeName, resolved, minimalDraftStatus, parentDirs);
-            //        result = cache.get(localeName);
-            //  result=combinedCache.asMap().get(cacheKey);
-            result = combinedCache.getIfPresent(cacheKey);
-            mapToSynchronizeOn = combinedCache.asMap();
-        }
-        if (result != null) {
-            if (DEBUG_SIMPLEFACTORY) {
-                System.out.println("HandleMake:Returning cached result for locale " + localeName);
-            }
-            return result;
-        }
-//        synchronized (cache) {
-        synchronized (mapToSynchronizeOn) {
-            // Check cache twice to ensure that CLDRFile is only loaded once
-            // even with multiple threads.
-            //            result = cache.get(localeName);
-            //     result=combinedCache.get(cacheKey);
-            Object returned = mapToSynchronizeOn.get(cacheKey);
-            if (returned instanceof CLDRFile) {
-                result = (CLDRFile) returned;
-            }
+            CLDRFile result = cache.get(localeName);
             if (result != null) {
-                if (DEBUG_SIMPLEFACTORY) {
-                    System.out.println("HandleMake:Returning cached result for locale " + localeName);
+                return result;
+            }
+            synchronized (cache) {
+                // Check cache twice to ensure that CLDRFile is only loaded once
+                // even with multiple threads.
+                result = cache.get(localeName);
+                if (result == null) {
+                    result = loadFile(localeName, resolved, minimalDraftStatus, parentDirs);
+                    cache.put(localeName, result);
                 }
                 return result;
             }
-            if (resolved) {
-                ResolvingSource makeResolvingSource;
-                try {
-                    makeResolvingSource = makeResolvingSource(localeName, minimalDraftStatus);
-                } catch (Exception e) {
-                    throw new ICUException("Couldn't make resolved CLDR file for " + localeName, e);
+        }
+        CLDRCacheKey cacheKey = new CLDRCacheKey(localeName, resolved, minimalDraftStatus, parentDirs);
+        try {
+            return combinedCache.get(cacheKey, new Callable<CLDRFile>() {
+                @Override
+                public CLDRFile call() {
+                    return loadFile(localeName, resolved, minimalDraftStatus, parentDirs);
                 }
-                result = new CLDRFile(makeResolvingSource);
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            // pass on the original exception, as if there were no cache
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new ICUException("Couldn't make CLDR file for " + localeName, e.getCause());
+        }
+    }
+
+    /**
+     * Get the statistics (hits, loads, load time, evictions) for the cache of CLDRFiles made by this factory.
+     */
+    public CacheStats getCacheStats() {
+        return combinedCache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : combinedCache.stats();
+    }
+
+    /**
+     * Load a CLDR file, without looking in the cache.
+     */
+    private CLDRFile loadFile(String localeName, boolean resolved, DraftStatus minimalDraftStatus, List<File> parentDirs) {
+        CLDRFile result;
+        if (resolved) {
+            ResolvingSource makeResolvingSource;
+            try {
+                makeResolvingSource = makeResolvingSource(localeName, minimalDraftStatus);
+            } catch (Exception e) {
+                throw new ICUException("Couldn't make resolved CLDR file for " + localeName, e);
+            }
+            result = new CLDRFile(makeResolvingSource);
+        } else {
+            if (DEBUG_SIMPLEFACTORY) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("HandleMake: Calling makeFile with locale: ");
+                sb.append(localeName);
+                sb.append(", parentDir: ");
+                sb.append(parentDirs);
+                sb.append(", DraftStatus: ");
+                sb.append(minimalDraftStatus);
+                System.out.println(sb.toString());
+            }
+            File snapshotDir = CLDRFileSnapshot.getDefaultDirectory();
+            if (snapshotDir != null) {
+                result = CLDRFileSnapshot.load(snapshotDir, localeName, parentDirs, minimalDraftStatus);
             } else {
-                if (parentDirs != null) {
-                    if (DEBUG_SIMPLEFACTORY) {
-                        StringBuilder sb = new StringBuilder();
-                        sb.append("HandleMake: Calling makeFile with locale: ");
-                        sb.append(localeName);
-                        sb.append(", parentDir: ");
-                        sb.append(parentDirs);
-                        sb.append(", DraftStatus: ");
-                        sb.append(minimalDraftStatus);
-                        System.out.println(sb.toString());
-                    }
-                    result = makeFile(localeName, parentDirs, minimalDraftStatus);
-                    result.freeze();
-                }
+                result = makeFile(localeName, parentDirs, minimalDraftStatus);
             }
-            if (result != null) {
-                mapToSynchronizeOn.put(cacheKey, result);
-                //                combinedCache.put(cacheKey, result);
-                //                cache.put(localeName, result);
-            }
-            return result;
+            result.freeze();
         }
+        return result;
     }
 
     /**
@@ -79,6 +79,7 @@ public class SimpleXMLSource extends XMLSource {
         xpath_value.remove(distinguishingXPath);
         xpath_fullXPath.remove(distinguishingXPath);
         updateValuePathMapping(distinguishingXPath, oldValue, null);
+        notifyListeners(distinguishingXPath);
     }
 
     public Iterator<String> iterator() { // must be unmodifiable or locked
@@ -99,13 +100,17 @@ public class SimpleXMLSource extends XMLSource {
     }
 
     public void putFullPathAtDPath(String distinguishingXPath, String fullxpath) {
-        xpath_fullXPath.put(distinguishingXPath, fullxpath);
+        xpath_fullXPath.put(XPathIdTable.intern(distinguishingXPath), StringPool.intern(fullxpath));
     }
 
     public void putValueAtDPath(String distinguishingXPath, String value) {
+        // share the path string with all other sources holding the same path
+        distinguishingXPath = XPathIdTable.intern(distinguishingXPath);
+        value = StringPool.intern(value);
         String oldValue = xpath_value.get(distinguishingXPath);
         xpath_value.put(distinguishingXPath, value);
         updateValuePathMapping(distinguishingXPath, oldValue, value);
+        notifyListeners(distinguishingXPath);
     }
 
     private void updateValuePathMapping(String distinguishingXPath, String oldValue, String newValue) {
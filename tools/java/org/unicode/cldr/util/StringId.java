@@ -2,30 +2,49 @@ package org.unicode.cldr.util;
 
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
-import java.util.Map;
+import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 /**
  * Produce an ID for a string based on a long hash. When used properly, the odds
  * of collision are so low that the ID can be used as a proxy for the
  * original string. The ID is non-negative. The algorithm uses SHA-1 over the
  * UTF-8 bytes in the string. Also provides lookup for long previously generated for string.
+ * <p>
+ * Recently used IDs are cached, up to STRING_ID_CACHE_SIZE strings; the lookup from ID to string keeps every string.
  *
  * @author markdavis
  */
 public final class StringId {
-    private static final Map<String, Long> STRING_TO_ID = new ConcurrentHashMap<String, Long>();
-    private static final Map<Long, String> ID_TO_STRING = new ConcurrentHashMap<Long, String>();
-    private static final MessageDigest digest;
+    /**
+     * Maximum number of strings kept by the string to ID cache; can be changed with -DSTRING_ID_CACHE_SIZE=n
+     */
+    private static final int CACHE_SIZE = Integer.getInteger("STRING_ID_CACHE_SIZE", 200000);
+
+    private static final Cache<String, Long> STRING_TO_ID = CacheBuilder.newBuilder()
+        .concurrencyLevel(16)
+        .maximumSize(CACHE_SIZE)
+        .recordStats()
+        .build();
+    // not bounded, so that every ID returned by getId can be turned back into its string
+    private static final ConcurrentHashMap<Long, String> ID_TO_STRING = new ConcurrentHashMap<Long, String>();
     private static final Charset UTF_8 = Charset.forName("UTF-8");
-    private static final int RETRY_LIMIT = 9;
-    static {
-        try {
-            digest = MessageDigest.getInstance("SHA-1");
-        } catch (Exception e) {
-            throw new IllegalArgumentException(e); // darn'd checked exceptions
+
+    // MessageDigest is not thread-safe, so use one per thread instead of locking a shared one
+    private static final ThreadLocal<MessageDigest> DIGESTS = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (Exception e) {
+                throw new IllegalArgumentException(e); // darn'd checked exceptions
+            }
         }
-    }
+    };
 
     /**
      * Get the ID for a string.
@@ -36,32 +55,56 @@ public final class StringId {
      */
     public static long getId(CharSequence charSequence) {
         String string = charSequence.toString();
-        Long resultLong = STRING_TO_ID.get(string);
+        Long resultLong = STRING_TO_ID.getIfPresent(string);
         if (resultLong != null) {
             return resultLong;
         }
-        int retryCount = RETRY_LIMIT;
-        while (true) {
-            try {
-                synchronized (digest) {
-                    byte[] hash = digest.digest(string.getBytes(UTF_8));
-                    long result = 0;
-                    for (int i = 0; i < 8; ++i) {
-                        result <<= 8;
-                        result ^= hash[i];
-                    }
-                    // mash the top bit to make things easier
-                    result &= 0x7FFFFFFFFFFFFFFFL;
-                    STRING_TO_ID.put(string, result);
-                    ID_TO_STRING.put(result, string);
-                    return result;
-                }
-            } catch (RuntimeException e) {
-                if (--retryCount < 0) {
-                    throw e;
-                }
+        return computeId(string, DIGESTS.get());
+    }
+
+    /**
+     * Get the IDs for a collection of strings, such as the paths of a page.
+     *
+     * @return the IDs, in the iteration order of the strings
+     */
+    public static long[] getIds(Collection<? extends CharSequence> charSequences) {
+        long[] result = new long[charSequences.size()];
+        MessageDigest digest = null;
+        int i = 0;
+        for (CharSequence charSequence : charSequences) {
+            String string = charSequence.toString();
+            Long resultLong = STRING_TO_ID.getIfPresent(string);
+            if (resultLong != null) {
+                result[i++] = resultLong;
+                continue;
             }
+            if (digest == null) {
+                digest = DIGESTS.get();
+            }
+            result[i++] = computeId(string, digest);
         }
+        return result;
+    }
+
+    private static long computeId(String string, MessageDigest digest) {
+        byte[] hash = digest.digest(string.getBytes(UTF_8));
+        long result = 0;
+        for (int i = 0; i < 8; ++i) {
+            result <<= 8;
+            result ^= hash[i];
+        }
+        // mash the top bit to make things easier
+        result &= 0x7FFFFFFFFFFFFFFFL;
+        STRING_TO_ID.put(string, result);
+        ID_TO_STRING.putIfAbsent(result, string);
+        return result;
+    }
+
+    /**
+     * Get hit/miss/eviction counts for the string to ID cache.
+     */
+    public static CacheStats getCacheStats() {
+        return STRING_TO_ID.stats();
     }
 
     /**
@@ -0,0 +1,74 @@
+package org.unicode.cldr.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Optional process-wide pool for the values and full paths held by SimpleXMLSources.
+ * Many locales have identical values (codes, inheritance markers, number patterns) and full paths
+ * (draft and alt attributes), so sharing one instance of each cuts the heap used when hundreds of files are loaded.
+ * <p>
+ * The pool holds its strings weakly, so strings no longer used by any file can be collected.
+ * It is off by default; turn it on with -DCLDR_INTERN_VALUES=true or with setEnabled(true) before loading files.
+ */
+public final class StringPool {
+    /**
+     * Approximate size of a String apart from its characters: the String object and the array header.
+     */
+    private static final int STRING_OVERHEAD = 40;
+
+    private static final Interner<String> POOL = Interners.newWeakInterner();
+    private static volatile boolean enabled = CldrUtility.getProperty("CLDR_INTERN_VALUES", false);
+
+    private static final LongAdder lookups = new LongAdder();
+    private static final LongAdder shared = new LongAdder();
+    private static final LongAdder bytesSaved = new LongAdder();
+
+    private StringPool() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turn pooling on or off. This only affects strings added afterwards.
+     */
+    public static void setEnabled(boolean enabled) {
+        StringPool.enabled = enabled;
+    }
+
+    /**
+     * Return the pooled instance equal to the string, if pooling is enabled; otherwise return the string itself.
+     *
+     * @param string may be null
+     */
+    public static String intern(String string) {
+        if (!enabled || string == null) {
+            return string;
+        }
+        String result = POOL.intern(string);
+        lookups.increment();
+        if (result != string) {
+            shared.increment();
+            bytesSaved.add(STRING_OVERHEAD + 2L * string.length());
+        }
+        return result;
+    }
+
+    /**
+     * @return the approximate number of bytes saved so far by returning pooled instances
+     */
+    public static long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    public static String stats() {
+        return "StringPool: " + (enabled ? "enabled" : "disabled")
+            + ", lookups:" + lookups.sum()
+            + ", shared:" + shared.sum()
+            + ", bytes saved:" + bytesSaved.sum();
+    }
+}
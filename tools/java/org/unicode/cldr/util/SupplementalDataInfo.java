@@ -9,7 +9,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.Deque;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -28,6 +27,7 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,6 +44,9 @@ import org.unicode.cldr.util.SupplementalDataInfo.PluralInfo.Count;
 import org.unicode.cldr.util.Validity.Status;
 
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
@@ -2279,110 +2282,204 @@ public class SupplementalDataInfo {
      * @return
      */
     public Level getCoverageLevel(String xpath, String loc) {
-        Level result = null;
-        result = coverageCache.get(xpath, loc);
+        CoverageLevel2 cov = getCoverageLevel2(loc);
+        Level result = cov.getPrecomputedLevel(xpath);
+        if (result != null) {
+            return result;
+        }
+        int pathId = XPathIdTable.getExistingId(xpath);
+        if (pathId < 0) {
+            // don't give IDs to arbitrary paths, since they are never freed; such paths are rare, so just compute them
+            return cov.getLevel(xpath);
+        }
+        CoverageCache.LocaleLevels levels = coverageCache.getLevels(loc);
+        result = coverageCache.get(levels, pathId);
         if (result == null) {
-            CoverageLevel2 cov = localeToCoverageLevelInfo.get(loc);
-            if (cov == null) {
-                cov = CoverageLevel2.getInstance(this, loc);
-                localeToCoverageLevelInfo.put(loc, cov);
-            }
-
             result = cov.getLevel(xpath);
-            coverageCache.put(xpath, loc, result);
+            levels.put(pathId, result);
         }
         return result;
     }
 
     /**
-     * Cache Data structure with object expiry,
-     * List that can hold up to MAX_LOCALES caches of locales, when one locale hasn't been used for a while it will removed and GC'd
+     * Get the shared CoverageLevel2 for the locale, loading its saved table if -DCLDR_COVERAGE_TABLE_DIR is set.
      */
-    private class CoverageCache {
-        private final Deque<Node> localeList = new LinkedList<>();
-        private final int MAX_LOCALES = 10;
+    private CoverageLevel2 getCoverageLevel2(String loc) {
+        CoverageLevel2 cov = localeToCoverageLevelInfo.get(loc);
+        if (cov == null) {
+            cov = CoverageLevel2.getInstance(this, loc);
+            File tableFile = CoverageLevel2.getDefaultTableFile(loc);
+            if (tableFile != null) {
+                try {
+                    cov.readTable(tableFile);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Ignoring unreadable coverage table " + tableFile + ": " + e);
+                }
+            }
+            CoverageLevel2 old = localeToCoverageLevelInfo.putIfAbsent(loc, cov);
+            if (old != null) {
+                cov = old;
+            }
+        }
+        return cov;
+    }
 
-        /**
-         * Object to sync on for modifying the locale list
-         */
-        private final Object LOCALE_LIST_ITER_SYNC = new Object();
+    /**
+     * Precompute the coverage levels of the paths for the locale, so that getCoverageLevel for them
+     * is a lock-free table read. If -DCLDR_COVERAGE_TABLE_DIR is set, the table is also saved there
+     * for later processes; it is ignored once coverageLevels.xml changes.
+     *
+     * @param loc
+     * @param paths
+     */
+    public void precomputeCoverageLevels(String loc, Iterable<String> paths) {
+        CoverageLevel2 cov = getCoverageLevel2(loc).precompute(paths);
+        File tableFile = CoverageLevel2.getDefaultTableFile(loc);
+        if (tableFile != null) {
+            try {
+                cov.writeTable(tableFile);
+            } catch (IOException e) {
+                System.err.println("Couldn't write coverage table " + tableFile + ": " + e);
+            }
+        }
+    }
 
-        /*
-         * constructor
-         */
-        public CoverageCache() {
-//            localeList = new LinkedList<Node>();
+    /**
+     * Preload the coverage cache with the levels of the paths for the locales, such as the locales with the most
+     * recent activity, so that the first requests for them don't compute the levels.
+     * Only the first CLDR_COVERAGE_CACHE_LOCALES locales are loaded, since the cache can't hold more.
+     *
+     * @param locales
+     * @param paths
+     */
+    public void preloadCoverageCache(Collection<String> locales, Iterable<String> paths) {
+        int count = 0;
+        for (String loc : locales) {
+            if (++count > CoverageCache.MAX_LOCALES) {
+                break;
+            }
+            CoverageLevel2 cov = getCoverageLevel2(loc);
+            CoverageCache.LocaleLevels levels = coverageCache.getLevels(loc);
+            for (String path : paths) {
+                int pathId = XPathIdTable.getId(path);
+                if (levels.get(pathId) == null) {
+                    levels.put(pathId, cov.getLevel(path));
+                }
+            }
         }
+    }
 
-        /*
-         * retrieves coverage level associated with two keys if it exists in the cache, otherwise returns null
-         * @param xpath
-         * @param loc
-         * @return the coverage level of the above two keys
+    /**
+     * Get the hit/miss counts of the coverage cache for paths, and the number of locales evicted from it.
+     */
+    public CacheStats getCoverageCacheStats() {
+        return coverageCache.getStats();
+    }
+
+    /**
+     * Get the locales in the coverage cache, most recently used first; for example, to preload them in a later process.
+     */
+    public List<String> getRecentCoverageLocales() {
+        return coverageCache.getRecentLocales();
+    }
+
+    /**
+     * Cache of coverage levels: locale to path ID to Level.
+     * The locales are held in a Guava cache, segmented so that lookups of different locales don't contend, and evicted
+     * least recently used once there are more than CLDR_COVERAGE_CACHE_LOCALES (default 50).
+     * Each locale has a table of levels indexed by XPathIdTable ID, which is read without locking.
+     */
+    private static class CoverageCache {
+        private static final int MAX_LOCALES = Integer.getInteger("CLDR_COVERAGE_CACHE_LOCALES", 50);
+        private static final Level[] LEVELS = Level.values();
+
+        private final Cache<String, LocaleLevels> localeToLevels = CacheBuilder.newBuilder()
+            .concurrencyLevel(16)
+            .maximumSize(MAX_LOCALES)
+            .recordStats()
+            .build();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        /**
+         * The levels of one locale; 0 in the table means not cached, otherwise the Level ordinal + 1
          */
-        public Level get(String xpath, String loc) {
-            synchronized (LOCALE_LIST_ITER_SYNC) {
-                Iterator<Node> it = localeList.iterator();
-                Node reAddNode = null;
-                while (it.hasNext()) {
-//            for (Iterator<Node> it = localeList.iterator(); it.hasNext();) {
-                    Node node = it.next();
-                    if (node.loc.equals(loc)) {
-                        reAddNode = node;
-                        it.remove();
-                        break;
+        private static final class LocaleLevels {
+            private final String loc;
+            private volatile byte[] levels = new byte[0];
+            private volatile long lastUsed;
+
+            LocaleLevels(String loc) {
+                this.loc = loc;
+            }
+
+            Level get(int pathId) {
+                byte[] table = levels;
+                int value = pathId < table.length ? table[pathId] : 0;
+                return value == 0 ? null : LEVELS[value - 1];
+            }
 
+            void put(int pathId, Level level) {
+                byte[] table = levels;
+                if (pathId >= table.length) {
+                    synchronized (this) {
+                        table = levels;
+                        if (pathId >= table.length) {
+                            table = Arrays.copyOf(table, Math.max(pathId + 1, XPathIdTable.size() + table.length / 2));
+                            levels = table;
+                        }
                     }
                 }
-                if (reAddNode != null) {
-                    localeList.addFirst(reAddNode);
-                    return reAddNode.map.get(xpath);
-                }
-                return null;
+                // a level written to a table that is being replaced may be lost; it is just computed again
+                table[pathId] = (byte) (level.ordinal() + 1);
             }
         }
 
-        /*
-         * places a coverage level into the cache, with two keys
-         * @param xpath
-         * @param loc
-         * @param covLevel    the coverage level of the above two keys
+        /**
+         * Get the levels for the locale, adding an empty table if the locale isn't cached.
          */
-        public void put(String xpath, String loc, Level covLevel) {
-            synchronized (LOCALE_LIST_ITER_SYNC) {
-                //if locale's map is already in the cache add to it
-//            for (Iterator<Node> it = localeList.iterator(); it.hasNext();) {
-                for (Node node : localeList) {
-//                Node node = it.next();
-                    if (node.loc.equals(loc)) {
-                        node.map.put(xpath, covLevel);
-                        return;
-                    }
-                }
-
-                //if it is not, add a new map with the coverage level, and remove the last map in the list (used most seldom) if the list is too large
-                Map<String, Level> newMap = new ConcurrentHashMap<String, Level>();
-                newMap.put(xpath, covLevel);
-                localeList.addFirst(new Node(loc, newMap));
-
-                if (localeList.size() > MAX_LOCALES) {
-                    localeList.removeLast();
+        LocaleLevels getLevels(String loc) {
+            LocaleLevels levels = localeToLevels.getIfPresent(loc);
+            if (levels == null) {
+                levels = new LocaleLevels(loc);
+                LocaleLevels old = localeToLevels.asMap().putIfAbsent(loc, levels);
+                if (old != null) {
+                    levels = old;
                 }
             }
+            long now = System.currentTimeMillis();
+            if (now - levels.lastUsed > 1000) { // coarse, to avoid a volatile write per lookup
+                levels.lastUsed = now;
+            }
+            return levels;
         }
 
         /*
-         * node to hold a location and a Map
+         * retrieves the coverage level of the path in the locale if it exists in the cache, otherwise returns null
          */
-        private class Node {
-            //public fields to emulate a C/C++ struct
-            public String loc;
-            public Map<String, Level> map;
+        Level get(LocaleLevels levels, int pathId) {
+            Level result = levels.get(pathId);
+            (result == null ? misses : hits).increment();
+            return result;
+        }
 
-            public Node(String _loc, Map<String, Level> _map) {
-                loc = _loc;
-                map = _map;
+        CacheStats getStats() {
+            return new CacheStats(hits.sum(), misses.sum(), 0, 0, 0, localeToLevels.stats().evictionCount());
+        }
+
+        List<String> getRecentLocales() {
+            List<LocaleLevels> all = new ArrayList<LocaleLevels>(localeToLevels.asMap().values());
+            Collections.sort(all, new Comparator<LocaleLevels>() {
+                @Override
+                public int compare(LocaleLevels o1, LocaleLevels o2) {
+                    return Long.compare(o2.lastUsed, o1.lastUsed);
+                }
+            });
+            List<String> result = new ArrayList<String>();
+            for (LocaleLevels levels : all) {
+                result.add(levels.loc);
             }
+            return result;
         }
     }
 
@@ -2402,7 +2499,7 @@ public class SupplementalDataInfo {
 
     public synchronized RegexLookup<Level> getCoverageLookup() {
         if (coverageLookup == null) {
-            RegexLookup<Level> lookup = new RegexLookup<Level>(RegexLookup.LookupType.STAR_PATTERN_LOOKUP);
+            RegexLookup<Level> lookup = new RegexLookup<Level>(RegexLookup.LookupType.COMPILED_PATTERN_LOOKUP);
 
             Matcher variable = PatternCache.get("\\$\\{[A-Za-z][\\-A-Za-z]*\\}").matcher("");
 
@@ -2894,7 +2991,7 @@ public class SupplementalDataInfo {
 
     private Map<DayPeriodInfo.Type, Map<String, DayPeriodInfo>> typeToLocaleToDayPeriodInfo = new EnumMap<DayPeriodInfo.Type, Map<String, DayPeriodInfo>>(
         DayPeriodInfo.Type.class);
-    private Map<String, CoverageLevel2> localeToCoverageLevelInfo = new ConcurrentHashMap<String, CoverageLevel2>();
+    private ConcurrentHashMap<String, CoverageLevel2> localeToCoverageLevelInfo = new ConcurrentHashMap<String, CoverageLevel2>();
     private CoverageCache coverageCache = new CoverageCache();
     private transient String lastPluralLocales = "";
     private transient PluralType lastPluralWasOrdinal = null;
@@ -19,6 +19,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -559,168 +560,417 @@ public class VettingViewer<T> {
             EnumSet<Choice> choices, String localeID, boolean nonVettingPhase,
             T user, Level usersLevel, boolean quick, String xpath) {
 
-            Status status = new Status();
-            errorChecker.initErrorStatus(sourceFile);
-            Matcher altProposed = ALT_PROPOSED.matcher("");
+            if (rowCacheProvider != null && !quick && xpath == null) {
+                RowCache cache = rowCacheProvider.getRowCache(localeID, user, usersLevel, choices);
+                if (cache != null) {
+                    return getFileInfo(cache, sourceFile, baselineFile, sorted, choices, localeID, user, usersLevel);
+                }
+            }
+
+            PathChecker checker = new PathChecker(sourceFile, baselineFile, choices, localeID, user, usersLevel, quick);
             problems = EnumSet.noneOf(Choice.class);
 
             // now look through the paths
 
-            StringBuilder htmlMessage = new StringBuilder();
-            StringBuilder statusMessage = new StringBuilder();
-            EnumSet<Subtype> subtypes = EnumSet.noneOf(Subtype.class);
-            Set<String> seenSoFar = new HashSet<String>();
-            boolean latin = VettingViewer.isLatinScriptLocale(sourceFile);
             for (String path : sourceFile.fullIterable()) {
                 if (xpath != null && !xpath.equals(path))
                     continue;
-                String value = sourceFile.getWinningValue(path);
-                statusMessage.setLength(0);
-                subtypes.clear();
-                ErrorChecker.Status errorStatus = errorChecker.getErrorStatus(path, value, statusMessage, subtypes);
-
-                if (quick && errorStatus != ErrorChecker.Status.error && errorStatus != ErrorChecker.Status.warning) { //skip all values but errors and warnings if in "quick" mode
-                    continue;
-                }
-
-                if (seenSoFar.contains(path)) {
+                PathRow row = checker.check(path);
+                if (row == null) {
                     continue;
                 }
-                seenSoFar.add(path);
-                progressCallback.nudge(); // Let the user know we're moving along.
+                addCounts(row);
 
-                PathHeader pretty = pathTransform.fromPath(path);
-                if (pretty.getSurveyToolStatus() == PathHeader.SurveyToolStatus.HIDE) {
-                    continue;
+                if (xpath != null) {
+                    problems = row.problems;
+                    return this;
                 }
 
-                // note that the value might be missing!
+                addWritingInfo(row, sorted);
+            }
+            return this;
+        }
 
-                // make sure we only look at the real values
-                if (altProposed.reset(path).find()) {
-                    continue;
+        /**
+         * Get the file info from the rows kept in the cache, first checking the paths that changed since the last
+         * time, or all of them if the cache is new or its rows are too old.
+         */
+        private FileInfo getFileInfo(RowCache cache, CLDRFile sourceFile, CLDRFile baselineFile,
+            Relation<R2<SectionId, PageId>, WritingInfo> sorted,
+            EnumSet<Choice> choices, String localeID, T user, Level usersLevel) {
+            synchronized (cache) {
+                boolean done = false;
+                try {
+                    long now = System.currentTimeMillis();
+                    if (cache.rebuild || now - cache.builtAt > cache.maxAgeMillis) {
+                        cache.rebuild = false;
+                        cache.builtAt = now;
+                        cache.changedPaths.clear();
+                        cache.clear();
+                        PathChecker checker = new PathChecker(sourceFile, baselineFile, choices, localeID, user, usersLevel, false);
+                        for (String path : sourceFile.fullIterable()) {
+                            if (!cache.rows.containsKey(path)) {
+                                cache.put(path, checker.check(path));
+                            }
+                        }
+                    } else if (!cache.changedPaths.isEmpty()) {
+                        // the test results of the other paths in a logical group depend on the changed one
+                        Set<String> toCheck = new HashSet<String>();
+                        for (String path : cache.changedPaths.toArray(new String[0])) {
+                            cache.changedPaths.remove(path);
+                            toCheck.addAll(LogicalGrouping.getPaths(sourceFile, path));
+                            toCheck.add(path);
+                        }
+                        PathChecker checker = new PathChecker(sourceFile, baselineFile, choices, localeID, user, usersLevel, false);
+                        for (String path : toCheck) {
+                            if (cache.rows.containsKey(path) || sourceFile.getStringValue(path) != null) {
+                                cache.put(path, checker.check(path));
+                            }
+                        }
+                    }
+                    done = true;
+                } finally {
+                    if (!done) {
+                        cache.rebuild = true; // stopped part way, so don't trust the rows
+                    }
                 }
 
-                if (path.contains("/references")) {
-                    continue;
+                copyNonZero(cache.problemCounter, problemCounter);
+                copyNonZero(cache.errorSubtypeCounter, errorSubtypeCounter);
+                copyNonZero(cache.warningSubtypeCounter, warningSubtypeCounter);
+                if (sorted != null) {
+                    for (PathRow row : cache.rows.values()) {
+                        if (row != null) {
+                            addWritingInfo(row, sorted);
+                        }
+                    }
                 }
+            }
+            return this;
+        }
+
+        private void addCounts(PathRow row) {
+            for (Choice choice : row.counted) {
+                problemCounter.increment(choice);
+            }
+            for (Subtype subtype : row.errorSubtypes) {
+                errorSubtypeCounter.increment(subtype);
+            }
+            for (Subtype subtype : row.warningSubtypes) {
+                warningSubtypeCounter.increment(subtype);
+            }
+        }
 
-                Level level = supplementalDataInfo.getCoverageLevel(path, sourceFile.getLocaleID());
+        private void addWritingInfo(PathRow row, Relation<R2<SectionId, PageId>, WritingInfo> sorted) {
+            if (!row.problems.isEmpty() && sorted != null) {
+                reasonsToPaths.clear();
+                R2<SectionId, PageId> group = Row.of(row.pretty.getSectionId(), row.pretty.getPageId());
 
-                // skip all but errors above the requested level
-                boolean onlyRecordErrors = false;
-                if (level.compareTo(usersLevel) > 0) {
-                    onlyRecordErrors = true;
-                }
+                sorted.put(group, new WritingInfo(row.pretty, row.problems, row.htmlMessage));
+            }
+        }
+    }
 
-                problems.clear();
-                htmlMessage.setLength(0);
-                final String oldValue = baselineFile == null ? null : baselineFile.getWinningValue(path);
+    private static <K> void copyNonZero(Counter<K> from, Counter<K> to) {
+        for (K key : from.keySet()) {
+            long count = from.get(key);
+            if (count != 0) {
+                to.add(key, count);
+            }
+        }
+    }
 
-                if (CheckCLDR.LIMITED_SUBMISSION) {
-                    if (!SubmissionLocales.allowEvenIfLimited(localeID, path, errorStatus == ErrorChecker.Status.error, oldValue == null)) {
-                        continue;
-                    };
-                }
+    /**
+     * The problems found on one path, and what the path adds to the counters.
+     */
+    private static final class PathRow {
+        private static final Choice[] NO_CHOICES = new Choice[0];
+        private static final Subtype[] NO_SUBTYPES = new Subtype[0];
 
-                if (!onlyRecordErrors && choices.contains(Choice.changedOldValue)) {
-                    if (oldValue != null && !oldValue.equals(value)) {
-                        problems.add(Choice.changedOldValue);
-                        problemCounter.increment(Choice.changedOldValue);
-                    }
+        final PathHeader pretty;
+        final EnumSet<Choice> problems;
+        final String htmlMessage;
+        /**
+         * Each increment of the problem counter: usually the same as the problems.
+         */
+        final Choice[] counted;
+        final Subtype[] errorSubtypes;
+        final Subtype[] warningSubtypes;
+
+        PathRow(PathHeader pretty, EnumSet<Choice> problems, CharSequence htmlMessage, List<Choice> counted,
+            Set<Subtype> errorSubtypes, Set<Subtype> warningSubtypes) {
+            this.pretty = pretty;
+            this.problems = problems.clone();
+            this.htmlMessage = htmlMessage.toString();
+            this.counted = counted.isEmpty() ? NO_CHOICES : counted.toArray(NO_CHOICES);
+            this.errorSubtypes = errorSubtypes.isEmpty() ? NO_SUBTYPES : errorSubtypes.toArray(NO_SUBTYPES);
+            this.warningSubtypes = warningSubtypes.isEmpty() ? NO_SUBTYPES : warningSubtypes.toArray(NO_SUBTYPES);
+        }
+    }
+
+    /**
+     * Checks the paths of one file, for one user and level.
+     */
+    private class PathChecker {
+        private final CLDRFile sourceFile;
+        private final CLDRFile baselineFile;
+        private final EnumSet<Choice> choices;
+        private final String localeID;
+        private final T user;
+        private final Level usersLevel;
+        private final boolean quick;
+
+        private final Status status = new Status();
+        private final Matcher altProposed = ALT_PROPOSED.matcher("");
+        private final EnumSet<Choice> problems = EnumSet.noneOf(Choice.class);
+        private final List<Choice> counted = new ArrayList<Choice>();
+        private final StringBuilder htmlMessage = new StringBuilder();
+        private final StringBuilder statusMessage = new StringBuilder();
+        private final EnumSet<Subtype> subtypes = EnumSet.noneOf(Subtype.class);
+        private final Set<String> seenSoFar = new HashSet<String>();
+        private final boolean latin;
+
+        PathChecker(CLDRFile sourceFile, CLDRFile baselineFile, EnumSet<Choice> choices, String localeID,
+            T user, Level usersLevel, boolean quick) {
+            this.sourceFile = sourceFile;
+            this.baselineFile = baselineFile;
+            this.choices = choices;
+            this.localeID = localeID;
+            this.user = user;
+            this.usersLevel = usersLevel;
+            this.quick = quick;
+            errorChecker.initErrorStatus(sourceFile);
+            latin = VettingViewer.isLatinScriptLocale(sourceFile);
+        }
+
+        /**
+         * @return the row for the path, or null if it is not shown
+         */
+        PathRow check(String path) {
+            String value = sourceFile.getWinningValue(path);
+            statusMessage.setLength(0);
+            subtypes.clear();
+            ErrorChecker.Status errorStatus = errorChecker.getErrorStatus(path, value, statusMessage, subtypes);
+
+            if (quick && errorStatus != ErrorChecker.Status.error && errorStatus != ErrorChecker.Status.warning) { //skip all values but errors and warnings if in "quick" mode
+                return null;
+            }
+
+            if (seenSoFar.contains(path)) {
+                return null;
+            }
+            seenSoFar.add(path);
+            progressCallback.nudge(); // Let the user know we're moving along.
+
+            PathHeader pretty = pathTransform.fromPath(path);
+            if (pretty.getSurveyToolStatus() == PathHeader.SurveyToolStatus.HIDE) {
+                return null;
+            }
+
+            // note that the value might be missing!
+
+            // make sure we only look at the real values
+            if (altProposed.reset(path).find()) {
+                return null;
+            }
+
+            if (path.contains("/references")) {
+                return null;
+            }
+
+            Level level = supplementalDataInfo.getCoverageLevel(path, sourceFile.getLocaleID());
+
+            // skip all but errors above the requested level
+            boolean onlyRecordErrors = false;
+            if (level.compareTo(usersLevel) > 0) {
+                onlyRecordErrors = true;
+            }
+
+            problems.clear();
+            counted.clear();
+            htmlMessage.setLength(0);
+            Set<Subtype> errorSubtypes = Collections.emptySet();
+            Set<Subtype> warningSubtypes = Collections.emptySet();
+            final String oldValue = baselineFile == null ? null : baselineFile.getWinningValue(path);
+
+            if (CheckCLDR.LIMITED_SUBMISSION) {
+                if (!SubmissionLocales.allowEvenIfLimited(localeID, path, errorStatus == ErrorChecker.Status.error, oldValue == null)) {
+                    return null;
+                };
+            }
+
+            if (!onlyRecordErrors && choices.contains(Choice.changedOldValue)) {
+                if (oldValue != null && !oldValue.equals(value)) {
+                    problems.add(Choice.changedOldValue);
+                    counted.add(Choice.changedOldValue);
                 }
-                VoteStatus voteStatus = userVoteStatus.getStatusForUsersOrganization(sourceFile, path, user);
-                boolean itemsOkIfVoted = (voteStatus == VoteStatus.ok);
-                MissingStatus missingStatus = null;
-
-                if (!onlyRecordErrors) {
-                    missingStatus = getMissingStatus(sourceFile, path, status, latin);
-                    if (choices.contains(Choice.missingCoverage) && missingStatus == MissingStatus.ABSENT) {
-                        problems.add(Choice.missingCoverage);
-                        problemCounter.increment(Choice.missingCoverage);
-                    }
-                    if (SubmissionLocales.pathAllowedInLimitedSubmission(path)) {
+            }
+            VoteStatus voteStatus = userVoteStatus.getStatusForUsersOrganization(sourceFile, path, user);
+            boolean itemsOkIfVoted = (voteStatus == VoteStatus.ok);
+            MissingStatus missingStatus = null;
+
+            if (!onlyRecordErrors) {
+                missingStatus = getMissingStatus(sourceFile, path, status, latin);
+                if (choices.contains(Choice.missingCoverage) && missingStatus == MissingStatus.ABSENT) {
+                    problems.add(Choice.missingCoverage);
+                    counted.add(Choice.missingCoverage);
+                }
+                if (SubmissionLocales.pathAllowedInLimitedSubmission(path)) {
+                    problems.add(Choice.englishChanged);
+                    counted.add(Choice.englishChanged);
+                }
+                if (!CheckCLDR.LIMITED_SUBMISSION && !itemsOkIfVoted && outdatedPaths.isOutdated(localeID, path)) {
+                    // the outdated paths compares the base value, before
+                    // data submission,
+                    // so see if the value changed.
+                    if (Objects.equals(value, oldValue) && choices.contains(Choice.englishChanged)) {
+                        // check to see if we voted
                         problems.add(Choice.englishChanged);
-                        problemCounter.increment(Choice.englishChanged);
-                    }
-                    if (!CheckCLDR.LIMITED_SUBMISSION && !itemsOkIfVoted && outdatedPaths.isOutdated(localeID, path)) {
-                        // the outdated paths compares the base value, before
-                        // data submission,
-                        // so see if the value changed.
-                        if (Objects.equals(value, oldValue) && choices.contains(Choice.englishChanged)) {
-                            // check to see if we voted
-                            problems.add(Choice.englishChanged);
-                            problemCounter.increment(Choice.englishChanged);
-                        }
+                        counted.add(Choice.englishChanged);
                     }
                 }
-                Choice choice = errorStatus == ErrorChecker.Status.error ? Choice.error
-                    : errorStatus == ErrorChecker.Status.warning ? Choice.warning
-                        : null;
-
-                if (choice == Choice.error && choices.contains(Choice.error)
-                    && (!itemsOkIfVoted
-                        || !OK_IF_VOTED.containsAll(subtypes))) {
-                    problems.add(choice);
-                    appendToMessage(statusMessage, htmlMessage);
-                    problemCounter.increment(choice);
-                    for (Subtype subtype : subtypes) {
-                        errorSubtypeCounter.increment(subtype);
+            }
+            Choice choice = errorStatus == ErrorChecker.Status.error ? Choice.error
+                : errorStatus == ErrorChecker.Status.warning ? Choice.warning
+                    : null;
+
+            if (choice == Choice.error && choices.contains(Choice.error)
+                && (!itemsOkIfVoted
+                    || !OK_IF_VOTED.containsAll(subtypes))) {
+                problems.add(choice);
+                appendToMessage(statusMessage, htmlMessage);
+                counted.add(choice);
+                errorSubtypes = subtypes;
+            } else if (!onlyRecordErrors && choice == Choice.warning && choices.contains(Choice.warning)
+                && (!itemsOkIfVoted
+                    || !OK_IF_VOTED.containsAll(subtypes))) {
+                problems.add(choice);
+                appendToMessage(statusMessage, htmlMessage);
+                counted.add(choice);
+                warningSubtypes = subtypes;
+            }
+            if (!onlyRecordErrors) {
+                switch (voteStatus) {
+                case losing:
+                    if (choices.contains(Choice.weLost)) {
+                        problems.add(Choice.weLost);
+                        counted.add(Choice.weLost);
                     }
-                } else if (!onlyRecordErrors && choice == Choice.warning && choices.contains(Choice.warning)
-                    && (!itemsOkIfVoted
-                        || !OK_IF_VOTED.containsAll(subtypes))) {
-                    problems.add(choice);
-                    appendToMessage(statusMessage, htmlMessage);
-                    problemCounter.increment(choice);
-                    for (Subtype subtype : subtypes) {
-                        warningSubtypeCounter.increment(subtype);
+                    String usersValue = userVoteStatus.getWinningValueForUsersOrganization(sourceFile, path, user);
+                    if (usersValue != null) {
+                        usersValue = "Losing value: <" + TransliteratorUtilities.toHTML.transform(usersValue) + ">";
+                        appendToMessage(usersValue, htmlMessage);
                     }
-                }
-                if (!onlyRecordErrors) {
-                    switch (voteStatus) {
-                    case losing:
-                        if (choices.contains(Choice.weLost)) {
-                            problems.add(Choice.weLost);
-                            problemCounter.increment(Choice.weLost);
-                        }
-                        String usersValue = userVoteStatus.getWinningValueForUsersOrganization(sourceFile, path, user);
-                        if (usersValue != null) {
-                            usersValue = "Losing value: <" + TransliteratorUtilities.toHTML.transform(usersValue) + ">";
-                            appendToMessage(usersValue, htmlMessage);
-                        }
-                        break;
-                    case disputed:
-                        if (choices.contains(Choice.hasDispute)) {
-                            problems.add(Choice.hasDispute);
-                            problemCounter.increment(Choice.hasDispute);
-                        }
-                        break;
-                    case provisionalOrWorse:
-                        if (missingStatus == MissingStatus.PRESENT && choices.contains(Choice.notApproved)) {
-                            problems.add(Choice.notApproved);
-                            problemCounter.increment(Choice.notApproved);
-                        }
-                        break;
-                    default:
+                    break;
+                case disputed:
+                    if (choices.contains(Choice.hasDispute)) {
+                        problems.add(Choice.hasDispute);
+                        counted.add(Choice.hasDispute);
                     }
+                    break;
+                case provisionalOrWorse:
+                    if (missingStatus == MissingStatus.PRESENT && choices.contains(Choice.notApproved)) {
+                        problems.add(Choice.notApproved);
+                        counted.add(Choice.notApproved);
+                    }
+                    break;
+                default:
                 }
+            }
+            return new PathRow(pretty, problems, htmlMessage, counted, errorSubtypes, warningSubtypes);
+        }
+    }
 
-                if (xpath != null)
-                    return this;
+    /**
+     * The rows of one locale's dashboard, for one organization, coverage level and set of choices, kept between
+     * runs so that a run only checks again the paths whose values, votes or test results may have changed,
+     * and keeps the counts up to date as it goes.
+     * <p>
+     * Listen to the sources of the locale and its parents to find out which paths changed. The paths in the same
+     * logical group as a changed path are checked again too. Some tests compare a path with paths outside its
+     * group, such as the display collisions, so all the paths are checked again once the rows are older than
+     * the maximum age; call invalidateAll to do so on the next run.
+     */
+    public static final class RowCache implements XMLSource.Listener {
+        private final long maxAgeMillis;
 
-                if (!problems.isEmpty()) {
-                    if (sorted != null) {
-                        reasonsToPaths.clear();
-                        R2<SectionId, PageId> group = Row.of(pretty.getSectionId(), pretty.getPageId());
+        // guarded by this
+        private long builtAt = 0;
+        private final Map<String, PathRow> rows = new HashMap<String, PathRow>(); // null for a path that is not shown
+        private final Counter<Choice> problemCounter = new Counter<Choice>();
+        private final Counter<Subtype> errorSubtypeCounter = new Counter<Subtype>();
+        private final Counter<Subtype> warningSubtypeCounter = new Counter<Subtype>();
 
-                        sorted.put(group, new WritingInfo(pretty, problems, htmlMessage));
-                    }
-                }
+        private final Set<String> changedPaths = ConcurrentHashMap.newKeySet();
+        private volatile boolean rebuild = true;
+
+        /**
+         * A cache whose rows are only all checked again after invalidateAll.
+         */
+        public RowCache() {
+            this(Long.MAX_VALUE);
+        }
+
+        /**
+         * @param maxAgeMillis how long after all the paths were checked to check them all again
+         */
+        public RowCache(long maxAgeMillis) {
+            this.maxAgeMillis = maxAgeMillis;
+        }
+
+        /**
+         * Called by the sources, perhaps while they hold locks: just note the path.
+         */
+        @Override
+        public void valueChanged(String xpath, XMLSource source) {
+            changedPaths.add(xpath);
+        }
+
+        /**
+         * Check all the paths again on the next run.
+         */
+        public void invalidateAll() {
+            rebuild = true;
+        }
+
+        private void clear() {
+            rows.clear();
+            problemCounter.clear();
+            errorSubtypeCounter.clear();
+            warningSubtypeCounter.clear();
+        }
 
+        private void put(String path, PathRow row) {
+            PathRow old = rows.put(path, row);
+            if (old != null) {
+                count(old, -1);
+            }
+            if (row != null) {
+                count(row, 1);
             }
-            return this;
         }
+
+        private void count(PathRow row, int sign) {
+            for (Choice choice : row.counted) {
+                problemCounter.add(choice, sign);
+            }
+            for (Subtype subtype : row.errorSubtypes) {
+                errorSubtypeCounter.add(subtype, sign);
+            }
+            for (Subtype subtype : row.warningSubtypes) {
+                warningSubtypeCounter.add(subtype, sign);
+            }
+        }
+    }
+
+    /**
+     * Supplies the RowCache to use for a dashboard.
+     */
+    public static interface RowCacheProvider<T> {
+        /**
+         * @return the cache for the locale, user, level and choices, or null to check every path
+         */
+        public RowCache getRowCache(String localeID, T user, Level usersLevel, EnumSet<Choice> choices);
     }
 
     public static final class LocalesWithExplicitLevel implements Predicate<String> {
@@ -1168,6 +1418,8 @@ public class VettingViewer<T> {
      */
     private ProgressCallback progressCallback = new ProgressCallback();
 
+    private RowCacheProvider<T> rowCacheProvider = null;
+
     /**
      * Select a new callback. Must be set before running.
      *
@@ -1179,6 +1431,17 @@ public class VettingViewer<T> {
         return this;
     }
 
+    /**
+     * Keep the rows of the dashboards between runs in the caches from this provider, so that a run only checks the
+     * paths that changed. Not used in "quick" mode. Must be set before running.
+     *
+     * @return
+     */
+    public VettingViewer<T> setRowCacheProvider(RowCacheProvider<T> provider) {
+        rowCacheProvider = provider;
+        return this;
+    }
+
     public ErrorChecker getErrorChecker() {
         return errorChecker;
     }
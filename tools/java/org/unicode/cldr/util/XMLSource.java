@@ -12,16 +12,20 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -579,6 +583,144 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
         return (getValueAtDPath(path) != null);
     }
 
+    /**
+     * Get the value at the given distinguishing path ID (see {@link XPathIdTable}).
+     * SUBCLASSING: may be overridden for efficiency
+     *
+     * @param pathId
+     * @return the value, or null if there is none (or the ID is unknown)
+     */
+    public String getValueAtDPath(int pathId) {
+        String path = XPathIdTable.getPath(pathId);
+        return path == null ? null : getValueAtDPath(path);
+    }
+
+    /**
+     * @return an iterator over the IDs of the distinguished paths (see {@link XPathIdTable}).
+     *         SUBCLASSING: may be overridden for efficiency
+     */
+    public PrimitiveIterator.OfInt idIterator() {
+        final Iterator<String> it = iterator();
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                return XPathIdTable.getId(it.next());
+            }
+        };
+    }
+
+    /**
+     * A cursor over the distinguishing paths of an XMLSource, with their values and full paths,
+     * which are only looked up when asked for. Typical use:
+     *
+     * <pre>
+     * for (PathCursor cursor = source.cursor(prefix, null); cursor.next();) {
+     *     process(cursor.getPath(), cursor.getValue());
+     * }
+     * </pre>
+     */
+    public static interface PathCursor {
+        /**
+         * Move to the next path.
+         *
+         * @return false if there are no more paths
+         */
+        public boolean next();
+
+        /**
+         * @return the current distinguishing path
+         */
+        public String getPath();
+
+        /**
+         * @return the value at the current path
+         */
+        public String getValue();
+
+        /**
+         * @return the full path for the current path
+         */
+        public String getFullPath();
+    }
+
+    /**
+     * Get a cursor over the distinguishing paths that start with the prefix.
+     * In hash order (a null comparator), the paths are streamed straight from the source without copying them;
+     * otherwise the matching paths are gathered in a single list and sorted once.
+     *
+     * @param prefix the prefix to match, or null for all paths
+     * @param comparator the order of the paths, such as the DTD order from CLDRFile.getComparator(),
+     *        or null for hash order
+     * @return the cursor, positioned before the first path
+     *         SUBCLASSING: may be overridden for efficiency
+     */
+    public PathCursor cursor(String prefix, Comparator<String> comparator) {
+        if (prefix != null && prefix.isEmpty()) {
+            prefix = null;
+        }
+        if (comparator == null) {
+            return new IteratorCursor(this, iterator(), prefix);
+        }
+        List<String> paths = new ArrayList<String>();
+        for (Iterator<String> it = iterator(); it.hasNext();) {
+            String path = it.next();
+            if (prefix == null || path.startsWith(prefix)) {
+                paths.add(path);
+            }
+        }
+        paths.sort(comparator);
+        return new IteratorCursor(this, paths.iterator(), null);
+    }
+
+    /**
+     * A PathCursor over an iterator of distinguishing paths, skipping any paths that don't start with the prefix.
+     */
+    protected static class IteratorCursor implements PathCursor {
+        private final XMLSource source;
+        private final Iterator<String> paths;
+        private final String prefix;
+        private String path = null;
+
+        protected IteratorCursor(XMLSource source, Iterator<String> paths, String prefix) {
+            this.source = source;
+            this.paths = paths;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean next() {
+            while (paths.hasNext()) {
+                String candidate = paths.next();
+                if (prefix == null || candidate.startsWith(prefix)) {
+                    path = candidate;
+                    return true;
+                }
+            }
+            path = null;
+            return false;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String getValue() {
+            return source.getValueAtDPath(path);
+        }
+
+        @Override
+        public String getFullPath() {
+            return source.getFullPathAtDPath(path);
+        }
+    }
+
     /**
      * Get the Last-Change Date (if known) when the value was changed.
      * SUBCLASSING: may be overridden. defaults to NULL.
@@ -651,6 +793,8 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
         try {
             XMLSource result = (XMLSource) super.clone();
             result.locked = false;
+            // the listeners are watching the original, not the clone
+            result.listeners = new ArrayList<WeakReference<Listener>>();
             return result;
         } catch (CloneNotSupportedException e) {
             throw new InternalError("should never happen");
@@ -737,6 +881,13 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
             if (TRACE_VALUE) System.out.println("\t*xpath: " + xpath
                 + CldrUtility.LINE_SEPARATOR + "\t*source: " + currentSource.getClass().getName()
                 + CldrUtility.LINE_SEPARATOR + "\t*locale: " + currentSource.getLocaleID());
+            FlattenedTable table = flattened;
+            if (table != null) {
+                int index = table.indexOf(xpath);
+                if (index >= 0) {
+                    return table.values[index];
+                }
+            }
             String result = null;
             AliasLocation fullStatus = getCachedFullStatus(xpath, true /* skipInheritanceMarker */);
             if (fullStatus != null) {
@@ -783,7 +934,8 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
         // }
         // }
 
-        Map<String, String> getFullPathAtDPathCache = new HashMap<String, String>();
+        // written without a lock by getFullPath, cleared under the getSourceLocaleIDCache lock by valueChanged
+        Map<String, String> getFullPathAtDPathCache = new ConcurrentHashMap<String, String>();
 
         public String getFullPathAtDPath(String xpath) {
             String result = currentSource.getFullPathAtDPath(xpath);
@@ -910,6 +1062,13 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
             if (!skipInheritanceMarker || !cachingIsEnabled ) {
                 return getPathLocation(xpath, false /* skipFirst */, skipInheritanceMarker);
             }
+            FlattenedTable table = flattened;
+            if (table != null) {
+                int index = table.indexOf(xpath);
+                if (index >= 0) {
+                    return table.locations[index];
+                }
+            }
             synchronized (getSourceLocaleIDCache) {
                 AliasLocation fullStatus = getSourceLocaleIDCache.get(xpath);
                 if (fullStatus == null) {
@@ -1047,6 +1206,10 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
             }
 
             if (aliasedPath != null) {
+                if (cachingIsEnabled) {
+                    // so that a change at aliasedPath invalidates the cached status for xpath
+                    addAliasDependent(aliasedPath, xpath);
+                }
                 // Call getCachedFullStatus recursively to avoid recalculating cached aliases.
                 return getCachedFullStatus(aliasedPath, skipInheritanceMarker);
             }
@@ -1075,8 +1238,15 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
          */
         private Set<String> fillKeys() {
             Set<String> paths = findNonAliasedPaths();
+            addAliasedPaths(paths, paths);
+            return paths;
+        }
+
+        /**
+         * Adds to paths all the paths that alias, directly or indirectly, to any of the newPaths.
+         */
+        private void addAliasedPaths(Set<String> paths, Set<String> newPaths) {
             // Find aliased paths and loop until no more aliases can be found.
-            Set<String> newPaths = paths;
             int level = 0;
             boolean newPathsFound = false;
             do {
@@ -1096,7 +1266,6 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
                 newPathsFound = paths.addAll(newPaths);
                 level++;
             } while (newPathsFound);
-            return paths;
         }
 
         /**
@@ -1169,7 +1338,12 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
             return sources.get("root").getReverseAliases();
         }
 
+        /**
+         * The resolved paths, kept up to date incrementally by valueChanged. It is a concurrent set,
+         * so that iterators see a consistent (if possibly slightly stale) set while values change.
+         */
         private transient Set<String> cachedKeySet = null;
+        private transient Set<String> cachedKeySetView = null;
 
         /**
          * @return an iterator over all the xpaths in this XMLSource.
@@ -1178,14 +1352,56 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
             return getCachedKeySet().iterator();
         }
 
-        private Set<String> getCachedKeySet() {
+        private synchronized Set<String> getCachedKeySet() {
             if (cachedKeySet == null) {
-                cachedKeySet = fillKeys();
-                // System.out.println("CachedKeySet: " + cachedKeySet);
-                // cachedKeySet.addAll(constructedItems.keySet());
-                cachedKeySet = Collections.unmodifiableSet(cachedKeySet);
+                Set<String> keys = ConcurrentHashMap.newKeySet();
+                keys.addAll(fillKeys());
+                cachedKeySet = keys;
+                cachedKeySetView = Collections.unmodifiableSet(keys);
+            }
+            return cachedKeySetView;
+        }
+
+        /**
+         * Bring the cached key set up to date after a change at xpath in one of the sources,
+         * without recomputing it from scratch.
+         */
+        private synchronized void updateKeySet(String xpath) {
+            Set<String> keys = cachedKeySet;
+            if (keys == null) {
+                return; // nothing computed yet
+            }
+            if (hasValueInSources(xpath)) {
+                if (keys.add(xpath)) {
+                    addAliasedPaths(keys, Collections.singleton(xpath));
+                }
+                return;
+            }
+            if (!keys.remove(xpath)) {
+                return;
+            }
+            // remove the paths that were only present because they aliased to xpath
+            Set<String> removed = Collections.singleton(xpath);
+            for (int level = 0; !removed.isEmpty(); ++level) {
+                if (level > MAX_LEVEL) throw new IllegalArgumentException("Stack overflow");
+                String[] sortedPaths = removed.toArray(new String[removed.size()]);
+                Arrays.sort(sortedPaths);
+                removed = new HashSet<String>();
+                for (String aliasedPath : getDirectAliases(sortedPaths)) {
+                    if (!hasValueInSources(aliasedPath) && keys.remove(aliasedPath)) {
+                        removed.add(aliasedPath);
+                    }
+                }
             }
-            return cachedKeySet;
+        }
+
+        private boolean hasValueInSources(String xpath) {
+            for (XMLSource source : sources.values()) {
+                if (source.getValueAtDPath(xpath) != null) {
+                    return true;
+                }
+            }
+            return !SKIP_FALLBACKID && constructedItems.getValueAtDPath(xpath) != null;
         }
 
         public void putFullPathAtDPath(String distinguishingXPath, String fullxpath) {
@@ -1212,27 +1428,135 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
             return this; // No-op. ResolvingSource is already read-only.
         }
 
+        /**
+         * Compact table of the fully resolved data, built by flatten(). It is an open-addressing
+         * hash table over parallel arrays, so that lookups take no locks and allocate nothing.
+         */
+        private static final class FlattenedTable {
+            private final String[] paths;
+            private final String[] values;
+            private final AliasLocation[] locations;
+            private final int mask;
+
+            FlattenedTable(int size) {
+                int capacity = Integer.highestOneBit(size * 2 + 1) << 1; // load factor at most 1/2
+                paths = new String[capacity];
+                values = new String[capacity];
+                locations = new AliasLocation[capacity];
+                mask = capacity - 1;
+            }
+
+            private static int hash(String path) {
+                int h = path.hashCode();
+                return h ^ (h >>> 16);
+            }
+
+            int indexOf(String path) {
+                for (int i = hash(path) & mask;; i = (i + 1) & mask) {
+                    String current = paths[i];
+                    if (current == null) {
+                        return -1;
+                    }
+                    if (current.equals(path)) {
+                        return i;
+                    }
+                }
+            }
+
+            void put(String path, String value, AliasLocation location) {
+                int i = hash(path) & mask;
+                while (paths[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                paths[i] = path;
+                values[i] = value;
+                locations[i] = location;
+            }
+        }
+
+        private transient volatile FlattenedTable flattened = null;
+
+        /**
+         * Eagerly resolve every path in this source, recording its value, the locale where it was found,
+         * and the (possibly aliased) path where it was found, in a compact table.
+         * Afterwards, lookups of those paths are a single table probe with no locking.
+         * This is intended for batch tools that read many values from resolved files made by read-only factories:
+         * it costs time and memory up front, and the table is discarded if any source changes.
+         *
+         * @return this, for chaining
+         */
+        public ResolvingSource flatten() {
+            if (flattened != null) {
+                return this;
+            }
+            Set<String> keys = getCachedKeySet();
+            FlattenedTable table = new FlattenedTable(keys.size());
+            for (String path : keys) {
+                AliasLocation location = getPathLocation(path, false /* skipFirst */, true /* skipInheritanceMarker */);
+                table.put(path, getSource(location).getValueAtDPath(location.pathWhereFound), location);
+            }
+            flattened = table;
+            return this;
+        }
+
+        /**
+         * @return true if the resolved data has been flattened, and is still current
+         */
+        public boolean isFlattened() {
+            return flattened != null;
+        }
+
+        /**
+         * Map from a path to the paths whose resolution fell through to it (by an alias, or the alt and count
+         * fallbacks), so that a change at the path only invalidates the entries that depend on it.
+         */
+        private transient ConcurrentHashMap<String, Set<String>> aliasDependents = new ConcurrentHashMap<String, Set<String>>();
+
+        /**
+         * The number of paths in aliasDependents above which it is dropped, along with the caches that rely on it.
+         */
+        private static final int MAX_ALIAS_DEPENDENTS = Integer.getInteger("CLDR_ALIAS_DEPENDENTS_LIMIT", 100000);
+
+        private void addAliasDependent(String aliasedPath, String xpath) {
+            if (aliasDependents.size() >= MAX_ALIAS_DEPENDENTS && !aliasDependents.containsKey(aliasedPath)) {
+                // Unlike the status cache, the map holds its paths strongly, so it would otherwise only grow.
+                // Start again from empty caches, so that no cached entry is left without its dependencies.
+                synchronized (getSourceLocaleIDCache) {
+                    getSourceLocaleIDCache.clear();
+                    getFullPathAtDPathCache.clear();
+                    aliasDependents.clear();
+                }
+            }
+            aliasDependents.computeIfAbsent(aliasedPath, k -> ConcurrentHashMap.newKeySet()).add(xpath);
+        }
+
         @Override
         public void valueChanged(String xpath, XMLSource nonResolvingSource) {
+            flattened = null;
             if (!cachingIsEnabled) {
                 return;
             }
-            synchronized (getSourceLocaleIDCache) {
-                AliasLocation location = getSourceLocaleIDCache.remove(xpath);
-                if (location == null) {
-                    return;
-                }
-                // Paths aliasing to this path (directly or indirectly) may be affected,
-                // so clear them as well.
-                // There's probably a more elegant way to fix the paths than simply
-                // throwing everything out.
-                Set<String> dependentPaths = getDirectAliases(new String[] { xpath });
-                if (dependentPaths.size() > 0) {
-                    for (String path : dependentPaths) {
-                        getSourceLocaleIDCache.remove(path);
+            // Collect the path and everything that resolved through it, directly or indirectly.
+            // The dependencies are recorded again when the paths are next resolved.
+            Set<String> affected = new LinkedHashSet<String>();
+            List<String> toProcess = new ArrayList<String>();
+            toProcess.add(xpath);
+            while (!toProcess.isEmpty()) {
+                String path = toProcess.remove(toProcess.size() - 1);
+                if (affected.add(path)) {
+                    Set<String> dependents = aliasDependents.remove(path);
+                    if (dependents != null) {
+                        toProcess.addAll(dependents);
                     }
                 }
             }
+            synchronized (getSourceLocaleIDCache) {
+                for (String path : affected) {
+                    getSourceLocaleIDCache.remove(path);
+                    getFullPathAtDPathCache.remove(path);
+                }
+            }
+            updateKeySet(xpath);
         }
 
         /**
@@ -1656,7 +1980,9 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
      * Adds a listener to this XML source.
      */
     public void addListener(Listener listener) {
-        listeners.add(new WeakReference<Listener>(listener));
+        synchronized (listeners) {
+            listeners.add(new WeakReference<Listener>(listener));
+        }
     }
 
     /**
@@ -1669,15 +1995,24 @@ public abstract class XMLSource implements Freezable<XMLSource>, Iterable<String
      *            the xpath where the change occurred.
      */
     protected void notifyListeners(String xpath) {
-        int i = 0;
-        while (i < listeners.size()) {
-            Listener listener = listeners.get(i).get();
-            if (listener == null) { // listener has been garbage-collected.
-                listeners.remove(i);
-            } else {
-                listener.valueChanged(xpath, this);
-                i++;
+        List<Listener> current;
+        synchronized (listeners) {
+            if (listeners.isEmpty()) {
+                return;
             }
+            current = new ArrayList<Listener>(listeners.size());
+            for (Iterator<WeakReference<Listener>> it = listeners.iterator(); it.hasNext();) {
+                Listener listener = it.next().get();
+                if (listener == null) { // listener has been garbage-collected.
+                    it.remove();
+                } else {
+                    current.add(listener);
+                }
+            }
+        }
+        // call outside the lock, since listeners take their own locks
+        for (Listener listener : current) {
+            listener.valueChanged(xpath, this);
         }
     }
 
@@ -0,0 +1,101 @@
+package org.unicode.cldr.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide table handing out dense int IDs for distinguishing paths.
+ * IDs start at 0 and are never reused, so they can be used as array indexes
+ * and as map keys in place of the (long) path strings.
+ * The table also provides a canonical String instance for each path, so that the
+ * same path held by many XMLSources is only stored once.
+ * <p>
+ * Lookups are lock-free; only the allocation of a new ID is synchronized.
+ */
+public final class XPathIdTable {
+    private static final int INITIAL_CAPACITY = 1 << 15;
+
+    private static final ConcurrentHashMap<String, Integer> PATH_TO_ID = new ConcurrentHashMap<String, Integer>(INITIAL_CAPACITY);
+    private static volatile String[] ID_TO_PATH = new String[INITIAL_CAPACITY];
+    private static volatile int size = 0;
+    private static final Object ALLOCATION_SYNC = new Object();
+
+    private XPathIdTable() {
+    }
+
+    /**
+     * Get the ID for a distinguishing path, allocating a new one if the path hasn't been seen before.
+     *
+     * @param distinguishingPath
+     * @return the ID, from 0 to size() - 1
+     */
+    public static int getId(String distinguishingPath) {
+        Integer result = PATH_TO_ID.get(distinguishingPath);
+        if (result != null) {
+            return result;
+        }
+        synchronized (ALLOCATION_SYNC) {
+            result = PATH_TO_ID.get(distinguishingPath);
+            if (result != null) {
+                return result;
+            }
+            int id = size;
+            String[] idToPath = ID_TO_PATH;
+            if (id == idToPath.length) {
+                idToPath = Arrays.copyOf(idToPath, idToPath.length * 2);
+            }
+            idToPath[id] = distinguishingPath;
+            ID_TO_PATH = idToPath; // publish the array before the id
+            size = id + 1;
+            PATH_TO_ID.put(distinguishingPath, id);
+            return id;
+        }
+    }
+
+    /**
+     * Get the ID for a path only if it has already been allocated.
+     *
+     * @param distinguishingPath
+     * @return the ID, or -1 if the path has no ID
+     */
+    public static int getExistingId(String distinguishingPath) {
+        Integer result = PATH_TO_ID.get(distinguishingPath);
+        return result == null ? -1 : result;
+    }
+
+    /**
+     * Get the path for an ID.
+     *
+     * @param id
+     * @return the path, or null if the ID was never allocated
+     */
+    public static String getPath(int id) {
+        if (id < 0 || id >= size) {
+            return null;
+        }
+        return ID_TO_PATH[id];
+    }
+
+    /**
+     * Return the canonical instance of the path, registering it if needed.
+     * Callers that keep paths as map keys can use this to share one String per path across the process.
+     *
+     * @param distinguishingPath
+     * @return an equal String, shared by all callers
+     */
+    public static String intern(String distinguishingPath) {
+        int id = getId(distinguishingPath); // may grow the array, so read it afterwards
+        return getPath(id);
+    }
+
+    /**
+     * @return the number of IDs allocated so far; all valid IDs are less than this.
+     */
+    public static int size() {
+        return size;
+    }
+
+    public static String stats() {
+        return "XPathIdTable: " + size + " paths, capacity " + ID_TO_PATH.length;
+    }
+}
@@ -19,8 +19,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSet.Builder;
 import com.ibm.icu.impl.Utility;
@@ -44,7 +46,16 @@ public final class XPathParts implements Freezable<XPathParts> {
 
     private DtdData dtdData = null;
 
-    private static final Map<String, XPathParts> cache = new ConcurrentHashMap<String, XPathParts>();
+    /**
+     * Maximum number of frozen instances kept by getFrozenInstance; can be changed with -DXPATH_PARTS_CACHE_SIZE=n
+     */
+    private static final int CACHE_SIZE = Integer.getInteger("XPATH_PARTS_CACHE_SIZE", 100000);
+
+    private static final Cache<String, XPathParts> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(16)
+        .maximumSize(CACHE_SIZE)
+        .recordStats()
+        .build();
 
     /**
      * Construct a new empty XPathParts object.
@@ -203,6 +214,13 @@ public final class XPathParts implements Freezable<XPathParts> {
             return this;
         }
 
+        /**
+         * @return a read-only view of the xpath-to-comment map for the style
+         */
+        public Map<String, String> getComments(CommentType style) {
+            return Collections.unmodifiableMap(comments.get(style));
+        }
+
         public String removeComment(CommentType style, String xPath) {
             String result = comments.get(style).get(xPath);
             if (result != null) comments.get(style).remove(xPath);
@@ -530,6 +548,16 @@ public final class XPathParts implements Freezable<XPathParts> {
         return this;
     }
 
+    /**
+     * The view used by addInternal to tokenize paths, reused so that parsing doesn't allocate one for each path
+     */
+    private static final ThreadLocal<XPathView> PARSE_VIEW = new ThreadLocal<XPathView>() {
+        @Override
+        protected XPathView initialValue() {
+            return new XPathView();
+        }
+    };
+
     /**
      * Add the given path to this XPathParts.
      *
@@ -541,7 +569,6 @@ public final class XPathParts implements Freezable<XPathParts> {
      * Called by set (initial = true), and addRelative (initial = false)
      */
     private XPathParts addInternal(String xPath, boolean initial) {
-        String lastAttributeName = "";
         String requiredPrefix = "/";
         if (initial) {
             elements.clear();
@@ -551,79 +578,16 @@ public final class XPathParts implements Freezable<XPathParts> {
         if (!xPath.startsWith(requiredPrefix)) {
             return parseError(xPath, 0);
         }
-        int stringStart = requiredPrefix.length(); // skip prefix
-        char state = 'p';
-        // since only ascii chars are relevant, use char
-        int len = xPath.length();
-        for (int i = 2; i < len; ++i) {
-            char cp = xPath.charAt(i);
-            if (cp != state && (state == '\"' || state == '\'')) {
-                continue; // stay in quotation
-            }
-            switch (cp) {
-            case '/':
-                if (state != 'p' || stringStart >= i) {
-                    return parseError(xPath, i);
-                }
-                if (stringStart > 0) {
-                    addElement(xPath.substring(stringStart, i));
-                }
-                stringStart = i + 1;
-                break;
-            case '[':
-                if (state != 'p' || stringStart >= i) {
-                    return parseError(xPath, i);
-                }
-                if (stringStart > 0) {
-                    addElement(xPath.substring(stringStart, i));
-                }
-                state = cp;
-                break;
-            case '@':
-                if (state != '[') {
-                    return parseError(xPath, i);
-                }
-                stringStart = i + 1;
-                state = cp;
-                break;
-            case '=':
-                if (state != '@' || stringStart >= i) {
-                    return parseError(xPath, i);
-                }
-                lastAttributeName = xPath.substring(stringStart, i);
-                state = cp;
-                break;
-            case '\"':
-            case '\'':
-                if (state == cp) { // finished
-                    if (stringStart > i) {
-                        return parseError(xPath, i);
-                    }
-                    addAttribute(lastAttributeName, xPath.substring(stringStart, i));
-                    state = 'e';
-                    break;
-                }
-                if (state != '=') {
-                    return parseError(xPath, i);
-                }
-                stringStart = i + 1;
-                state = cp;
-                break;
-            case ']':
-                if (state != 'e') {
-                    return parseError(xPath, i);
-                }
-                state = 'p';
-                stringStart = -1;
-                break;
-            }
+        XPathView view = PARSE_VIEW.get();
+        int errorPosition = view.parse(xPath, requiredPrefix.length());
+        if (errorPosition >= 0) {
+            return parseError(xPath, errorPosition);
         }
-        // check to make sure terminated
-        if (state != 'p' || stringStart >= xPath.length()) {
-            return parseError(xPath, xPath.length());
-        }
-        if (stringStart > 0) {
-            addElement(xPath.substring(stringStart, xPath.length()));
+        for (int i = 0; i < view.size(); ++i) {
+            addElement(view.getElement(i));
+            for (int j = 0; j < view.getAttributeCount(i); ++j) {
+                addAttribute(view.getAttributeName(i, j), view.getAttributeValue(i, j));
+            }
         }
         return this;
     }
@@ -1249,15 +1213,31 @@ public final class XPathParts implements Freezable<XPathParts> {
         return xppClone;
     }
 
-    public static synchronized XPathParts getFrozenInstance(String path) {
-        XPathParts result = cache.get(path);
+    public static XPathParts getFrozenInstance(String path) {
+        XPathParts result = cache.getIfPresent(path);
         if (result == null) {
+            // Parse outside of any lock. If two threads race on the same path, they produce equal frozen
+            // objects, and the last one put wins.
             result = new XPathParts().addInternal(path, true).freeze();
             cache.put(path, result);
         }
         return result;
     }
 
+    /**
+     * Get hit/miss/eviction counts for the cache behind getFrozenInstance.
+     */
+    public static CacheStats getFrozenInstanceStats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the number of frozen instances currently cached
+     */
+    public static long getFrozenInstanceCacheSize() {
+        return cache.size();
+    }
+
     public static XPathParts getInstance(String path) {
         return getFrozenInstance(path).cloneAsThawed();
     }
@@ -0,0 +1,321 @@
+package org.unicode.cldr.util;
+
+import java.util.Arrays;
+
+/**
+ * Read-only view of an xpath, such as
+ *     //ldml/characters/exemplarCharacters[@type="auxiliary"]
+ * that records the offsets of the elements, attribute names and attribute values in the path string,
+ * instead of building Element objects and attribute maps as XPathParts does.
+ * <p>
+ * A view can be reused with set(), so reading many paths allocates nothing once the offset arrays are large enough.
+ * The comparison methods (elementEquals, attributeValueEquals, ...) also read the path in place;
+ * the methods returning Strings make substrings.
+ * <p>
+ * Unlike XPathParts, the attributes of an element are in the order they appear in the path.
+ * Element indexes may be negative, counting from the end as in XPathParts.
+ * Not thread-safe: use one view per thread.
+ */
+public final class XPathView {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String path = "";
+    private int size = 0;
+    private int attributeTotal = 0;
+    // for element i: the start and end of its name
+    private int[] elements = new int[2 * INITIAL_CAPACITY];
+    // for element i: the index of its first attribute; the attributes of i end at the first attribute of i + 1
+    private int[] firstAttributes = new int[INITIAL_CAPACITY + 1];
+    // for attribute k: the start and end of its name, then of its value
+    private int[] attributes = new int[4 * INITIAL_CAPACITY];
+
+    /**
+     * Set the view to a path starting with "//".
+     *
+     * @throws IllegalArgumentException if the path is malformed
+     * @return this, for chaining
+     */
+    public XPathView set(String path) {
+        if (!path.startsWith("//")) {
+            throw new IllegalArgumentException("Malformed xPath '" + path + "' at 0");
+        }
+        int errorPosition = parse(path, 2);
+        if (errorPosition >= 0) {
+            throw new IllegalArgumentException("Malformed xPath '" + path + "' at " + errorPosition);
+        }
+        return this;
+    }
+
+    /**
+     * Tokenize the path, starting after the prefix. This is the tokenizer behind XPathParts.
+     *
+     * @return -1 if the path is well-formed, otherwise the position of the error
+     */
+    int parse(String path, int prefixLength) {
+        this.path = path;
+        size = 0;
+        attributeTotal = 0;
+        firstAttributes[0] = 0;
+        int stringStart = prefixLength; // skip prefix
+        int nameStart = 0;
+        int nameEnd = 0;
+        char state = 'p';
+        // since only ascii chars are relevant, use char
+        int len = path.length();
+        for (int i = 2; i < len; ++i) {
+            char cp = path.charAt(i);
+            if (cp != state && (state == '\"' || state == '\'')) {
+                continue; // stay in quotation
+            }
+            switch (cp) {
+            case '/':
+                if (state != 'p' || stringStart >= i) {
+                    return i;
+                }
+                if (stringStart > 0) {
+                    addElement(stringStart, i);
+                }
+                stringStart = i + 1;
+                break;
+            case '[':
+                if (state != 'p' || stringStart >= i) {
+                    return i;
+                }
+                if (stringStart > 0) {
+                    addElement(stringStart, i);
+                }
+                state = cp;
+                break;
+            case '@':
+                if (state != '[') {
+                    return i;
+                }
+                stringStart = i + 1;
+                state = cp;
+                break;
+            case '=':
+                if (state != '@' || stringStart >= i) {
+                    return i;
+                }
+                nameStart = stringStart;
+                nameEnd = i;
+                state = cp;
+                break;
+            case '\"':
+            case '\'':
+                if (state == cp) { // finished
+                    if (stringStart > i || size == 0) {
+                        return i;
+                    }
+                    addAttribute(nameStart, nameEnd, stringStart, i);
+                    state = 'e';
+                    break;
+                }
+                if (state != '=') {
+                    return i;
+                }
+                stringStart = i + 1;
+                state = cp;
+                break;
+            case ']':
+                if (state != 'e') {
+                    return i;
+                }
+                state = 'p';
+                stringStart = -1;
+                break;
+            }
+        }
+        // check to make sure terminated
+        if (state != 'p' || stringStart >= len) {
+            return len;
+        }
+        if (stringStart > 0) {
+            addElement(stringStart, len);
+        }
+        return -1;
+    }
+
+    private void addElement(int start, int end) {
+        if (2 * size + 2 > elements.length) {
+            elements = Arrays.copyOf(elements, elements.length * 2);
+            firstAttributes = Arrays.copyOf(firstAttributes, firstAttributes.length * 2);
+        }
+        elements[2 * size] = start;
+        elements[2 * size + 1] = end;
+        ++size;
+        firstAttributes[size] = attributeTotal;
+    }
+
+    private void addAttribute(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        if (4 * attributeTotal + 4 > attributes.length) {
+            attributes = Arrays.copyOf(attributes, attributes.length * 2);
+        }
+        int base = 4 * attributeTotal;
+        attributes[base] = nameStart;
+        attributes[base + 1] = nameEnd;
+        attributes[base + 2] = valueStart;
+        attributes[base + 3] = valueEnd;
+        ++attributeTotal;
+        firstAttributes[size] = attributeTotal; // attributes belong to the last element
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    private int fix(int elementIndex) {
+        return elementIndex >= 0 ? elementIndex : elementIndex + size;
+    }
+
+    /**
+     * Get the name of an element. Makes a substring; use elementEquals to avoid that.
+     */
+    public String getElement(int elementIndex) {
+        elementIndex = fix(elementIndex);
+        return path.substring(elements[2 * elementIndex], elements[2 * elementIndex + 1]);
+    }
+
+    /**
+     * @return true if the element has the given name
+     */
+    public boolean elementEquals(int elementIndex, String element) {
+        elementIndex = fix(elementIndex);
+        int start = elements[2 * elementIndex];
+        int length = elements[2 * elementIndex + 1] - start;
+        return length == element.length() && path.regionMatches(start, element, 0, length);
+    }
+
+    /**
+     * @return true if the element has the same name as the element in the other view
+     */
+    public boolean elementEquals(int elementIndex, XPathView other, int otherIndex) {
+        elementIndex = fix(elementIndex);
+        otherIndex = other.fix(otherIndex);
+        int start = elements[2 * elementIndex];
+        int length = elements[2 * elementIndex + 1] - start;
+        int otherStart = other.elements[2 * otherIndex];
+        return length == other.elements[2 * otherIndex + 1] - otherStart
+            && path.regionMatches(start, other.path, otherStart, length);
+    }
+
+    /**
+     * Find the first element with the given name.
+     *
+     * @return the element index, or -1 if there is no such element
+     */
+    public int findElement(String element) {
+        for (int i = 0; i < size; ++i) {
+            if (elementEquals(i, element)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the first character of the element name
+     */
+    public char getElementFirstChar(int elementIndex) {
+        return path.charAt(elements[2 * fix(elementIndex)]);
+    }
+
+    public int getAttributeCount(int elementIndex) {
+        elementIndex = fix(elementIndex);
+        return firstAttributes[elementIndex + 1] - firstAttributes[elementIndex];
+    }
+
+    /**
+     * Get the name of the nth attribute of the element, in path order. Makes a substring.
+     */
+    public String getAttributeName(int elementIndex, int attributeIndex) {
+        int base = 4 * (firstAttributes[fix(elementIndex)] + attributeIndex);
+        return path.substring(attributes[base], attributes[base + 1]);
+    }
+
+    /**
+     * Get the value of the nth attribute of the element, in path order. Makes a substring.
+     */
+    public String getAttributeValue(int elementIndex, int attributeIndex) {
+        int base = 4 * (firstAttributes[fix(elementIndex)] + attributeIndex);
+        return path.substring(attributes[base + 2], attributes[base + 3]);
+    }
+
+    /**
+     * Find an attribute of the element by name.
+     *
+     * @return the attribute index, in path order, or -1 if the element doesn't have the attribute
+     */
+    public int findAttribute(int elementIndex, String attribute) {
+        elementIndex = fix(elementIndex);
+        int first = firstAttributes[elementIndex];
+        int limit = firstAttributes[elementIndex + 1];
+        int length = attribute.length();
+        for (int k = first; k < limit; ++k) {
+            int start = attributes[4 * k];
+            if (attributes[4 * k + 1] - start == length && path.regionMatches(start, attribute, 0, length)) {
+                return k - first;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the value of the named attribute of the element. Makes a substring.
+     *
+     * @return the value, or null if the element doesn't have the attribute
+     */
+    public String getAttributeValue(int elementIndex, String attribute) {
+        int attributeIndex = findAttribute(elementIndex, attribute);
+        return attributeIndex < 0 ? null : getAttributeValue(elementIndex, attributeIndex);
+    }
+
+    /**
+     * @return true if the element has the attribute with the given value
+     */
+    public boolean attributeValueEquals(int elementIndex, String attribute, String value) {
+        int attributeIndex = findAttribute(elementIndex, attribute);
+        if (attributeIndex < 0) {
+            return false;
+        }
+        int base = 4 * (firstAttributes[fix(elementIndex)] + attributeIndex);
+        int start = attributes[base + 2];
+        int length = attributes[base + 3] - start;
+        return length == value.length() && path.regionMatches(start, value, 0, length);
+    }
+
+    /**
+     * @return true if the attribute of this element has the same value as the attribute of the element in the other view
+     */
+    public boolean attributeValueEquals(int elementIndex, int attributeIndex, XPathView other, int otherElementIndex,
+        int otherAttributeIndex) {
+        int base = 4 * (firstAttributes[fix(elementIndex)] + attributeIndex);
+        int otherBase = 4 * (other.firstAttributes[other.fix(otherElementIndex)] + otherAttributeIndex);
+        int start = attributes[base + 2];
+        int length = attributes[base + 3] - start;
+        int otherStart = other.attributes[otherBase + 2];
+        return length == other.attributes[otherBase + 3] - otherStart
+            && path.regionMatches(start, other.path, otherStart, length);
+    }
+
+    /**
+     * Get the path without the nth attribute of the element, in path order, such as without [@alt="short"].
+     */
+    public String getPathWithoutAttribute(int elementIndex, int attributeIndex) {
+        int base = 4 * (firstAttributes[fix(elementIndex)] + attributeIndex);
+        // the attribute runs from the [@ before its name to the ] after its closing quote
+        return path.substring(0, attributes[base] - 2) + path.substring(attributes[base + 3] + 2);
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}